@@ -0,0 +1,30 @@
+package org.logan;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The kernel agent id this process serves. Set at launch ({@code --kernel.agent-id}), or later
+ * through {@code POST /admin/bind} when the kernel started the process ahead of time for its
+ * warm pool; empty when started by hand.
+ */
+@Component
+public class AgentIdentity {
+    private final AtomicReference<String> agentId = new AtomicReference<>();
+
+    public AgentIdentity(@Value("${kernel.agent-id:}") String agentId) {
+        if (agentId != null && !agentId.isBlank()) this.agentId.set(agentId);
+    }
+
+    /** Null while unbound. */
+    public String agentId() {
+        return agentId.get();
+    }
+
+    /** Bind once; re-binding the same id is a no-op, another id is refused. */
+    public boolean bind(String id) {
+        return agentId.compareAndSet(null, id) || id.equals(agentId.get());
+    }
+}
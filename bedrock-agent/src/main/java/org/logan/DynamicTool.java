@@ -4,6 +4,7 @@ import software.amazon.awssdk.core.document.Document;
 import software.amazon.awssdk.services.bedrockruntime.model.ToolInputSchema;
 import software.amazon.awssdk.services.bedrockruntime.model.ToolSpecification;
 
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -35,6 +36,18 @@ public class DynamicTool {
                 .build();
     }
 
+    /** Names the schema marks {@code required} that this input lacks (or sets to null). */
+    public List<String> missingParameters(Map<String, Document> input) {
+        if (schema == null || !schema.isMap()) return List.of();
+        Document required = schema.asMap().get("required");
+        if (required == null || !required.isList()) return List.of();
+        return required.asList().stream()
+                .filter(Document::isString)
+                .map(Document::asString)
+                .filter(name -> input == null || input.get(name) == null || input.get(name).isNull())
+                .toList();
+    }
+
     public Document execute(Map<String, Document> input) {
         return executor.apply(input);
     }
@@ -4,13 +4,29 @@ import org.springframework.stereotype.Component;
 import software.amazon.awssdk.core.document.Document;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class ToolRegistry {
     private final Map<String, DynamicTool> tools = new HashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    // A restarted agent counts from 0 again; the boot id keeps its ETags from matching old ones
+    private final String bootId = Long.toHexString(ThreadLocalRandom.current().nextLong());
 
     public void register(DynamicTool tool) {
         tools.put(tool.getName(), tool);
+        version.incrementAndGet();
+    }
+
+    /** Bumped on every change. */
+    public long version() {
+        return version.get();
+    }
+
+    /** Served as the ETag of GET /tools/list: unique per boot, changes with {@link #version()}. */
+    public String etag() {
+        return bootId + "-" + version.get();
     }
 
     public DynamicTool get(String name) {
@@ -0,0 +1,30 @@
+package org.logan.config;
+
+import org.logan.protocol.batch.EnvelopeBatcher;
+import org.logan.protocol.codec.EnvelopeCodec;
+import org.logan.protocol.codec.WireFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/** 📦 Coalesces reasoning and tool events for the kernel into POST /messages/batch. */
+@Configuration
+public class KernelBatchConfig {
+
+    @Bean(destroyMethod = "close")
+    public EnvelopeBatcher kernelBatcher(@Value("${kernel.base-url}") String kernelBaseUrl,
+                                         @Value("${kernel.wire-format:json}") String wireFormat,
+                                         @Value("${kernel.batch.max-envelopes:64}") int maxEnvelopes,
+                                         @Value("${kernel.batch.linger-ms:20}") long lingerMs,
+                                         @Value("${kernel.batch.queue-capacity:10000}") int capacity) {
+        HttpClient http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        return new EnvelopeBatcher("kernel-batch", URI.create(kernelBaseUrl + "/messages/batch"), http,
+                new EnvelopeCodec(), WireFormat.fromName(wireFormat), maxEnvelopes, lingerMs, capacity);
+    }
+}
@@ -2,6 +2,7 @@ package org.logan.controller;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.logan.AgentIdentity;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
@@ -15,11 +16,13 @@ public class BedrockAdminController {
 
     private final RestTemplate rest;
     private final ObjectMapper mapper = new ObjectMapper();
+    private final AgentIdentity identity;
 
     // kernel base URL, e.g. "http://localhost:8080"
-    public BedrockAdminController(@Value("${kernel.base-url}") String kernelBaseUrl) {
+    public BedrockAdminController(@Value("${kernel.base-url}") String kernelBaseUrl, AgentIdentity identity) {
         this.rest = new RestTemplate();
         this.kernelBaseUrl = kernelBaseUrl;
+        this.identity = identity;
     }
 
     private final String kernelBaseUrl;
@@ -27,6 +30,24 @@ public class BedrockAdminController {
     public static record SpawnRequest(String agentId, String agentType) {}
     public static record KernelResponse(boolean ok, String message, Map<String,Object> data) {}
 
+    /**
+     * Called by the kernel when it hands this pre-started (warm pool) process to an agent.
+     * Example: POST /admin/bind { "agentId":"payments-agent" }
+     */
+    @PostMapping("/bind")
+    public ResponseEntity<?> bind(@RequestBody Map<String,String> body) {
+        String agentId = body.get("agentId");
+        if (agentId == null || agentId.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "message", "agentId required"));
+        }
+        if (!identity.bind(agentId)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("ok", false, "message", "already bound to " + identity.agentId()));
+        }
+        System.out.println("🔗 Bound to kernel agent " + agentId);
+        return ResponseEntity.ok(Map.of("ok", true, "agentId", agentId));
+    }
+
     /**
      * Request kernel to spawn a new agent.
      * Example: POST /admin/request-spawn { "agentType":"BEDROCK", "agentId":"optional-id" }
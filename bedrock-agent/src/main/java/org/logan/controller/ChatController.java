@@ -4,11 +4,13 @@ import org.logan.BedrockActions;
 import org.logan.DynamicTool;
 import org.logan.ToolRegistry;
 import org.logan.protocol.MessageEnvelope;
+import org.logan.protocol.StepOutcome;
+import org.logan.protocol.batch.EnvelopeBatcher;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 import software.amazon.awssdk.core.document.Document;
 import software.amazon.awssdk.services.bedrockruntime.model.*;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -32,23 +34,21 @@ public class ChatController {
 
     private final BedrockActions bedrockActions;
     private final ToolRegistry toolRegistry;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final EnvelopeBatcher kernelBatcher;
 
     // 🧠 Chat sessions + reasoning + audit log
     private final Map<String, List<Message>> sessions = new ConcurrentHashMap<>();
     private final Map<String, List<Map<String, String>>> reasoningHistory = new ConcurrentHashMap<>();
     private final Map<String, List<Map<String, Object>>> chatAudit = new ConcurrentHashMap<>();
 
-    private final String kernelBaseUrl;
-
     public ChatController(
             BedrockActions bedrockActions,
             ToolRegistry toolRegistry,
-            @org.springframework.beans.factory.annotation.Value("${kernel.base-url}") String kernelBaseUrl
+            EnvelopeBatcher kernelBatcher
     ) {
         this.bedrockActions = bedrockActions;
         this.toolRegistry = toolRegistry;
-        this.kernelBaseUrl = kernelBaseUrl;
+        this.kernelBatcher = kernelBatcher;
         System.out.println("🧠 ChatController initialized with ToolRegistry hash: " +
                 System.identityHashCode(toolRegistry));
     }
@@ -80,9 +80,19 @@ public class ChatController {
                 ));
 
         List<Map<String, Object>> collectedEvents = new ArrayList<>();
+        StepTracker step = new StepTracker();
         ConverseResponse response = sendConversationToBedrock(conversation);
 
-        processModelResponse(sessionId, agentId, response, conversation, maxRecursions, collectedEvents);
+        processModelResponse(sessionId, agentId, response, conversation, maxRecursions, collectedEvents, step);
+
+        // 📦 Our reasoning/tool events must reach the kernel before the reply that ends this turn
+        try {
+            if (!kernelBatcher.flush(Duration.ofSeconds(5))) {
+                System.err.println("⚠️ Kernel event batch dropped or still in flight after 5s for session=" + sessionId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
 
         // ✅ Final payload includes agentId
         return Map.of(
@@ -91,7 +101,8 @@ public class ChatController {
                 "audit", chatAudit.getOrDefault(sessionId, List.of()),
                 "agentId", agentId,
                 "sessionId", sessionId,
-                "isFinal", "end_turn".equals(response.stopReasonAsString())
+                "isFinal", "end_turn".equals(response.stopReasonAsString()),
+                StepOutcome.FIELD, step.outcome().toMap()
         );
     }
 
@@ -114,18 +125,21 @@ public class ChatController {
             ConverseResponse modelResponse,
             List<Message> conversation,
             int maxRecursion,
-            List<Map<String, Object>> collectedEvents
+            List<Map<String, Object>> collectedEvents,
+            StepTracker step
     ) {
         if (maxRecursion <= 0) {
             collectedEvents.add(Map.of("type", "system", "message", "⚠️ Maximum recursion depth reached."));
+            step.recursionExhausted();
             return;
         }
 
         conversation.add(modelResponse.output().message());
         String stopReason = modelResponse.stopReasonAsString();
+        step.stopped(stopReason);
 
         if ("tool_use".equals(stopReason)) {
-            handleToolUse(sessionId, agentId, modelResponse.output(), conversation, maxRecursion - 1, collectedEvents);
+            handleToolUse(sessionId, agentId, modelResponse.output(), conversation, maxRecursion - 1, collectedEvents, step);
         } else if ("end_turn".equals(stopReason)) {
             modelResponse.output().message().content().forEach(c -> {
                 if (c.text() != null) {
@@ -142,7 +156,8 @@ public class ChatController {
             ConverseOutput modelResponse,
             List<Message> conversation,
             int maxRecursion,
-            List<Map<String, Object>> collectedEvents
+            List<Map<String, Object>> collectedEvents,
+            StepTracker step
     ) {
         List<ContentBlock> toolResults = new ArrayList<>();
 
@@ -171,7 +186,10 @@ public class ChatController {
                             ));
                     sendToolEventToKernel(sessionId, agentId, "tool_invocation", toolName, Map.of("input", inputData));
 
+                    DynamicTool tool = toolRegistry.get(toolName);
+                    List<String> missing = tool != null ? tool.missingParameters(inputData) : List.of();
                     ToolResponse toolResponse = invokeTool(useBlock);
+                    step.record(toolName, missing, StepTracker.failureOf(toolResponse.getContent()));
 
                     chatAudit.get(sessionId).add(Map.of(
                             "timestamp", new Date().toString(),
@@ -199,6 +217,7 @@ public class ChatController {
                     sendReasoningUpdate(sessionId, agentId, "tool_success", "Executed local tool: " + toolName);
 
                 } catch (Exception e) {
+                    step.record(useBlock.name(), List.of(), String.valueOf(e.getMessage()));
                     chatAudit.get(sessionId).add(Map.of(
                             "timestamp", new Date().toString(),
                             "type", "error",
@@ -219,7 +238,7 @@ public class ChatController {
 
             conversation.add(toolMessage);
             ConverseResponse nextResponse = sendConversationToBedrock(conversation);
-            processModelResponse(sessionId, agentId, nextResponse, conversation, maxRecursion, collectedEvents);
+            processModelResponse(sessionId, agentId, nextResponse, conversation, maxRecursion, collectedEvents, step);
         }
     }
 
@@ -272,6 +291,7 @@ public class ChatController {
             envelope.setSenderId(agentId);
             envelope.setRecipientId("kernel");
             envelope.setType("agent_status_update");
+            envelope.setCorrelationId(UUID.randomUUID().toString());   // batch retries are deduplicated on it
             envelope.setPayload(Map.of(
                     "sessionId", sessionId,
                     "phase", phase,
@@ -279,7 +299,7 @@ public class ChatController {
                     "agentId", agentId
             ));
 
-            restTemplate.postForEntity(kernelBaseUrl + "/messages", envelope, Void.class);
+            kernelBatcher.submit(envelope);   // 📦 coalesced into /messages/batch, order kept
         } catch (Exception e) {
             System.err.println("⚠️ Failed to send reasoning update: " + e.getMessage());
         }
@@ -298,10 +318,11 @@ public class ChatController {
             env.setSenderId(agentId);
             env.setRecipientId("kernel");
             env.setType(type);
+            env.setCorrelationId(UUID.randomUUID().toString());
             env.setPayload(payload);
 
-            restTemplate.postForEntity(kernelBaseUrl + "/messages", env, Void.class);
-            System.out.printf("🧰 [%s] Sent %s for tool=%s session=%s%n", agentId, type, toolName, sessionId);
+            kernelBatcher.submit(env);
+            System.out.printf("🧰 [%s] Queued %s for tool=%s session=%s%n", agentId, type, toolName, sessionId);
         } catch (Exception e) {
             System.err.printf("⚠️ [%s] Failed to send %s: %s%n", agentId, type, e.getMessage());
         }
@@ -0,0 +1,69 @@
+package org.logan.controller;
+
+import org.logan.protocol.StepOutcome;
+import software.amazon.awssdk.core.document.Document;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 🧭 What happened to the tool calls of one chat turn, reduced to a {@link StepOutcome} the
+ * orchestrator can act on. Only the latest call per tool counts, so a retry that succeeded
+ * clears an earlier failure. A turn that ended in prose alone is left {@code ambiguous}:
+ * whether that text is an answer or a question is for the orchestrator's reasoner to judge.
+ */
+class StepTracker {
+    private final Map<String, List<String>> missing = new LinkedHashMap<>();
+    private final Map<String, String> failures = new LinkedHashMap<>();
+    private int toolCalls;
+    private String stopReason;
+    private boolean recursionExhausted;
+
+    void record(String tool, List<String> missingParameters, String failure) {
+        toolCalls++;
+        missing.remove(tool);
+        failures.remove(tool);
+        if (!missingParameters.isEmpty()) missing.put(tool, missingParameters);
+        if (failure != null) failures.put(tool, failure);
+    }
+
+    void stopped(String stopReason) {
+        this.stopReason = stopReason;
+    }
+
+    void recursionExhausted() {
+        this.recursionExhausted = true;
+    }
+
+    StepOutcome outcome() {
+        if (!missing.isEmpty()) {
+            List<String> params = missing.values().stream().flatMap(List::stream).distinct().toList();
+            return new StepOutcome(StepOutcome.Status.NEEDS_INPUT, params,
+                    "Missing " + String.join(", ", params) + " for " + String.join(", ", missing.keySet()));
+        }
+        if (!failures.isEmpty()) {
+            Map.Entry<String, String> first = failures.entrySet().iterator().next();
+            return StepOutcome.of(StepOutcome.Status.TOOL_FAILED, first.getKey() + " failed: " + first.getValue());
+        }
+        if (recursionExhausted || !"end_turn".equals(stopReason)) {
+            return StepOutcome.of(StepOutcome.Status.AMBIGUOUS,
+                    recursionExhausted ? "Tool loop cut off" : "Model stopped with " + stopReason);
+        }
+        return toolCalls > 0
+                ? StepOutcome.of(StepOutcome.Status.SUCCESS, toolCalls + " tool call(s) succeeded")
+                : StepOutcome.of(StepOutcome.Status.AMBIGUOUS, "Answered without tools");
+    }
+
+    // A tool reports failure as {"ok": false, "error": ...} (see ToolController's remote tools)
+    static String failureOf(Document result) {
+        if (result == null || !result.isMap()) return null;
+        Map<String, Document> fields = result.asMap();
+        Document ok = fields.get("ok");
+        Document error = fields.get("error");
+        boolean failed = (ok != null && ok.isBoolean() && !ok.asBoolean())
+                || (error != null && !error.isNull());
+        if (!failed) return null;
+        return error != null && error.isString() ? error.asString() : "tool reported ok=false";
+    }
+}
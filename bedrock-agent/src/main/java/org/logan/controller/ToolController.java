@@ -1,8 +1,10 @@
 package org.logan.controller;
 
+import org.logan.AgentIdentity;
 import org.logan.DynamicTool;
 import org.logan.ToolRegistry;
 import org.logan.dto.ToolRequest;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -11,6 +13,11 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.RestTemplate;
 import software.amazon.awssdk.core.document.Document;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -20,10 +27,18 @@ public class ToolController {
 
     private final ToolRegistry toolRegistry;
     private final RestTemplate rest;
+    private final HttpClient kernelHttp = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
 
-    public ToolController(ToolRegistry toolRegistry, RestTemplate rest) {
+    @Value("${kernel.base-url}")
+    private String kernelBaseUrl;
+
+    // Set by the kernel when it spawns (or binds) this process; unset when started by hand
+    private final AgentIdentity identity;
+
+    public ToolController(ToolRegistry toolRegistry, RestTemplate rest, AgentIdentity identity) {
         this.toolRegistry = toolRegistry;
         this.rest = rest;
+        this.identity = identity;
         System.out.println("ToolController registry hash: " + System.identityHashCode(toolRegistry));
     }
 
@@ -89,6 +104,7 @@ public class ToolController {
         toolRegistry.register(tool);
         System.out.printf("✅ Tool '%s' registered and bound to consumer [%s]%n",
                 tool.getName(), consumerService);
+        notifyKernelToolsChanged();
 
         return "✅ Tool registered successfully: " + tool.getName() + " (consumer=" + consumerService + ")";
     }
@@ -98,14 +114,17 @@ public class ToolController {
     // List all tools
     // ------------------------
     @GetMapping("/list")
-    public Object listTools() {
-        return toolRegistry.all().stream()
+    public ResponseEntity<?> listTools(@RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        // 🏷️ The kernel's tool catalog polls conditionally; unchanged registry = 304, no body
+        String etag = "\"" + toolRegistry.etag() + "\"";
+        if (etag.equals(ifNoneMatch)) return ResponseEntity.status(304).eTag(etag).build();
+        return ResponseEntity.ok().eTag(etag).body(toolRegistry.all().stream()
                 .map(tool -> Map.of(
                         "name", tool.getName(),
                         "description", tool.toToolSpec().description(),
                         "schema", documentToPlainMap(tool.toToolSpec().inputSchema().json())
                 ))
-                .toList();
+                .toList());
     }
 
     // ------------------------
@@ -183,6 +202,25 @@ public class ToolController {
         return null;
     }
 
+    // 📣 Tell the kernel's tool catalog to refetch our list (fire and forget; it also resyncs periodically)
+    private void notifyKernelToolsChanged() {
+        String kernelAgentId = identity.agentId();
+        if (kernelAgentId == null) return;
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(kernelBaseUrl + "/agents/" + kernelAgentId + "/tools/changed"))
+                .timeout(Duration.ofSeconds(5))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        kernelHttp.sendAsync(req, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((resp, ex) -> {
+                    if (ex != null) {
+                        System.err.printf("⚠️ Could not notify kernel of tool change: %s%n", ex.getMessage());
+                    } else if (resp.statusCode() >= 300) {
+                        System.err.printf("⚠️ Kernel answered %d to tool change notification%n", resp.statusCode());
+                    }
+                });
+    }
+
     private HttpHeaders defaultHeaders() {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
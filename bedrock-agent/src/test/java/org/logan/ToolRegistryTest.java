@@ -0,0 +1,39 @@
+package org.logan;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.document.Document;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolRegistryTest {
+
+    private static DynamicTool tool(String name) {
+        return new DynamicTool(name, "test tool", Document.fromMap(Map.of()), input -> Document.fromNull());
+    }
+
+    @Test
+    void theEtagChangesWithEveryRegistration() {
+        ToolRegistry registry = new ToolRegistry();
+        String empty = registry.etag();
+
+        registry.register(tool("charge"));
+
+        assertNotEquals(empty, registry.etag());
+        assertTrue(registry.etag().endsWith("-1"), registry.etag());
+        assertEquals(registry.etag(), registry.etag());
+    }
+
+    @Test
+    void aRestartedRegistryWithTheSameToolCountAnswersAnotherEtag() {
+        ToolRegistry before = new ToolRegistry();
+        ToolRegistry after = new ToolRegistry();   // same agent, next boot
+
+        before.register(tool("charge"));
+        after.register(tool("refund"));
+
+        assertEquals(before.version(), after.version());
+        assertNotEquals(before.etag(), after.etag());
+    }
+}
@@ -0,0 +1,101 @@
+package org.logan.controller;
+
+import org.junit.jupiter.api.Test;
+import org.logan.DynamicTool;
+import org.logan.protocol.StepOutcome;
+import org.logan.protocol.StepOutcome.Status;
+import software.amazon.awssdk.core.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StepTrackerTest {
+
+    private static final Document OK = Document.fromMap(Map.of("ok", Document.fromBoolean(true)));
+
+    private static StepTracker endedTurn() {
+        StepTracker step = new StepTracker();
+        step.stopped("end_turn");
+        return step;
+    }
+
+    @Test
+    void succeededToolCallsAreASuccess() {
+        StepTracker step = endedTurn();
+        step.record("charge", List.of(), StepTracker.failureOf(OK));
+        step.record("receipt", List.of(), null);
+
+        StepOutcome outcome = step.outcome();
+
+        assertEquals(Status.SUCCESS, outcome.status());
+        assertEquals("2 tool call(s) succeeded", outcome.reason());
+        assertTrue(outcome.missingParameters().isEmpty());
+    }
+
+    @Test
+    void missingParametersNeedInputAndWinOverAFailure() {
+        DynamicTool transfer = new DynamicTool("transfer", "move money", Document.fromMap(Map.of(
+                "required", Document.fromList(List.of(Document.fromString("amount"), Document.fromString("to"))))),
+                input -> OK);
+        StepTracker step = endedTurn();
+        step.record("refund", List.of(), "gateway down");
+        step.record("transfer", transfer.missingParameters(Map.of(
+                "amount", Document.fromNumber(5), "to", Document.fromNull())), null);
+        step.record("notify", List.of("to"), null);
+
+        StepOutcome outcome = step.outcome();
+
+        assertEquals(Status.NEEDS_INPUT, outcome.status());
+        assertEquals(List.of("to"), outcome.missingParameters());
+        assertEquals("Missing to for transfer, notify", outcome.reason());
+    }
+
+    @Test
+    void aToolErrorIsAToolFailure() {
+        StepTracker step = endedTurn();
+        step.record("charge", List.of(), StepTracker.failureOf(Document.fromMap(Map.of(
+                "ok", Document.fromBoolean(false), "error", Document.fromString("card declined")))));
+
+        StepOutcome outcome = step.outcome();
+
+        assertEquals(Status.TOOL_FAILED, outcome.status());
+        assertEquals("charge failed: card declined", outcome.reason());
+    }
+
+    @Test
+    void aLaterSuccessfulRetryClearsTheFailure() {
+        StepTracker step = endedTurn();
+        step.record("charge", List.of(), "timeout");
+        step.record("charge", List.of(), null);
+
+        assertEquals(Status.SUCCESS, step.outcome().status());
+    }
+
+    @Test
+    void toolResultsAreReadForFailure() {
+        assertNull(StepTracker.failureOf(null));
+        assertNull(StepTracker.failureOf(Document.fromString("plain text")));
+        assertNull(StepTracker.failureOf(OK));
+        assertNull(StepTracker.failureOf(Document.fromMap(Map.of("error", Document.fromNull()))));
+        assertEquals("tool reported ok=false",
+                StepTracker.failureOf(Document.fromMap(Map.of("ok", Document.fromBoolean(false)))));
+        assertEquals("boom", StepTracker.failureOf(Document.fromMap(Map.of("error", Document.fromString("boom")))));
+    }
+
+    @Test
+    void proseOnlyACutOffLoopOrAnotherStopReasonAreAmbiguous() {
+        assertEquals(new StepOutcome(Status.AMBIGUOUS, List.of(), "Answered without tools"), endedTurn().outcome());
+
+        StepTracker cutOff = new StepTracker();
+        cutOff.stopped("tool_use");
+        cutOff.record("charge", List.of(), null);
+        cutOff.recursionExhausted();
+        assertEquals("Tool loop cut off", cutOff.outcome().reason());
+
+        StepTracker truncated = new StepTracker();
+        truncated.stopped("max_tokens");
+        assertEquals(StepOutcome.of(Status.AMBIGUOUS, "Model stopped with max_tokens"), truncated.outcome());
+    }
+}
@@ -4,6 +4,12 @@ plugins {
     java
 }
 
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(21)) // virtual threads for agent mailboxes
+    }
+}
+
 repositories {
     mavenCentral()
     maven { url = uri("https://repo.spring.io/release") } // ✅ Required for Spring Cloud
@@ -35,6 +41,7 @@ dependencies {
     implementation("com.theokanning.openai-gpt3-java:service:0.18.2")
     implementation("com.fasterxml.jackson.core:jackson-databind")
     implementation("com.fasterxml.jackson.datatype:jackson-datatype-jsr310")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-smile")
 
     // ✅ Spring Cloud BOM import (ensures version compatibility)
     implementation(platform("org.springframework.cloud:spring-cloud-dependencies:2023.0.3"))
@@ -44,4 +51,16 @@ dependencies {
 
     // Test dependencies
     testImplementation("org.springframework.boot:spring-boot-starter-test")
+    testImplementation("org.testcontainers:junit-jupiter")   // Redis stream tests; skipped without Docker
+}
+
+// ./gradlew :kernel-service:dispatchBenchmark [-Prounds=20000]
+tasks.register<JavaExec>("dispatchBenchmark") {
+    group = "verification"
+    description = "Compares legacy switch/Map dispatch with typed handler dispatch for /messages envelopes"
+    classpath = sourceSets["test"].runtimeClasspath   // the harness lives with the tests, not in the boot jar
+    mainClass.set("org.logan.kernel.bench.DispatchBenchmark")
+    if (project.hasProperty("rounds")) {
+        args(project.property("rounds").toString())
+    }
 }
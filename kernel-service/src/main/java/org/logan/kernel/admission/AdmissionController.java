@@ -0,0 +1,138 @@
+package org.logan.kernel.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.MessageType.Priority;
+import org.logan.kernel.dispatch.payload.SessionScoped;
+import org.logan.kernel.sse.SseBroadcaster;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 🚦 AdmissionController: decides whether a /messages envelope is accepted before any work is
+ * done for it.
+ *
+ * Two checks, cheapest first:
+ * <ol>
+ *   <li>Queue delay: if the kernel's SSE dispatch queue or the recipient's mailbox has had a
+ *       standing delay above target ({@link CoDelMonitor}), LOW types are shed; NORMAL types
+ *       only once that delay exceeds a full interval.</li>
+ *   <li>Rate: one token bucket per sender and one per session. LOW types must leave a reserve
+ *       in the bucket, so chatty status/tool traffic runs dry before normal traffic does.</li>
+ * </ol>
+ * CRITICAL types ({@code chat_result}, {@code user_decision}) are never rejected: dropping
+ * them would strand a session that is already paid for.
+ */
+@Component
+public class AdmissionController {
+
+    public record Decision(boolean admitted, String reason, long retryAfterSeconds) {
+        static final Decision ADMIT = new Decision(true, null, 0);
+    }
+
+    private final AgentRegistry registry;
+    private final SseBroadcaster broadcaster;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, TokenBucket> senderBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> sessionBuckets = new ConcurrentHashMap<>();
+
+    @Value("${kernel.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${kernel.admission.sender-rate:50}")
+    private double senderRate;
+
+    @Value("${kernel.admission.sender-burst:100}")
+    private double senderBurst;
+
+    @Value("${kernel.admission.session-rate:100}")
+    private double sessionRate;
+
+    @Value("${kernel.admission.session-burst:200}")
+    private double sessionBurst;
+
+    @Value("${kernel.admission.low-priority-reserve:0.25}")
+    private double lowReserve;
+
+    @Value("${kernel.admission.bucket-idle-seconds:300}")
+    private long bucketIdleSeconds;
+
+    private ScheduledExecutorService janitor;
+
+    public AdmissionController(AgentRegistry registry, SseBroadcaster broadcaster, MeterRegistry meterRegistry) {
+        this.registry = registry;
+        this.broadcaster = broadcaster;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        janitor = Executors.newSingleThreadScheduledExecutor();
+        janitor.scheduleAtFixedRate(this::evictIdleBuckets, bucketIdleSeconds, bucketIdleSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        janitor.shutdownNow();
+    }
+
+    /**
+     * @param type      metric label for the envelope type (bounded set, not raw client input)
+     * @param sessionId session of the payload, or null when it has none
+     */
+    public Decision admit(String type, Priority priority, String senderId, String recipientId, String sessionId) {
+        if (!enabled || priority == Priority.CRITICAL) return Decision.ADMIT;
+
+        Decision shed = shed(broadcaster.dispatchDelay(), priority);
+        if (shed == null) shed = shed(registry.mailboxDelay(recipientId), priority);
+        if (shed != null) return reject(type, shed);
+
+        String sender = senderId != null ? senderId : "anonymous";
+        TokenBucket senderBucket = senderBuckets.computeIfAbsent(sender, k -> new TokenBucket(senderRate, senderBurst));
+        double reserve = priority == Priority.LOW ? lowReserve * senderBurst : 0;
+        if (!senderBucket.tryAcquire(reserve)) {
+            return reject(type, new Decision(false, "sender_rate", retryAfter(senderBucket.nanosUntilAvailable(reserve))));
+        }
+
+        if (sessionId != null && !SessionScoped.DEFAULT_SESSION.equals(sessionId)) {
+            TokenBucket bucket = sessionBuckets.computeIfAbsent(sessionId, k -> new TokenBucket(sessionRate, sessionBurst));
+            reserve = priority == Priority.LOW ? lowReserve * sessionBurst : 0;
+            if (!bucket.tryAcquire(reserve)) {
+                // Not admitted: the sender's token goes back, or a busy session would drain its senders too
+                senderBucket.refund();
+                return reject(type, new Decision(false, "session_rate", retryAfter(bucket.nanosUntilAvailable(reserve))));
+            }
+        }
+        return Decision.ADMIT;
+    }
+
+    private Decision shed(CoDelMonitor monitor, Priority priority) {
+        if (monitor == null) return null;
+        boolean shed = priority == Priority.LOW ? monitor.overloaded() : monitor.severelyOverloaded();
+        return shed ? new Decision(false, "queue_delay", retryAfter(monitor.intervalMs() * 1_000_000L)) : null;
+    }
+
+    private Decision reject(String type, Decision decision) {
+        meterRegistry.counter("kernel.admission.rejected", "type", type, "reason", decision.reason()).increment();
+        return decision;
+    }
+
+    private static long retryAfter(long nanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(nanos + 999_999_999L));
+    }
+
+    // 🧹 Buckets of senders/sessions that went quiet are full again anyway; drop them
+    private void evictIdleBuckets() {
+        long cutoff = System.nanoTime() - TimeUnit.SECONDS.toNanos(bucketIdleSeconds);
+        senderBuckets.values().removeIf(b -> b.lastUsedNanos() < cutoff);
+        sessionBuckets.values().removeIf(b -> b.lastUsedNanos() < cutoff);
+    }
+}
@@ -0,0 +1,71 @@
+package org.logan.kernel.admission;
+
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * 🐢 Queue-delay (sojourn time) monitor following CoDel's overload test.
+ *
+ * Consumers report how long each item waited in their queue. The queue counts as overloaded
+ * once the delay has stayed above {@code target} for a whole {@code interval} (a standing
+ * queue rather than a burst), and recovers as soon as one item gets through under target or
+ * the queue runs empty.
+ */
+public class CoDelMonitor {
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final IntSupplier depth;
+    private final LongSupplier clock;
+
+    private volatile long firstAboveTime;   // 0 = delay currently under target
+    private volatile boolean overloaded;
+    private volatile long lastSojournNanos;
+
+    public CoDelMonitor(long targetMs, long intervalMs, IntSupplier depth) {
+        this(targetMs, intervalMs, depth, System::nanoTime);
+    }
+
+    /** @param clock nanosecond time source ({@link System#nanoTime} outside tests) */
+    CoDelMonitor(long targetMs, long intervalMs, IntSupplier depth, LongSupplier clock) {
+        this.targetNanos = targetMs * 1_000_000L;
+        this.intervalNanos = intervalMs * 1_000_000L;
+        this.depth = depth;
+        this.clock = clock;
+    }
+
+    /** Called by the consumer for every dequeued item. */
+    public void observe(long sojournNanos) {
+        lastSojournNanos = sojournNanos;
+        long now = clock.getAsLong();
+        if (sojournNanos < targetNanos) {
+            firstAboveTime = 0;
+            overloaded = false;
+        } else if (firstAboveTime == 0) {
+            firstAboveTime = now + intervalNanos;
+        } else if (now >= firstAboveTime) {
+            overloaded = true;
+        }
+    }
+
+    /** Standing queue above target for at least one interval. */
+    public boolean overloaded() {
+        if (overloaded && depth.getAsInt() == 0) {
+            overloaded = false;
+            firstAboveTime = 0;
+        }
+        return overloaded;
+    }
+
+    /** Overloaded and the last delay exceeded a full interval: time to shed normal traffic too. */
+    public boolean severelyOverloaded() {
+        return overloaded() && lastSojournNanos >= intervalNanos;
+    }
+
+    public long lastSojournMs() {
+        return lastSojournNanos / 1_000_000L;
+    }
+
+    public long intervalMs() {
+        return intervalNanos / 1_000_000L;
+    }
+}
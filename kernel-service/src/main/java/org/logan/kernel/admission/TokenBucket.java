@@ -0,0 +1,64 @@
+package org.logan.kernel.admission;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Classic token bucket: {@code ratePerSecond} refill up to {@code burst} tokens.
+ */
+final class TokenBucket {
+    private final double ratePerNano;
+    private final double burst;
+    private final LongSupplier clock;
+    private double tokens;
+    private long lastRefill;
+    private volatile long lastUsed;
+
+    TokenBucket(double ratePerSecond, double burst) {
+        this(ratePerSecond, burst, System::nanoTime);
+    }
+
+    /** @param clock nanosecond time source ({@link System#nanoTime} outside tests) */
+    TokenBucket(double ratePerSecond, double burst, LongSupplier clock) {
+        this.ratePerNano = ratePerSecond / 1_000_000_000d;
+        this.burst = burst;
+        this.clock = clock;
+        this.tokens = burst;
+        this.lastRefill = clock.getAsLong();
+        this.lastUsed = lastRefill;
+    }
+
+    /**
+     * Take one token if at least {@code reserve} tokens would remain afterwards.
+     * A reserve lets low-value traffic give way before the bucket is fully drained.
+     */
+    synchronized boolean tryAcquire(double reserve) {
+        refill();
+        if (tokens - 1 < reserve) return false;
+        tokens -= 1;
+        return true;
+    }
+
+    /** Give back a token taken by {@link #tryAcquire(double)} for a request that was not admitted after all. */
+    synchronized void refund() {
+        refill();
+        tokens = Math.min(burst, tokens + 1);
+    }
+
+    /** Nanoseconds until {@link #tryAcquire(double)} with the same reserve could succeed. */
+    synchronized long nanosUntilAvailable(double reserve) {
+        refill();
+        double missing = reserve + 1 - tokens;
+        return missing <= 0 ? 0 : (long) (missing / ratePerNano);
+    }
+
+    long lastUsedNanos() {
+        return lastUsed;
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+        lastUsed = now;
+    }
+}
@@ -1,18 +1,28 @@
 package org.logan.kernel.agent;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.logan.kernel.agent.gateway.KernelGatewayFactory;
 import org.logan.kernel.persistence.AgentPersistenceService;
+import org.logan.kernel.planning.PlanCache;
+import org.logan.kernel.planning.PlanJournal;
+import org.logan.kernel.tools.AgentToolCatalog;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Component
 public class AgentFactory {
@@ -20,15 +30,61 @@ public class AgentFactory {
     @Value("${kernel.agent-base-path:/home/ec2-user/Orion/}")
     private String agentBasePath;
 
+    @Value("${kernel.agent-pool.ready-timeout-seconds:30}")
+    private long readyTimeoutSeconds;
+
+    @Value("${kernel.agent-pool.max-cold-starts:4}")
+    private int maxColdStarts;
+
+    @Value("${kernel.agent-pool.health-timeout-seconds:60}")
+    private long healthTimeoutSeconds;
+
     @Value("${eureka.instance.ip-address}")
     private String instanceIp;
 
+    @Value("${kernel.orchestrator.max-parallel-steps:4}")
+    private int maxParallelSteps;
+
+    @Value("${kernel.orchestrator.journal.dir:orchestrator-state}")
+    private String journalDir;
+
+    @Value("${kernel.orchestrator.journal.commit-interval-ms:5}")
+    private long journalCommitIntervalMs;
+
+    @Value("${kernel.orchestrator.journal.snapshot-every:1000}")
+    private int journalSnapshotEvery;
+
+    @Value("${kernel.orchestrator.passivation.idle-seconds:600}")
+    private long passivateAfterSeconds;
+
+    private final ObjectMapper journalMapper = new ObjectMapper();
+
     private final AgentRegistry registry;
     private final AgentPersistenceService persistence;
-
-    public AgentFactory(AgentRegistry registry, AgentPersistenceService persistence) {
+    private final KernelGatewayFactory gateways;
+    private final AgentHttpClient http;
+    private final AgentToolCatalog toolCatalog;
+    private final PlanCache planCache;
+    private final BedrockProcessLauncher launcher;
+    private final WarmAgentPool warmPool;
+    private Semaphore coldStarts;
+
+    public AgentFactory(AgentRegistry registry, AgentPersistenceService persistence, KernelGatewayFactory gateways,
+                        AgentHttpClient http, AgentToolCatalog toolCatalog, PlanCache planCache,
+                        BedrockProcessLauncher launcher, WarmAgentPool warmPool) {
         this.registry = registry;
         this.persistence = persistence;
+        this.gateways = gateways;
+        this.http = http;
+        this.toolCatalog = toolCatalog;
+        this.planCache = planCache;
+        this.launcher = launcher;
+        this.warmPool = warmPool;
+    }
+
+    @PostConstruct
+    public void start() {
+        coldStarts = new Semaphore(Math.max(1, maxColdStarts));
     }
 
     public Agent createAgent(String id, String type) throws Exception {
@@ -45,13 +101,48 @@ public class AgentFactory {
         }
     }
 
+    /** Outcome of one agent in {@link #createAgents}; {@code error} set means it wasn't created. */
+    public record Spawned(String agentId, String endpoint, boolean ready, String error) {}
+
+    /**
+     * Create many agents at once, each on its own virtual thread (claiming warm processes where
+     * available; cold starts queue for {@code kernel.agent-pool.max-cold-starts}). With
+     * {@code awaitReady} each result also says whether the agent passed its health check within
+     * {@code kernel.agent-pool.ready-timeout-seconds}.
+     */
+    public List<Spawned> createAgents(List<String> ids, String type, boolean awaitReady) {
+        List<Future<Spawned>> futures = new ArrayList<>(ids.size());
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String requested : ids) {
+                futures.add(workers.submit(() -> {
+                    try {
+                        Agent agent = createAgent(requested, type);
+                        boolean ready = awaitReady && awaitReady(agent);
+                        return new Spawned(agent.getId(), agent.getEndpoint(), ready, null);
+                    } catch (Exception e) {
+                        return new Spawned(requested, null, false, String.valueOf(e.getMessage()));
+                    }
+                }));
+            }
+        }
+        List<Spawned> results = new ArrayList<>(futures.size());
+        for (Future<Spawned> f : futures) results.add(f.resultNow());
+        return results;
+    }
+
+    /** Block until the agent's process answers its health check, up to the ready timeout. */
+    public boolean awaitReady(Agent agent) {
+        return launcher.awaitHealthy(null, agent.getEndpoint(), Duration.ofSeconds(readyTimeoutSeconds));
+    }
+
     // ✅ Rehydrate or respawn if dead
     public Agent rehydrateAgent(String id, String type, String endpoint) throws Exception {
         if (isEndpointAlive(endpoint)) {
             System.out.println("♻️ Reattaching to live agent " + id + " at " + endpoint);
             return "BEDROCK_SPAWNER".equalsIgnoreCase(type)
-                    ? new SpawnerBedrockAgent(id, endpoint, null, registry, this)
-                    : new BedrockAgent(id, endpoint, null);
+                    ? new SpawnerBedrockAgent(id, endpoint, null, registry, this, gateways.forAgent(id), http,
+                            toolCatalog, planCache, maxParallelSteps, journalFor(id))
+                    : new BedrockAgent(id, endpoint, null, gateways.forAgent(id), http, toolCatalog, planCache, maxParallelSteps, journalFor(id));
         } else {
             System.out.println("⚠️ Endpoint " + endpoint + " not alive, respawning " + id);
             return "BEDROCK_SPAWNER".equalsIgnoreCase(type)
@@ -62,78 +153,78 @@ public class AgentFactory {
 
     // ✅ Spawn new Spawner agent
     public Agent createSpawnerAgent(String id, String endpoint) throws Exception {
-        int port = findFreePort();
-        String assignedEndpoint = "http://" + instanceIp + ":" + port; // ✅ FIXED
-
-        ProcessBuilder pb = new ProcessBuilder(
-                "java",
-                "-Dspring.application.name=bedrock-agent",
-                "-Dweb.allowed-origins=http://localhost:5173",
-                "-Daws.bedrock.region=ap-south-1",
-                "-jar", agentBasePath,
-                "--server.port=" + port
-        );
-
-        pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
-        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
-
-        Process process = pb.start();
-        SpawnerBedrockAgent agent = new SpawnerBedrockAgent(id, assignedEndpoint, process, registry, this);
-
-        persistence.upsertActive(id, "BEDROCK_SPAWNER", null, assignedEndpoint);
+        BedrockProcessLauncher.Launched launched = coldStart(id, () -> {
+            int port = launcher.freePort();
+            String assignedEndpoint = "http://" + instanceIp + ":" + port; // ✅ FIXED
+
+            ProcessBuilder pb = new ProcessBuilder(
+                    "java",
+                    "-Dspring.application.name=bedrock-agent",
+                    "-Dweb.allowed-origins=http://localhost:5173",
+                    "-Daws.bedrock.region=ap-south-1",
+                    "-jar", agentBasePath,
+                    "--server.port=" + port,
+                    "--kernel.agent-id=" + id   // lets the agent push tool changes to the tool catalog
+            );
+
+            pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+            pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+            return new BedrockProcessLauncher.Launched(pb.start(), assignedEndpoint);
+        });
+        SpawnerBedrockAgent agent = new SpawnerBedrockAgent(id, launched.endpoint(), launched.process(), registry, this,
+                gateways.forAgent(id), http, toolCatalog, planCache, maxParallelSteps, journalFor(id));
+
+        persistence.upsertActive(id, "BEDROCK_SPAWNER", null, launched.endpoint());
         registry.registerAgent(agent);
         return agent;
     }
 
-    // ✅ Spawn new Bedrock agent
+    // ✅ Spawn new Bedrock agent: a ready process from the warm pool if one is idle, else a cold start
     public Agent createBedrockAgent(String id, String endpoint) throws Exception {
-        int port = findFreePort();
-        String assignedEndpoint = "http://" + instanceIp + ":" + port; // ✅ FIXED
-
-        int debugPort = findFreePort();
-        ProcessBuilder pb = new ProcessBuilder(
-                "java",
-                "-jar", agentBasePath,
-                "--server.port=" + port
-        );
-        System.out.println("🐞 Debug port for " + id + " = " + debugPort);
-        pb.directory(new File(System.getProperty("user.dir")));
-        pb.inheritIO();
-
-        Process process = pb.start();
-        BedrockAgent agent = new BedrockAgent(id, assignedEndpoint, process);
-
-        persistence.upsertActive(id, "BEDROCK", null, assignedEndpoint);
+        BedrockProcessLauncher.Launched launched = warmPool.claim(id).orElse(null);
+        if (launched != null) {
+            System.out.println("🔥 " + id + " took warm process at " + launched.endpoint());
+        } else {
+            launched = coldStart(id, () -> launcher.launch(id));
+        }
+        BedrockAgent agent = new BedrockAgent(id, launched.endpoint(), launched.process(), gateways.forAgent(id), http,
+                toolCatalog, planCache, maxParallelSteps, journalFor(id));
+
+        persistence.upsertActive(id, "BEDROCK", null, launched.endpoint());
         registry.registerAgent(agent);
         return agent;
     }
 
-    // ✅ Health check with timeout
-    private boolean isEndpointAlive(String endpoint) {
-        if (endpoint == null) return false;
+    // 🧊 At most max-cold-starts JVMs boot at once (bulk creation, respawns). Like a pooled process,
+    // a cold one is handed out only once it is healthy; one that dies or misses the health timeout
+    // is killed and the spawn fails. The permit is held until then
+    private BedrockProcessLauncher.Launched coldStart(String id, Callable<BedrockProcessLauncher.Launched> launch)
+            throws Exception {
+        if (!coldStarts.tryAcquire()) {
+            System.out.println("🧊 " + id + " waiting for a cold-start slot");
+            coldStarts.acquire();
+        }
         try {
-            HttpClient client = HttpClient.newBuilder()
-                    .connectTimeout(Duration.ofSeconds(2))
-                    .build();
-
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(endpoint + "/actuator/health"))
-                    .timeout(Duration.ofSeconds(2))
-                    .GET()
-                    .build();
-
-            HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString());
-            return resp.statusCode() == 200;
-        } catch (Exception e) {
-            return false;
+            BedrockProcessLauncher.Launched launched = launch.call();
+            if (!launcher.awaitHealthy(launched.process(), launched.endpoint(), Duration.ofSeconds(healthTimeoutSeconds))) {
+                if (launched.process() != null) launched.process().destroy();
+                throw new IOException("agent " + id + " at " + launched.endpoint() + " never became healthy");
+            }
+            return launched;
+        } finally {
+            coldStarts.release();
         }
     }
 
-    // ✅ Find a free port
-    private int findFreePort() throws IOException {
-        try (ServerSocket socket = new ServerSocket(0)) {
-            socket.setReuseAddress(true);
-            return socket.getLocalPort();
-        }
+    // 📓 Each agent journals its orchestration state to its own files, opened when it first needs them
+    private Supplier<PlanJournal> journalFor(String id) {
+        Path dir = journalDir == null || journalDir.isBlank() ? null : Path.of(journalDir);
+        return () -> new PlanJournal(id, dir, journalMapper, journalCommitIntervalMs, journalSnapshotEvery,
+                TimeUnit.SECONDS.toMillis(passivateAfterSeconds));
+    }
+
+    // ✅ Health check with timeout
+    private boolean isEndpointAlive(String endpoint) {
+        return launcher.isHealthy(endpoint, Duration.ofSeconds(2));
     }
 }
@@ -0,0 +1,271 @@
+package org.logan.kernel.agent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 🌐 AgentHttpClient: the one {@link HttpClient} the kernel uses to talk to agent processes.
+ *
+ * All agent proxies share its connection pool and selector thread. It asks for HTTP/2 (h2c
+ * upgrade on plain http) and falls back to HTTP/1.1 keep-alive for agents that don't answer
+ * the upgrade. Requests to one endpoint are capped at {@code max-concurrent-per-endpoint};
+ * extra ones queue without holding a thread and start as earlier ones finish.
+ *
+ * The JDK client doesn't expose pool events, so reuse is reported from what it does expose:
+ * requests per negotiated version, and per endpoint the peak concurrency, which bounds the
+ * connections an HTTP/1.1 endpoint can have needed (an h2 endpoint needs one).
+ *
+ * Agents drop their endpoint's lane when they stop; endpoints that never became an agent (warm
+ * pool processes that were discarded, health probes of dead endpoints) are swept once idle for
+ * {@code lane-idle-seconds}.
+ */
+@Component
+public class AgentHttpClient {
+    private final MeterRegistry meterRegistry;
+    private final Map<String, EndpointLane> lanes = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+
+    @Value("${kernel.agent-http.version:HTTP_2}")
+    private HttpClient.Version version;
+
+    @Value("${kernel.agent-http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${kernel.agent-http.max-concurrent-per-endpoint:32}")
+    private int maxPerEndpoint;
+
+    @Value("${kernel.agent-http.callback-threads:0}")
+    private int callbackThreads;
+
+    @Value("${kernel.agent-http.lane-idle-seconds:300}")
+    private long laneIdleSeconds;
+
+    private ExecutorService executor;
+    private ScheduledExecutorService janitor;
+    private HttpClient client;
+
+    public AgentHttpClient(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        // Small fixed pool: it only runs response callbacks, never waits on one
+        int threads = callbackThreads > 0 ? callbackThreads : Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger seq = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "agent-http-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        client = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(executor)
+                .build();
+
+        janitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "agent-http-janitor");
+            t.setDaemon(true);
+            return t;
+        });
+        long sweepSeconds = Math.max(1, laneIdleSeconds);
+        janitor.scheduleAtFixedRate(this::evictIdleLanes, sweepSeconds, sweepSeconds, TimeUnit.SECONDS);
+
+        Gauge.builder("kernel.agent.http.reuse.ratio", this, AgentHttpClient::estimatedReuseRatio)
+                .description("1 - estimated connections / requests, across all agent endpoints")
+                .register(meterRegistry);
+        System.out.printf("🌐 AgentHttpClient ready (%s, %d concurrent per endpoint, %d callback threads)%n",
+                version, maxPerEndpoint, threads);
+    }
+
+    @PreDestroy
+    public void stop() {
+        janitor.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /** Like {@link HttpClient#sendAsync}, subject to the endpoint's concurrency cap. */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest req, HttpResponse.BodyHandler<T> handler) {
+        EndpointLane lane = lanes.computeIfAbsent(endpointKey(req.uri()), this::newLane);
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        lane.schedule(() -> {
+            if (result.isDone()) {   // caller already timed out while we were queued
+                lane.skip();
+                return;
+            }
+            lane.started();
+            CompletableFuture<HttpResponse<T>> sent;
+            try {
+                sent = client.sendAsync(req, handler);
+            } catch (RuntimeException e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+            sent.whenComplete((resp, ex) -> {
+                lane.finished();
+                if (ex != null) {
+                    result.completeExceptionally(ex);
+                } else {
+                    lane.record(resp.version());
+                    result.complete(resp);
+                }
+            });
+        });
+        return result;
+    }
+
+    /** Blocking variant for callers that are not on a request path (health checks, bootstrap). */
+    public <T> HttpResponse<T> send(HttpRequest req, HttpResponse.BodyHandler<T> handler, Duration timeout)
+            throws Exception {
+        CompletableFuture<HttpResponse<T>> sent = sendAsync(req, handler);
+        try {
+            return sent.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception c ? c : e;
+        } catch (TimeoutException | InterruptedException e) {
+            sent.cancel(false);   // still queued: the lane skips it instead of sending it after all
+            throw e;
+        }
+    }
+
+    /**
+     * The shared client itself, for code that needs a plain {@link HttpClient} (the HTTP kernel
+     * gateway's batcher). Requests made on it directly share the pool but skip the endpoint cap.
+     */
+    public HttpClient client() {
+        return client;
+    }
+
+    /** Drop the endpoint's lane and its meters once no agent uses it any more. */
+    public void forget(String endpoint) {
+        if (endpoint == null) return;
+        EndpointLane lane = lanes.remove(endpointKey(URI.create(endpoint)));
+        if (lane != null) lane.unregister();
+    }
+
+    // 🧹 Lanes of endpoints nobody called for a while, with nothing in flight or queued. A request
+    // racing the sweep still runs on the removed lane; the next one gets a fresh lane
+    void evictIdleLanes() {
+        long cutoff = System.nanoTime() - TimeUnit.SECONDS.toNanos(laneIdleSeconds);
+        lanes.forEach((key, lane) -> {
+            if (lane.idleSince(cutoff) && lanes.remove(key, lane)) lane.unregister();
+        });
+    }
+
+    int laneCount() {
+        return lanes.size();
+    }
+
+    private double estimatedReuseRatio() {
+        long total = requests.get();
+        if (total == 0) return 0;
+        long connections = 0;
+        for (EndpointLane lane : lanes.values()) connections += lane.estimatedConnections();
+        return Math.max(0, 1 - (double) connections / total);
+    }
+
+    private static String endpointKey(URI uri) {
+        int port = uri.getPort() != -1 ? uri.getPort() : "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+    }
+
+    private EndpointLane newLane(String endpoint) {
+        return new EndpointLane(endpoint);
+    }
+
+    // 🛣️ Per-endpoint permits plus a queue of requests waiting for one
+    private final class EndpointLane {
+        private final Semaphore permits = new Semaphore(maxPerEndpoint);
+        private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peak = new AtomicInteger();
+        private final Counter http2;
+        private final Counter http1;
+        private final Gauge inFlightGauge;
+        private final Gauge queuedGauge;
+        private volatile boolean negotiatedHttp2;
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        EndpointLane(String endpoint) {
+            this.http2 = meterRegistry.counter("kernel.agent.http.requests", "endpoint", endpoint, "version", "HTTP_2");
+            this.http1 = meterRegistry.counter("kernel.agent.http.requests", "endpoint", endpoint, "version", "HTTP_1_1");
+            this.inFlightGauge = Gauge.builder("kernel.agent.http.inflight", inFlight, AtomicInteger::get)
+                    .tag("endpoint", endpoint).register(meterRegistry);
+            this.queuedGauge = Gauge.builder("kernel.agent.http.queued", waiting, Queue::size)
+                    .tag("endpoint", endpoint).register(meterRegistry);
+        }
+
+        void schedule(Runnable task) {
+            lastUsedNanos = System.nanoTime();
+            waiting.add(task);
+            drain();
+        }
+
+        void started() {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        }
+
+        void finished() {
+            lastUsedNanos = System.nanoTime();
+            inFlight.decrementAndGet();
+            skip();
+        }
+
+        void skip() {
+            permits.release();
+            drain();
+        }
+
+        private void drain() {
+            while (!waiting.isEmpty() && permits.tryAcquire()) {
+                Runnable next = waiting.poll();
+                if (next == null) {
+                    permits.release();
+                    continue;
+                }
+                next.run();
+            }
+        }
+
+        void record(HttpClient.Version v) {
+            requests.incrementAndGet();
+            if (v == HttpClient.Version.HTTP_2) {
+                negotiatedHttp2 = true;
+                http2.increment();
+            } else {
+                http1.increment();
+            }
+        }
+
+        boolean idleSince(long cutoffNanos) {
+            return lastUsedNanos < cutoffNanos && inFlight.get() == 0 && waiting.isEmpty();
+        }
+
+        long estimatedConnections() {
+            return negotiatedHttp2 ? 1 : peak.get();
+        }
+
+        void unregister() {
+            meterRegistry.remove(http2);
+            meterRegistry.remove(http1);
+            meterRegistry.remove(inFlightGauge);
+            meterRegistry.remove(queuedGauge);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.logan.kernel.agent;
+
+/**
+ * Published by {@link AgentRegistry} whenever an agent joins or leaves this kernel.
+ */
+public record AgentLifecycleEvent(String agentId, String agentType, String endpoint, Kind kind) {
+
+    public enum Kind { REGISTERED, DEREGISTERED }
+
+    public boolean isRegistered() {
+        return kind == Kind.REGISTERED;
+    }
+}
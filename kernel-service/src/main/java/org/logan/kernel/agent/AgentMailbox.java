@@ -0,0 +1,136 @@
+package org.logan.kernel.agent;
+
+import org.logan.kernel.admission.CoDelMonitor;
+import org.logan.protocol.MessageEnvelope;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 📬 AgentMailbox: bounded FIFO inbox for a single {@link Agent}.
+ *
+ * Envelopes are enqueued by whichever thread delivers them (servlet, Redis, executor)
+ * and drained by one virtual-thread actor loop, so an agent sees its messages
+ * strictly in arrival order and a slow agent never holds the caller's thread.
+ * Each entry carries its enqueue time so the drain loop can report queue delay to a
+ * {@link CoDelMonitor} (used by admission control to shed load).
+ */
+public class AgentMailbox {
+
+    private record Queued(MessageEnvelope<?> envelope, long enqueuedNanos) {}
+
+    private final Agent agent;
+    private final BlockingQueue<Queued> queue;
+    private final CoDelMonitor delayMonitor;
+    private final int capacity;
+    private final MailboxOverflowPolicy overflowPolicy;
+    private final long offerTimeoutMs;
+    private final Thread worker;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean running = true;
+
+    public AgentMailbox(Agent agent, int capacity, MailboxOverflowPolicy overflowPolicy, long offerTimeoutMs,
+                        long delayTargetMs, long delayIntervalMs) {
+        this.agent = agent;
+        this.capacity = capacity;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.delayMonitor = new CoDelMonitor(delayTargetMs, delayIntervalMs, this::depth);
+        this.overflowPolicy = overflowPolicy;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.worker = Thread.ofVirtual()
+                .name("mailbox-" + agent.getId())
+                .start(this::drain);
+    }
+
+    /**
+     * Enqueue an envelope for this agent without running it on the caller's thread.
+     *
+     * @return {@code false} if the envelope was rejected by the overflow policy
+     */
+    public boolean offer(MessageEnvelope<?> envelope) {
+        if (!running) return false;
+        Queued entry = new Queued(envelope, System.nanoTime());
+
+        switch (overflowPolicy) {
+            case DROP_OLDEST -> {
+                while (!queue.offer(entry)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                        System.out.printf("⚠️ [%s] Mailbox full (%d), dropped oldest envelope%n", agent.getId(), capacity);
+                    }
+                }
+                return true;
+            }
+            case BLOCK -> {
+                try {
+                    if (queue.offer(entry, offerTimeoutMs, TimeUnit.MILLISECONDS)) return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            default -> {
+                if (queue.offer(entry)) return true;
+            }
+        }
+
+        dropped.incrementAndGet();
+        System.out.printf("⚠️ [%s] Mailbox full (%d), rejected %s envelope%n",
+                agent.getId(), capacity, envelope.getType());
+        return false;
+    }
+
+    /**
+     * Enqueue an envelope that was already accepted elsewhere, waiting up to {@code timeoutMs}
+     * for room whatever the overflow policy.
+     *
+     * @return {@code false} if the mailbox stopped or stayed full that long
+     */
+    public boolean put(MessageEnvelope<?> envelope, long timeoutMs) throws InterruptedException {
+        return running && queue.offer(new Queued(envelope, System.nanoTime()), timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    // 🔁 Actor loop: one envelope at a time, in FIFO order
+    private void drain() {
+        while (running) {
+            Queued entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                if (!running) break;
+                continue;
+            }
+            delayMonitor.observe(System.nanoTime() - entry.enqueuedNanos());
+            try {
+                agent.handleMessage(entry.envelope());
+                delivered.incrementAndGet();
+            } catch (Throwable t) {
+                failed.incrementAndGet();
+                System.err.printf("❌ [%s] Mailbox handler failed: %s%n", agent.getId(), t.getMessage());
+            }
+        }
+        int discarded = queue.size();
+        queue.clear();
+        if (discarded > 0) {
+            dropped.addAndGet(discarded);
+            System.out.printf("🗑 [%s] Mailbox stopped with %d undelivered envelope(s)%n", agent.getId(), discarded);
+        }
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    public Agent getAgent() { return agent; }
+    public int depth() { return queue.size(); }
+    public CoDelMonitor delayMonitor() { return delayMonitor; }
+    public int capacity() { return capacity; }
+    public long deliveredCount() { return delivered.get(); }
+    public long failedCount() { return failed.get(); }
+    public long droppedCount() { return dropped.get(); }
+}
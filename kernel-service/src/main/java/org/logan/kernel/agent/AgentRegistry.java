@@ -1,41 +1,118 @@
 package org.logan.kernel.agent;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.logan.kernel.admission.CoDelMonitor;
 import org.logan.kernel.persistence.AgentPersistenceService;
 import org.logan.protocol.MessageEnvelope;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class AgentRegistry {
     private final Map<String, Agent> agents = new ConcurrentHashMap<>();
+    private final Map<String, AgentMailbox> mailboxes = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> mailboxGauges = new ConcurrentHashMap<>();
+    // ⏳ Agents still being rehydrated: envelopes for them wait here until they register
+    private final Map<String, Deque<MessageEnvelope<?>>> expected = new ConcurrentHashMap<>();
     private final AgentPersistenceService persistence;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher events;
 
-    public AgentRegistry(AgentPersistenceService persistence) {
+    @Value("${kernel.mailbox.capacity:1024}")
+    private int mailboxCapacity;
+
+    @Value("${kernel.mailbox.overflow-policy:DROP_NEWEST}")
+    private MailboxOverflowPolicy overflowPolicy;
+
+    @Value("${kernel.mailbox.offer-timeout-ms:250}")
+    private long offerTimeoutMs;
+
+    @Value("${kernel.admission.codel.target-ms:50}")
+    private long delayTargetMs;
+
+    @Value("${kernel.admission.codel.interval-ms:500}")
+    private long delayIntervalMs;
+
+    @Value("${kernel.rehydration.buffer-capacity:1024}")
+    private int expectedCapacity;
+
+    @Value("${kernel.rehydration.release-timeout-ms:30000}")
+    private long releaseTimeoutMs;
+
+    public AgentRegistry(AgentPersistenceService persistence,
+                         MeterRegistry meterRegistry,
+                         ApplicationEventPublisher events) {
         this.persistence = persistence;
+        this.meterRegistry = meterRegistry;
+        this.events = events;
+        Gauge.builder("kernel.rehydration.pending", expected, Map::size)
+                .description("Agents expected back whose envelopes are being buffered")
+                .register(meterRegistry);
     }
 
     public void registerAgent(Agent agent) {
+        registerAgent(agent, true);
+    }
+
+    /**
+     * @param persist {@code false} when the caller upserts the agents row itself (startup
+     *                rehydration batches them)
+     */
+    public void registerAgent(Agent agent, boolean persist) {
         agents.put(agent.getId(), agent);
+        attachMailbox(agent);
+        releaseExpected(agent.getId());
         try {
             agent.onStart();
         } catch (Exception e) {
             System.out.println("⚠️ agent.onStart failed for " + agent.getId() + ": " + e.getMessage());
         }
-        persistence.upsertActive(
-                agent.getId(),
-                agent.getType(),
-                null,
-                agent.getEndpoint()
-        );
+        if (persist) {
+            persistence.upsertActive(
+                    agent.getId(),
+                    agent.getType(),
+                    null,
+                    agent.getEndpoint()
+            );
+        }
         System.out.println("🟢 Registered agent: " + agent.getId() + " at " + agent.getEndpoint());
+        publish(agent, AgentLifecycleEvent.Kind.REGISTERED);
+    }
+
+    /**
+     * Announce an agent that will register shortly (rehydration in progress): until then it
+     * counts as known and envelopes for it are buffered, up to {@code kernel.rehydration.buffer-capacity}.
+     */
+    public void expect(String agentId) {
+        if (!agents.containsKey(agentId)) expected.putIfAbsent(agentId, new ArrayDeque<>());
+    }
+
+    /** The expected agent won't come (rehydration failed or timed out); its buffered envelopes are dropped. */
+    public void abandon(String agentId) {
+        Deque<MessageEnvelope<?>> waiting = expected.remove(agentId);
+        if (waiting == null) return;
+        synchronized (waiting) {
+            dropBuffered(agentId, waiting, "an agent that did not come back");
+        }
+    }
+
+    public boolean isExpected(String agentId) {
+        return expected.containsKey(agentId);
     }
 
     public void deregisterAgent(String agentId) {
         Agent removed = agents.remove(agentId);
         if (removed != null) {
+            detachMailbox(agentId);
             try {
                 removed.onStop();
             } catch (Exception e) {
@@ -43,6 +120,7 @@ public class AgentRegistry {
             }
             persistence.markTerminated(agentId);
             System.out.println("🔴 Deregistered agent: " + agentId);
+            publish(removed, AgentLifecycleEvent.Kind.DEREGISTERED);
         } else {
             System.out.println("⚠️ Tried to deregister non-existent agent: " + agentId);
         }
@@ -52,20 +130,149 @@ public class AgentRegistry {
         return agents.get(agentId);
     }
 
+    /** Registered, or expected back from rehydration (envelopes for it are buffered meanwhile). */
     public boolean hasAgent(String agentId) {
-        return agents.containsKey(agentId);
+        return agents.containsKey(agentId) || expected.containsKey(agentId);
     }
 
-    public void routeMessage(MessageEnvelope<?> envelope) {
-        Agent agent = agents.get(envelope.getRecipientId());
-        if (agent != null) {
-            agent.handleMessage(envelope);
-        } else {
-            System.out.println("⚠️ No agent found for " + envelope.getRecipientId());
+    /**
+     * Hand the envelope to the recipient's mailbox. Never runs the agent on the caller's thread.
+     *
+     * @return {@code false} if the recipient is unknown or its mailbox rejected the envelope
+     */
+    public boolean routeMessage(MessageEnvelope<?> envelope) {
+        // Checked before the mailbox so nothing overtakes what was buffered while the agent registers
+        Deque<MessageEnvelope<?>> waiting = expected.get(envelope.getRecipientId());
+        if (waiting != null) {
+            synchronized (waiting) {
+                if (expected.get(envelope.getRecipientId()) == waiting) {
+                    if (waiting.size() >= expectedCapacity) {
+                        System.out.printf("⚠️ [%s] Rehydration buffer full (%d), rejected %s envelope%n",
+                                envelope.getRecipientId(), expectedCapacity, envelope.getType());
+                        return false;
+                    }
+                    waiting.add(envelope);
+                    return true;
+                }
+            }
         }
+        AgentMailbox mailbox = mailboxes.get(envelope.getRecipientId());
+        if (mailbox != null) {
+            return mailbox.offer(envelope);
+        }
+        System.out.println("⚠️ No agent found for " + envelope.getRecipientId());
+        return false;
     }
 
     public Collection<String> listAgentIds() {
         return agents.keySet();
     }
+
+    public int getMailboxDepth(String agentId) {
+        AgentMailbox mailbox = mailboxes.get(agentId);
+        return mailbox == null ? 0 : mailbox.depth();
+    }
+
+    /** Queue-delay monitor of the agent's mailbox, or {@code null} for unknown agents. */
+    public CoDelMonitor mailboxDelay(String agentId) {
+        AgentMailbox mailbox = agentId == null ? null : mailboxes.get(agentId);
+        return mailbox == null ? null : mailbox.delayMonitor();
+    }
+
+    public Map<String, Map<String, Object>> mailboxStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        mailboxes.forEach((id, mb) -> stats.put(id, Map.of(
+                "depth", mb.depth(),
+                "capacity", mb.capacity(),
+                "delivered", mb.deliveredCount(),
+                "failed", mb.failedCount(),
+                "dropped", mb.droppedCount(),
+                "delayMs", mb.delayMonitor().lastSojournMs()
+        )));
+        return stats;
+    }
+
+    /**
+     * Hand what was buffered for an expected agent to its (new) mailbox, in arrival order, on a
+     * virtual thread that waits for room in the mailbox: the buffer may hold more than the
+     * mailbox does. Until it is empty the agent stays expected, so newer envelopes queue behind
+     * the buffered ones. If the mailbox stops or stays full for {@code release-timeout-ms},
+     * the rest of the buffer is dropped and counted in {@code kernel.rehydration.dropped}.
+     */
+    private void releaseExpected(String agentId) {
+        Deque<MessageEnvelope<?>> waiting = expected.get(agentId);
+        if (waiting == null) return;
+        AgentMailbox mailbox = mailboxes.get(agentId);
+        Thread.ofVirtual().name("release-" + agentId).start(() -> {
+            int released = 0;
+            while (true) {
+                MessageEnvelope<?> next;
+                synchronized (waiting) {
+                    if (expected.get(agentId) != waiting) return;   // abandoned meanwhile
+                    next = waiting.poll();
+                    if (next == null) {
+                        expected.remove(agentId, waiting);
+                        break;
+                    }
+                }
+                boolean queued;
+                try {
+                    queued = mailbox.put(next, releaseTimeoutMs);
+                } catch (InterruptedException e) {
+                    queued = false;
+                }
+                if (!queued) {
+                    synchronized (waiting) {
+                        waiting.addFirst(next);
+                        dropBuffered(agentId, waiting, "an agent whose mailbox would not take them");
+                        expected.remove(agentId, waiting);
+                    }
+                    return;
+                }
+                released++;
+            }
+            if (released > 0) System.out.printf("📨 [%s] Released %d buffered envelope(s)%n", agentId, released);
+        });
+    }
+
+    // Caller holds the buffer's lock
+    private void dropBuffered(String agentId, Deque<MessageEnvelope<?>> waiting, String why) {
+        if (waiting.isEmpty()) return;
+        System.out.printf("🗑 [%s] Dropped %d envelope(s) buffered for %s%n", agentId, waiting.size(), why);
+        meterRegistry.counter("kernel.rehydration.dropped").increment(waiting.size());
+        waiting.clear();
+    }
+
+    private void publish(Agent agent, AgentLifecycleEvent.Kind kind) {
+        try {
+            events.publishEvent(new AgentLifecycleEvent(agent.getId(), agent.getType(), agent.getEndpoint(), kind));
+        } catch (Exception e) {
+            System.out.println("⚠️ Lifecycle listener failed for " + agent.getId() + ": " + e.getMessage());
+        }
+    }
+
+    // 📬 One mailbox per agent id; re-registering the same instance keeps its queue
+    private void attachMailbox(Agent agent) {
+        String id = agent.getId();
+        AgentMailbox existing = mailboxes.get(id);
+        if (existing != null && existing.getAgent() == agent) return;
+
+        AgentMailbox mailbox = new AgentMailbox(agent, mailboxCapacity, overflowPolicy, offerTimeoutMs,
+                delayTargetMs, delayIntervalMs);
+        AgentMailbox previous = mailboxes.put(id, mailbox);
+        if (previous != null) previous.stop();
+
+        mailboxGauges.computeIfAbsent(id, k -> Gauge.builder("kernel.agent.mailbox.depth",
+                        () -> getMailboxDepth(k))
+                .tag("agent", k)
+                .description("Envelopes queued for the agent's actor loop")
+                .register(meterRegistry));
+    }
+
+    private void detachMailbox(String agentId) {
+        AgentMailbox mailbox = mailboxes.remove(agentId);
+        if (mailbox != null) mailbox.stop();
+        Gauge gauge = mailboxGauges.remove(agentId);
+        if (gauge != null) meterRegistry.remove(gauge);
+    }
 }
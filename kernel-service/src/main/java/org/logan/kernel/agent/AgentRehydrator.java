@@ -0,0 +1,177 @@
+package org.logan.kernel.agent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.logan.kernel.persistence.AgentPersistenceService;
+import org.logan.kernel.persistence.AgentPersistenceService.ActiveAgent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * ♻️ AgentRehydrator: brings agents back at startup without holding startup up.
+ *
+ * Every agent is announced to the {@link AgentRegistry} first, so the kernel can take traffic at
+ * once and envelopes for agents that aren't back yet are buffered rather than rejected. Agents
+ * are then reattached (or respawned) on virtual threads, at most {@code parallelism} at a time,
+ * and their {@code agents} rows are upserted in one batch at the end. Agents still pending when
+ * {@code timeout-seconds} runs out are reported and stop buffering; if they do come back later,
+ * they register and persist as usual.
+ *
+ * Agents deregistered before the batch is written are left out of it, and ones deregistered
+ * while it is written are marked terminated again, so a removed agent stays removed on the
+ * next start.
+ */
+@Component
+public class AgentRehydrator {
+
+    /** One agent to bring back: reattached/respawned when it has an endpoint, spawned otherwise. */
+    public record Target(String id, String type, String endpoint) {}
+
+    private final AgentFactory factory;
+    private final AgentRegistry registry;
+    private final AgentPersistenceService persistence;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${kernel.rehydration.parallelism:16}")
+    private int parallelism;
+
+    @Value("${kernel.rehydration.timeout-seconds:120}")
+    private long timeoutSeconds;
+
+    public AgentRehydrator(AgentFactory factory, AgentRegistry registry, AgentPersistenceService persistence,
+                           MeterRegistry meterRegistry) {
+        this.factory = factory;
+        this.registry = registry;
+        this.persistence = persistence;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Start bringing the targets back and return immediately.
+     *
+     * @param source tags the startup metric and log lines ("persisted", "config")
+     * @return completes once every target has registered, failed or timed out
+     */
+    public CompletableFuture<Void> rehydrateAll(String source, List<Target> targets) {
+        if (targets.isEmpty()) return CompletableFuture.completedFuture(null);
+        targets.forEach(t -> { if (t.id() != null) registry.expect(t.id()); });
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Thread.ofVirtual().name("agent-rehydration-" + source).start(() -> {
+            try {
+                run(source, targets);
+            } finally {
+                done.complete(null);
+            }
+        });
+        return done;
+    }
+
+    private void run(String source, List<Target> targets) {
+        long started = System.nanoTime();
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+        Batch batch = new Batch();
+        int failed = 0;
+        int timedOut = 0;
+
+        ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<?>> futures = new ArrayList<>(targets.size());
+            for (Target target : targets) {
+                futures.add(workers.submit(() -> {
+                    permits.acquire();
+                    try {
+                        rehydrate(source, target, batch);
+                    } finally {
+                        permits.release();
+                    }
+                    return null;
+                }));
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(1, timeoutSeconds));
+            for (int i = 0; i < futures.size(); i++) {
+                Target target = targets.get(i);
+                try {
+                    futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    timedOut++;
+                    if (target.id() != null) registry.abandon(target.id());
+                    System.out.printf("⏱️ Agent %s not back after %ds, no longer buffering for it%n",
+                            target.id(), timeoutSeconds);
+                } catch (ExecutionException e) {
+                    failed++;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            try {
+                // Skip agents deregistered meanwhile: their TERMINATED row must stay that way
+                List<ActiveAgent> rows = batch.close().stream()
+                        .filter(row -> registry.getAgent(row.agentId()) != null)
+                        .toList();
+                persistence.upsertActiveAll(rows);
+                for (ActiveAgent row : rows) {
+                    // Deregistered during the upsert: its markTerminated may have run first
+                    if (registry.getAgent(row.agentId()) == null) persistence.markTerminated(row.agentId());
+                }
+            } catch (Exception e) {
+                System.out.println("⚠️ Batched agent upsert failed: " + e.getMessage());
+            }
+
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+            Timer.builder("kernel.startup.rehydration").tag("source", source)
+                    .description("Time until every agent was back, failed or timed out")
+                    .register(meterRegistry).record(elapsed);
+            meterRegistry.counter("kernel.rehydration.agents", "source", source, "outcome", "failed").increment(failed);
+            meterRegistry.counter("kernel.rehydration.agents", "source", source, "outcome", "timed_out").increment(timedOut);
+            meterRegistry.counter("kernel.rehydration.agents", "source", source, "outcome", "ok")
+                    .increment(targets.size() - failed - timedOut);
+            System.out.printf("♻️ Rehydrated %d/%d %s agent(s) in %d ms (%d failed, %d still pending)%n",
+                    targets.size() - failed - timedOut, targets.size(), source, elapsed.toMillis(), failed, timedOut);
+        } finally {
+            workers.shutdown();   // stragglers keep running and register on their own
+        }
+    }
+
+    private void rehydrate(String source, Target target, Batch batch) throws Exception {
+        try {
+            Agent agent = target.endpoint() != null
+                    ? factory.rehydrateAgent(target.id(), target.type(), target.endpoint())
+                    : factory.createAgent(target.id(), target.type());
+            // Spawned agents register and persist inside the factory
+            if (registry.getAgent(agent.getId()) != agent) {
+                boolean batched = batch.add(new ActiveAgent(agent.getId(), agent.getType(), agent.getEndpoint()));
+                registry.registerAgent(agent, !batched);
+            }
+            System.out.println("♻️ Rehydrated agent: " + agent.getId() + " (" + agent.getType() + ", " + source + ")");
+        } catch (Exception ex) {
+            if (target.id() != null) registry.abandon(target.id());
+            System.out.println("❌ Failed to rehydrate agent " + target.id() + ": " + ex.getMessage());
+            throw ex;
+        }
+    }
+
+    /** agents rows collected for the one upsert; agents done after it persist themselves. */
+    private static final class Batch {
+        private final List<ActiveAgent> rows = new ArrayList<>();
+        private boolean closed;
+
+        synchronized boolean add(ActiveAgent row) {
+            if (closed) return false;
+            rows.add(row);
+            return true;
+        }
+
+        synchronized List<ActiveAgent> close() {
+            closed = true;
+            return new ArrayList<>(rows);
+        }
+    }
+}
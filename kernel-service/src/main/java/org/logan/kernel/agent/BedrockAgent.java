@@ -3,59 +3,87 @@ package org.logan.kernel.agent;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.logan.kernel.agent.gateway.KernelGateway;
+import org.logan.kernel.planning.GoalTemplate;
+import org.logan.kernel.planning.PlanCache;
+import org.logan.kernel.planning.PlanGraph;
+import org.logan.kernel.planning.PlanGraph.StepState;
+import org.logan.kernel.planning.PlanJournal;
+import org.logan.kernel.planning.PlanRun;
+import org.logan.kernel.tools.AgentToolCatalog;
 import org.logan.protocol.MessageEnvelope;
+import org.logan.protocol.StepOutcome;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 /**
  * 🧩 BedrockAgent: kernel-side representation of a Bedrock agent process.
  *
  * Event-driven orchestration (non-blocking)
  *  ✅ Uses waiter-based flow (no while-loops)
- *  ✅ Supports user input, retry, skip
- *  ✅ Can persist orchestration state between restarts
+ *  ✅ Agent/LLM calls are sendAsync chains with explicit timeouts; no thread waits on a reply
+ *  ✅ Plans are dependency graphs: independent steps run in parallel (capped per session)
+ *  ✅ Supports user input, retry, skip — per step
+ *  ✅ Orchestration state survives restarts via a per-agent write-ahead journal
+ *  ✅ Sessions left waiting on a person are passivated to disk and reactivated on demand
  */
 public class BedrockAgent implements Agent {
-    private static final ScheduledExecutorService SCHED = Executors.newSingleThreadScheduledExecutor();
-    private static final int MAX_ASYNC_RETRIES = 3;
-    private static final long RETRY_BACKOFF_SECONDS = 1L;
+    private static final Duration CHAT_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration PLAN_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration REASON_TIMEOUT = Duration.ofSeconds(20);
 
     private final String id;
     private final String endpoint;
     private final Process process;
-    private final HttpClient httpClient;
+    private final AgentHttpClient httpClient;
     private final ObjectMapper objectMapper;
+    private final KernelGateway kernel;
+    private final AgentToolCatalog toolCatalog;
+    private final PlanCache planCache;
+    private final int maxParallelSteps;
+    private final Supplier<PlanJournal> journals;
+    private volatile PlanJournal journal;   // opened on first use: only the orchestrator keeps plans
+    private final ScheduledExecutorService passivator;
     private final Map<String, CompletableFuture<Map<String, Object>>> localWaiters = new ConcurrentHashMap<>();
 
-    // 🆕 Persistent session orchestration state
-    private final Map<String, List<Map<String, Object>>> sessionPlans = new ConcurrentHashMap<>();
-    private final Map<String, Integer> sessionStepIndex = new ConcurrentHashMap<>();
-    private final Map<String, String> sessionPausedAgent = new ConcurrentHashMap<>();
+    // 🆕 Persistent session orchestration state (passivated sessions live in the journal's store)
+    private final Map<String, PlanRun> sessionRuns = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> sessionTails = new ConcurrentHashMap<>();
 
     private static String waiterKey(String sessionId, String agentId) {
         return sessionId + "::" + agentId;
     }
 
-    public BedrockAgent(String id, String endpoint, Process process) {
+    public BedrockAgent(String id, String endpoint, Process process, KernelGateway kernel, AgentHttpClient httpClient,
+                        AgentToolCatalog toolCatalog, PlanCache planCache, int maxParallelSteps,
+                        Supplier<PlanJournal> journals) {
         this.id = id;
         this.endpoint = endpoint;
         this.process = process;
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(5))
-                .build();
+        this.kernel = kernel;
+        this.httpClient = httpClient;
+        this.toolCatalog = toolCatalog;
+        this.planCache = planCache;
+        this.maxParallelSteps = Math.max(1, maxParallelSteps);
+        this.journals = journals;
         this.objectMapper = new ObjectMapper()
                 .registerModule(new JavaTimeModule())
                 .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        // 🆕 Load persisted orchestration state (if exists)
-        loadSessionState();
+        // 🆕 Restore orchestration state replayed from the journal
+        if ("orchestrator-agent".equalsIgnoreCase(id)) {
+            restoreSessionState();
+            this.passivator = journal().passivateAfterMs() > 0 ? startPassivation() : null;
+        } else {
+            this.passivator = null;
+        }
     }
 
     @Override
@@ -83,19 +111,18 @@ public class BedrockAgent implements Agent {
 
                     // 🆕 Check if there’s a paused session
                     if ("orchestrator-agent".equalsIgnoreCase(this.id)
-                            && sessionPlans.containsKey(sessionId)
-                            && sessionStepIndex.containsKey(sessionId)) {
+                            && (sessionRuns.containsKey(sessionId) || journal().isPassivated(sessionId))) {
 
                         System.out.printf("🔁 [%s] Resuming paused orchestration for session=%s with message=%s%n",
                                 id, sessionId, message);
 
-                        resumePausedSession(sessionId, message);
+                        inSession(sessionId, "resume", () -> resumePausedSession(sessionId, message));
                     } else {
                         // Normal new orchestration
                         if ("orchestrator-agent".equalsIgnoreCase(this.id)) {
-                            handleOrchestratorChat(envelope);
+                            inSession(sessionId, "orchestration", () -> handleOrchestratorChat(envelope));
                         } else {
-                            handleChat(envelope);
+                            inSession(sessionId, "chat", () -> handleChat(envelope));
                         }
                     }
                     break;
@@ -110,7 +137,7 @@ public class BedrockAgent implements Agent {
 
                         completeLocalWaiter(sessionId, agentId, payload);
                         // 🆕 Trigger reasoning and next step
-                        handleAgentResult(sessionId, agentId, payload);
+                        inSession(sessionId, "agent result", () -> handleAgentResult(sessionId, agentId, payload));
 
                     } else {
                         MessageEnvelope<Object> out = new MessageEnvelope<>();
@@ -127,13 +154,11 @@ public class BedrockAgent implements Agent {
                     Map<String, Object> payload = (Map<String, Object>) envelope.getPayload();
                     String sessionId = Optional.ofNullable(payload.get("sessionId"))
                             .map(Object::toString).orElse("default-session");
-                    String agent = (String) payload.get("agentId");
-                    if (agent == null || agent.equalsIgnoreCase("unknown")) {
-                        agent = sessionPausedAgent.get(sessionId);
-                    }
+                    String agent = (String) payload.get("agentId");   // null/unknown: the paused step decides
 
                     String action = (String) payload.getOrDefault("action", "");
-                    handleUserDecision(sessionId, agent, action, payload);
+                    String pausedAgent = agent;
+                    inSession(sessionId, "user decision", () -> handleUserDecision(sessionId, pausedAgent, action, payload));
                     break;
                 }
                 default ->
@@ -146,68 +171,70 @@ public class BedrockAgent implements Agent {
         }
     }
 
-    // 🔹 Standard agent chat flow (unchanged)
-    private void handleChat(MessageEnvelope<?> envelope) {
-        try {
-            Map<String, Object> payload = (Map<String, Object>) envelope.getPayload();
-            String sessionId = (String) payload.getOrDefault("sessionId", "default-session");
-            String message = (String) payload.get("message");
+    // 🔹 Standard agent chat flow: forward to the agent process, report its reply as chat_result
+    private CompletableFuture<Void> handleChat(MessageEnvelope<?> envelope) {
+        Map<String, Object> payload = (Map<String, Object>) envelope.getPayload();
+        String sessionId = (String) payload.getOrDefault("sessionId", "default-session");
+        String message = (String) payload.get("message");
 
-            if (message == null || message.isEmpty()) {
-                System.out.printf("⚠️ [%s] Empty message for session=%s%n", id, sessionId);
-                return;
-            }
+        if (message == null || message.isEmpty()) {
+            System.out.printf("⚠️ [%s] Empty message for session=%s%n", id, sessionId);
+            return CompletableFuture.completedFuture(null);
+        }
 
-            Map<String,Object> body = Map.of(
-                    "message", message,
-                    "agentId", this.id
-            );
+        Map<String,Object> body = Map.of(
+                "message", message,
+                "agentId", this.id
+        );
 
-            String url = String.format("%s/chat/%s", endpoint, sessionId);
-            System.out.printf("🌐 [%s] Forwarding chat to %s | body=%s%n", id, url, body);
+        String url = String.format("%s/chat/%s", endpoint, sessionId);
+        System.out.printf("🌐 [%s] Forwarding chat to %s | body=%s%n", id, url, body);
 
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("Content-Type", "application/json")
-                    .timeout(Duration.ofSeconds(30))
-                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
-                    .build();
-
-            HttpResponse<String> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
-            Map<String,Object> llmResponse = objectMapper.readValue(resp.body(), Map.class);
-
-            llmResponse.putIfAbsent("sessionId", sessionId);
-            llmResponse.putIfAbsent("agentId", this.id);
+        return postJson(url, body, CHAT_TIMEOUT)
+                .thenAccept(respBody -> {
+                    Map<String,Object> llmResponse = readMap(respBody);
 
-            MessageEnvelope<Object> out = new MessageEnvelope<>();
-            out.setSenderId(this.id);
-            out.setRecipientId(envelope.getSenderId());
-            out.setType("chat_result");
-            out.setPayload(llmResponse);
+                    llmResponse.putIfAbsent("sessionId", sessionId);
+                    llmResponse.putIfAbsent("agentId", this.id);
 
-            sendToKernel(out);
-            System.out.printf("📤 [%s] Sent chat_result to kernel/originator%n", id);
+                    MessageEnvelope<Object> out = new MessageEnvelope<>();
+                    out.setSenderId(this.id);
+                    out.setRecipientId(envelope.getSenderId());
+                    out.setType("chat_result");
+                    out.setPayload(llmResponse);
 
-        } catch (Exception e) {
-            System.err.printf("❌ [%s] handleChat failed: %s%n", id, e.getMessage());
-        }
+                    sendToKernel(out);
+                    System.out.printf("📤 [%s] Sent chat_result to kernel/originator%n", id);
+                })
+                .exceptionally(e -> {
+                    System.err.printf("❌ [%s] handleChat failed: %s%n", id, cause(e));
+                    return null;
+                });
     }
 
-    // 🔄 Replaced blocking orchestrator with event-driven orchestration
-    private void handleOrchestratorChat(MessageEnvelope<?> envelope) {
-        try {
-
-            Map<String, Object> payload = (Map<String, Object>) envelope.getPayload();
-            String sessionId = (String) payload.getOrDefault("sessionId", UUID.randomUUID().toString());
-            String message = (String) payload.get("message");
-            if (message == null || message.isEmpty()) return;
-            sendReasoningUpdate(sessionId, "thinking", "<thinking>Planning how to achieve: " + message + "</thinking>");
-            System.out.printf("🧭 [orchestrator] Planning generically for session=%s%n", sessionId);
-
-            Map<String, List<String>> agentTools = discoverAllAgentTools();
-            sendReasoningUpdate(sessionId, "planner", "Discovered agent tools: " + agentTools);
+    // 🔄 Event-driven orchestration: discover tools → plan → first delegation, all async
+    private CompletableFuture<Void> handleOrchestratorChat(MessageEnvelope<?> envelope) {
+        Map<String, Object> payload = (Map<String, Object>) envelope.getPayload();
+        String sessionId = (String) payload.getOrDefault("sessionId", UUID.randomUUID().toString());
+        String message = (String) payload.get("message");
+        if (message == null || message.isEmpty()) return CompletableFuture.completedFuture(null);
+        sendReasoningUpdate(sessionId, "thinking", "<thinking>Planning how to achieve: " + message + "</thinking>");
+        System.out.printf("🧭 [orchestrator] Planning generically for session=%s%n", sessionId);
+
+        GoalTemplate goal = GoalTemplate.of(message);
+        String catalogHash = planCache.catalogHash();   // before planning: a later catalog may not fit the plan
+        return discoverAllAgentTools()
+                .thenCompose(agentTools -> {
+                    sendReasoningUpdate(sessionId, "planner", "Discovered agent tools: " + agentTools);
+
+                    // 🗃️ Same goal shape, same catalog: reuse the plan instead of asking the LLM again
+                    Optional<List<Map<String, Object>>> cached = planCache.lookup(goal);
+                    if (cached.isPresent()) {
+                        sendReasoningUpdate(sessionId, "planner", "Reusing cached plan for: " + goal.key());
+                        return CompletableFuture.completedFuture(cached.get());
+                    }
 
-            String planningPrompt = """
+                    String planningPrompt = """
     You are an AI orchestrator responsible for planning multi-agent workflows.
     Your task is to create an execution plan specifying which agents to call and in what order.
 
@@ -218,168 +245,274 @@ public class BedrockAgent implements Agent {
     The format MUST be:
     {
       "plan": [
-        { "agent": "<agent-id>", "action": "<describe step>" }
+        { "id": "s1", "agent": "<agent-id>", "action": "<describe step>", "dependsOn": [] }
       ]
     }
 
-    If multiple agents are needed, include each step in the plan list in order.
+    If multiple agents are needed, include each step in the plan list.
+    Give every step a unique id. In "dependsOn" list the ids of the steps whose results
+    this step needs; steps with nothing in common get an empty list and run in parallel.
 
     User goal: %s
     Available agents and tools: %s
     """.formatted(message, agentTools);
 
-
-            List<Map<String, Object>> plan = askModelForPlan(planningPrompt);
-            sendReasoningUpdate(sessionId, "planner", "Generated plan: " + plan);
-
-            // 🆕 Save session plan
-            sessionPlans.put(sessionId, plan);
-            sessionStepIndex.put(sessionId, 0);
-            persistSessionState();
-
-            // 🆕 Begin orchestration
-            continuePlan(sessionId);
-
-        } catch (Exception e) {
-            System.err.printf("❌ [orchestrator] failed: %s%n", e.getMessage());
-            e.printStackTrace();
-        }
+                    long planningStarted = System.nanoTime();
+                    return askModelForPlan(planningPrompt).thenApply(plan -> {
+                        planCache.store(goal, catalogHash, plan, System.nanoTime() - planningStarted);
+                        return plan;
+                    });
+                })
+                .thenCompose(plan -> {
+                    sendReasoningUpdate(sessionId, "planner", "Generated plan: " + plan);
+
+                    // 🆕 Save session plan (journaled before any step is delegated)
+                    List<Map<String, Object>> graph = PlanGraph.normalize(plan);
+                    sessionRuns.put(sessionId, new PlanRun(graph, Map.of()));
+                    journal().planCreated(sessionId, graph);
+
+                    // 🆕 Begin orchestration
+                    return continuePlan(sessionId);
+                })
+                .exceptionally(e -> {
+                    System.err.printf("❌ [orchestrator] failed: %s%n", cause(e));
+                    return null;
+                });
     }
 
-    // 🆕 Move to the next agent step
-    private void continuePlan(String sessionId) {
-        List<Map<String, Object>> plan = sessionPlans.get(sessionId);
-        int index = sessionStepIndex.getOrDefault(sessionId, 0);
+    // 🕸️ Start every step whose dependencies are settled, up to the per-session cap
+    private CompletableFuture<Void> continuePlan(String sessionId) {
+        PlanRun run = run(sessionId);
+        List<Map<String, Object>> plan = run != null ? run.plan() : null;
+        Map<String, StepState> states = run != null ? run.states() : null;
 
-        if (plan == null || index >= plan.size()) {
+        if (run == null || PlanGraph.finished(plan, states)) {
             sendReasoningUpdate(sessionId, "summary", "✅ All delegations completed.");
-            sessionPlans.remove(sessionId);
-            sessionStepIndex.remove(sessionId);
-            persistSessionState();
-            return;
+            clearPlan(sessionId);
+            return CompletableFuture.completedFuture(null);
         }
 
-        Map<String, Object> step = plan.get(index);
-        String agent = (String) step.get("agent");
-        String action = (String) step.get("action");
+        // Nothing ready: the remaining steps wait on running or paused ones
+        List<Map<String, Object>> ready = PlanGraph.ready(plan, states, maxParallelSteps);
+        if (ready.isEmpty()) return CompletableFuture.completedFuture(null);
 
-        sendReasoningUpdate(sessionId, "delegation", "Delegating to " + agent + " → " + action);
+        // Write-ahead: a step is on disk as running before its delegation goes out
+        return CompletableFuture.allOf(ready.stream()
+                .map(step -> setStep(sessionId, states, PlanGraph.id(step), StepState.RUNNING)
+                        .thenCompose(v -> startStep(sessionId, step, (String) step.get("action"))))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    private CompletableFuture<Void> startStep(String sessionId, Map<String, Object> step, String action) {
+        String agent = (String) step.get("agent");
+        sendReasoningUpdate(sessionId, "delegation",
+                "Delegating " + PlanGraph.id(step) + " to " + agent + " → " + action);
 
         CompletableFuture<Map<String, Object>> waiter = new CompletableFuture<>();
         registerLocalWaiter(sessionId, agent, waiter);
-        registerWaiterWithKernel(sessionId, agent, waiter);
-
-        delegateToAgent(agent, sessionId, action);
-        System.out.printf("🤝 [%s] Delegated session=%s → %s%n", id, sessionId, agent);
+        // Delegate only once the kernel knows we wait, so the result can't arrive first
+        return registerWaiterWithKernel(sessionId, agent, waiter)
+                .thenAccept(registered -> {
+                    if (!registered) {
+                        // Not delegated: pause the step so the user can retry, skip or abort it
+                        localWaiters.remove(waiterKey(sessionId, agent), waiter);
+                        if (run(sessionId) != null) {
+                            pauseFor(sessionId, PlanGraph.id(step), agent, "Kernel refused to register the waiter",
+                                    "Delegation to " + agent + " was not sent");
+                        }
+                        return;
+                    }
+                    delegateToAgent(agent, sessionId, action);
+                    System.out.printf("🤝 [%s] Delegated session=%s step=%s → %s%n", id, sessionId, PlanGraph.id(step), agent);
+                });
     }
 
     // 🆕 Triggered when agent completes
-    private void handleAgentResult(String sessionId, String agent, Map<String, Object> result) {
-        try {
-            String message = extractAgentMessage(result);
-            Map<String, Object> reason = askModelForReason(agent, message);
-
-            boolean needsUserInput = Boolean.TRUE.equals(reason.get("needsUserInput"));
-            boolean toolFailed = Boolean.TRUE.equals(reason.get("toolFailed"));
-            String reasonText = Optional.ofNullable(reason.get("reason"))
-                    .map(Object::toString)
-                    .orElse("Detected issue");
-
-            if (needsUserInput || toolFailed) {
-                String pausedAgent = sessionPausedAgent.get(sessionId);
-
-                // 🔹 If session not currently paused, or paused for a different agent → pause now
-                if (pausedAgent == null || !pausedAgent.equals(agent)) {
-                    sessionPausedAgent.put(sessionId, agent);
-                    sendReasoningUpdate(sessionId, "orchestration_pause",
-                            "⏸ " + reasonText + " for " + agent);
-
-                    Map<String, Object> waitPayload = Map.of(
-                            "type", "orchestrator_wait",
-                            "sessionId", sessionId,
-                            "agentId", agent,
-                            "reason", reasonText,
-                            "message", message,
-                            "options", List.of("provide_input", "skip", "abort", "retry")
-                    );
+    private CompletableFuture<Void> handleAgentResult(String sessionId, String agent, Map<String, Object> result) {
+        PlanRun run = run(sessionId);
+        Map<String, StepState> states = run != null ? run.states() : null;
+        Optional<Map<String, Object>> step = run == null
+                ? Optional.empty()
+                : PlanGraph.activeStepOf(run.plan(), states, agent);
+        if (step.isEmpty()) {
+            System.out.printf("⚠️ [%s] No running step for %s in session=%s, result ignored%n", id, agent, sessionId);
+            return CompletableFuture.completedFuture(null);
+        }
+        String stepId = PlanGraph.id(step.get());
 
-                    MessageEnvelope<Map<String, Object>> waitEvent = new MessageEnvelope<>();
-                    waitEvent.setSenderId(this.id);
-                    waitEvent.setRecipientId("kernel");
-                    waitEvent.setType("orchestrator_wait");
-                    waitEvent.setPayload(waitPayload);
-                    sendToKernel(waitEvent);
+        String message = extractAgentMessage(result);
+        return decideStep(agent, message, StepOutcome.from(result))
+                .thenCompose(reason -> {
+                    if (sessionRuns.get(sessionId) != run) {
+                        return CompletableFuture.<Void>completedFuture(null);   // aborted meanwhile
+                    }
+                    boolean needsUserInput = Boolean.TRUE.equals(reason.get("needsUserInput"));
+                    boolean toolFailed = Boolean.TRUE.equals(reason.get("toolFailed"));
+                    String reasonText = Optional.ofNullable(reason.get("reason"))
+                            .map(Object::toString)
+                            .orElse("Detected issue");
+
+                    if (needsUserInput || toolFailed) {
+                        // Only this step (and what depends on it) waits; independent steps go on
+                        pauseFor(sessionId, stepId, agent, reasonText, message);
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
 
-                    System.out.printf("⏸ [%s] Paused session=%s for agent=%s%n", id, sessionId, agent);
-                    return;
-                }
+                    // ✅ Success → settle the step and start whatever it unblocked
+                    sendReasoningUpdate(sessionId, "orchestration_step_complete",
+                            "✅ " + agent + " completed " + stepId + " successfully.");
 
-                // 🔁 If already paused for this agent → just refresh reasoning
-                sendReasoningUpdate(sessionId, "orchestration_pause_update",
-                        "🔁 Updated reasoning for " + agent + ": " + reasonText);
-                System.out.printf("⚠️ [%s] Already paused for agent=%s — reasoning refreshed%n", id, agent);
-                return;
-            }
+                    setStep(sessionId, states, stepId, StepState.DONE);
+                    return continuePlan(sessionId);
+                })
+                .exceptionally(e -> {
+                    sendReasoningUpdate(sessionId, "orchestration_step_failed",
+                            "❌ " + agent + " failed: " + cause(e));
+                    return null;
+                });
+    }
 
-            // ✅ Success → clear pause and move next
-            sendReasoningUpdate(sessionId, "orchestration_step_complete",
-                    "✅ " + agent + " completed successfully.");
+    /**
+     * The agent's own {@link StepOutcome} decides the step when it reports one; only a missing
+     * or ambiguous outcome costs a round trip to the reasoning model.
+     */
+    private CompletableFuture<Map<String, Object>> decideStep(String agent, String message, StepOutcome outcome) {
+        if (outcome == null || outcome.status() == StepOutcome.Status.AMBIGUOUS) {
+            System.out.printf("🧠 [%s] No clear step outcome from %s (%s), asking reasoner%n", id, agent,
+                    outcome == null ? "none reported" : outcome.reason());
+            return askModelForReason(agent, message);
+        }
+        System.out.printf("🧭 [%s] %s reported step outcome %s%n", id, agent, outcome.status().wire());
+        String reason = outcome.reason() != null ? outcome.reason() : outcome.status().wire();
+        return CompletableFuture.completedFuture(Map.of(
+                "needsUserInput", outcome.status() == StepOutcome.Status.NEEDS_INPUT,
+                "toolFailed", outcome.status() == StepOutcome.Status.TOOL_FAILED,
+                "reason", reason,
+                "missingParameters", outcome.missingParameters()
+        ));
+    }
 
-            sessionPausedAgent.remove(sessionId);
-            int next = sessionStepIndex.getOrDefault(sessionId, 0) + 1;
-            sessionStepIndex.put(sessionId, next);
-            persistSessionState();
-            continuePlan(sessionId);
+    private void pauseFor(String sessionId, String stepId, String agent, String reasonText, String message) {
+        Map<String, StepState> states = run(sessionId).states();
+        StepState previous = states.get(stepId);
+        setStep(sessionId, states, stepId, StepState.PAUSED);
 
-        } catch (Exception e) {
-            sendReasoningUpdate(sessionId, "orchestration_step_failed",
-                    "❌ " + agent + " failed: " + e.getMessage());
+        // 🔹 If this step isn't paused yet → pause it now
+        if (previous != StepState.PAUSED) {
+            sendReasoningUpdate(sessionId, "orchestration_pause",
+                    "⏸ " + reasonText + " for " + agent + " (" + stepId + ")");
+
+            Map<String, Object> waitPayload = Map.of(
+                    "type", "orchestrator_wait",
+                    "sessionId", sessionId,
+                    "agentId", agent,
+                    "stepId", stepId,
+                    "reason", reasonText,
+                    "message", message,
+                    "options", List.of("provide_input", "skip", "abort", "retry")
+            );
+
+            MessageEnvelope<Map<String, Object>> waitEvent = new MessageEnvelope<>();
+            waitEvent.setSenderId(this.id);
+            waitEvent.setRecipientId("kernel");
+            waitEvent.setType("orchestrator_wait");
+            waitEvent.setPayload(waitPayload);
+            sendToKernel(waitEvent);
+
+            System.out.printf("⏸ [%s] Paused session=%s step=%s for agent=%s%n", id, sessionId, stepId, agent);
+            return;
         }
+
+        // 🔁 If this step is already paused → just refresh reasoning
+        sendReasoningUpdate(sessionId, "orchestration_pause_update",
+                "🔁 Updated reasoning for " + agent + ": " + reasonText);
+        System.out.printf("⚠️ [%s] Already paused %s for agent=%s — reasoning refreshed%n", id, stepId, agent);
     }
 
-    // 🆕 Handle user decision inputs
-    private void handleUserDecision(String sessionId, String agent, String action, Map<String, Object> decision) {
+    // 🆕 Handle user decision inputs — they apply to one paused step
+    private CompletableFuture<Void> handleUserDecision(String sessionId, String agent, String action, Map<String, Object> decision) {
         String choice = ((String) decision.getOrDefault("choice", "skip")).toLowerCase();
 
-        switch (choice) {
-            case "abort" -> sendReasoningUpdate(sessionId, "orchestration_abort", "🛑 User aborted orchestration");
+        if ("abort".equals(choice)) {
+            sendReasoningUpdate(sessionId, "orchestration_abort", "🛑 User aborted orchestration");
+            clearPlan(sessionId);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Optional<Map<String, Object>> paused = pausedStep(sessionId, agent, (String) decision.get("stepId"));
+        if (paused.isEmpty()) {
+            System.out.printf("⚠️ [%s] No paused step for decision '%s' in session=%s%n", id, choice, sessionId);
+            return CompletableFuture.completedFuture(null);
+        }
+        Map<String, Object> step = paused.get();
+        String stepId = PlanGraph.id(step);
+        String stepAgent = (String) step.get("agent");
+        String stepAction = action == null || action.isBlank() ? (String) step.get("action") : action;
+        Map<String, StepState> states = run(sessionId).states();
 
+        switch (choice) {
             case "retry" -> {
-                sendReasoningUpdate(sessionId, "orchestration_retry", "🔁 Retrying " + agent);
-                // ✅ Clear paused state before retry
-                sessionPausedAgent.remove(sessionId);
-
-                CompletableFuture<Map<String, Object>> waiter = new CompletableFuture<>();
-                registerLocalWaiter(sessionId, agent, waiter);
-                registerWaiterWithKernel(sessionId, agent, waiter);
-                delegateToAgent(agent, sessionId, action);
+                sendReasoningUpdate(sessionId, "orchestration_retry", "🔁 Retrying " + stepAgent + " (" + stepId + ")");
+                return setStep(sessionId, states, stepId, StepState.RUNNING)
+                        .thenCompose(v -> startStep(sessionId, step, stepAction));
             }
 
             case "provide_input" -> {
                 String input = (String) decision.getOrDefault("input", "");
                 sendReasoningUpdate(sessionId, "orchestration_resume_input",
-                        "💡 Received user input for " + agent + ": " + input);
-
-                // ✅ Clear paused state before resuming
-                sessionPausedAgent.remove(sessionId);
-
-                CompletableFuture<Map<String, Object>> waiter = new CompletableFuture<>();
-                registerLocalWaiter(sessionId, agent, waiter);
-                registerWaiterWithKernel(sessionId, agent, waiter);
+                        "💡 Received user input for " + stepAgent + ": " + input);
 
                 // 🧠 Re-delegate with the user input
-                delegateToAgent(agent, sessionId, action + " (user input: " + input + ")");
+                return setStep(sessionId, states, stepId, StepState.RUNNING)
+                        .thenCompose(v -> startStep(sessionId, step, stepAction + " (user input: " + input + ")"));
             }
 
-
             default -> {
-                sendReasoningUpdate(sessionId, "orchestration_skip", "⏭ Skipping " + agent);
-                int next = sessionStepIndex.getOrDefault(sessionId, 0) + 1;
-                sessionStepIndex.put(sessionId, next);
-                persistSessionState();
-                continuePlan(sessionId);
+                sendReasoningUpdate(sessionId, "orchestration_skip", "⏭ Skipping " + stepAgent + " (" + stepId + ")");
+                setStep(sessionId, states, stepId, StepState.SKIPPED);
+                return continuePlan(sessionId);
+            }
+        }
+    }
+
+    // The step a decision is for: by id, else the paused step of the agent, else the first paused one
+    private Optional<Map<String, Object>> pausedStep(String sessionId, String agent, String stepId) {
+        PlanRun run = run(sessionId);
+        if (run == null) return Optional.empty();
+        Map<String, StepState> states = run.states();
+        boolean anyAgent = agent == null || agent.isBlank() || "unknown".equalsIgnoreCase(agent);
+        return run.plan().stream()
+                .filter(step -> PlanGraph.state(states, step) == StepState.PAUSED)
+                .filter(step -> stepId == null || stepId.equals(PlanGraph.id(step)))
+                .filter(step -> stepId != null || anyAgent || agent.equals(step.get("agent")))
+                .findFirst();
+    }
+
+    private void clearPlan(String sessionId) {
+        if (sessionRuns.remove(sessionId) != null) journal().planCleared(sessionId);
+    }
+
+    // The session's plan run, read back from disk first if it was passivated
+    private PlanRun run(String sessionId) {
+        PlanRun run = sessionRuns.get(sessionId);
+        if (run == null && journal().isPassivated(sessionId)) {
+            run = journal().activate(sessionId).orElse(null);
+            if (run != null) {
+                sessionRuns.put(sessionId, run);
+                System.out.printf("☀️ [%s] Reactivated passivated session=%s%n", id, sessionId);
             }
         }
+        if (run != null) run.touch();
+        return run;
+    }
+
+    // 📓 One transition, one journal record; the future completes once it is fsynced
+    private CompletableFuture<Void> setStep(String sessionId, Map<String, StepState> states, String stepId, StepState state) {
+        states.put(stepId, state);
+        return journal().stepChanged(sessionId, stepId, state).exceptionally(e -> {
+            System.err.printf("⚠️ [%s] Step %s of session=%s not journaled: %s%n", id, stepId, sessionId, cause(e));
+            return null;
+        });
     }
 
     // 🆕 Helper to extract agent readable message
@@ -404,31 +537,63 @@ public class BedrockAgent implements Agent {
     }
 
 
-    // 🆕 Persist orchestration state to disk
-    private synchronized void persistSessionState() {
-        try {
-            Map<String, Object> state = Map.of(
-                    "plans", sessionPlans,
-                    "indexes", sessionStepIndex
-            );
-            objectMapper.writeValue(new File("orchestrator_state.json"), state);
-        } catch (Exception e) {
-            System.err.printf("⚠️ [%s] Failed to persist state: %s%n", id, e.getMessage());
+    private PlanJournal journal() {
+        PlanJournal opened = journal;
+        if (opened == null) {
+            synchronized (journals) {
+                opened = journal;
+                if (opened == null) journal = opened = journals.get();
+            }
+        }
+        return opened;
+    }
+
+    // 🆕 Plans and step states as replayed by the journal
+    private void restoreSessionState() {
+        PlanJournal.State state = journal().recovered();
+        state.plans().forEach((sessionId, plan) ->
+                sessionRuns.put(sessionId, new PlanRun(plan, state.steps().getOrDefault(sessionId, Map.of()))));
+        if (!sessionRuns.isEmpty() || journal().passivatedCount() > 0) {
+            System.out.printf("🔄 [%s] Restored %d orchestration(s) from journal, %d passivated%n",
+                    id, sessionRuns.size(), journal().passivatedCount());
+        } else if ("orchestrator-agent".equalsIgnoreCase(id)) {
+            importLegacyState();
         }
     }
 
-    // 🆕 Load persisted state from disk
-    private synchronized void loadSessionState() {
+    // 🗄️ One-time move of the old shared orchestrator_state.json into this agent's journal
+    @SuppressWarnings("unchecked")
+    private void importLegacyState() {
+        File file = new File("orchestrator_state.json");
+        if (!file.exists()) return;
         try {
-            File file = new File("orchestrator_state.json");
-            if (!file.exists()) return;
             Map<String, Object> state = objectMapper.readValue(file, Map.class);
-            sessionPlans.putAll((Map<String, List<Map<String, Object>>>) state.getOrDefault("plans", Map.of()));
-            Map<String, Integer> idx = (Map<String, Integer>) state.getOrDefault("indexes", Map.of());
-            sessionStepIndex.putAll(idx);
-            System.out.println("🔄 [orchestrator] Restored persisted orchestration state");
+            Map<String, List<Map<String, Object>>> plans =
+                    (Map<String, List<Map<String, Object>>>) state.getOrDefault("plans", Map.of());
+            Map<String, Map<String, String>> steps =
+                    (Map<String, Map<String, String>>) state.getOrDefault("steps", Map.of());
+            // Files written before plans were graphs hold the index of the current step instead
+            Map<String, Integer> indexes = (Map<String, Integer>) state.getOrDefault("indexes", Map.of());
+
+            plans.forEach((sessionId, raw) -> {
+                List<Map<String, Object>> plan = PlanGraph.normalize(raw);
+                PlanRun run = new PlanRun(plan, Map.of());
+                Map<String, StepState> states = run.states();
+                sessionRuns.put(sessionId, run);
+                journal().planCreated(sessionId, plan);
+                steps.getOrDefault(sessionId, Map.of())
+                        .forEach((step, st) -> setStep(sessionId, states, step, StepState.valueOf(st)));
+                int done = indexes.getOrDefault(sessionId, 0);
+                for (int i = 0; i < Math.min(done, plan.size()); i++) {
+                    setStep(sessionId, states, PlanGraph.id(plan.get(i)), StepState.DONE);
+                }
+            });
+            if (!file.renameTo(new File(file.getPath() + ".migrated"))) {
+                System.err.printf("⚠️ [%s] Could not rename %s after import%n", id, file);
+            }
+            System.out.printf("🔄 [%s] Imported %d orchestration(s) from %s%n", id, plans.size(), file);
         } catch (Exception e) {
-            System.err.printf("⚠️ [%s] Failed to load persisted state: %s%n", id, e.getMessage());
+            System.err.printf("⚠️ [%s] Failed to import %s: %s%n", id, file, e.getMessage());
         }
     }
 
@@ -451,119 +616,75 @@ public class BedrockAgent implements Agent {
         }
     }
 
-    private Map<String, List<String>> discoverAllAgentTools() {
-        Map<String, List<String>> agentTools = new HashMap<>();
-        try {
-            String kernelAgentsUrl = System.getProperty("kernel.url", "http://localhost:8080") + "/agents";
-            HttpRequest agentsReq = HttpRequest.newBuilder()
-                    .uri(URI.create(kernelAgentsUrl))
-                    .timeout(Duration.ofSeconds(5))
-                    .GET()
-                    .build();
-
-            HttpResponse<String> agentsResp = httpClient.send(agentsReq, HttpResponse.BodyHandlers.ofString());
-            Map<String,Object> root = objectMapper.readValue(agentsResp.body(), Map.class);
-            List<Map<String,Object>> agents = (List<Map<String,Object>>) root.getOrDefault("agents", List.of());
+    // 🔎 Tools of every known agent
+    private CompletableFuture<Map<String, List<String>>> discoverAllAgentTools() {
+        // Served from the kernel's catalog, kept current by pushes and lifecycle events
+        AgentToolCatalog.Snapshot catalog = toolCatalog.snapshot();
+        System.out.printf("🧰 [%s] Planning with tool catalog v%d (%d agents)%n", id, catalog.version(), catalog.tools().size());
+        return CompletableFuture.completedFuture(catalog.tools());
+    }
 
-            for (Map<String,Object> a : agents) {
-                String agentId = (String) a.get("agentId");
-                String endpoint = (String) a.get("endpoint");
-                if (endpoint == null) continue;
-                try {
-                    HttpResponse<String> toolsResp = httpClient.send(
-                            HttpRequest.newBuilder()
-                                    .uri(URI.create(endpoint + "/tools/list"))
-                                    .timeout(Duration.ofSeconds(5))
-                                    .GET()
-                                    .build(),
-                            HttpResponse.BodyHandlers.ofString());
-                    List<Map<String,Object>> toolList = objectMapper.readValue(toolsResp.body(), List.class);
-                    List<String> names = toolList.stream()
-                            .map(m -> (String) m.get("name"))
-                            .filter(Objects::nonNull)
-                            .collect(Collectors.toList());
-                    agentTools.put(agentId, names);
-                } catch (Exception ex) {
-                    System.err.printf("⚠️ [orchestrator] Failed tools fetch for %s: %s%n", agentId, ex.getMessage());
-                }
-            }
-        } catch (Exception e) {
-            System.err.printf("❌ discoverAllAgentTools failed: %s%n", e.getMessage());
-        }
-        return agentTools;
+    private CompletableFuture<List<Map<String, Object>>> askModelForPlan(String prompt) {
+        return postJson(endpoint + "/chat/planner", Map.of("message", prompt), PLAN_TIMEOUT)
+                .thenApply(this::parsePlan)
+                .exceptionally(e -> {
+                    System.err.printf("❌ [planner] Plan generation failed: %s%n", cause(e));
+                    return List.of();
+                });
     }
 
     @SuppressWarnings("unchecked")
-    private List<Map<String, Object>> askModelForPlan(String prompt) {
-        try {
-            String url = endpoint + "/chat/planner";
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("Content-Type", "application/json")
-                    .timeout(Duration.ofSeconds(30))
-                    .POST(HttpRequest.BodyPublishers.ofString(
-                            objectMapper.writeValueAsString(Map.of("message", prompt))
-                    ))
-                    .build();
+    private List<Map<String, Object>> parsePlan(String body) {
+        // ✅ 1️⃣ Clean Bedrock/Nova LLM responses that include markdown fences
+        String cleaned = (body == null ? "" : body.trim())
+                // Remove ```json or ``` fences (with any whitespace/newlines)
+                .replaceAll("(?s)```\\s*json\\s*", "")
+                .replaceAll("(?s)```", "")
+                // Remove control characters (e.g. from streaming responses)
+                .replaceAll("[\\u0000-\\u001F]", "")
+                .trim();
+
+        // If JSON is embedded inside extra text, try to isolate the {...} section
+        if (!cleaned.startsWith("{") && cleaned.contains("{") && cleaned.contains("}")) {
+            int start = cleaned.indexOf("{");
+            int end = cleaned.lastIndexOf("}");
+            cleaned = cleaned.substring(start, end + 1);
+        }
 
-            HttpResponse<String> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
-            String body = resp.body();
-
-            // ✅ 1️⃣ Clean Bedrock/Nova LLM responses that include markdown fences
-            String cleaned = (body == null ? "" : body.trim())
-                    // Remove ```json or ``` fences (with any whitespace/newlines)
-                    .replaceAll("(?s)```\\s*json\\s*", "")
-                    .replaceAll("(?s)```", "")
-                    // Remove control characters (e.g. from streaming responses)
-                    .replaceAll("[\\u0000-\\u001F]", "")
-                    .trim();
-
-            // If JSON is embedded inside extra text, try to isolate the {...} section
-            if (!cleaned.startsWith("{") && cleaned.contains("{") && cleaned.contains("}")) {
-                int start = cleaned.indexOf("{");
-                int end = cleaned.lastIndexOf("}");
-                cleaned = cleaned.substring(start, end + 1);
-            }
+        // ✅ 2️⃣ Log cleaned content for debugging
+        System.out.printf("🧩 [planner] Raw model response (cleaned): %s%n", cleaned);
 
-            // ✅ 2️⃣ Log cleaned content for debugging
-            System.out.printf("🧩 [planner] Raw model response (cleaned): %s%n", cleaned);
-
-            // ✅ 3️⃣ Try to parse the cleaned JSON safely
-            Map<String, Object> parsed = new HashMap<>();
-            try {
-                parsed = objectMapper.readValue(cleaned, Map.class);
-            } catch (Exception inner) {
-                System.err.printf("⚠️ [planner] JSON parsing failed — trying fallback. Cause: %s%n", inner.getMessage());
-                parsed.put("raw", cleaned);
-                parsed.put("error", "Could not parse JSON plan, attempting fallback.");
-
-                // 🩵 Optional fallback: try to re-parse from "raw" if it contains valid JSON
-                if (cleaned.contains("\"raw\"")) {
-                    try {
-                        Map<String, Object> tmp = objectMapper.readValue(cleaned, Map.class);
-                        String raw = (String) tmp.get("raw");
-                        if (raw != null && raw.contains("{") && raw.contains("}")) {
-                            parsed = objectMapper.readValue(raw, Map.class);
-                            System.out.println("🔁 [planner] Successfully parsed JSON from 'raw' field.");
-                        }
-                    } catch (Exception ignored) {
-                        System.err.println("⚠️ [planner] Fallback parse from 'raw' also failed.");
+        // ✅ 3️⃣ Try to parse the cleaned JSON safely
+        Map<String, Object> parsed = new HashMap<>();
+        try {
+            parsed = objectMapper.readValue(cleaned, Map.class);
+        } catch (Exception inner) {
+            System.err.printf("⚠️ [planner] JSON parsing failed — trying fallback. Cause: %s%n", inner.getMessage());
+            parsed.put("raw", cleaned);
+            parsed.put("error", "Could not parse JSON plan, attempting fallback.");
+
+            // 🩵 Optional fallback: try to re-parse from "raw" if it contains valid JSON
+            if (cleaned.contains("\"raw\"")) {
+                try {
+                    Map<String, Object> tmp = objectMapper.readValue(cleaned, Map.class);
+                    String raw = (String) tmp.get("raw");
+                    if (raw != null && raw.contains("{") && raw.contains("}")) {
+                        parsed = objectMapper.readValue(raw, Map.class);
+                        System.out.println("🔁 [planner] Successfully parsed JSON from 'raw' field.");
                     }
+                } catch (Exception ignored) {
+                    System.err.println("⚠️ [planner] Fallback parse from 'raw' also failed.");
                 }
             }
+        }
 
-            // ✅ 4️⃣ Extract plan if present
-            Object planObj = parsed.get("plan");
-            if (planObj instanceof List<?> list) {
-                System.out.printf("✅ [planner] Extracted plan with %d step(s)%n", list.size());
-                return (List<Map<String, Object>>) list;
-            } else {
-                System.err.printf("⚠️ [planner] 'plan' field missing or not a list. Parsed=%s%n", parsed);
-                return List.of();
-            }
-
-        } catch (Exception e) {
-            System.err.printf("❌ [planner] Plan generation failed: %s%n", e.getMessage());
+        // ✅ 4️⃣ Extract plan if present
+        Object planObj = parsed.get("plan");
+        if (planObj instanceof List<?> list) {
+            System.out.printf("✅ [planner] Extracted plan with %d step(s)%n", list.size());
+            return (List<Map<String, Object>>) list;
+        } else {
+            System.err.printf("⚠️ [planner] 'plan' field missing or not a list. Parsed=%s%n", parsed);
             return List.of();
         }
     }
@@ -576,9 +697,8 @@ public class BedrockAgent implements Agent {
      *   - a tool or process failure (toolFailed = true)
      * Returns clean structured JSON, same as askModelForPlan.
      */
-    private Map<String, Object> askModelForReason(String agent, String agentMessage) {
-        try {
-            String reasoningPrompt = """
+    private CompletableFuture<Map<String, Object>> askModelForReason(String agent, String agentMessage) {
+        String reasoningPrompt = """
         You are an AI orchestration reasoning assistant.
         Given an agent's last message, analyze whether it indicates a failure
         or is asking for user input. Return a structured JSON decision.
@@ -601,81 +721,113 @@ public class BedrockAgent implements Agent {
         Message: %s
         """.formatted(agent, agentMessage == null ? "" : agentMessage);
 
-            String url = endpoint + "/chat/planner"; // same endpoint as plan
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("Content-Type", "application/json")
-                    .timeout(Duration.ofSeconds(20))
-                    .POST(HttpRequest.BodyPublishers.ofString(
-                            objectMapper.writeValueAsString(Map.of("message", reasoningPrompt))
-                    ))
-                    .build();
+        // same endpoint as plan
+        return postJson(endpoint + "/chat/planner", Map.of("message", reasoningPrompt), REASON_TIMEOUT)
+                .thenApply(body -> parseReason(agentMessage, body))
+                .exceptionally(e -> {
+                    System.err.printf("❌ [reasoner] Reasoning model call failed: %s%n", cause(e));
+
+                    // Fallback if anything breaks
+                    String msg = agentMessage == null ? "" : agentMessage.toLowerCase();
+                    boolean needsUserInput = msg.contains("please provide") || msg.contains("missing") || msg.contains("need");
+                    boolean toolFailed = msg.contains("failed") || msg.contains("error") || msg.contains("exception");
+
+                    return Map.of(
+                            "needsUserInput", needsUserInput,
+                            "toolFailed", toolFailed,
+                            "reason", needsUserInput
+                                    ? "User input required"
+                                    : (toolFailed ? "Agent process failed" : "Normal agent message"),
+                            // ✅ Always same 4 options
+                            "options", List.of("provide_input", "skip", "abort", "retry")
+                    );
+                });
+    }
 
-            HttpResponse<String> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
-            String body = resp.body();
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> parseReason(String agentMessage, String body) {
+        // 🧹 Clean up markdown fences if LLM adds them
+        String cleaned = body == null ? "" : body.trim();
+        if (cleaned.startsWith("```")) {
+            cleaned = cleaned.replaceAll("(?s)```json|```", "").trim();
+        }
 
-            // 🧹 Clean up markdown fences if LLM adds them
-            String cleaned = body == null ? "" : body.trim();
-            if (cleaned.startsWith("```")) {
-                cleaned = cleaned.replaceAll("(?s)```json|```", "").trim();
-            }
+        System.out.printf("🧩 [reasoner] Raw model response (cleaned): %s%n", cleaned);
 
-            System.out.printf("🧩 [reasoner] Raw model response (cleaned): %s%n", cleaned);
+        // 🧮 Parse JSON safely
+        Map<String, Object> parsed = new HashMap<>();
+        try {
+            parsed = objectMapper.readValue(cleaned, Map.class);
+        } catch (Exception inner) {
+            System.err.printf("⚠️ [reasoner] JSON parsing failed, fallback to heuristic. Cause: %s%n", inner.getMessage());
+            parsed.put("raw", cleaned);
+            parsed.put("error", "Could not parse JSON reasoning output.");
+        }
 
-            // 🧮 Parse JSON safely
-            Map<String, Object> parsed = new HashMap<>();
-            try {
-                parsed = objectMapper.readValue(cleaned, Map.class);
-            } catch (Exception inner) {
-                System.err.printf("⚠️ [reasoner] JSON parsing failed, fallback to heuristic. Cause: %s%n", inner.getMessage());
-                parsed.put("raw", cleaned);
-                parsed.put("error", "Could not parse JSON reasoning output.");
-            }
+        // 🧠 Enforce defaults if fields are missing or malformed
+        String msg = agentMessage == null ? "" : agentMessage.toLowerCase();
+        boolean needsUserInput = parsed.containsKey("needsUserInput")
+                ? Boolean.TRUE.equals(parsed.get("needsUserInput"))
+                : (msg.contains("please provide") || msg.contains("missing") || msg.contains("need"));
+        boolean toolFailed = parsed.containsKey("toolFailed")
+                ? Boolean.TRUE.equals(parsed.get("toolFailed"))
+                : (msg.contains("failed") || msg.contains("error") || msg.contains("exception"));
+        String reason = Optional.ofNullable(parsed.get("reason"))
+                .map(Object::toString)
+                .orElseGet(() -> {
+                    if (needsUserInput) return "Agent requested additional input";
+                    if (toolFailed) return "Agent reported a failure";
+                    return "Normal agent response";
+                });
 
-            // 🧠 Enforce defaults if fields are missing or malformed
-            String msg = agentMessage == null ? "" : agentMessage.toLowerCase();
-            boolean needsUserInput = parsed.containsKey("needsUserInput")
-                    ? Boolean.TRUE.equals(parsed.get("needsUserInput"))
-                    : (msg.contains("please provide") || msg.contains("missing") || msg.contains("need"));
-            boolean toolFailed = parsed.containsKey("toolFailed")
-                    ? Boolean.TRUE.equals(parsed.get("toolFailed"))
-                    : (msg.contains("failed") || msg.contains("error") || msg.contains("exception"));
-            String reason = Optional.ofNullable(parsed.get("reason"))
-                    .map(Object::toString)
-                    .orElseGet(() -> {
-                        if (needsUserInput) return "Agent requested additional input";
-                        if (toolFailed) return "Agent reported a failure";
-                        return "Normal agent response";
-                    });
+        // ✅ Always enforce same 4 options
+        parsed.put("needsUserInput", needsUserInput);
+        parsed.put("toolFailed", toolFailed);
+        parsed.put("reason", reason);
+        parsed.put("options", List.of("provide_input", "skip", "abort", "retry"));
+
+        return parsed;
+    }
 
-            // ✅ Always enforce same 4 options
-            parsed.put("needsUserInput", needsUserInput);
-            parsed.put("toolFailed", toolFailed);
-            parsed.put("reason", reason);
-            parsed.put("options", List.of("provide_input", "skip", "abort", "retry"));
+    // 🌐 Async HTTP with an explicit deadline: the request timeout covers the response headers,
+    // orTimeout the whole exchange. Callbacks run on the shared AgentHttpClient executor.
+    private CompletableFuture<String> postJson(String url, Object body, Duration timeout) {
+        try {
+            HttpRequest req = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .header("Content-Type", "application/json")
+                    .timeout(timeout)
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+            return exchange(req, timeout);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-            return parsed;
+    private CompletableFuture<String> exchange(HttpRequest req, Duration timeout) {
+        return httpClient.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(HttpResponse::body);
+    }
 
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readMap(String json) {
+        try {
+            return objectMapper.readValue(json, Map.class);
         } catch (Exception e) {
-            System.err.printf("❌ [reasoner] Reasoning model call failed: %s%n", e.getMessage());
-
-            // Fallback if anything breaks
-            String msg = agentMessage == null ? "" : agentMessage.toLowerCase();
-            boolean needsUserInput = msg.contains("please provide") || msg.contains("missing") || msg.contains("need");
-            boolean toolFailed = msg.contains("failed") || msg.contains("error") || msg.contains("exception");
-
-            return Map.of(
-                    "needsUserInput", needsUserInput,
-                    "toolFailed", toolFailed,
-                    "reason", needsUserInput
-                            ? "User input required"
-                            : (toolFailed ? "Agent process failed" : "Normal agent message"),
-                    // ✅ Always same 4 options
-                    "options", List.of("provide_input", "skip", "abort", "retry")
-            );
+            throw new CompletionException(e);
         }
     }
 
+    private static String cause(Throwable t) {
+        Throwable c = t;
+        while ((c instanceof CompletionException || c instanceof ExecutionException) && c.getCause() != null) {
+            c = c.getCause();
+        }
+        return c instanceof TimeoutException ? "timed out" : String.valueOf(c.getMessage());
+    }
+
 
 
     public void registerAgentToKernel(String targetAgent, String sessionId, String message) {
@@ -722,24 +874,12 @@ public class BedrockAgent implements Agent {
         }
     }
 
+    // 🔁 In-process when co-located, batched HTTP otherwise. Status updates may be coalesced;
+    // anything a session waits on (results, delegations, pauses) goes out at once, in order
     private void sendToKernel(MessageEnvelope<?> message) {
-        try {
-            String kernelUrl = System.getProperty("kernel.url", "http://localhost:8080") + "/messages";
-            String json = objectMapper.writeValueAsString(message);
-
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(kernelUrl))
-                    .header("Content-Type", "application/json")
-                    .timeout(Duration.ofSeconds(20))
-                    .POST(HttpRequest.BodyPublishers.ofString(json))
-                    .build();
-
-            String type = message.getType() != null ? message.getType().toLowerCase() : "";
-            sendAsyncWithRetries(req, type, 1);
-
-        } catch (Exception e) {
-            System.err.printf("❌ [%s] sendToKernel failed: %s%n", id, e.getMessage());
-        }
+        // Fixed before the first attempt: retries carry the same id, so the kernel can drop replays
+        if (message.getCorrelationId() == null) message.setCorrelationId(UUID.randomUUID().toString());
+        kernel.send(message, !"agent_status_update".equalsIgnoreCase(message.getType()));
     }
 
 
@@ -750,50 +890,17 @@ public class BedrockAgent implements Agent {
 
     @Override
     public void onStop() {
+        kernel.close();
+        if (passivator != null) passivator.shutdownNow();
+        PlanJournal opened = journal;
+        if (opened != null) opened.close();
+        httpClient.forget(endpoint);
         if (process != null && process.isAlive()) process.destroy();
     }
 
-    private boolean registerWaiterWithKernel(String sessionId, String agentId, CompletableFuture<Map<String, Object>> waiter) {
-        try {
-            String kernelUrl = System.getProperty("kernel.url", "http://localhost:8080") + "/messages/register-waiter";
-            Map<String, Object> payload = Map.of("sessionId", sessionId, "agentId", agentId);
-
-            HttpRequest req = HttpRequest.newBuilder()
-                    .uri(URI.create(kernelUrl))
-                    .header("Content-Type", "application/json")
-                    .timeout(Duration.ofSeconds(5))
-                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(payload)))
-                    .build();
-
-            HttpResponse<String> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString());
-            if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
-                System.out.printf("📡 [%s] Registered waiter for %s (kernel response: %s)%n", this.id, agentId, resp.body());
-                return true;
-            } else {
-                System.err.printf("⚠️ [%s] register-waiter failed for %s: %d%n", this.id, agentId, resp.statusCode());
-                return false;
-            }
-        } catch (Exception ex) {
-            System.err.printf("⚠️ [%s] registerWaiterWithKernel failed: %s%n", this.id, ex.getMessage());
-            return false;
-        }
-    }
-
-    private void sendAsyncWithRetries(HttpRequest req, String type, int attempt) {
-        httpClient.sendAsync(req, HttpResponse.BodyHandlers.ofString())
-                .thenAccept(resp -> System.out.printf("📤 [%s] (ASYNC) Sent %s | response=%s%n", id, type, resp.body()))
-                .exceptionally(ex -> {
-                    if (attempt < MAX_ASYNC_RETRIES) {
-                        long delay = RETRY_BACKOFF_SECONDS * (1L << (attempt - 1));
-                        System.err.printf("⚠️ [%s] Failed %s attempt %d/%d: %s — retrying in %ds%n",
-                                id, type, attempt, MAX_ASYNC_RETRIES, ex.getMessage(), delay);
-                        SCHED.schedule(() -> sendAsyncWithRetries(req, type, attempt + 1), delay, TimeUnit.SECONDS);
-                    } else {
-                        System.err.printf("❌ [%s] Permanent failure sending %s after %d attempts%n",
-                                id, type, attempt);
-                    }
-                    return null;
-                });
+    private CompletableFuture<Boolean> registerWaiterWithKernel(String sessionId, String agentId,
+                                                                CompletableFuture<Map<String, Object>> waiter) {
+        return kernel.registerWaiter(sessionId, agentId);
     }
 
     private void registerLocalWaiter(String sessionId, String agentId, CompletableFuture<Map<String, Object>> fut) {
@@ -818,32 +925,82 @@ public class BedrockAgent implements Agent {
     }
 
     // 🆕 Resume a paused orchestration when user provides input manually
-    private void resumePausedSession(String sessionId, String userInput) {
-        try {
-            List<Map<String, Object>> plan = sessionPlans.get(sessionId);
-            int index = sessionStepIndex.getOrDefault(sessionId, 0);
+    private CompletableFuture<Void> resumePausedSession(String sessionId, String userInput) {
+        PlanRun run = run(sessionId);
+        if (run == null) {
+            sendReasoningUpdate(sessionId, "summary", "✅ No pending steps to resume.");
+            return CompletableFuture.completedFuture(null);
+        }
 
-            if (plan == null || index >= plan.size()) {
-                sendReasoningUpdate(sessionId, "summary", "✅ No pending steps to resume.");
-                return;
-            }
+        // The input is for a paused step if there is one, else for the earliest running one
+        Map<String, StepState> states = run.states();
+        Optional<Map<String, Object>> target = pausedStep(sessionId, null, null).or(() -> run.plan().stream()
+                .filter(step -> PlanGraph.state(states, step) == StepState.RUNNING)
+                .findFirst());
+        if (target.isEmpty()) return continuePlan(sessionId);
 
-            Map<String, Object> currentStep = plan.get(index);
-            String agent = (String) currentStep.get("agent");
-            String action = (String) currentStep.get("action");
+        Map<String, Object> currentStep = target.get();
+        String agent = (String) currentStep.get("agent");
+        String action = (String) currentStep.get("action");
 
-            sendReasoningUpdate(sessionId, "orchestration_resume_input",
-                    "💡 User provided input mid-session for " + agent + ": " + userInput);
+        sendReasoningUpdate(sessionId, "orchestration_resume_input",
+                "💡 User provided input mid-session for " + agent + ": " + userInput);
 
-            CompletableFuture<Map<String, Object>> waiter = new CompletableFuture<>();
-            registerLocalWaiter(sessionId, agent, waiter);
-            registerWaiterWithKernel(sessionId, agent, waiter);
+        // 🧠 Re-delegate agent with the user's new input
+        return setStep(sessionId, states, PlanGraph.id(currentStep), StepState.RUNNING)
+                .thenCompose(v -> startStep(sessionId, currentStep, action + " (user input: " + userInput + ")"));
+    }
 
-            // 🧠 Re-delegate agent with the user's new input
-            delegateToAgent(agent, sessionId, action + " (user input: " + userInput + ")");
-        } catch (Exception e) {
-            System.err.printf("❌ [%s] Failed to resume paused session: %s%n", id, e.getMessage());
+    // 💤 Sweep for sessions waiting on a person longer than the journal's passivation threshold
+    private ScheduledExecutorService startPassivation() {
+        long periodMs = Math.min(60_000, Math.max(1_000, journal().passivateAfterMs() / 4));
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual().name("passivation-" + id).factory());
+        scheduler.scheduleAtFixedRate(this::passivateIdleSessions, periodMs, periodMs, TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    private void passivateIdleSessions() {
+        long after = journal().passivateAfterMs();
+        sessionRuns.forEach((sessionId, run) -> {
+            if (run.waitingOnUser() && run.idleMillis() >= after) {
+                inSession(sessionId, "passivation", () -> {
+                    passivate(sessionId, after);
+                    return CompletableFuture.completedFuture(null);
+                });
+            }
+        });
+    }
+
+    private void passivate(String sessionId, long after) {
+        PlanRun run = sessionRuns.get(sessionId);
+        // Checked again in the session's turn: a decision or chat may have arrived since the sweep
+        if (run == null || !run.waitingOnUser() || run.idleMillis() < after) return;
+        try {
+            journal().passivate(sessionId, run);
+            sessionRuns.remove(sessionId, run);
+            System.out.printf("💤 [%s] Passivated session=%s after %ds idle (%d passivated)%n",
+                    id, sessionId, run.idleMillis() / 1000, journal().passivatedCount());
+        } catch (IOException e) {
+            System.err.printf("⚠️ [%s] Could not passivate session=%s: %s%n", id, sessionId, e.getMessage());
         }
     }
 
+    /**
+     * ⛓ Run {@code step} once every step queued earlier for the session has finished. The async
+     * flows of one session never interleave (the blocking version got this from the mailbox),
+     * while different sessions proceed independently and no thread waits in between.
+     */
+    private void inSession(String sessionId, String what, Supplier<CompletableFuture<Void>> step) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = sessionTails.put(sessionId, done);
+        (previous != null ? previous : CompletableFuture.<Void>completedFuture(null))
+                .thenCompose(v -> step.get())
+                .whenComplete((v, e) -> {
+                    if (e != null) System.err.printf("❌ [%s] %s failed for session=%s: %s%n", id, what, sessionId, cause(e));
+                    sessionTails.remove(sessionId, done);
+                    done.complete(null);
+                });
+    }
+
 }
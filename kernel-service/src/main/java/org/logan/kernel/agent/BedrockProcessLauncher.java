@@ -0,0 +1,110 @@
+package org.logan.kernel.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 🚀 BedrockProcessLauncher: starts bedrock-agent JVMs and tells when they are up.
+ *
+ * A process is launched either for a known agent id, or unbound for the {@link WarmAgentPool}
+ * and bound to an id later through the agent's {@code POST /admin/bind}.
+ */
+@Component
+public class BedrockProcessLauncher {
+
+    /** A launched bedrock-agent process and where it listens. */
+    public record Launched(Process process, String endpoint) {}
+
+    private static final long HEALTH_POLL_MS = 250;
+
+    @Value("${kernel.agent-base-path:/home/ec2-user/Orion/}")
+    private String agentBasePath;
+
+    @Value("${eureka.instance.ip-address}")
+    private String instanceIp;
+
+    private final AgentHttpClient http;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public BedrockProcessLauncher(AgentHttpClient http) {
+        this.http = http;
+    }
+
+    /** @param agentId the agent it serves, or null to bind it later */
+    public Launched launch(String agentId) throws IOException {
+        int port = freePort();
+        String endpoint = "http://" + instanceIp + ":" + port;
+
+        ProcessBuilder pb = agentId != null
+                ? new ProcessBuilder("java", "-jar", agentBasePath, "--server.port=" + port, "--kernel.agent-id=" + agentId)
+                : new ProcessBuilder("java", "-jar", agentBasePath, "--server.port=" + port);
+        pb.directory(new File(System.getProperty("user.dir")));
+        pb.inheritIO();
+        return new Launched(pb.start(), endpoint);
+    }
+
+    /** Poll the health endpoint until it answers 200, the process dies or {@code timeout} passes. */
+    public boolean awaitHealthy(Process process, String endpoint, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (process != null && !process.isAlive()) return false;
+            if (isHealthy(endpoint, Duration.ofSeconds(2))) return true;
+            try {
+                Thread.sleep(HEALTH_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    public boolean isHealthy(String endpoint, Duration timeout) {
+        if (endpoint == null) return false;
+        try {
+            HttpRequest req = HttpRequest.newBuilder()
+                    .uri(URI.create(endpoint + "/actuator/health"))
+                    .timeout(timeout)
+                    .GET()
+                    .build();
+
+            HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString(), timeout);
+            return resp.statusCode() == 200;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /** Hand an unbound process to {@code agentId}; false if it refused or didn't answer. */
+    public boolean bind(String endpoint, String agentId) {
+        try {
+            HttpRequest req = HttpRequest.newBuilder()
+                    .uri(URI.create(endpoint + "/admin/bind"))
+                    .timeout(Duration.ofSeconds(2))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(Map.of("agentId", agentId))))
+                    .build();
+            return http.send(req, HttpResponse.BodyHandlers.discarding(), Duration.ofSeconds(2)).statusCode() == 200;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // ✅ Find a free port
+    public int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            socket.setReuseAddress(true);
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.logan.kernel.agent;
+
+/**
+ * What an {@link AgentMailbox} does when an envelope arrives and the mailbox is full.
+ */
+public enum MailboxOverflowPolicy {
+    /** Reject the incoming envelope; the sender sees {@code false} from {@code offer}. */
+    DROP_NEWEST,
+    /** Evict the oldest queued envelope to make room for the new one. */
+    DROP_OLDEST,
+    /** Wait up to the configured offer timeout for space, then reject. */
+    BLOCK
+}
@@ -1,16 +1,24 @@
 package org.logan.kernel.agent;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.logan.kernel.agent.gateway.KernelGateway;
+import org.logan.kernel.planning.PlanCache;
+import org.logan.kernel.planning.PlanJournal;
+import org.logan.kernel.tools.AgentToolCatalog;
 import org.logan.protocol.MessageEnvelope;
 
+import java.util.function.Supplier;
+
 public class SpawnerBedrockAgent extends BedrockAgent {
     private final AgentRegistry registry;
     private final AgentFactory factory;
     private final ObjectMapper mapper = new ObjectMapper();
 
     public SpawnerBedrockAgent(String id, String endpoint, Process process,
-                               AgentRegistry registry, AgentFactory factory) {
-        super(id, endpoint, process);
+                               AgentRegistry registry, AgentFactory factory, KernelGateway kernel,
+                               AgentHttpClient httpClient, AgentToolCatalog toolCatalog,
+                               PlanCache planCache, int maxParallelSteps, Supplier<PlanJournal> journal) {
+        super(id, endpoint, process, kernel, httpClient, toolCatalog, planCache, maxParallelSteps, journal);
         this.registry = registry;
         this.factory = factory;
     }
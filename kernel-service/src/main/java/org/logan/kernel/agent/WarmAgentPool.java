@@ -0,0 +1,156 @@
+package org.logan.kernel.agent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.logan.kernel.agent.BedrockProcessLauncher.Launched;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 🔥 WarmAgentPool: bedrock-agent JVMs started ahead of time, so a new agent doesn't wait out a
+ * Spring Boot cold start.
+ *
+ * Pooled processes run unbound and only join the pool once their health check passes. Claiming
+ * one binds it to the agent id ({@code POST /admin/bind}) and wakes the refill loop, which
+ * launches replacements in the background, at most {@code max-starting} at a time. Launch
+ * failures (no jar, no port) back off exponentially up to a minute so a broken setup doesn't
+ * spin. Idle processes belong to the kernel and are stopped with it.
+ */
+@Component
+public class WarmAgentPool {
+
+    private static final long MAX_BACKOFF_MS = 60_000;
+
+    private final BedrockProcessLauncher launcher;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${kernel.agent-pool.size:0}")
+    private int size;
+
+    @Value("${kernel.agent-pool.max-starting:2}")
+    private int maxStarting;
+
+    @Value("${kernel.agent-pool.health-timeout-seconds:60}")
+    private long healthTimeoutSeconds;
+
+    private final BlockingDeque<Launched> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger starting = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final Semaphore wake = new Semaphore(0);
+    private volatile boolean running;
+    private Counter warmClaims;
+    private Counter coldClaims;
+
+    public WarmAgentPool(BedrockProcessLauncher launcher, MeterRegistry meterRegistry) {
+        this.launcher = launcher;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        warmClaims = meterRegistry.counter("kernel.agent-pool.claims", "result", "warm");
+        coldClaims = meterRegistry.counter("kernel.agent-pool.claims", "result", "cold");
+        Gauge.builder("kernel.agent-pool.idle", idle, BlockingDeque::size).register(meterRegistry);
+        if (size <= 0) return;
+        running = true;
+        Thread.ofVirtual().name("agent-pool-refill").start(this::refillLoop);
+        System.out.printf("🔥 Warm agent pool: keeping %d bedrock-agent process(es) ready%n", size);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        wake.release();
+        Launched p;
+        while ((p = idle.poll()) != null) p.process().destroy();
+    }
+
+    /**
+     * A ready process bound to {@code agentId}, or empty when none is idle (the caller cold-starts).
+     * Processes that died or refuse the binding are discarded on the way.
+     */
+    public Optional<Launched> claim(String agentId) {
+        Launched p;
+        while ((p = idle.poll()) != null) {
+            wake.release();   // one less idle, whatever happens next
+            if (p.process().isAlive() && launcher.bind(p.endpoint(), agentId)) {
+                warmClaims.increment();
+                return Optional.of(p);
+            }
+            System.out.printf("⚠️ Discarding pooled agent process at %s (dead or refused binding)%n", p.endpoint());
+            p.process().destroy();
+        }
+        coldClaims.increment();
+        return Optional.empty();
+    }
+
+    public int idleCount() {
+        return idle.size();
+    }
+
+    // 🔁 Top the pool up whenever woken (claim, launch finished) or every few seconds
+    private void refillLoop() {
+        while (running) {
+            int failures = consecutiveFailures.get();
+            if (failures > 0) {
+                long backoff = Math.min(MAX_BACKOFF_MS, 1000L << Math.min(failures - 1, 16));
+                if (sleep(backoff)) return;
+            }
+            while (running && idle.size() + starting.get() < size && starting.get() < Math.max(1, maxStarting)) {
+                starting.incrementAndGet();
+                Thread.ofVirtual().name("agent-pool-launch").start(this::launchOne);
+            }
+            try {
+                wake.tryAcquire(5, TimeUnit.SECONDS);
+                wake.drainPermits();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void launchOne() {
+        Launched p = null;
+        try {
+            p = launcher.launch(null);
+            if (launcher.awaitHealthy(p.process(), p.endpoint(), Duration.ofSeconds(healthTimeoutSeconds))) {
+                idle.add(p);
+                consecutiveFailures.set(0);
+                if (!running && idle.remove(p)) return;   // pool stopped meanwhile: finally destroys it
+                System.out.printf("🔥 Pooled agent process ready at %s (%d idle)%n", p.endpoint(), idle.size());
+                p = null;
+            } else {
+                consecutiveFailures.incrementAndGet();
+                System.out.printf("⚠️ Pooled agent process at %s never became healthy%n", p.endpoint());
+            }
+        } catch (Exception e) {
+            consecutiveFailures.incrementAndGet();
+            System.out.println("❌ Could not launch pooled agent process: " + e.getMessage());
+        } finally {
+            if (p != null) p.process().destroy();
+            starting.decrementAndGet();
+            wake.release();
+        }
+    }
+
+    /** @return true if interrupted */
+    private boolean sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+            return false;
+        } catch (InterruptedException e) {
+            return true;
+        }
+    }
+}
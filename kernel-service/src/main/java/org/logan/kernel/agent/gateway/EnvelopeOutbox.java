@@ -0,0 +1,254 @@
+package org.logan.kernel.agent.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.logan.protocol.MessageEnvelope;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 📮 EnvelopeOutbox: bounded, optionally disk-backed queue of envelopes an agent proxy owes
+ * the kernel.
+ *
+ * One virtual thread delivers them in submission order. A failed delivery is retried in
+ * place (later envelopes must not overtake it) with full-jitter exponential backoff, so many
+ * agents retrying against a struggling kernel spread out instead of arriving in waves.
+ *
+ * With a journal file, every envelope is appended before it is queued and an ack line once
+ * it is delivered or given up on; envelopes without an ack are queued again when the outbox
+ * for the same agent is reopened. Retries and replays reuse the envelope's correlationId,
+ * which the kernel deduplicates on.
+ */
+public class EnvelopeOutbox implements AutoCloseable {
+
+    /** Outcome of one delivery attempt; DROPPED is final like DONE but counts as dropped. */
+    public enum Result { DONE, RETRY, DROPPED }
+
+    @FunctionalInterface
+    public interface Delivery {
+        Result deliver(MessageEnvelope<?> envelope) throws Exception;
+    }
+
+    private record Entry(long seq, MessageEnvelope<?> envelope) {}
+
+    private static final int COMPACT_AFTER_ACKS = 1000;
+
+    private final String name;
+    private final Delivery delivery;
+    private final ObjectMapper mapper;
+    private final Path journal;
+    private final int maxAttempts;
+    private final long backoffBaseMs;
+    private final long backoffCapMs;
+    private final BlockingQueue<Entry> queue;
+    private final AtomicLong seq = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread worker;
+    private BufferedWriter writer;   // guarded by this
+    private int acksSinceCompaction; // guarded by this
+    private volatile boolean running = true;
+
+    /**
+     * @param journal ndjson file backing the outbox, or null to keep it in memory only
+     */
+    public EnvelopeOutbox(String name, Delivery delivery, ObjectMapper mapper, Path journal, int capacity,
+                          int maxAttempts, long backoffBaseMs, long backoffCapMs) {
+        this.name = name;
+        this.delivery = delivery;
+        this.mapper = mapper;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffCapMs = backoffCapMs;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.journal = journal != null ? openJournal(journal) : null;
+        this.worker = Thread.ofVirtual().name(name).start(this::run);
+    }
+
+    /** Queue an envelope; {@code false} if the outbox is full or closed. */
+    public boolean submit(MessageEnvelope<?> envelope) {
+        if (!running) return drop(envelope);
+        // Journaled under the lock acks take, so an ack can't precede (or compact away) its entry
+        synchronized (this) {
+            Entry entry = new Entry(seq.incrementAndGet(), envelope);
+            if (!queue.offer(entry)) return drop(envelope);
+            journal(entry);
+        }
+        return true;
+    }
+
+    public int pending() { return queue.size(); }
+    public long droppedCount() { return dropped.get(); }
+
+    /** Stop accepting envelopes and give the queued ones a few seconds to go out. */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker.interrupt();
+        synchronized (this) {
+            closeWriter();
+        }
+        if (!queue.isEmpty()) {
+            System.err.printf("⚠️ [%s] Closed with %d envelope(s) undelivered%s%n", name, queue.size(),
+                    journal != null ? " (kept in " + journal + ")" : "");
+        }
+    }
+
+    private boolean drop(MessageEnvelope<?> envelope) {
+        dropped.incrementAndGet();
+        System.err.printf("⚠️ [%s] Outbox full or closed, dropped %s%n", name, envelope.getType());
+        return false;
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry entry = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (entry == null) continue;
+                deliver(entry);
+                ack(entry.seq());
+            } catch (InterruptedException e) {
+                return;   // close() gave up waiting; journaled entries stay for the next start
+            }
+        }
+    }
+
+    private void deliver(Entry entry) throws InterruptedException {
+        MessageEnvelope<?> envelope = entry.envelope();
+        for (int attempt = 1; ; attempt++) {
+            String failure;
+            try {
+                Result result = delivery.deliver(envelope);
+                if (result == Result.DONE) return;
+                if (result == Result.DROPPED) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                failure = "kernel asked to retry";
+            } catch (Exception e) {
+                failure = e.getMessage();
+            }
+            if (attempt >= maxAttempts) {
+                System.err.printf("❌ [%s] Gave up on %s (correlationId=%s) after %d attempts: %s%n",
+                        name, envelope.getType(), envelope.getCorrelationId(), attempt, failure);
+                return;
+            }
+            long ceiling = Math.min(backoffCapMs, backoffBaseMs << Math.min(attempt - 1, 20));
+            long sleepMs = ThreadLocalRandom.current().nextLong(ceiling + 1);
+            System.err.printf("⚠️ [%s] Delivery of %s failed (attempt %d/%d, retry in %dms): %s%n",
+                    name, envelope.getType(), attempt, maxAttempts, sleepMs, failure);
+            Thread.sleep(sleepMs);
+        }
+    }
+
+    // --- Journal ---
+
+    private Path openJournal(Path file) {
+        try {
+            Files.createDirectories(file.getParent());
+            Map<Long, MessageEnvelope<?>> unacked = new TreeMap<>();
+            if (Files.exists(file)) {
+                try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (line.isBlank()) continue;
+                        JsonNode node;
+                        try {
+                            node = mapper.readTree(line);
+                        } catch (IOException e) {
+                            continue;   // torn last line from a crash mid-append
+                        }
+                        long s = node.path("seq").asLong();
+                        if (node.has("envelope")) {
+                            unacked.put(s, mapper.treeToValue(node.get("envelope"), MessageEnvelope.class));
+                        } else {
+                            unacked.remove(s);
+                        }
+                    }
+                }
+            }
+            // Rewrite with just the survivors, renumbered, then append from there
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            for (MessageEnvelope<?> envelope : unacked.values()) {
+                Entry entry = new Entry(seq.incrementAndGet(), envelope);
+                writeLine(entry.seq(), envelope);
+                if (!queue.offer(entry)) dropped.incrementAndGet();
+            }
+            writer.flush();
+            if (!unacked.isEmpty()) {
+                System.out.printf("📮 [%s] Re-queued %d undelivered envelope(s) from %s%n", name, unacked.size(), file);
+            }
+            return file;
+        } catch (Exception e) {
+            System.err.printf("⚠️ [%s] Outbox journal %s unusable, keeping envelopes in memory only: %s%n",
+                    name, file, e.getMessage());
+            closeWriter();
+            return null;
+        }
+    }
+
+    private synchronized void journal(Entry entry) {
+        if (writer == null) return;
+        try {
+            writeLine(entry.seq(), entry.envelope());
+            writer.flush();
+        } catch (IOException e) {
+            System.err.printf("⚠️ [%s] Outbox journal write failed: %s%n", name, e.getMessage());
+        }
+    }
+
+    private synchronized void ack(long s) {
+        if (writer == null) return;
+        try {
+            if (++acksSinceCompaction >= COMPACT_AFTER_ACKS && queue.isEmpty()) {
+                // Nothing outstanding: start the file over instead of letting acks pile up
+                closeWriter();
+                writer = Files.newBufferedWriter(journal, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                acksSinceCompaction = 0;
+                return;
+            }
+            writer.write("{\"seq\":" + s + "}");
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            System.err.printf("⚠️ [%s] Outbox journal write failed: %s%n", name, e.getMessage());
+        }
+    }
+
+    private void writeLine(long s, MessageEnvelope<?> envelope) throws IOException {
+        ObjectNode line = mapper.createObjectNode();
+        line.put("seq", s);
+        line.set("envelope", mapper.valueToTree(envelope));
+        writer.write(mapper.writeValueAsString(line));
+        writer.newLine();
+    }
+
+    private void closeWriter() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException ignored) {
+        }
+        writer = null;
+    }
+}
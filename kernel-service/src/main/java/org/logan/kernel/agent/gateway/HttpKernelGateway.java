@@ -0,0 +1,113 @@
+package org.logan.kernel.agent.gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.logan.protocol.MessageEnvelope;
+import org.logan.protocol.batch.EnvelopeBatcher;
+import org.logan.protocol.codec.EnvelopeCodec;
+import org.logan.protocol.codec.WireFormat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 🌐 Gateway to a remote kernel over HTTP: envelopes go through {@link EnvelopeBatcher}.
+ *
+ * The batcher is this proxy's outbox: whole batches and single items the kernel answers
+ * 429/5xx are retried in order with jittered backoff, reusing their correlationId so the
+ * kernel drops replays. As with {@link LocalKernelGateway}, a 429 for a LOW-priority type is
+ * final. Unlike its {@link EnvelopeOutbox}, the queue is held in memory only.
+ */
+public class HttpKernelGateway implements KernelGateway {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final String agentId;
+    private final String kernelUrl;
+    private final HttpClient httpClient;
+    private final ObjectMapper mapper;
+    private final EnvelopeBatcher batcher;
+
+    public HttpKernelGateway(String agentId, String kernelUrl, HttpClient httpClient, ObjectMapper mapper,
+                             EnvelopeCodec codec, WireFormat format, int maxBatch, long lingerMs) {
+        this.agentId = agentId;
+        this.kernelUrl = kernelUrl;
+        this.httpClient = httpClient;
+        this.mapper = mapper;
+        this.batcher = new EnvelopeBatcher("kernel-batch-" + agentId, URI.create(kernelUrl + "/messages/batch"),
+                httpClient, codec, format, maxBatch, lingerMs, 10_000, LocalKernelGateway::sheddable);
+    }
+
+    @Override
+    public void send(MessageEnvelope<?> envelope, boolean urgent) {
+        if (urgent) batcher.submitNow(envelope);
+        else batcher.submit(envelope);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> registerWaiter(String sessionId, String waitedAgentId) {
+        try {
+            Map<String, Object> payload = Map.of("sessionId", sessionId, "agentId", waitedAgentId);
+            HttpRequest req = HttpRequest.newBuilder()
+                    .uri(URI.create(kernelUrl + "/messages/register-waiter"))
+                    .header("Content-Type", "application/json")
+                    .timeout(TIMEOUT)
+                    .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(payload)))
+                    .build();
+
+            return httpClient.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                    .orTimeout(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+                    .thenApply(resp -> {
+                        if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
+                            System.out.printf("📡 [%s] Registered waiter for %s (kernel response: %s)%n", agentId, waitedAgentId, resp.body());
+                            return true;
+                        }
+                        System.err.printf("⚠️ [%s] register-waiter failed for %s: %d%n", agentId, waitedAgentId, resp.statusCode());
+                        return false;
+                    })
+                    .exceptionally(ex -> {
+                        System.err.printf("⚠️ [%s] registerWaiterWithKernel failed: %s%n", agentId, ex.getMessage());
+                        return false;
+                    });
+        } catch (Exception ex) {
+            System.err.printf("⚠️ [%s] registerWaiterWithKernel failed: %s%n", agentId, ex.getMessage());
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Map<String, String>> listAgents() {
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(kernelUrl + "/agents"))
+                .timeout(TIMEOUT)
+                .GET()
+                .build();
+        return httpClient.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .orTimeout(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(resp -> {
+                    try {
+                        Map<String, Object> root = mapper.readValue(resp.body(), Map.class);
+                        Map<String, String> agents = new LinkedHashMap<>();
+                        for (Map<String, Object> a : (List<Map<String, Object>>) root.getOrDefault("agents", List.of())) {
+                            agents.put((String) a.get("agentId"), (String) a.get("endpoint"));
+                        }
+                        return agents;
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    @Override
+    public void close() {
+        batcher.close();
+    }
+}
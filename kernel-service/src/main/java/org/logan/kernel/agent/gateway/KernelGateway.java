@@ -0,0 +1,33 @@
+package org.logan.kernel.agent.gateway;
+
+import org.logan.protocol.MessageEnvelope;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * How a kernel-hosted agent ({@code BedrockAgent}) talks back to the kernel.
+ *
+ * Co-located agents get a {@link LocalKernelGateway} that dispatches in-process; the
+ * {@link HttpKernelGateway} remains for agents pointed at a remote kernel. Both deliver
+ * asynchronously, in submission order, with a few in-place retries; queries never block
+ * the caller either.
+ */
+public interface KernelGateway extends AutoCloseable {
+
+    /**
+     * Deliver an envelope as if POSTed to /messages.
+     *
+     * @param urgent someone is waiting on it; don't hold it back for batching
+     */
+    void send(MessageEnvelope<?> envelope, boolean urgent);
+
+    /** Same as POST /messages/register-waiter; completes with {@code false} if the kernel refused. */
+    CompletableFuture<Boolean> registerWaiter(String sessionId, String agentId);
+
+    /** Known agents by id → endpoint, as listed by GET /agents. */
+    CompletableFuture<Map<String, String>> listAgents();
+
+    @Override
+    void close();
+}
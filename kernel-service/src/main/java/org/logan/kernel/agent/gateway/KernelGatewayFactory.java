@@ -0,0 +1,85 @@
+package org.logan.kernel.agent.gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.logan.kernel.agent.AgentHttpClient;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.MessageDispatcher;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.protocol.codec.EnvelopeCodec;
+import org.logan.protocol.codec.WireFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Picks the gateway for kernel-hosted agents: in-process by default, HTTP when
+ * {@code kernel.gateway.mode=http} (e.g. agents reporting to a kernel behind a load balancer).
+ */
+@Component
+public class KernelGatewayFactory {
+    private final MessageDispatcher dispatcher;
+    private final SessionRegistry sessions;
+    private final AgentRegistry registry;
+    private final ObjectMapper mapper;
+    private final AgentHttpClient http;
+
+    @Value("${kernel.gateway.mode:local}")
+    private String mode;
+
+    // Older -Dkernel.url / -Dkernel.wire-format settings still apply to the HTTP gateway
+    @Value("${kernel.gateway.url:${kernel.url:http://localhost:8080}}")
+    private String kernelUrl;
+
+    @Value("${kernel.gateway.wire-format:${kernel.wire-format:smile}}")
+    private String wireFormat;
+
+    @Value("${kernel.wire-compression-threshold:" + EnvelopeCodec.DEFAULT_COMPRESSION_THRESHOLD + "}")
+    private int compressionThreshold;
+
+    @Value("${kernel.batch.agent-max-envelopes:64}")
+    private int maxBatch;
+
+    @Value("${kernel.batch.agent-linger-ms:20}")
+    private long lingerMs;
+
+    @Value("${kernel.gateway.outbox.dir:}")
+    private String outboxDir;
+
+    @Value("${kernel.gateway.outbox.capacity:10000}")
+    private int outboxCapacity;
+
+    @Value("${kernel.gateway.outbox.max-attempts:8}")
+    private int outboxMaxAttempts;
+
+    @Value("${kernel.gateway.outbox.backoff-base-ms:200}")
+    private long backoffBaseMs;
+
+    @Value("${kernel.gateway.outbox.backoff-cap-ms:10000}")
+    private long backoffCapMs;
+
+    public KernelGatewayFactory(MessageDispatcher dispatcher, SessionRegistry sessions,
+                                AgentRegistry registry, ObjectMapper mapper, AgentHttpClient http) {
+        this.dispatcher = dispatcher;
+        this.sessions = sessions;
+        this.registry = registry;
+        this.mapper = mapper;
+        this.http = http;
+    }
+
+    public KernelGateway forAgent(String agentId) {
+        if ("http".equalsIgnoreCase(mode)) {
+            // One pool (and one h2 connection) to the kernel for every agent, not a client per agent
+            return new HttpKernelGateway(agentId, kernelUrl, http.client(), mapper, new EnvelopeCodec(compressionThreshold),
+                    WireFormat.fromName(wireFormat), maxBatch, lingerMs);
+        }
+        return new LocalKernelGateway(agentId, dispatcher, sessions, registry, delivery -> outbox(agentId, delivery));
+    }
+
+    private EnvelopeOutbox outbox(String agentId, EnvelopeOutbox.Delivery delivery) {
+        Path journal = outboxDir == null || outboxDir.isBlank() ? null
+                : Path.of(outboxDir, agentId.replaceAll("[^A-Za-z0-9._-]", "_") + ".outbox.ndjson");
+        return new EnvelopeOutbox("kernel-outbox-" + agentId, delivery, mapper, journal, outboxCapacity,
+                outboxMaxAttempts, backoffBaseMs, backoffCapMs);
+    }
+}
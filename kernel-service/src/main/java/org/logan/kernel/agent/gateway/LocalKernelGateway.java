@@ -0,0 +1,90 @@
+package org.logan.kernel.agent.gateway;
+
+import org.logan.kernel.agent.Agent;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.DispatchContext;
+import org.logan.kernel.dispatch.MessageDispatcher;
+import org.logan.kernel.dispatch.MessageType;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.http.ResponseEntity;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * 🔁 In-process gateway for agents hosted in the kernel JVM.
+ *
+ * Envelopes are handed to {@link MessageDispatcher#dispatchLocal} from the agent's
+ * {@link EnvelopeOutbox}, so they keep submission order and never run on the agent's mailbox
+ * thread, just like the HTTP path, minus Tomcat, serialization and the loopback socket.
+ * Failures, 5xx and 429 answers are retried; other non-2xx answers are final. A 429 for a
+ * LOW-priority type is final too: the kernel is shedding exactly those, and retrying them in
+ * place would hold up the envelopes queued behind.
+ */
+public class LocalKernelGateway implements KernelGateway {
+    private static final DispatchContext CTX = new DispatchContext(null);
+
+    private final String agentId;
+    private final MessageDispatcher dispatcher;
+    private final SessionRegistry sessions;
+    private final AgentRegistry registry;
+    private final EnvelopeOutbox outbox;
+
+    public LocalKernelGateway(String agentId, MessageDispatcher dispatcher, SessionRegistry sessions,
+                              AgentRegistry registry, Function<EnvelopeOutbox.Delivery, EnvelopeOutbox> outboxes) {
+        this.agentId = agentId;
+        this.dispatcher = dispatcher;
+        this.sessions = sessions;
+        this.registry = registry;
+        this.outbox = outboxes.apply(this::deliver);
+    }
+
+    @Override
+    public void send(MessageEnvelope<?> envelope, boolean urgent) {
+        outbox.submit(envelope);
+    }
+
+    private EnvelopeOutbox.Result deliver(MessageEnvelope<?> envelope) throws Exception {
+        ResponseEntity<?> resp = dispatcher.dispatchLocal(envelope, CTX);
+        int status = resp.getStatusCode().value();
+        if (resp.getStatusCode().is2xxSuccessful()) return EnvelopeOutbox.Result.DONE;
+        if (status == 429 && sheddable(envelope)) {
+            System.err.printf("⚠️ [%s] Kernel shed %s (429), dropping it%n", agentId, envelope.getType());
+            return EnvelopeOutbox.Result.DROPPED;
+        }
+        if (status == 429 || status >= 500) return EnvelopeOutbox.Result.RETRY;
+        System.err.printf("⚠️ [%s] Kernel answered %d for %s: %s%n", agentId, status, envelope.getType(), resp.getBody());
+        return EnvelopeOutbox.Result.DONE;
+    }
+
+    /** LOW-priority types, which the kernel sheds under load; a 429 for them is final. */
+    static boolean sheddable(MessageEnvelope<?> envelope) {
+        MessageType type = MessageType.fromWire(envelope.getType());
+        return type != null && type.priority() == MessageType.Priority.LOW;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> registerWaiter(String sessionId, String waitedAgentId) {
+        sessions.registerAgentWaiter(sessionId, waitedAgentId, new CompletableFuture<>());
+        System.out.printf("📡 [%s] Registered waiter for %s (in-process)%n", agentId, waitedAgentId);
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, String>> listAgents() {
+        Map<String, String> agents = new LinkedHashMap<>();
+        for (String id : registry.listAgentIds()) {
+            Agent agent = registry.getAgent(id);
+            if (agent != null) agents.put(id, agent.getEndpoint());
+        }
+        return CompletableFuture.completedFuture(agents);
+    }
+
+    @Override
+    public void close() {
+        outbox.close();
+    }
+}
@@ -1,9 +1,6 @@
 package org.logan.kernel.config;
 
-import org.logan.kernel.agent.Agent;
-import org.logan.kernel.agent.AgentFactory;
-import org.logan.kernel.agent.AgentRegistry;
-import org.logan.kernel.persistence.AgentEntity;
+import org.logan.kernel.agent.AgentRehydrator;
 import org.logan.kernel.persistence.AgentPersistenceService;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
@@ -12,24 +9,12 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class PersistenceBootstrap {
 
+    // ♻️ Agents come back in the background; envelopes for them are buffered until they do
     @Bean
     public CommandLineRunner loadPersistedAgents(AgentPersistenceService persistence,
-                                                 AgentFactory factory,
-                                                 AgentRegistry registry) {
-        return args -> {
-            for (AgentEntity e : persistence.loadActive()) {
-                try {
-                    Agent agent = factory.rehydrateAgent(
-                            e.getAgentId(),
-                            e.getAgentType(),
-                            e.getEndpoint()
-                    );
-                    registry.registerAgent(agent);
-                    System.out.println("♻️ Rehydrated agent: " + e.getAgentId() + " (" + e.getAgentType() + ")");
-                } catch (Exception ex) {
-                    System.out.println("❌ Failed to rehydrate agent " + e.getAgentId() + ": " + ex.getMessage());
-                }
-            }
-        };
+                                                 AgentRehydrator rehydrator) {
+        return args -> rehydrator.rehydrateAll("persisted", persistence.loadActive().stream()
+                .map(e -> new AgentRehydrator.Target(e.getAgentId(), e.getAgentType(), e.getEndpoint()))
+                .toList());
     }
 }
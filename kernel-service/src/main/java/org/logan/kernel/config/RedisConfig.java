@@ -1,12 +1,17 @@
 package org.logan.kernel.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.MapRecord;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
 
 @Configuration
 public class RedisConfig {
@@ -21,10 +26,17 @@ public class RedisConfig {
         return template;
     }
 
+    // ✅ Polls the per-agent envelope streams for this kernel's consumer group
     @Bean
-    public RedisMessageListenerContainer redisContainer(RedisConnectionFactory connectionFactory) {
-        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
-        container.setConnectionFactory(connectionFactory);
-        return container;
+    public StreamMessageListenerContainer<String, MapRecord<String, String, String>> streamContainer(
+            RedisConnectionFactory connectionFactory,
+            @Value("${kernel.streams.poll-timeout-ms:1000}") long pollTimeoutMs,
+            @Value("${kernel.streams.read-batch-size:100}") int readBatchSize) {
+        var options = StreamMessageListenerContainer.StreamMessageListenerContainerOptions.builder()
+                .pollTimeout(Duration.ofMillis(pollTimeoutMs))
+                .batchSize(readBatchSize)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        return StreamMessageListenerContainer.create(connectionFactory, options);
     }
 }
@@ -0,0 +1,63 @@
+package org.logan.kernel.config;
+
+import org.logan.protocol.codec.EnvelopeCodec;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Binary envelope support: {@code application/x-jackson-smile} request/response bodies,
+ * optionally gzip-encoded. JSON stays first in the converter list, so browsers and
+ * other callers that don't ask for Smile keep getting JSON.
+ */
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(c -> c instanceof MappingJackson2SmileHttpMessageConverter);
+        converters.add(new GzipAwareSmileConverter(new EnvelopeCodec()));
+    }
+
+    /** Smile converter that also understands {@code Content-Encoding: gzip} request bodies. */
+    static class GzipAwareSmileConverter extends MappingJackson2SmileHttpMessageConverter {
+        GzipAwareSmileConverter(EnvelopeCodec codec) {
+            super(codec.smileMapper());
+        }
+
+        @Override
+        public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+                throws IOException, HttpMessageNotReadableException {
+            return super.read(type, contextClass, decompressing(inputMessage));
+        }
+
+        @Override
+        protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+                throws IOException, HttpMessageNotReadableException {
+            return super.readInternal(clazz, decompressing(inputMessage));
+        }
+
+        private static HttpInputMessage decompressing(HttpInputMessage message) throws IOException {
+            String encoding = message.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+            if (!EnvelopeCodec.GZIP.equalsIgnoreCase(encoding)) return message;
+            InputStream body = EnvelopeCodec.decompressing(message.getBody(), encoding);
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(message.getHeaders());
+            headers.remove(HttpHeaders.CONTENT_ENCODING);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            return new HttpInputMessage() {
+                @Override public InputStream getBody() { return body; }
+                @Override public HttpHeaders getHeaders() { return headers; }
+            };
+        }
+    }
+}
@@ -3,9 +3,13 @@ package org.logan.kernel.controller;
 import org.logan.kernel.agent.Agent;
 import org.logan.kernel.agent.AgentFactory;
 import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.tools.AgentToolCatalog;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -16,13 +20,19 @@ public class AgentController {
 
     private final AgentFactory factory;
     private final AgentRegistry registry;
+    private final AgentToolCatalog toolCatalog;
 
-    public AgentController(AgentFactory factory, AgentRegistry registry) {
+    @Value("${kernel.agent-pool.bulk-max-agents:100}")
+    private int bulkMaxAgents;
+
+    public AgentController(AgentFactory factory, AgentRegistry registry, AgentToolCatalog toolCatalog) {
         this.factory = factory;
         this.registry = registry;
+        this.toolCatalog = toolCatalog;
     }
 
-    // POST /agents -> spawn a new agent
+    // POST /agents -> spawn a new agent (a warm pooled process when one is idle)
+    // "waitReady": "true" answers only once the agent passed its health check
     @PostMapping
     public ResponseEntity<?> createAgent(@RequestBody Map<String, String> body) {
         String type = body.get("type");
@@ -32,6 +42,14 @@ public class AgentController {
         }
         try {
             Agent agent = factory.createAgent(id, type);
+            if (Boolean.parseBoolean(body.get("waitReady"))) {
+                return ResponseEntity.ok(Map.of(
+                        "ok", true,
+                        "agentId", agent.getId(),
+                        "endpoint", agent.getEndpoint(),
+                        "ready", factory.awaitReady(agent)
+                ));
+            }
             return ResponseEntity.ok(Map.of(
                     "ok", true,
                     "agentId", agent.getId(),
@@ -43,6 +61,40 @@ public class AgentController {
         }
     }
 
+    // POST /agents/bulk {"type":"BEDROCK","ids":[...]} or {"type":"BEDROCK","count":N}, optional "waitReady"
+    // -> every agent created in parallel; with waitReady (default) each result says if it is ready
+    @PostMapping("/bulk")
+    public ResponseEntity<?> createAgents(@RequestBody Map<String, Object> body) {
+        String type = (String) body.get("type");
+        if (type == null) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "message", "type required"));
+        }
+        List<String> ids = new ArrayList<>();
+        if (body.get("ids") instanceof List<?> requested) {
+            requested.forEach(i -> ids.add(i == null ? null : i.toString()));
+        } else if (body.get("count") instanceof Number count) {
+            for (int i = 0; i < count.intValue(); i++) ids.add(null);   // generated ids
+        }
+        if (ids.isEmpty() || ids.size() > bulkMaxAgents) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false,
+                    "message", "ids or count required, at most " + bulkMaxAgents));
+        }
+        boolean waitReady = !Boolean.FALSE.equals(body.get("waitReady"));
+
+        List<AgentFactory.Spawned> spawned = factory.createAgents(ids, type, waitReady);
+        List<Map<String, Object>> agents = spawned.stream().map(s -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("agentId", s.agentId());
+            item.put("ok", s.error() == null);
+            if (s.endpoint() != null) item.put("endpoint", s.endpoint());
+            if (waitReady && s.error() == null) item.put("ready", s.ready());
+            if (s.error() != null) item.put("error", s.error());
+            return item;
+        }).toList();
+        boolean allOk = spawned.stream().allMatch(s -> s.error() == null && (!waitReady || s.ready()));
+        return ResponseEntity.ok(Map.of("ok", allOk, "agents", agents));
+    }
+
     // POST /agents/spawn-orchestrator
     @PostMapping("/spawn-orchestrator")
     public ResponseEntity<?> spawnOrchestrator(@RequestBody(required = false) Map<String, String> body) {
@@ -70,7 +122,8 @@ public class AgentController {
                     return Map.<String, Object>of(
                             "agentId", agent.getId(),
                             "type", agent.getType(),
-                            "endpoint", agent.getEndpoint()
+                            "endpoint", agent.getEndpoint(),
+                            "mailboxDepth", registry.getMailboxDepth(id)
                     );
                 })
                 .collect(Collectors.toList());
@@ -78,4 +131,30 @@ public class AgentController {
         // ✅ Always return a list (even if empty)
         return ResponseEntity.ok(Map.of("ok", true, "agents", agents));
     }
+
+    // GET /agents/mailboxes -> per-agent mailbox depth and counters
+    @GetMapping("/mailboxes")
+    public ResponseEntity<?> mailboxes() {
+        return ResponseEntity.ok(Map.of("ok", true, "mailboxes", registry.mailboxStats()));
+    }
+
+    // GET /agents/tools -> cached tool catalog; ETag is the catalog version
+    @GetMapping("/tools")
+    public ResponseEntity<?> tools(@RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        AgentToolCatalog.Snapshot snap = toolCatalog.snapshot();
+        String etag = "\"" + snap.version() + "\"";
+        if (etag.equals(ifNoneMatch)) return ResponseEntity.status(304).eTag(etag).build();
+        return ResponseEntity.ok().eTag(etag)
+                .body(Map.of("ok", true, "version", snap.version(), "tools", snap.tools()));
+    }
+
+    // POST /agents/{agentId}/tools/changed -> pushed by an agent after a tool (un)registers
+    @PostMapping("/{agentId}/tools/changed")
+    public ResponseEntity<?> toolsChanged(@PathVariable String agentId) {
+        if (registry.getAgent(agentId) == null) {
+            return ResponseEntity.status(404).body(Map.of("ok", false, "message", "Unknown agent: " + agentId));
+        }
+        toolCatalog.invalidate(agentId);
+        return ResponseEntity.accepted().body(Map.of("ok", true, "agentId", agentId));
+    }
 }
@@ -0,0 +1,102 @@
+package org.logan.kernel.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.logan.kernel.goal.GoalService;
+import org.logan.kernel.persistence.GoalEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/goals")
+public class GoalController {
+    private static final long MAX_WAIT_SECONDS = 60L;
+
+    private final GoalService goals;
+    private final ObjectMapper mapper;
+
+    public GoalController(GoalService goals, ObjectMapper mapper) {
+        this.goals = goals;
+        this.mapper = mapper;
+    }
+
+    // POST /goals -> 202 with goal id; result via GET /goals/{id}, long-poll or the SSE stream
+    @PostMapping
+    public ResponseEntity<?> submitGoal(@RequestBody Map<String, Object> body) {
+        String message = (String) body.get("message");
+        if (message == null || message.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "error", "message required"));
+        }
+        try {
+            GoalEntity goal = goals.submit(
+                    (String) body.get("agentId"),
+                    (String) body.get("sessionId"),
+                    message,
+                    (String) body.getOrDefault("senderId", "user"));
+            return ResponseEntity.accepted()
+                    .location(URI.create("/goals/" + goal.getId()))
+                    .body(Map.of(
+                            "ok", true,
+                            "goalId", goal.getId(),
+                            "sessionId", goal.getCorrelationId(),
+                            "status", goal.getStatus()
+                    ));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "5")
+                    .body(Map.of("ok", false, "error", e.getMessage()));
+        }
+    }
+
+    // GET /goals/{id}?waitSeconds=N -> current state, or long-poll up to N seconds for completion
+    @GetMapping("/{goalId}")
+    public DeferredResult<ResponseEntity<?>> getGoal(@PathVariable long goalId,
+                                                     @RequestParam(defaultValue = "0") long waitSeconds) {
+        long wait = Math.min(Math.max(waitSeconds, 0), MAX_WAIT_SECONDS);
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(wait * 1000);
+
+        GoalEntity goal = goals.find(goalId).orElse(null);
+        if (goal == null) {
+            result.setResult(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("ok", false, "error", "goal not found")));
+            return result;
+        }
+        if (goal.isTerminal() || wait == 0) {
+            result.setResult(ResponseEntity.ok(view(goal)));
+            return result;
+        }
+
+        result.onTimeout(() -> result.setResult(ResponseEntity.ok(
+                goals.find(goalId).map(this::view).orElse(Map.of("ok", false)))));
+        goals.awaitCompletion(goalId).whenComplete((done, err) -> {
+            if (err == null) result.setResult(ResponseEntity.ok(view(done)));
+        });
+        return result;
+    }
+
+    private Map<String, Object> view(GoalEntity goal) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("ok", true);
+        out.put("goalId", goal.getId());
+        out.put("sessionId", goal.getCorrelationId());
+        out.put("agentId", goal.getAgentId());
+        out.put("status", goal.getStatus());
+        out.put("description", goal.getDescription());
+        out.put("createdAt", goal.getCreatedAt());
+        out.put("completedAt", goal.getCompletedAt());
+        if (goal.getResult() != null) {
+            try {
+                out.put("result", mapper.readValue(goal.getResult(), Map.class));
+            } catch (Exception e) {
+                out.put("result", goal.getResult());
+            }
+        }
+        return out;
+    }
+}
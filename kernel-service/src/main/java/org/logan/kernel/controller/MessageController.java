@@ -1,364 +1,102 @@
 package org.logan.kernel.controller;
 
-import jakarta.annotation.PostConstruct;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import jakarta.servlet.http.HttpServletRequest;
 import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.DispatchContext;
+import org.logan.kernel.dispatch.KernelEvents;
+import org.logan.kernel.dispatch.MessageDispatcher;
+import org.logan.kernel.dispatch.MessageType;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.kernel.sse.SseBroadcaster;
 import org.logan.protocol.MessageEnvelope;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/messages")
 public class MessageController {
 
     private final AgentRegistry registry;
-    private final ConcurrentHashMap<String, PendingSession> pendingSessions = new ConcurrentHashMap<>();
-    private final Map<String, Map<String, CompletableFuture<Map<String, Object>>>> agentWaiters = new ConcurrentHashMap<>();
-    private final Map<String, SseEmitter> activeEmitters = new ConcurrentHashMap<>();
+    private final SessionRegistry sessions;
+    private final SseBroadcaster sse;
+    private final MessageDispatcher dispatcher;
 
-    private static final ExecutorService MSG_EXECUTOR = Executors.newCachedThreadPool();
-    private static final long WAIT_SECONDS = 60L;
+    @Value("${kernel.batch.max-envelopes:500}")
+    private int maxBatchEnvelopes;
 
-    public MessageController(AgentRegistry registry) {
+    public MessageController(AgentRegistry registry,
+                             SessionRegistry sessions,
+                             SseBroadcaster sse,
+                             MessageDispatcher dispatcher) {
         this.registry = registry;
+        this.sessions = sessions;
+        this.sse = sse;
+        this.dispatcher = dispatcher;
     }
 
     // --- SSE Stream Endpoint ---
+    // ?sessionId=a,b narrows the stream to those sessions (heartbeats still arrive).
+    // Reconnects resume from Last-Event-ID (header, or ?lastEventId= for clients that can't set it).
     @GetMapping("/stream")
-    public SseEmitter streamEvents() {
-        SseEmitter emitter = new SseEmitter(0L);
-        String emitterId = UUID.randomUUID().toString();
-        activeEmitters.put(emitterId, emitter);
-
-        System.out.println("🔌 Client connected to /messages/stream: " + emitterId);
-
-        emitter.onCompletion(() -> {
-            activeEmitters.remove(emitterId);
-            System.out.println("✅ SSE completed: " + emitterId);
-        });
-        emitter.onTimeout(() -> {
-            activeEmitters.remove(emitterId);
-            emitter.complete();
-            System.out.println("⚠️ SSE timeout: " + emitterId);
-        });
-        emitter.onError((e) -> {
-            System.err.println("❌ SSE error: " + e.getMessage());
-            activeEmitters.remove(emitterId);
-        });
-
-        return emitter;
-    }
-
-    // --- Periodic Heartbeat ---
-    @PostConstruct
-    public void startSseHeartbeat() {
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(() -> {
-            Map<String, Object> heartbeat = Map.of(
-                    "timestamp", new Date().toString(),
-                    "type", "heartbeat",
-                    "message", "Orchestrator is listening"
-            );
-            broadcastSse(heartbeat);
-        }, 60, 60, TimeUnit.SECONDS);
+    public SseEmitter streamEvents(@RequestParam(value = "sessionId", required = false) List<String> sessionIds,
+                                   @RequestHeader(value = "Last-Event-ID", required = false) String lastEventHeader,
+                                   @RequestParam(value = "lastEventId", required = false) String lastEventParam) {
+        String raw = lastEventHeader != null ? lastEventHeader : lastEventParam;
+        Long lastEventId = null;
+        if (raw != null && !raw.isBlank()) {
+            try {
+                lastEventId = Long.parseLong(raw.trim());
+            } catch (NumberFormatException e) {
+                System.out.println("⚠️ Ignoring malformed Last-Event-ID: " + raw);
+            }
+        }
+        return sse.subscribe(sessionIds, lastEventId);
     }
 
     // --- Handle Incoming Messages ---
+    // The body is parsed by MessageDispatcher itself so payloads bind straight into the
+    // handler's type; typed handlers live in org.logan.kernel.dispatch.handlers
     @PostMapping
-    public ResponseEntity<?> postMessage(@RequestBody MessageEnvelope<?> envelope) {
+    public ResponseEntity<?> postMessage(HttpServletRequest request,
+                                         @RequestParam(value = "wait", required = false) Boolean wait) {
         try {
-            System.out.printf("📩 Message received: from=%s → to=%s type=%s%n",
-                    envelope.getSenderId(), envelope.getRecipientId(), envelope.getType());
-
-            String type = (envelope.getType() == null ? "" : envelope.getType().toLowerCase());
-            Map<String, Object> payload = (Map<String, Object>) envelope.getPayload();
-
-            switch (type) {
-                // 🧠 Reasoning
-                case "agent_status_update" -> {
-                    String sessionId = extractSessionId(payload);
-                    String agentId = (String) payload.getOrDefault("agentId", envelope.getSenderId());
-                    PendingSession ps = pendingSessions.computeIfAbsent(sessionId, k -> new PendingSession());
-
-                    Map<String, Object> event = new LinkedHashMap<>();
-                    event.put("timestamp", new Date().toString());
-                    event.put("type", "reasoning");
-                    event.put("phase", payload.get("phase"));
-                    event.put("message", payload.get("message"));
-                    event.put("agentId", agentId);
-                    ps.addEvent(event);
-                    ps.addAudit(event);
-                    broadcastSse(event);
-
-                    System.out.printf("🧠 [%s] Reasoning (%s) logged for session=%s%n",
-                            agentId, payload.get("phase"), sessionId);
-                    return ResponseEntity.ok(Map.of(
-                            "ok", true,
-                            "received", "agent_status_update",
-                            "sessionId", sessionId,
-                            "agentId", agentId
-                    ));
-                }
-
-                // 📋 Register agent plan
-                case "register_agent_plan" -> {
-                    String targetAgent = (String) payload.get("targetAgent");
-                    String sessionId = (String) payload.get("sessionId");
-                    String fromAgent = (String) payload.getOrDefault("fromAgent", envelope.getSenderId());
-
-                    if (targetAgent == null)
-                        return ResponseEntity.badRequest().body(Map.of("ok", false, "error", "Missing targetAgent"));
-
-                    PendingSession ps = pendingSessions.computeIfAbsent(sessionId, k -> new PendingSession());
-                    ps.registerAgent(targetAgent);
-                    Map<String, Object> event = Map.of(
-                            "timestamp", new Date().toString(),
-                            "type", "register_agent_plan",
-                            "fromAgent", fromAgent,
-                            "targetAgent", targetAgent,
-                            "sessionId", sessionId
-                    );
-//                    broadcastSse(event);
-
-                    System.out.printf("📋 Registered %s in session=%s%n", targetAgent, sessionId);
-                    return ResponseEntity.ok(Map.of("ok", true));
-                }
-
-                // 🤝 Delegation
-                case "delegation" -> {
-                    String targetAgent = (String) payload.get("targetAgent");
-                    String sessionId = (String) payload.get("sessionId");
-                    String msg = (String) payload.get("message");
-                    String fromAgent = (String) payload.getOrDefault("fromAgent", envelope.getSenderId());
-
-                    if (targetAgent == null)
-                        return ResponseEntity.badRequest().body(Map.of("ok", false, "error", "Missing targetAgent"));
-
-                    PendingSession ps = pendingSessions.computeIfAbsent(sessionId, k -> new PendingSession());
-                    ps.registerAgent(targetAgent);
-
-                    Map<String, Object> event = Map.of(
-                            "timestamp", new Date().toString(),
-                            "type", "delegation",
-                            "agentId", fromAgent,
-                            "targetAgent", targetAgent,
-                            "message", msg,
-                            "sessionId", sessionId
-                    );
-                    ps.addAudit(event);
-                    broadcastSse(event);
-
-                    MSG_EXECUTOR.submit(() -> {
-                        try {
-                            if (registry.hasAgent(targetAgent)) {
-                                MessageEnvelope<Map<String, Object>> delegatedChat = new MessageEnvelope<>();
-                                delegatedChat.setSenderId(fromAgent);
-                                delegatedChat.setRecipientId(targetAgent);
-                                delegatedChat.setType("chat");
-                                delegatedChat.setPayload(Map.of("sessionId", sessionId, "message", msg));
-                                registry.routeMessage(delegatedChat);
-                            }
-                        } catch (Exception e) {
-                            System.err.printf("❌ [async] Delegation failed for %s → %s: %s%n",
-                                    fromAgent, targetAgent, e.getMessage());
-                        }
-                    });
-
-                    return ResponseEntity.ok(Map.of(
-                            "ok", true,
-                            "status", "delegation_executed",
-                            "targetAgent", targetAgent,
-                            "sessionId", sessionId
-                    ));
-                }
-
-                // 🧰 Tool events
-                case "tool_invocation", "tool_result" -> {
-                    String sessionId = extractSessionId(payload);
-                    String agentId = (String) payload.getOrDefault("agentId", envelope.getSenderId());
-                    PendingSession ps = pendingSessions.computeIfAbsent(sessionId, k -> new PendingSession());
-
-                    Map<String, Object> event = new LinkedHashMap<>(payload);
-                    event.put("timestamp", new Date().toString());
-                    event.put("type", type);
-                    event.put("agentId", agentId);
-                    event.put("message","Executing tool: "+payload.get("tool"));
-                    ps.addAudit(event);
-//                  broadcastSse(event);
-
-                    System.out.printf("🧰 [%s] %s recorded for session=%s%n", agentId, type, sessionId);
-                    return ResponseEntity.ok(Map.of("ok", true));
-                }
-
-                // 💬 User chat
-                case "chat" -> {
-                    String sessionId = extractSessionId(payload);
-                    PendingSession ps = new PendingSession();
-                    pendingSessions.put(sessionId, ps);
-
-                    String sender = envelope.getSenderId() != null ? envelope.getSenderId() : "user";
-
-                    Map<String, Object> event = Map.of(
-                            "timestamp", new Date().toString(),
-                            "type", "user_input",
-                            "agentId", sender,
-                            "message", payload.get("message"),
-                            "sessionId", sessionId
-                    );
-                    ps.addAudit(event);
-                    broadcastSse(event);
-
-                    registry.routeMessage(envelope);
-                    System.out.printf("💬 Waiting for chat_result (session=%s, timeout=%ds)%n", sessionId, WAIT_SECONDS);
-
-                    Map<String, Object> result;
-                    try {
-                        result = ps.waitForCompletion(WAIT_SECONDS, TimeUnit.SECONDS);
-                    } catch (TimeoutException te) {
-                        pendingSessions.remove(sessionId);
-                        result = Map.of(
-                                "ok", false,
-                                "error", "timeout waiting for chat_result",
-                                "sessionId", sessionId,
-                                "events", ps.getEvents(),
-                                "audit", ps.getAudit()
-                        );
-                    }
-                    return ResponseEntity.ok(result);
-                }
-
-                // 🏁 Chat results
-                case "chat_result" -> {
-                    String sessionId = extractSessionId(payload);
-                    String agentId = (String) payload.getOrDefault("agentId", envelope.getSenderId());
-                    String recipient = envelope.getRecipientId() != null ? envelope.getRecipientId() : "";
-
-                    String sender = envelope.getSenderId() != null ? envelope.getSenderId() : agentId;
-                    if (sender != null && sender.equalsIgnoreCase(recipient)) {
-                        System.out.printf("🚫 Skipped forwarding chat_result loopback (%s → %s)%n", sender, recipient);
-                        return ResponseEntity.ok(Map.of("ok", true, "skipped", true));
-                    }
-
-                    PendingSession ps = pendingSessions.get(sessionId);
-                    if (ps == null) {
-                        System.out.printf("⚠️ [%s] chat_result for unknown session=%s%n", agentId, sessionId);
-                        return ResponseEntity.ok(Map.of("ok", false, "unknown_session", sessionId));
-                    }
-
-                    ps.markAgentCompleted(agentId);
-                    completeAgentWaiter(sessionId, agentId, payload);
-
-                    // 🔁 Route back to orchestrator if not already orchestrator
-                    if (!"orchestrator-agent".equalsIgnoreCase(agentId)) {
-                        try {
-                            MessageEnvelope<Map<String, Object>> orchestratorMsg = new MessageEnvelope<>();
-                            orchestratorMsg.setSenderId(agentId);
-                            orchestratorMsg.setRecipientId("orchestrator-agent");
-                            orchestratorMsg.setType("chat_result");
-                            orchestratorMsg.setPayload(payload);
-
-                            if (registry.hasAgent("orchestrator-agent")) {
-                                registry.routeMessage(orchestratorMsg);
-                                System.out.printf("🔁 Routed chat_result of %s → orchestrator-agent (session=%s)%n",
-                                        agentId, sessionId);
-                            } else {
-                                System.err.println("⚠️ orchestrator-agent not found in registry");
-                            }
-                        } catch (Exception e) {
-                            System.err.printf("⚠️ Failed routing back to orchestrator-agent: %s%n", e.getMessage());
-                        }
-                    }
-
-                    ps.addAudit(Map.of(
-                            "timestamp", new Date().toString(),
-                            "type", "chat_result",
-                            "agentId", agentId,
-                            "status", "completed",
-                            "sessionId", sessionId
-                    ));
-                    broadcastSse(Map.of(
-                            "timestamp", new Date().toString(),
-                            "type", "chat_result",
-                            "agentId", agentId,
-                            "status", "completed",
-                            "sessionId", sessionId,
-                            "message", String.format("✅ [%s] Completed session=%s (agents left=%d)",
-                                    agentId, sessionId, ps.getRemainingAgents().size())
-                    ));
-
-
-                    System.out.printf("✅ [%s] Completed session=%s (agents left=%d)%n",
-                            agentId, sessionId, ps.getRemainingAgents().size());
-
-                    // ✅ Only finalize session if the orchestrator sends final chat_result
-                    if ("orchestrator-agent".equalsIgnoreCase(agentId)) {
-                        pendingSessions.remove(sessionId);
-                        Map<String, Object> aggregated = new LinkedHashMap<>();
-                        aggregated.put("ok", true);
-                        aggregated.put("sessionId", sessionId);
-                        aggregated.put("message", ps.getEvents());
-                        aggregated.put("audit", ps.getAudit());
-                        aggregated.put("completedAgents", ps.getCompletedAgents());
-                        aggregated.put("result", payload);
-                        ps.complete(aggregated);
-                        broadcastSse(aggregated);
-                        System.out.printf("🏁 Orchestrator finalized session=%s%n", sessionId);
-                    }
-
-                    return ResponseEntity.ok(Map.of(
-                            "ok", true,
-                            "status", "chat_result_received",
-                            "sessionId", sessionId,
-                            "agentId", agentId
-                    ));
-                }
-
-                case "orchestrator_wait" -> {
-                    String sessionId = extractSessionId(payload);
-                    String agentId = (String) payload.getOrDefault("agentId", "orchestrator-agent");
-                    String reason = (String) payload.getOrDefault("reason", "No reason provided");
-                    String message = (String) payload.getOrDefault("message", "");
-                    List<String> options = (List<String>) payload.getOrDefault(
-                            "options", List.of("retry", "skip", "abort"));
-
-                    PendingSession ps = pendingSessions.computeIfAbsent(sessionId, k -> new PendingSession());
-
-                    Map<String, Object> event = new LinkedHashMap<>();
-                    event.put("timestamp", new Date().toString());
-                    event.put("type", "orchestrator_wait");
-                    event.put("sessionId", sessionId);
-                    event.put("agentId", agentId);
-                    event.put("reason", reason);
-                    event.put("message", message);
-                    event.put("options", options);
-                    ps.addAudit(event);
-
-                    // 🔊 Notify all connected UIs
-                    broadcastSse(event);
-
-                    System.out.printf("⏸ [kernel] Orchestrator paused for session=%s (agent=%s, reason=%s)%n",
-                            sessionId, agentId, reason);
-
-                    return ResponseEntity.ok(Map.of(
-                            "ok", true,
-                            "status", "orchestrator_wait_broadcasted",
-                            "sessionId", sessionId
-                    ));
-                }
-
-                default -> {
-                    registry.routeMessage(envelope);
-                    return ResponseEntity.ok(Map.of("ok", true, "type", type));
-                }
-            }
+            return dispatcher.dispatch(request.getInputStream(), request.getContentType(),
+                    request.getHeader(HttpHeaders.CONTENT_ENCODING), new DispatchContext(wait));
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "error", String.valueOf(e.getMessage())));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("ok", false, "error", String.valueOf(e.getMessage())));
+        }
+    }
 
+    // --- Batched envelopes ---
+    // Agents coalesce status/tool/delegation traffic into ordered arrays; items are dispatched
+    // in array order and answered one result each, so a 429 on one item doesn't fail the rest
+    @PostMapping("/batch")
+    public ResponseEntity<?> postBatch(HttpServletRequest request,
+                                       @RequestParam(value = "wait", required = false) Boolean wait) {
+        try {
+            List<Map<String, Object>> results = dispatcher.dispatchBatch(request.getInputStream(),
+                    request.getContentType(), request.getHeader(HttpHeaders.CONTENT_ENCODING),
+                    new DispatchContext(wait), maxBatchEnvelopes);
+            boolean allOk = results.stream().allMatch(r -> ((Integer) r.get("status")) < 300);
+            return ResponseEntity.ok(Map.of("ok", allOk, "count", results.size(), "results", results));
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "error", String.valueOf(e.getMessage())));
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.internalServerError()
-                    .body(Map.of("ok", false, "error", e.getMessage()));
+                    .body(Map.of("ok", false, "error", String.valueOf(e.getMessage())));
         }
     }
 
@@ -373,7 +111,7 @@ public class MessageController {
                 return ResponseEntity.badRequest().body(Map.of("ok", false, "error", "Missing sessionId or agentId"));
 
             CompletableFuture<Map<String, Object>> waiter = new CompletableFuture<>();
-            registerAgentWaiter(sessionId, agentId, waiter);
+            sessions.registerAgentWaiter(sessionId, agentId, waiter);
 
             System.out.printf("📡 Registered waiter for session=%s agent=%s%n", sessionId, agentId);
             return ResponseEntity.ok(Map.of("ok", true, "sessionId", sessionId, "agentId", agentId));
@@ -393,44 +131,49 @@ public class MessageController {
             return ResponseEntity.badRequest().body(Map.of("ok", false, "error", "Missing sessionId or choice"));
         }
 
-        // 1️⃣ Complete kernel-side waiter for 'user'
         Map<String, Object> result = new LinkedHashMap<>();
         result.put("choice", choice);
         if (input != null) result.put("input", input);
-        completeAgentWaiter(sessionId, "user", result);
-
-        // 2️⃣ Notify all connected UI clients
-        Map<String, Object> sseEvent = new LinkedHashMap<>();
-        sseEvent.put("timestamp", new Date().toString());
-        sseEvent.put("type", "user_decision");
-        sseEvent.put("sessionId", sessionId);
-        sseEvent.put("choice", choice);
-        if (input != null) sseEvent.put("input", input);
-        broadcastSse(sseEvent);
 
-        // 3️⃣ Route the decision back to orchestrator-agent (mirror chat_result behavior)
+        // 1️⃣ Route the decision to orchestrator-agent first (mirror chat_result behavior): if it
+        // can't take it, answer 503 before anything else happened, so the client can simply retry
+        MessageEnvelope<Map<String, Object>> orchestratorMsg = new MessageEnvelope<>();
+        orchestratorMsg.setSenderId("user");
+        orchestratorMsg.setRecipientId("orchestrator-agent");
+        orchestratorMsg.setType(MessageType.USER_DECISION.wire());
+
+        // 🧩 Include sessionId (and the paused step, when the UI names it) in the routed payload
+        Map<String, Object> orchestratorPayload = new LinkedHashMap<>(result);
+        orchestratorPayload.put("sessionId", sessionId);
+        if (payload.get("stepId") != null) orchestratorPayload.put("stepId", payload.get("stepId"));
+        if (payload.get("agentId") != null) orchestratorPayload.put("agentId", payload.get("agentId"));
+        orchestratorMsg.setPayload(orchestratorPayload);
+
+        String failure = null;
         try {
-            MessageEnvelope<Map<String, Object>> orchestratorMsg = new MessageEnvelope<>();
-            orchestratorMsg.setSenderId("user");
-            orchestratorMsg.setRecipientId("orchestrator-agent");
-            orchestratorMsg.setType("user_decision");
-
-            // 🧩 Include sessionId in the routed payload
-            Map<String, Object> orchestratorPayload = new LinkedHashMap<>(result);
-            orchestratorPayload.put("sessionId", sessionId);
-
-            orchestratorMsg.setPayload(orchestratorPayload);
-
-            if (registry.hasAgent("orchestrator-agent")) {
-                registry.routeMessage(orchestratorMsg);
-                System.out.printf("🔁 Routed user decision → orchestrator-agent (session=%s, choice=%s)%n",
-                        sessionId, choice);
-            } else {
-                System.err.println("⚠️ orchestrator-agent not found in registry");
-            }
+            if (!registry.hasAgent("orchestrator-agent")) failure = "orchestrator-agent not available";
+            else if (!registry.routeMessage(orchestratorMsg)) failure = "orchestrator-agent mailbox full";
         } catch (Exception e) {
-            System.err.printf("⚠️ Failed routing user decision to orchestrator-agent: %s%n", e.getMessage());
+            failure = "routing failed: " + e.getMessage();
+        }
+        if (failure != null) {
+            System.err.printf("⚠️ User decision not routed (session=%s): %s%n", sessionId, failure);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "5")
+                    .body(Map.of("ok", false, "error", failure, "sessionId", sessionId));
         }
+        System.out.printf("🔁 Routed user decision → orchestrator-agent (session=%s, choice=%s)%n", sessionId, choice);
+
+        // 2️⃣ Complete kernel-side waiter for 'user'; the session's TTLs run again
+        sessions.completeAgentWaiter(sessionId, "user", result);
+        sessions.personResponded(sessionId);
+
+        // 3️⃣ Notify all connected UI clients
+        Map<String, Object> sseEvent = KernelEvents.event(MessageType.USER_DECISION);
+        sseEvent.put("sessionId", sessionId);
+        sseEvent.put("choice", choice);
+        if (input != null) sseEvent.put("input", input);
+        sse.broadcast(sseEvent);
 
         return ResponseEntity.ok(Map.of(
                 "ok", true,
@@ -439,78 +182,4 @@ public class MessageController {
                 "choice", choice
         ));
     }
-
-
-    // --- SSE Broadcast ---
-    private void broadcastSse(Map<String, Object> event) {
-        List<String> dead = new ArrayList<>();
-        activeEmitters.forEach((id, emitter) -> {
-            try {
-                emitter.send(SseEmitter.event().name("message").data(event));
-            } catch (Exception e) {
-                System.out.println("⚠️ [SSE] Removing dead emitter: " + id);
-                dead.add(id);
-            }
-        });
-        dead.forEach(activeEmitters::remove);
-    }
-
-    // --- Utility Methods ---
-    private String extractSessionId(Map<String, Object> payload) {
-        if (payload == null) return "default-session";
-        Object sid = payload.get("sessionId");
-        if (sid != null) return sid.toString();
-        if (payload.containsKey("result") && payload.get("result") instanceof Map<?, ?> inner)
-            return Optional.ofNullable(((Map<?, ?>) inner).get("sessionId")).map(Object::toString).orElse("default-session");
-        return "default-session";
-    }
-
-    // --- Async orchestration helpers ---
-    public void registerAgentWaiter(String sessionId, String agentId, CompletableFuture<Map<String, Object>> future) {
-        agentWaiters.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>())
-                .put(agentId, future);
-    }
-
-    public void completeAgentWaiter(String sessionId, String agentId, Map<String, Object> result) {
-        Optional.ofNullable(agentWaiters.get(sessionId))
-                .map(m -> m.remove(agentId))
-                .ifPresent(fut -> fut.complete(result));
-    }
-
-    // --- Pending Session Inner Class ---
-    private static class PendingSession {
-        private final CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
-        private final List<Map<String, Object>> events = Collections.synchronizedList(new ArrayList<>());
-        private final List<Map<String, Object>> audit = Collections.synchronizedList(new ArrayList<>());
-        private final Set<String> activeAgents = ConcurrentHashMap.newKeySet();
-        private final Set<String> completedAgents = ConcurrentHashMap.newKeySet();
-
-        public void registerAgent(String agentId) {
-            if (agentId != null) activeAgents.add(agentId);
-        }
-
-        public void markAgentCompleted(String agentId) {
-            completedAgents.add(agentId);
-            activeAgents.remove(agentId);
-        }
-
-        public boolean allAgentsCompleted() {
-            return activeAgents.isEmpty();
-        }
-
-        public Set<String> getRemainingAgents() { return new HashSet<>(activeAgents); }
-        public Set<String> getCompletedAgents() { return new HashSet<>(completedAgents); }
-        public void addEvent(Map<String, Object> event) { events.add(event); }
-        public void addAudit(Map<String, Object> event) { audit.add(event); }
-
-        public List<Map<String, Object>> getEvents() { return new ArrayList<>(events); }
-        public List<Map<String, Object>> getAudit() { return new ArrayList<>(audit); }
-
-        public void complete(Map<String, Object> result) { future.complete(result); }
-
-        public Map<String, Object> waitForCompletion(long timeout, TimeUnit unit)
-                throws TimeoutException, InterruptedException, ExecutionException {
-            return future.get(timeout, unit);
-        }
-    }
 }
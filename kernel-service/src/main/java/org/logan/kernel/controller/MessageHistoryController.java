@@ -0,0 +1,95 @@
+package org.logan.kernel.controller;
+
+import org.logan.kernel.persistence.MessageHistory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/messages/history")
+public class MessageHistoryController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final MessageHistory history;
+
+    public MessageHistoryController(MessageHistory history) {
+        this.history = history;
+    }
+
+    // GET /messages/history?sessionId=&agentId=&type=&from=&to=&fields=a,b&order=desc&limit=&cursor=
+    // -> { items, nextCursor }; pass nextCursor back as ?cursor= for the following page.
+    // from/to are ISO-8601 instants (to exclusive); fields=payload,... to include payloads.
+    @GetMapping
+    public ResponseEntity<?> page(@RequestParam(required = false) String sessionId,
+                                  @RequestParam(required = false) String agentId,
+                                  @RequestParam(required = false) String type,
+                                  @RequestParam(required = false) String from,
+                                  @RequestParam(required = false) String to,
+                                  @RequestParam(required = false) List<String> fields,
+                                  @RequestParam(defaultValue = "desc") String order,
+                                  @RequestParam(required = false) Integer limit,
+                                  @RequestParam(required = false) String cursor) {
+        try {
+            MessageHistory.Page page = history.page(filter(sessionId, agentId, type, from, to), fields,
+                    order(order), cursor, limit);
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("ok", true);
+            body.put("items", page.items());
+            body.put("nextCursor", page.nextCursor());
+            return ResponseEntity.ok(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    // GET /messages/history/export?<same filters> -> every matching row as NDJSON, streamed
+    @GetMapping("/export")
+    public ResponseEntity<?> export(@RequestParam(required = false) String sessionId,
+                                    @RequestParam(required = false) String agentId,
+                                    @RequestParam(required = false) String type,
+                                    @RequestParam(required = false) String from,
+                                    @RequestParam(required = false) String to,
+                                    @RequestParam(required = false) List<String> fields,
+                                    @RequestParam(defaultValue = "asc") String order) {
+        try {
+            MessageHistory.Filter filter = filter(sessionId, agentId, type, from, to);
+            MessageHistory.Order direction = order(order);
+            MessageHistory.checkFields(fields);   // before the 200 is committed
+            StreamingResponseBody body = out -> history.export(filter, fields, direction, out);
+            return ResponseEntity.ok().contentType(NDJSON).body(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    private static MessageHistory.Filter filter(String sessionId, String agentId, String type, String from, String to) {
+        return new MessageHistory.Filter(blankToNull(sessionId), blankToNull(agentId), blankToNull(type),
+                instant("from", from), instant("to", to));
+    }
+
+    private static MessageHistory.Order order(String order) {
+        if ("asc".equalsIgnoreCase(order)) return MessageHistory.Order.ASC;
+        if ("desc".equalsIgnoreCase(order)) return MessageHistory.Order.DESC;
+        throw new IllegalArgumentException("order must be asc or desc");
+    }
+
+    private static Instant instant(String name, String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be an ISO-8601 instant, e.g. 2026-10-01T00:00:00Z");
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
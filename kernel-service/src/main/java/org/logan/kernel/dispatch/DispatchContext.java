@@ -0,0 +1,9 @@
+package org.logan.kernel.dispatch;
+
+/**
+ * Request-level options passed alongside the envelope.
+ *
+ * @param waitForResult the {@code ?wait=} query parameter, or null when absent
+ */
+public record DispatchContext(Boolean waitForResult) {
+}
@@ -0,0 +1,85 @@
+package org.logan.kernel.dispatch;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.logan.protocol.MessageEnvelope;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.function.Function;
+
+/**
+ * Streaming envelope parser that binds the payload straight into the handler's payload type.
+ *
+ * Envelopes serialized by {@link MessageEnvelope} carry {@code type} before {@code payload},
+ * so the payload reader is known by the time the payload starts and no intermediate Map or
+ * tree is built. If a client sends the payload first, it is buffered as tokens and bound
+ * once the type is known. Works with any Jackson parser (JSON or Smile).
+ */
+public class EnvelopeReader {
+    private final ObjectReader instantReader;
+    private final Function<String, ObjectReader> payloadReaderFor;
+
+    /**
+     * @param payloadReaderFor resolves the reader for a wire type (including null/unknown types)
+     */
+    public EnvelopeReader(ObjectMapper mapper, Function<String, ObjectReader> payloadReaderFor) {
+        this.instantReader = mapper.readerFor(Instant.class);
+        this.payloadReaderFor = payloadReaderFor;
+    }
+
+    public MessageEnvelope<Object> read(JsonParser p) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("Envelope must be a JSON object");
+        }
+        return readObject(p);
+    }
+
+    /** Read one envelope whose START_OBJECT is the parser's current token (e.g. inside a batch array). */
+    public MessageEnvelope<Object> readObject(JsonParser p) throws IOException {
+        MessageEnvelope<Object> envelope = new MessageEnvelope<>();
+        TokenBuffer buffered = null;
+        boolean bound = false;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "type" -> envelope.setType(p.getValueAsString());
+                case "senderId" -> envelope.setSenderId(p.getValueAsString());
+                case "recipientId" -> envelope.setRecipientId(p.getValueAsString());
+                case "correlationId" -> envelope.setCorrelationId(p.getValueAsString());
+                case "signature" -> envelope.setSignature(p.getValueAsString());
+                case "timestamp" -> envelope.setTimestamp(value == JsonToken.VALUE_NULL ? null : instantReader.readValue(p));
+                case "payload" -> {
+                    if (value == JsonToken.VALUE_NULL) continue;
+                    if (envelope.getType() != null) {
+                        envelope.setPayload(payloadReaderFor.apply(envelope.getType()).readValue(p));
+                        bound = true;
+                    } else {
+                        buffered = new TokenBuffer(p);
+                        buffered.copyCurrentStructure(p);
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+
+        if (!bound) {
+            ObjectReader reader = payloadReaderFor.apply(envelope.getType());
+            if (buffered != null) {
+                try (JsonParser bp = buffered.asParser(p.getCodec())) {
+                    bp.nextToken();
+                    envelope.setPayload(reader.readValue(bp));
+                }
+            } else {
+                // No payload at all: handlers still get an (empty) instance of their type
+                envelope.setPayload(reader.readValue("{}"));
+            }
+        }
+        return envelope;
+    }
+}
@@ -0,0 +1,68 @@
+package org.logan.kernel.dispatch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 🔁 IdempotencyCache: remembers recently processed envelopes so a retried one is answered
+ * without being processed again.
+ *
+ * Keys are {@code senderId|type|correlationId}, kept in an LRU of {@code capacity} exact
+ * keys. A key is claimed before its envelope is handled and released again if handling
+ * fails or is rejected, so only envelopes that actually went through are deduplicated.
+ */
+@Component
+public class IdempotencyCache {
+    private final boolean enabled;
+    private final int capacity;
+    private final Map<String, Boolean> recent;
+    private final Counter duplicates;
+
+    public IdempotencyCache(@Value("${kernel.idempotency.enabled:true}") boolean enabled,
+                            @Value("${kernel.idempotency.capacity:100000}") int capacity,
+                            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.capacity = Math.max(1, capacity);
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > IdempotencyCache.this.capacity;
+            }
+        };
+        this.duplicates = meterRegistry.counter("kernel.idempotency.duplicates");
+    }
+
+    /** Key for an envelope, or null when it carries no correlationId and can't be deduplicated. */
+    public static String keyOf(String senderId, String type, String correlationId) {
+        if (correlationId == null || correlationId.isBlank()) return null;
+        return senderId + "|" + type + "|" + correlationId;
+    }
+
+    /**
+     * @return {@code true} if the key is new and now claimed; {@code false} for a replay
+     */
+    public boolean claim(String key) {
+        if (!enabled || key == null) return true;
+        synchronized (recent) {
+            // putIfAbsent also settles two concurrent claims of the same new key
+            if (recent.putIfAbsent(key, Boolean.TRUE) != null) {
+                duplicates.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Forget a claimed key whose envelope was not processed, so a retry goes through. */
+    public void release(String key) {
+        if (!enabled || key == null) return;
+        synchronized (recent) {
+            recent.remove(key);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.logan.kernel.dispatch;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builders for the audit/SSE event maps handlers emit.
+ *
+ * The timestamp keeps the {@code Date.toString()} format the dashboard already parses,
+ * but is formatted at most once per second instead of once per event.
+ */
+public final class KernelEvents {
+    private record Stamp(long second, String text) {}
+
+    private static volatile Stamp cached = new Stamp(-1, "");
+
+    private KernelEvents() {
+    }
+
+    public static String timestamp() {
+        long second = System.currentTimeMillis() / 1000;
+        Stamp s = cached;
+        if (s.second() != second) {
+            s = new Stamp(second, new Date(second * 1000).toString());
+            cached = s;
+        }
+        return s.text();
+    }
+
+    /** A new mutable event with {@code timestamp} and {@code type} already set. */
+    public static Map<String, Object> event(String type) {
+        Map<String, Object> event = new LinkedHashMap<>(12);
+        event.put("timestamp", timestamp());
+        event.put("type", type);
+        return event;
+    }
+
+    public static Map<String, Object> event(MessageType type) {
+        return event(type.wire());
+    }
+}
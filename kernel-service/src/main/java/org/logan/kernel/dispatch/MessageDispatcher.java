@@ -0,0 +1,351 @@
+package org.logan.kernel.dispatch;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.logan.kernel.admission.AdmissionController;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.payload.SessionScoped;
+import org.logan.kernel.messaging.MessagePublisher;
+import org.logan.protocol.MessageEnvelope;
+import org.logan.protocol.codec.EnvelopeCodec;
+import org.logan.protocol.codec.WireFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * 🗂️ MessageDispatcher: table-driven routing of /messages envelopes to {@link MessageHandler}s.
+ *
+ * Built-in types resolve through an {@link EnumMap}; anything else (plugin types) through a
+ * plain map keyed by wire name. Both tables, and one payload reader per handler, are built
+ * once from the handler beans at startup. Types without a handler are routed to the
+ * recipient's mailbox with a Map payload, as before; 503 with Retry-After if its mailbox
+ * refused the envelope. A recipient hosted by another kernel gets the envelope appended to
+ * its Redis stream (202); one that no kernel hosts is answered 404.
+ *
+ * Every envelope passes {@link AdmissionController} once its payload is bound and before
+ * its handler runs; rejected ones get 429 with Retry-After. Envelopes whose correlationId was
+ * already processed ({@link IdempotencyCache}) are answered 200 with {@code duplicate: true}
+ * and not processed again.
+ */
+@Component
+public class MessageDispatcher {
+    private static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private static final String UNHANDLED = "other";   // metric label for types without a handler
+
+    private record Route(MessageHandler<?> handler, ObjectReader reader, MessageType.Priority priority) {}
+
+    private final AgentRegistry registry;
+    private final AdmissionController admission;
+    private final IdempotencyCache idempotency;
+    private final MessagePublisher publisher;
+    private final ObjectMapper mapper;
+    private final JsonFactory jsonFactory;
+    private final JsonFactory smileFactory;
+    private final EnvelopeReader envelopeReader;
+    private final Route fallback;
+    private final Map<MessageType, Route> builtIn = new EnumMap<>(MessageType.class);
+    private final Map<String, Route> plugins = new HashMap<>();
+
+    public MessageDispatcher(List<MessageHandler<?>> handlers, ObjectMapper mapper, AgentRegistry registry,
+                             AdmissionController admission, IdempotencyCache idempotency,
+                             MessagePublisher publisher) {
+        this.registry = registry;
+        this.admission = admission;
+        this.idempotency = idempotency;
+        this.publisher = publisher;
+        this.mapper = mapper;
+        this.jsonFactory = mapper.getFactory();
+        this.smileFactory = new EnvelopeCodec().smileMapper().getFactory();
+        this.fallback = new Route(null, mapper.readerFor(MAP_TYPE), MessageType.Priority.NORMAL);
+
+        for (MessageHandler<?> h : handlers) {
+            Route route = new Route(h, mapper.readerFor(h.payloadType()), h.priority());
+            MessageType known = MessageType.fromWire(h.type());
+            Route previous = known != null ? builtIn.put(known, route) : plugins.put(h.type(), route);
+            if (previous != null) {
+                throw new IllegalStateException("Duplicate handlers for message type '" + h.type() + "': "
+                        + previous.handler().getClass().getSimpleName() + ", " + h.getClass().getSimpleName());
+            }
+        }
+        this.envelopeReader = new EnvelopeReader(mapper, type -> routeFor(type).reader());
+        System.out.printf("🗂️ Message handlers: built-in=%s plugins=%s%n", builtIn.keySet(), plugins.keySet());
+    }
+
+    private Route routeFor(String type) {
+        if (type == null) return fallback;
+        MessageType known = MessageType.fromWire(type);
+        Route route = known != null ? builtIn.get(known) : plugins.get(type);
+        return route != null ? route : fallback;
+    }
+
+    /** Parse an envelope from a request body (JSON or Smile, optionally gzip) and dispatch it. */
+    public ResponseEntity<?> dispatch(InputStream body, String contentType, String contentEncoding,
+                                      DispatchContext ctx) throws Exception {
+        JsonFactory factory = WireFormat.fromContentType(contentType) == WireFormat.SMILE ? smileFactory : jsonFactory;
+        try (JsonParser parser = factory.createParser(EnvelopeCodec.decompressing(body, contentEncoding))) {
+            return dispatch(envelopeReader.read(parser), ctx);
+        }
+    }
+
+    /**
+     * Dispatch an ordered array of envelopes one after another, each with its own result
+     * ({@code index}, {@code status}, {@code body}). A rejected or failing item doesn't stop
+     * the rest, except for later items of its own session: those are answered 409 without
+     * being attempted, so a sender retrying the refused item keeps the session in order.
+     * A malformed item is answered 400 and everything after it 409, since the sender's
+     * stream is suspect from there on; if the parser can't resynchronize past it, the
+     * remaining items get no result at all. Items beyond {@code maxEnvelopes} are skipped
+     * with status 413. Items for agents hosted by other kernels are appended to their streams
+     * in one pipelined XADD once the batch is read; if that fails they are all answered 503.
+     */
+    public List<Map<String, Object>> dispatchBatch(InputStream body, String contentType, String contentEncoding,
+                                                   DispatchContext ctx, int maxEnvelopes) throws IOException {
+        JsonFactory factory = WireFormat.fromContentType(contentType) == WireFormat.SMILE ? smileFactory : jsonFactory;
+        List<Map<String, Object>> results = new ArrayList<>();
+        try (JsonParser parser = factory.createParser(EnvelopeCodec.decompressing(body, contentEncoding))) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Batch must be an array of envelopes");
+            }
+            JsonStreamContext array = parser.getParsingContext();
+            Set<String> heldSessions = new HashSet<>();   // sessions with a refused item in this batch
+            List<MessageEnvelope<?>> forwards = new ArrayList<>();   // for other kernels, sent at the end
+            List<Integer> forwardedAt = new ArrayList<>();
+            String malformed = null;                      // set once an item couldn't be read
+
+            try {
+                for (JsonToken t = parser.nextToken(); t != JsonToken.END_ARRAY; t = parser.nextToken()) {
+                    int index = results.size();
+                    if (malformed != null) {
+                        parser.skipChildren();
+                        results.add(batchResult(index, 409, malformed));
+                        continue;
+                    }
+                    if (t != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        results.add(batchResult(index, 400, "Envelope must be a JSON object"));
+                        malformed = "Not attempted: item " + index + " was malformed";
+                        continue;
+                    }
+                    if (index >= maxEnvelopes) {
+                        parser.skipChildren();
+                        results.add(batchResult(index, 413,
+                                "Batch limit of " + maxEnvelopes + " envelopes exceeded"));
+                        continue;
+                    }
+
+                    MessageEnvelope<Object> envelope;
+                    try {
+                        envelope = envelopeReader.readObject(parser);
+                    } catch (JsonProcessingException | IllegalArgumentException e) {
+                        results.add(batchResult(index, 400, String.valueOf(e.getMessage())));
+                        malformed = "Not attempted: item " + index + " was malformed";
+                        if (!skipTo(parser, array)) break;
+                        continue;
+                    }
+
+                    String session = sessionOf(envelope.getPayload());
+                    if (session != null && heldSessions.contains(session)) {
+                        results.add(batchResult(index, 409, "Not attempted: an earlier item of session " + session
+                                + " was refused"));
+                        continue;
+                    }
+                    int status;
+                    int queued = forwards.size();
+                    try {
+                        ResponseEntity<?> resp = dispatch(envelope, ctx, forwards);
+                        if (forwards.size() > queued) forwardedAt.add(index);
+                        status = resp.getStatusCode().value();
+                        Map<String, Object> result = new LinkedHashMap<>();
+                        result.put("index", index);
+                        result.put("status", status);
+                        result.put("body", resp.getBody());
+                        results.add(result);
+                    } catch (IllegalArgumentException e) {
+                        status = 400;
+                        results.add(batchResult(index, status, String.valueOf(e.getMessage())));
+                    } catch (Exception e) {
+                        System.err.printf("❌ Batch item %d (%s) failed: %s%n", index, envelope.getType(), e.getMessage());
+                        status = 500;
+                        results.add(batchResult(index, status, String.valueOf(e.getMessage())));
+                    }
+                    // The sender retries 429/5xx; nothing of that session may overtake the retry
+                    if (session != null && (status == 429 || status >= 500)) heldSessions.add(session);
+                }
+            } catch (JsonProcessingException e) {
+                // Earlier items were processed: answer them, the sender retries the unanswered rest
+                if (results.isEmpty()) throw e;
+                System.err.printf("⚠️ Batch stream broke after item %d: %s%n", results.size() - 1, e.getMessage());
+            }
+            flushForwards(forwards, forwardedAt, results);
+        }
+        return results;
+    }
+
+    // One pipelined XADD for every item forwarded to another kernel; if it fails, so do they all
+    private void flushForwards(List<MessageEnvelope<?>> forwards, List<Integer> indexes,
+                               List<Map<String, Object>> results) {
+        if (forwards.isEmpty()) return;
+        try {
+            publisher.publishBatch(forwards);
+        } catch (RuntimeException e) {
+            System.err.printf("⚠️ Could not forward %d batch items: %s%n", forwards.size(), e.getMessage());
+            for (int i = 0; i < forwards.size(); i++) {
+                MessageEnvelope<?> env = forwards.get(i);
+                idempotency.release(IdempotencyCache.keyOf(env.getSenderId(), env.getType(), env.getCorrelationId()));
+                results.set(indexes.get(i), batchResult(indexes.get(i), 503, "streams unavailable"));
+            }
+        }
+    }
+
+    /**
+     * Advance past the rest of an item that failed to bind, back to the batch array.
+     *
+     * @return {@code false} if the stream is broken there and can't be followed further
+     */
+    private static boolean skipTo(JsonParser parser, JsonStreamContext array) {
+        try {
+            while (parser.getParsingContext() != array) {
+                if (parser.nextToken() == null) return false;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static Map<String, Object> batchResult(int index, int status, String error) {
+        return Map.of("index", index, "status", status, "body", Map.of("ok", false, "error", error));
+    }
+
+    /**
+     * In-process entry point for kernel-hosted agents. The payload object is converted into the
+     * handler's payload type without going through bytes, then takes the same path as a
+     * POSTed envelope, admission control included.
+     */
+    @SuppressWarnings("unchecked")
+    public ResponseEntity<?> dispatchLocal(MessageEnvelope<?> source, DispatchContext ctx) throws Exception {
+        Route route = routeFor(source.getType());
+        MessageEnvelope<Object> envelope = new MessageEnvelope<>();
+        envelope.setType(source.getType());
+        envelope.setSenderId(source.getSenderId());
+        envelope.setRecipientId(source.getRecipientId());
+        envelope.setCorrelationId(source.getCorrelationId());
+        envelope.setSignature(source.getSignature());
+        envelope.setTimestamp(source.getTimestamp());
+
+        Object payload = source.getPayload();
+        if (payload == null) {
+            envelope.setPayload(route.reader().readValue("{}"));
+        } else if (route.handler() == null) {
+            // Routed on to a mailbox: give the recipient its own mutable copy, as a parsed body would be
+            envelope.setPayload(payload instanceof Map<?, ?> map
+                    ? new LinkedHashMap<>((Map<String, Object>) map)
+                    : mapper.convertValue(payload, MAP_TYPE));
+        } else {
+            envelope.setPayload(mapper.convertValue(payload, route.handler().payloadType()));
+        }
+        return dispatch(envelope, ctx);
+    }
+
+    public ResponseEntity<?> dispatch(MessageEnvelope<Object> envelope, DispatchContext ctx) throws Exception {
+        return dispatch(envelope, ctx, null);
+    }
+
+    /** @param forwards where a batch collects envelopes for other kernels; {@code null} sends them at once */
+    private ResponseEntity<?> dispatch(MessageEnvelope<Object> envelope, DispatchContext ctx,
+                                       List<MessageEnvelope<?>> forwards) throws Exception {
+        System.out.printf("📩 Message received: from=%s → to=%s type=%s%n",
+                envelope.getSenderId(), envelope.getRecipientId(), envelope.getType());
+
+        Route route = routeFor(envelope.getType());
+        String label = route.handler() != null ? route.handler().type() : UNHANDLED;
+        String key = IdempotencyCache.keyOf(envelope.getSenderId(), envelope.getType(), envelope.getCorrelationId());
+        if (!idempotency.claim(key)) {
+            System.out.printf("🔁 Dropped replay of %s from=%s correlationId=%s%n",
+                    envelope.getType(), envelope.getSenderId(), envelope.getCorrelationId());
+            return ResponseEntity.ok(Map.of("ok", true, "duplicate", true, "type", label));
+        }
+
+        ResponseEntity<?> resp = null;
+        try {
+            AdmissionController.Decision decision = admission.admit(label, route.priority(),
+                    envelope.getSenderId(), envelope.getRecipientId(), sessionOf(envelope.getPayload()));
+            if (!decision.admitted()) {
+                resp = ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header("Retry-After", String.valueOf(decision.retryAfterSeconds()))
+                        .body(Map.of("ok", false, "error", "overloaded", "reason", decision.reason(), "type", label));
+                return resp;
+            }
+
+            if (route.handler() != null) {
+                resp = invoke(route.handler(), envelope, ctx);
+                return resp;
+            }
+
+            String recipient = envelope.getRecipientId();
+            if (!registry.hasAgent(recipient)) {
+                resp = forward(envelope, label, forwards);
+                return resp;
+            }
+            if (!registry.routeMessage(envelope)) {
+                resp = registry.hasAgent(recipient)
+                        ? ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .header("Retry-After", "5")
+                                .body(Map.of("ok", false, "error", "mailbox of " + recipient + " is full", "type", label))
+                        : ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                .body(Map.of("ok", false, "error", "Unknown agent: " + recipient, "type", label));
+                return resp;
+            }
+            resp = ResponseEntity.ok(Map.of("ok", true, "type", String.valueOf(envelope.getType())));
+            return resp;
+        } finally {
+            // Not processed (rejected, failed or thrown): let the sender's retry through
+            if (resp == null || !resp.getStatusCode().is2xxSuccessful()) idempotency.release(key);
+        }
+    }
+
+    /** Recipient not hosted here: append to its stream if another kernel consumes it, else 404. */
+    private ResponseEntity<?> forward(MessageEnvelope<Object> envelope, String label,
+                                      List<MessageEnvelope<?>> forwards) {
+        String recipient = envelope.getRecipientId();
+        try {
+            if (!publisher.hasStream(recipient)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("ok", false, "error", "Unknown agent: " + recipient, "type", label));
+            }
+            if (forwards != null) forwards.add(envelope);
+            else publisher.publish(recipient, envelope);
+        } catch (RuntimeException e) {
+            System.err.printf("⚠️ Could not forward %s to %s: %s%n", envelope.getType(), recipient, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "5")
+                    .body(Map.of("ok", false, "error", "streams unavailable", "type", label));
+        }
+        return ResponseEntity.accepted().body(Map.of("ok", true, "type", label, "forwarded", true));
+    }
+
+    private static String sessionOf(Object payload) {
+        if (payload instanceof SessionScoped scoped) return scoped.session();
+        if (payload instanceof Map<?, ?> map && map.get("sessionId") != null) return map.get("sessionId").toString();
+        return null;
+    }
+
+    // The payload was bound with this handler's own reader, so the cast is safe
+    @SuppressWarnings("unchecked")
+    private <P> ResponseEntity<?> invoke(MessageHandler<P> handler, MessageEnvelope<Object> envelope,
+                                         DispatchContext ctx) throws Exception {
+        return handler.handle((MessageEnvelope<P>) (MessageEnvelope<?>) envelope, ctx);
+    }
+}
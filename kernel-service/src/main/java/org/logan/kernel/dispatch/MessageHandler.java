@@ -0,0 +1,29 @@
+package org.logan.kernel.dispatch;
+
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Handles one envelope type posted to /messages.
+ *
+ * Any Spring bean implementing this is picked up by {@link MessageDispatcher}, so plugins
+ * can add types without touching the controller. The payload is bound by Jackson straight
+ * from the request stream into {@link #payloadType()}.
+ *
+ * @param <P> payload type
+ */
+public interface MessageHandler<P> {
+
+    /** Wire name of the envelope type, e.g. {@code "chat_result"}. */
+    String type();
+
+    Class<P> payloadType();
+
+    /** Admission priority; built-in types use {@link MessageType#priority()}, plugins default to NORMAL. */
+    default MessageType.Priority priority() {
+        MessageType known = MessageType.fromWire(type());
+        return known != null ? known.priority() : MessageType.Priority.NORMAL;
+    }
+
+    ResponseEntity<?> handle(MessageEnvelope<P> envelope, DispatchContext ctx) throws Exception;
+}
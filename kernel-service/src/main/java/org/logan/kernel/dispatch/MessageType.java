@@ -0,0 +1,53 @@
+package org.logan.kernel.dispatch;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Built-in envelope types understood by the kernel, with their wire names and admission
+ * priority. Plugin types that aren't listed here are dispatched by their wire name instead.
+ */
+public enum MessageType {
+    CHAT("chat", Priority.NORMAL),
+    CHAT_RESULT("chat_result", Priority.CRITICAL),
+    DELEGATION("delegation", Priority.NORMAL),
+    REGISTER_AGENT_PLAN("register_agent_plan", Priority.NORMAL),
+    AGENT_STATUS_UPDATE("agent_status_update", Priority.LOW),
+    TOOL_INVOCATION("tool_invocation", Priority.LOW),
+    TOOL_RESULT("tool_result", Priority.LOW),
+    ORCHESTRATOR_WAIT("orchestrator_wait", Priority.NORMAL),
+    USER_DECISION("user_decision", Priority.CRITICAL);
+
+    /** Shedding order under load: LOW goes first, CRITICAL is never rejected. */
+    public enum Priority { LOW, NORMAL, CRITICAL }
+
+    private static final Map<String, MessageType> BY_WIRE = new HashMap<>();
+
+    static {
+        for (MessageType t : values()) BY_WIRE.put(t.wire, t);
+    }
+
+    private final String wire;
+    private final Priority priority;
+
+    MessageType(String wire, Priority priority) {
+        this.wire = wire;
+        this.priority = priority;
+    }
+
+    public String wire() {
+        return wire;
+    }
+
+    public Priority priority() {
+        return priority;
+    }
+
+    /** Exact match first (the common case, no allocation); case-insensitive fallback. */
+    public static MessageType fromWire(String type) {
+        if (type == null) return null;
+        MessageType t = BY_WIRE.get(type);
+        return t != null ? t : BY_WIRE.get(type.toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,61 @@
+package org.logan.kernel.dispatch.handlers;
+
+import org.logan.kernel.dispatch.DispatchContext;
+import org.logan.kernel.dispatch.KernelEvents;
+import org.logan.kernel.dispatch.MessageHandler;
+import org.logan.kernel.dispatch.MessageType;
+import org.logan.kernel.dispatch.payload.AgentStatusPayload;
+import org.logan.kernel.session.PendingSession;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.kernel.sse.SseBroadcaster;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// 🧠 Reasoning
+@Component
+public class AgentStatusHandler implements MessageHandler<AgentStatusPayload> {
+    private final SessionRegistry sessions;
+    private final SseBroadcaster sse;
+
+    public AgentStatusHandler(SessionRegistry sessions, SseBroadcaster sse) {
+        this.sessions = sessions;
+        this.sse = sse;
+    }
+
+    @Override
+    public String type() {
+        return MessageType.AGENT_STATUS_UPDATE.wire();
+    }
+
+    @Override
+    public Class<AgentStatusPayload> payloadType() {
+        return AgentStatusPayload.class;
+    }
+
+    @Override
+    public ResponseEntity<?> handle(MessageEnvelope<AgentStatusPayload> envelope, DispatchContext ctx) {
+        AgentStatusPayload payload = envelope.getPayload();
+        String sessionId = payload.session();
+        String agentId = payload.agentId() != null ? payload.agentId() : envelope.getSenderId();
+        PendingSession ps = sessions.getOrCreate(sessionId);
+
+        Map<String, Object> event = KernelEvents.event("reasoning");
+        event.put("phase", payload.phase());
+        event.put("message", payload.message());
+        event.put("agentId", agentId);
+        ps.addEvent(event);
+        ps.addAudit(event);
+        sse.broadcast(event);
+
+        System.out.printf("🧠 [%s] Reasoning (%s) logged for session=%s%n", agentId, payload.phase(), sessionId);
+        return ResponseEntity.ok(Map.of(
+                "ok", true,
+                "received", "agent_status_update",
+                "sessionId", sessionId,
+                "agentId", agentId
+        ));
+    }
+}
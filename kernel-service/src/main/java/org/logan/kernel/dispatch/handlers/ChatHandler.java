@@ -0,0 +1,131 @@
+package org.logan.kernel.dispatch.handlers;
+
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.DispatchContext;
+import org.logan.kernel.dispatch.KernelEvents;
+import org.logan.kernel.dispatch.MessageHandler;
+import org.logan.kernel.dispatch.MessageType;
+import org.logan.kernel.dispatch.payload.ChatPayload;
+import org.logan.kernel.goal.GoalService;
+import org.logan.kernel.persistence.GoalEntity;
+import org.logan.kernel.session.PendingSession;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.kernel.sse.SseBroadcaster;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// 💬 User chat
+@Component
+public class ChatHandler implements MessageHandler<ChatPayload> {
+    private static final long WAIT_SECONDS = 60L;
+
+    private final AgentRegistry registry;
+    private final SessionRegistry sessions;
+    private final SseBroadcaster sse;
+    private final GoalService goals;
+
+    // Blocking chat is opt-in (?wait=true); flip this only for clients that can't handle 202
+    @Value("${kernel.chat.blocking-default:false}")
+    private boolean blockingChatDefault;
+
+    public ChatHandler(AgentRegistry registry,
+                       SessionRegistry sessions,
+                       SseBroadcaster sse,
+                       GoalService goals) {
+        this.registry = registry;
+        this.sessions = sessions;
+        this.sse = sse;
+        this.goals = goals;
+    }
+
+    @Override
+    public String type() {
+        return MessageType.CHAT.wire();
+    }
+
+    @Override
+    public Class<ChatPayload> payloadType() {
+        return ChatPayload.class;
+    }
+
+    @Override
+    public ResponseEntity<?> handle(MessageEnvelope<ChatPayload> envelope, DispatchContext ctx) throws Exception {
+        ChatPayload payload = envelope.getPayload();
+        String sessionId = payload.session();
+        String sender = envelope.getSenderId() != null ? envelope.getSenderId() : "user";
+
+        // 🎯 Default: hand off to the goal queue and answer 202 right away
+        if (!(ctx.waitForResult() != null ? ctx.waitForResult() : blockingChatDefault)) {
+            GoalEntity goal;
+            try {
+                goal = goals.submit(envelope.getRecipientId(), sessionId, payload.message(), sender);
+            } catch (RejectedExecutionException full) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header("Retry-After", "5")
+                        .body(Map.of("ok", false, "error", full.getMessage()));
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .location(URI.create("/goals/" + goal.getId()))
+                    .body(Map.of(
+                            "ok", true,
+                            "status", "accepted",
+                            "goalId", goal.getId(),
+                            "sessionId", goal.getCorrelationId()
+                    ));
+        }
+
+        // ⏳ Compatibility mode: hold the request until chat_result (or timeout)
+        PendingSession ps = sessions.open(sessionId);
+
+        Map<String, Object> event = KernelEvents.event("user_input");
+        event.put("agentId", sender);
+        event.put("message", payload.message());
+        event.put("sessionId", sessionId);
+        ps.addAudit(event);
+        sse.broadcast(event);
+
+        MessageEnvelope<Map<String, Object>> routed = new MessageEnvelope<>();
+        routed.setType(envelope.getType());
+        routed.setSenderId(envelope.getSenderId());
+        routed.setRecipientId(envelope.getRecipientId());
+        routed.setCorrelationId(envelope.getCorrelationId());
+        routed.setTimestamp(envelope.getTimestamp());
+        routed.setPayload(payload.toMap());
+        if (!registry.routeMessage(routed)) {
+            sessions.leave(sessionId, ps);
+            String recipient = envelope.getRecipientId();
+            if (!registry.hasAgent(recipient)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("ok", false, "error", "Unknown agent: " + recipient, "sessionId", sessionId));
+            }
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "5")
+                    .body(Map.of("ok", false, "error", "mailbox of " + recipient + " is full", "sessionId", sessionId));
+        }
+        System.out.printf("💬 Waiting for chat_result (session=%s, timeout=%ds)%n", sessionId, WAIT_SECONDS);
+
+        Map<String, Object> result;
+        try {
+            result = ps.waitForCompletion(WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException te) {
+            result = Map.of(
+                    "ok", false,
+                    "error", "timeout waiting for chat_result",
+                    "sessionId", sessionId,
+                    "events", ps.getEvents(),
+                    "audit", ps.getAudit()
+            );
+            sessions.leave(sessionId, ps);
+        }
+        return ResponseEntity.ok(result);
+    }
+}
@@ -0,0 +1,133 @@
+package org.logan.kernel.dispatch.handlers;
+
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.DispatchContext;
+import org.logan.kernel.dispatch.KernelEvents;
+import org.logan.kernel.dispatch.MessageHandler;
+import org.logan.kernel.dispatch.MessageType;
+import org.logan.kernel.dispatch.payload.ChatResultPayload;
+import org.logan.kernel.session.PendingSession;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.kernel.sse.SseBroadcaster;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 🏁 Chat results
+@Component
+public class ChatResultHandler implements MessageHandler<ChatResultPayload> {
+    private static final String ORCHESTRATOR = "orchestrator-agent";
+
+    private final AgentRegistry registry;
+    private final SessionRegistry sessions;
+    private final SseBroadcaster sse;
+
+    public ChatResultHandler(AgentRegistry registry,
+                             SessionRegistry sessions,
+                             SseBroadcaster sse) {
+        this.registry = registry;
+        this.sessions = sessions;
+        this.sse = sse;
+    }
+
+    @Override
+    public String type() {
+        return MessageType.CHAT_RESULT.wire();
+    }
+
+    @Override
+    public Class<ChatResultPayload> payloadType() {
+        return ChatResultPayload.class;
+    }
+
+    @Override
+    public ResponseEntity<?> handle(MessageEnvelope<ChatResultPayload> envelope, DispatchContext ctx) {
+        ChatResultPayload payload = envelope.getPayload();
+        String sessionId = payload.session();
+        String agentId = payload.agentId() != null ? payload.agentId() : envelope.getSenderId();
+        String recipient = envelope.getRecipientId() != null ? envelope.getRecipientId() : "";
+
+        String sender = envelope.getSenderId() != null ? envelope.getSenderId() : agentId;
+        if (sender != null && sender.equalsIgnoreCase(recipient)) {
+            System.out.printf("🚫 Skipped forwarding chat_result loopback (%s → %s)%n", sender, recipient);
+            return ResponseEntity.ok(Map.of("ok", true, "skipped", true));
+        }
+
+        PendingSession ps = sessions.get(sessionId);
+        if (ps == null) {
+            System.out.printf("⚠️ [%s] chat_result for unknown session=%s%n", agentId, sessionId);
+            return ResponseEntity.ok(Map.of("ok", false, "unknown_session", sessionId));
+        }
+
+        // Agents and waiters consume the full payload as a Map
+        Map<String, Object> raw = payload.asMap();
+
+        // 🔁 Route back to orchestrator if not already orchestrator. Done first: if it can't take
+        // the result, answer 503 before anything else happened, so the sender's outbox retries it
+        if (!ORCHESTRATOR.equalsIgnoreCase(agentId)) {
+            MessageEnvelope<Map<String, Object>> orchestratorMsg = new MessageEnvelope<>();
+            orchestratorMsg.setSenderId(agentId);
+            orchestratorMsg.setRecipientId(ORCHESTRATOR);
+            orchestratorMsg.setType(MessageType.CHAT_RESULT.wire());
+            orchestratorMsg.setPayload(raw);
+
+            String failure = null;
+            try {
+                if (!registry.hasAgent(ORCHESTRATOR)) failure = "orchestrator-agent not available";
+                else if (!registry.routeMessage(orchestratorMsg)) failure = "orchestrator-agent mailbox full";
+            } catch (Exception e) {
+                failure = "routing failed: " + e.getMessage();
+            }
+            if (failure != null) {
+                System.err.printf("⚠️ chat_result of %s not routed (session=%s): %s%n", agentId, sessionId, failure);
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header("Retry-After", "5")
+                        .body(Map.of("ok", false, "error", failure, "sessionId", sessionId));
+            }
+            System.out.printf("🔁 Routed chat_result of %s → orchestrator-agent (session=%s)%n", agentId, sessionId);
+        }
+
+        ps.markAgentCompleted(agentId);
+        sessions.completeAgentWaiter(sessionId, agentId, raw);
+
+        int remaining = ps.getRemainingAgents().size();
+        Map<String, Object> audit = KernelEvents.event(MessageType.CHAT_RESULT);
+        audit.put("agentId", agentId);
+        audit.put("status", "completed");
+        audit.put("sessionId", sessionId);
+        ps.addAudit(audit);
+
+        Map<String, Object> event = new LinkedHashMap<>(audit);
+        event.put("message", String.format("✅ [%s] Completed session=%s (agents left=%d)",
+                agentId, sessionId, remaining));
+        sse.broadcast(event);
+
+        System.out.printf("✅ [%s] Completed session=%s (agents left=%d)%n", agentId, sessionId, remaining);
+
+        // ✅ Only finalize session if the orchestrator sends final chat_result
+        if (ORCHESTRATOR.equalsIgnoreCase(agentId)) {
+            Map<String, Object> aggregated = new LinkedHashMap<>();
+            aggregated.put("ok", true);
+            aggregated.put("sessionId", sessionId);
+            aggregated.put("message", ps.getEvents());
+            aggregated.put("audit", ps.getAudit());
+            aggregated.put("completedAgents", ps.getCompletedAgents());
+            aggregated.put("result", raw);
+            sessions.remove(sessionId);
+            ps.complete(aggregated);
+            sse.broadcast(aggregated);
+            System.out.printf("🏁 Orchestrator finalized session=%s%n", sessionId);
+        }
+
+        return ResponseEntity.ok(Map.of(
+                "ok", true,
+                "status", "chat_result_received",
+                "sessionId", sessionId,
+                "agentId", agentId
+        ));
+    }
+}
@@ -0,0 +1,86 @@
+package org.logan.kernel.dispatch.handlers;
+
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.DispatchContext;
+import org.logan.kernel.dispatch.KernelEvents;
+import org.logan.kernel.dispatch.MessageHandler;
+import org.logan.kernel.dispatch.MessageType;
+import org.logan.kernel.dispatch.payload.DelegationPayload;
+import org.logan.kernel.session.PendingSession;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.kernel.sse.SseBroadcaster;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// 🤝 Delegation
+@Component
+public class DelegationHandler implements MessageHandler<DelegationPayload> {
+    private final AgentRegistry registry;
+    private final SessionRegistry sessions;
+    private final SseBroadcaster sse;
+
+    public DelegationHandler(AgentRegistry registry, SessionRegistry sessions, SseBroadcaster sse) {
+        this.registry = registry;
+        this.sessions = sessions;
+        this.sse = sse;
+    }
+
+    @Override
+    public String type() {
+        return MessageType.DELEGATION.wire();
+    }
+
+    @Override
+    public Class<DelegationPayload> payloadType() {
+        return DelegationPayload.class;
+    }
+
+    @Override
+    public ResponseEntity<?> handle(MessageEnvelope<DelegationPayload> envelope, DispatchContext ctx) {
+        DelegationPayload payload = envelope.getPayload();
+        String targetAgent = payload.targetAgent();
+        if (targetAgent == null)
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "error", "Missing targetAgent"));
+
+        String sessionId = payload.session();
+        String fromAgent = payload.fromAgent() != null ? payload.fromAgent() : envelope.getSenderId();
+        PendingSession ps = sessions.getOrCreate(sessionId);
+        ps.registerAgent(targetAgent);
+
+        Map<String, Object> event = KernelEvents.event(MessageType.DELEGATION);
+        event.put("agentId", fromAgent);
+        event.put("targetAgent", targetAgent);
+        event.put("message", payload.message());
+        event.put("sessionId", sessionId);
+        ps.addAudit(event);
+        sse.broadcast(event);
+
+        // Mailbox offers don't block (at most offer-timeout-ms under BLOCK), so route inline
+        if (registry.hasAgent(targetAgent)) {
+            MessageEnvelope<Map<String, Object>> delegatedChat = new MessageEnvelope<>();
+            delegatedChat.setSenderId(fromAgent);
+            delegatedChat.setRecipientId(targetAgent);
+            delegatedChat.setType(MessageType.CHAT.wire());
+            delegatedChat.setPayload(Map.of("sessionId", sessionId, "message", String.valueOf(payload.message())));
+            if (!registry.routeMessage(delegatedChat)) {
+                // Non-2xx: the dispatcher releases the idempotency key, so the sender's retry goes through
+                System.err.printf("❌ Delegation rejected by mailbox for %s → %s%n", fromAgent, targetAgent);
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header("Retry-After", "5")
+                        .body(Map.of("ok", false, "error", "mailbox of " + targetAgent + " is full",
+                                "targetAgent", targetAgent, "sessionId", sessionId));
+            }
+        }
+
+        return ResponseEntity.ok(Map.of(
+                "ok", true,
+                "status", "delegation_executed",
+                "targetAgent", targetAgent,
+                "sessionId", sessionId
+        ));
+    }
+}
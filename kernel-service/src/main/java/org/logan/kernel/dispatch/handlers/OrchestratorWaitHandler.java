@@ -0,0 +1,69 @@
+package org.logan.kernel.dispatch.handlers;
+
+import org.logan.kernel.dispatch.DispatchContext;
+import org.logan.kernel.dispatch.KernelEvents;
+import org.logan.kernel.dispatch.MessageHandler;
+import org.logan.kernel.dispatch.MessageType;
+import org.logan.kernel.dispatch.payload.OrchestratorWaitPayload;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.kernel.sse.SseBroadcaster;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+// ⏸ Orchestrator paused, waiting for the user
+@Component
+public class OrchestratorWaitHandler implements MessageHandler<OrchestratorWaitPayload> {
+    private static final List<String> DEFAULT_OPTIONS = List.of("retry", "skip", "abort");
+
+    private final SessionRegistry sessions;
+    private final SseBroadcaster sse;
+
+    public OrchestratorWaitHandler(SessionRegistry sessions, SseBroadcaster sse) {
+        this.sessions = sessions;
+        this.sse = sse;
+    }
+
+    @Override
+    public String type() {
+        return MessageType.ORCHESTRATOR_WAIT.wire();
+    }
+
+    @Override
+    public Class<OrchestratorWaitPayload> payloadType() {
+        return OrchestratorWaitPayload.class;
+    }
+
+    @Override
+    public ResponseEntity<?> handle(MessageEnvelope<OrchestratorWaitPayload> envelope, DispatchContext ctx) {
+        OrchestratorWaitPayload payload = envelope.getPayload();
+        String sessionId = payload.session();
+        String agentId = payload.agentId() != null ? payload.agentId() : "orchestrator-agent";
+        String reason = payload.reason() != null ? payload.reason() : "No reason provided";
+
+        Map<String, Object> event = KernelEvents.event(MessageType.ORCHESTRATOR_WAIT);
+        event.put("sessionId", sessionId);
+        event.put("agentId", agentId);
+        if (payload.stepId() != null) event.put("stepId", payload.stepId());   // echoed back with the decision
+        event.put("reason", reason);
+        event.put("message", payload.message() != null ? payload.message() : "");
+        event.put("options", payload.options() != null ? payload.options() : DEFAULT_OPTIONS);
+        sessions.getOrCreate(sessionId).addAudit(event);
+        sessions.waitOnPerson(sessionId);   // no TTL runs out while the person decides
+
+        // 🔊 Notify all connected UIs
+        sse.broadcast(event);
+
+        System.out.printf("⏸ [kernel] Orchestrator paused for session=%s (agent=%s, reason=%s)%n",
+                sessionId, agentId, reason);
+
+        return ResponseEntity.ok(Map.of(
+                "ok", true,
+                "status", "orchestrator_wait_broadcasted",
+                "sessionId", sessionId
+        ));
+    }
+}
@@ -0,0 +1,45 @@
+package org.logan.kernel.dispatch.handlers;
+
+import org.logan.kernel.dispatch.DispatchContext;
+import org.logan.kernel.dispatch.MessageHandler;
+import org.logan.kernel.dispatch.MessageType;
+import org.logan.kernel.dispatch.payload.RegisterAgentPlanPayload;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// 📋 Register agent plan
+@Component
+public class RegisterAgentPlanHandler implements MessageHandler<RegisterAgentPlanPayload> {
+    private final SessionRegistry sessions;
+
+    public RegisterAgentPlanHandler(SessionRegistry sessions) {
+        this.sessions = sessions;
+    }
+
+    @Override
+    public String type() {
+        return MessageType.REGISTER_AGENT_PLAN.wire();
+    }
+
+    @Override
+    public Class<RegisterAgentPlanPayload> payloadType() {
+        return RegisterAgentPlanPayload.class;
+    }
+
+    @Override
+    public ResponseEntity<?> handle(MessageEnvelope<RegisterAgentPlanPayload> envelope, DispatchContext ctx) {
+        RegisterAgentPlanPayload payload = envelope.getPayload();
+        if (payload.targetAgent() == null)
+            return ResponseEntity.badRequest().body(Map.of("ok", false, "error", "Missing targetAgent"));
+
+        String sessionId = payload.session();
+        sessions.getOrCreate(sessionId).registerAgent(payload.targetAgent());
+
+        System.out.printf("📋 Registered %s in session=%s%n", payload.targetAgent(), sessionId);
+        return ResponseEntity.ok(Map.of("ok", true));
+    }
+}
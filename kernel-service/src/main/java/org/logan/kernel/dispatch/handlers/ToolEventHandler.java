@@ -0,0 +1,68 @@
+package org.logan.kernel.dispatch.handlers;
+
+import org.logan.kernel.dispatch.DispatchContext;
+import org.logan.kernel.dispatch.KernelEvents;
+import org.logan.kernel.dispatch.MessageHandler;
+import org.logan.kernel.dispatch.MessageType;
+import org.logan.kernel.dispatch.payload.ToolEventPayload;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 🧰 Tool events: tool_invocation and tool_result share the audit logic
+public abstract class ToolEventHandler implements MessageHandler<ToolEventPayload> {
+    private final SessionRegistry sessions;
+    private final MessageType type;
+
+    protected ToolEventHandler(SessionRegistry sessions, MessageType type) {
+        this.sessions = sessions;
+        this.type = type;
+    }
+
+    @Override
+    public String type() {
+        return type.wire();
+    }
+
+    @Override
+    public Class<ToolEventPayload> payloadType() {
+        return ToolEventPayload.class;
+    }
+
+    @Override
+    public ResponseEntity<?> handle(MessageEnvelope<ToolEventPayload> envelope, DispatchContext ctx) {
+        ToolEventPayload payload = envelope.getPayload();
+        String sessionId = payload.session();
+        String agentId = payload.agentId() != null ? payload.agentId() : envelope.getSenderId();
+
+        // The agent's fields as sent, with the kernel's timestamp/type/agentId on top
+        Map<String, Object> event = new LinkedHashMap<>(payload.asMap());
+        event.put("timestamp", KernelEvents.timestamp());
+        event.put("type", type.wire());
+        event.putIfAbsent("sessionId", sessionId);
+        event.put("agentId", agentId);
+        event.put("message", "Executing tool: " + payload.tool());
+        sessions.getOrCreate(sessionId).addAudit(event);
+
+        System.out.printf("🧰 [%s] %s recorded for session=%s%n", agentId, type.wire(), sessionId);
+        return ResponseEntity.ok(Map.of("ok", true));
+    }
+
+    @Component
+    public static class Invocation extends ToolEventHandler {
+        public Invocation(SessionRegistry sessions) {
+            super(sessions, MessageType.TOOL_INVOCATION);
+        }
+    }
+
+    @Component
+    public static class Result extends ToolEventHandler {
+        public Result(SessionRegistry sessions) {
+            super(sessions, MessageType.TOOL_RESULT);
+        }
+    }
+}
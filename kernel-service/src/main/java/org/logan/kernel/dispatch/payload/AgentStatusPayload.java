@@ -0,0 +1,14 @@
+package org.logan.kernel.dispatch.payload;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/** {@code agent_status_update}: a reasoning/progress update from an agent. */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record AgentStatusPayload(String sessionId, String agentId, String phase, String message)
+        implements SessionScoped {
+
+    @Override
+    public String session() {
+        return sessionId != null ? sessionId : DEFAULT_SESSION;
+    }
+}
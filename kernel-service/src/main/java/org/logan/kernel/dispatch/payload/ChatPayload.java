@@ -0,0 +1,24 @@
+package org.logan.kernel.dispatch.payload;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** {@code chat}: a user goal (or a delegated sub-task) for an agent. */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ChatPayload(String sessionId, String message) implements SessionScoped {
+
+    @Override
+    public String session() {
+        return sessionId != null ? sessionId : DEFAULT_SESSION;
+    }
+
+    /** The Map form agents read when the chat is routed to their mailbox. */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        if (sessionId != null) map.put("sessionId", sessionId);
+        map.put("message", message);
+        return map;
+    }
+}
@@ -0,0 +1,40 @@
+package org.logan.kernel.dispatch.payload;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code chat_result}: an agent finished its part of a session.
+ *
+ * Unlike the other payloads this one keeps every field: the orchestrator and the session
+ * result need the agent's full reply, so it is forwarded as-is via {@link #asMap()}.
+ */
+public class ChatResultPayload implements SessionScoped {
+    private final Map<String, Object> fields = new LinkedHashMap<>();
+
+    @JsonAnySetter
+    public void put(String name, Object value) {
+        fields.put(name, value);
+    }
+
+    @JsonAnyGetter
+    public Map<String, Object> asMap() {
+        return fields;
+    }
+
+    public String agentId() {
+        Object agentId = fields.get("agentId");
+        return agentId != null ? agentId.toString() : null;
+    }
+
+    /** Some agents only put the session id inside {@code result}. */
+    @Override
+    public String session() {
+        Object sid = fields.get("sessionId");
+        if (sid == null && fields.get("result") instanceof Map<?, ?> inner) sid = inner.get("sessionId");
+        return sid != null ? sid.toString() : DEFAULT_SESSION;
+    }
+}
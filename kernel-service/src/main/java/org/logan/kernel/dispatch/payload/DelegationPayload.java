@@ -0,0 +1,14 @@
+package org.logan.kernel.dispatch.payload;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/** {@code delegation}: the orchestrator hands a sub-task to another agent. */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record DelegationPayload(String sessionId, String targetAgent, String fromAgent, String message)
+        implements SessionScoped {
+
+    @Override
+    public String session() {
+        return sessionId != null ? sessionId : DEFAULT_SESSION;
+    }
+}
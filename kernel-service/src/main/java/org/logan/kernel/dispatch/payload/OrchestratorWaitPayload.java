@@ -0,0 +1,17 @@
+package org.logan.kernel.dispatch.payload;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/** {@code orchestrator_wait}: the orchestrator paused a plan step and needs a user decision. */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record OrchestratorWaitPayload(String sessionId, String agentId, String stepId, String reason, String message,
+                                      List<String> options)
+        implements SessionScoped {
+
+    @Override
+    public String session() {
+        return sessionId != null ? sessionId : DEFAULT_SESSION;
+    }
+}
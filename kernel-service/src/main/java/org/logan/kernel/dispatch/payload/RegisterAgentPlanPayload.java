@@ -0,0 +1,14 @@
+package org.logan.kernel.dispatch.payload;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/** {@code register_agent_plan}: the orchestrator announces an agent it is about to involve. */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record RegisterAgentPlanPayload(String sessionId, String targetAgent, String fromAgent)
+        implements SessionScoped {
+
+    @Override
+    public String session() {
+        return sessionId != null ? sessionId : DEFAULT_SESSION;
+    }
+}
@@ -0,0 +1,11 @@
+package org.logan.kernel.dispatch.payload;
+
+/** A payload that belongs to a chat session; lets the dispatcher key per-session limits. */
+public interface SessionScoped {
+
+    /** Used by payloads that arrive without a session id. */
+    String DEFAULT_SESSION = "default-session";
+
+    /** The session id, or {@link #DEFAULT_SESSION}. */
+    String session();
+}
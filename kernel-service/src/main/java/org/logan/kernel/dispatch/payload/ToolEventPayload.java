@@ -0,0 +1,43 @@
+package org.logan.kernel.dispatch.payload;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code tool_invocation} / {@code tool_result} reported by an agent while it runs a tool.
+ *
+ * Keeps every field, like {@link ChatResultPayload}: the audit event is the agent's report
+ * as sent (arguments, results, timings, whatever the agent adds), not a fixed subset.
+ */
+public class ToolEventPayload implements SessionScoped {
+    private final Map<String, Object> fields = new LinkedHashMap<>();
+
+    @JsonAnySetter
+    public void put(String name, Object value) {
+        fields.put(name, value);
+    }
+
+    @JsonAnyGetter
+    public Map<String, Object> asMap() {
+        return fields;
+    }
+
+    public String agentId() {
+        Object agentId = fields.get("agentId");
+        return agentId != null ? agentId.toString() : null;
+    }
+
+    public String tool() {
+        Object tool = fields.get("tool");
+        return tool != null ? tool.toString() : null;
+    }
+
+    @Override
+    public String session() {
+        Object sid = fields.get("sessionId");
+        return sid != null ? sid.toString() : DEFAULT_SESSION;
+    }
+}
@@ -0,0 +1,277 @@
+package org.logan.kernel.goal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.KernelEvents;
+import org.logan.kernel.dispatch.MessageType;
+import org.logan.kernel.messaging.KernelRouter;
+import org.logan.kernel.persistence.GoalEntity;
+import org.logan.kernel.persistence.GoalRepository;
+import org.logan.kernel.session.PendingSession;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.kernel.sse.SseBroadcaster;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 🎯 GoalService: accepts goals without holding the caller's thread.
+ *
+ * A goal is persisted in {@code goals} as QUEUED, picked up by a worker that opens the
+ * chat session and routes it to the target agent (the orchestrator by default), and
+ * completed asynchronously when the orchestrator's final chat_result arrives.
+ *
+ * Once the application is ready, goals a previous run left behind are picked up again:
+ * QUEUED ones are re-enqueued, and ACTIVE ones, whose session died with that run, are
+ * re-run or failed depending on {@code kernel.goals.rerun-active}.
+ */
+@Service
+public class GoalService {
+    public static final String DEFAULT_AGENT = "orchestrator-agent";
+
+    private final GoalRepository repo;
+    private final AgentRegistry registry;
+    private final KernelRouter router;
+    private final SessionRegistry sessions;
+    private final SseBroadcaster sse;
+    private final ObjectMapper mapper;
+    private final Map<Long, CompletableFuture<GoalEntity>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Long, String> pendingSenders = new ConcurrentHashMap<>();
+
+    @Value("${kernel.goals.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${kernel.goals.workers:4}")
+    private int workerCount;
+
+    @Value("${kernel.goals.timeout-seconds:600}")
+    private long timeoutSeconds;
+
+    @Value("${kernel.goals.rerun-active:false}")
+    private boolean rerunActive;
+
+    private BlockingQueue<Long> queue;
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    public GoalService(GoalRepository repo,
+                       AgentRegistry registry,
+                       KernelRouter router,
+                       SessionRegistry sessions,
+                       SseBroadcaster sse,
+                       ObjectMapper mapper) {
+        this.repo = repo;
+        this.registry = registry;
+        this.router = router;
+        this.sessions = sessions;
+        this.sse = sse;
+        this.mapper = mapper;
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread t = new Thread(r, "goal-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        running = true;
+        for (int i = 0; i < workerCount; i++) workers.submit(this::workerLoop);
+    }
+
+    // ♻️ Runs after the startup runners, so rehydrating agents already count as present
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        int requeued = 0;
+        int failed = 0;
+        for (GoalEntity goal : repo.findByStatusOrderByIdAsc("ACTIVE")) {
+            if (rerunActive) {
+                goal.setStatus("QUEUED");
+                repo.save(goal);
+                if (requeue(goal.getId())) requeued++;
+            } else {
+                inFlight.put(goal.getId(), new CompletableFuture<>());
+                finish(goal.getId(), "FAILED", Map.of("ok", false, "error", "kernel restarted while the goal was active",
+                        "sessionId", goal.getCorrelationId()));
+                failed++;
+            }
+        }
+        for (GoalEntity goal : repo.findByStatusOrderByIdAsc("QUEUED")) {
+            if (!inFlight.containsKey(goal.getId()) && requeue(goal.getId())) requeued++;
+        }
+        if (requeued + failed > 0) {
+            System.out.printf("♻️ Recovered goals from the last run: %d re-queued, %d failed%n", requeued, failed);
+        }
+    }
+
+    private boolean requeue(long goalId) {
+        inFlight.put(goalId, new CompletableFuture<>());
+        if (queue.offer(goalId)) return true;
+        finish(goalId, "FAILED", Map.of("ok", false, "error", "goal queue full"));
+        return false;
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.shutdownNow();
+    }
+
+    /**
+     * Persist and enqueue a goal; returns immediately with the QUEUED row.
+     *
+     * @throws RejectedExecutionException if the dispatch queue is full
+     */
+    public GoalEntity submit(String agentId, String sessionId, String description, String senderId) {
+        GoalEntity goal = new GoalEntity();
+        goal.setAgentId(agentId == null || agentId.isBlank() ? DEFAULT_AGENT : agentId);
+        goal.setDescription(description);
+        goal.setCorrelationId(sessionId == null || sessionId.isBlank() ? UUID.randomUUID().toString() : sessionId);
+        goal.setStatus("QUEUED");
+        goal = repo.save(goal);
+
+        inFlight.put(goal.getId(), new CompletableFuture<>());
+        pendingSenders.put(goal.getId(), senderId == null ? "user" : senderId);
+        if (!queue.offer(goal.getId())) {
+            finish(goal.getId(), "FAILED", Map.of("ok", false, "error", "goal queue full"));
+            throw new RejectedExecutionException("Goal queue is full (" + queueCapacity + ")");
+        }
+        System.out.printf("🎯 Goal %d queued for %s (session=%s)%n", goal.getId(), goal.getAgentId(), goal.getCorrelationId());
+        return goal;
+    }
+
+    public Optional<GoalEntity> find(long goalId) {
+        return repo.findById(goalId);
+    }
+
+    /** Completes when the goal reaches a terminal state; already-finished goals complete immediately. */
+    public CompletableFuture<GoalEntity> awaitCompletion(long goalId) {
+        CompletableFuture<GoalEntity> fut = inFlight.get(goalId);
+        if (fut != null) return fut;
+        return repo.findById(goalId)
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> CompletableFuture.failedFuture(new NoSuchElementException("Unknown goal " + goalId)));
+    }
+
+    private void workerLoop() {
+        while (running) {
+            Long goalId;
+            try {
+                goalId = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                dispatch(goalId);
+            } catch (Exception e) {
+                System.err.printf("❌ Goal %d dispatch failed: %s%n", goalId, e.getMessage());
+                finish(goalId, "FAILED", Map.of("ok", false, "error", String.valueOf(e.getMessage())));
+            }
+        }
+    }
+
+    private void dispatch(long goalId) {
+        GoalEntity goal = repo.findById(goalId).orElseThrow();
+        String sessionId = goal.getCorrelationId();
+        String sender = Optional.ofNullable(pendingSenders.remove(goalId)).orElse("user");
+
+        if (!registry.hasAgent(goal.getAgentId())) {
+            finish(goalId, "FAILED", Map.of("ok", false, "error", "agent not found: " + goal.getAgentId()));
+            return;
+        }
+
+        goal.setStatus("ACTIVE");
+        repo.save(goal);
+
+        PendingSession ps = sessions.open(sessionId);
+        Map<String, Object> event = KernelEvents.event("user_input");
+        event.put("agentId", sender);
+        event.put("message", goal.getDescription());
+        event.put("sessionId", sessionId);
+        event.put("goalId", goalId);
+        ps.addAudit(event);
+        sse.broadcast(event);
+
+        // A copy: this goal's timeout or rejection must not end the session for other chats in it
+        CompletableFuture<Map<String, Object>> outcome = ps.completion().copy();
+        armTimeout(outcome, ps, ps.activeMillis());
+        outcome.whenComplete((result, failure) -> {
+            if (failure == null) {
+                finish(goalId, "COMPLETED", result);
+            } else {
+                Throwable err = failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure;
+                Map<String, Object> partial = new LinkedHashMap<>();
+                partial.put("ok", false);
+                partial.put("error", err instanceof TimeoutException
+                        ? "timeout waiting for chat_result" : String.valueOf(err.getMessage()));
+                partial.put("sessionId", sessionId);
+                partial.put("audit", ps.getAudit());
+                sessions.leave(sessionId, ps);
+                finish(goalId, err instanceof TimeoutException ? "TIMED_OUT" : "FAILED", partial);
+            }
+        });
+
+        MessageEnvelope<Map<String, Object>> chat = new MessageEnvelope<>();
+        chat.setSenderId(sender);
+        chat.setRecipientId(goal.getAgentId());
+        chat.setType(MessageType.CHAT.wire());
+        chat.setCorrelationId(sessionId);
+        chat.setPayload(Map.of("sessionId", sessionId, "message", goal.getDescription()));
+        // Through the router, so the goal's chat is journaled like any other envelope
+        if (!router.route(chat)) {
+            outcome.completeExceptionally(new RejectedExecutionException("mailbox rejected goal"));
+            return;
+        }
+        System.out.printf("🚀 Goal %d dispatched to %s (session=%s)%n", goalId, goal.getAgentId(), sessionId);
+    }
+
+    /**
+     * Fail {@code outcome} once the goal has run {@code timeout-seconds}, not counting the time
+     * its session waited on a person: a paused orchestration may be answered hours later.
+     */
+    private void armTimeout(CompletableFuture<?> outcome, PendingSession ps, long startedAtActiveMs) {
+        long timeoutMs = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        long remainingMs = ps.waitingOnPerson() ? timeoutMs : timeoutMs - (ps.activeMillis() - startedAtActiveMs);
+        if (remainingMs <= 0) {
+            outcome.completeExceptionally(new TimeoutException("goal timed out"));
+            return;
+        }
+        CompletableFuture.delayedExecutor(remainingMs, TimeUnit.MILLISECONDS).execute(() -> {
+            if (!outcome.isDone()) armTimeout(outcome, ps, startedAtActiveMs);
+        });
+    }
+
+    private void finish(long goalId, String status, Map<String, Object> result) {
+        try {
+            GoalEntity goal = repo.findById(goalId).orElseThrow();
+            goal.setStatus(status);
+            goal.setResult(mapper.writeValueAsString(result));
+            goal.setCompletedAt(Instant.now());
+            goal = repo.save(goal);
+
+            Map<String, Object> event = KernelEvents.event("goal_completed");
+            event.put("goalId", goalId);
+            event.put("sessionId", goal.getCorrelationId());
+            event.put("status", status);
+            sse.broadcast(event);
+
+            CompletableFuture<GoalEntity> fut = inFlight.remove(goalId);
+            if (fut != null) fut.complete(goal);
+            System.out.printf("🏁 Goal %d finished: %s%n", goalId, status);
+        } catch (Exception e) {
+            System.err.printf("❌ Failed to record completion of goal %d: %s%n", goalId, e.getMessage());
+            CompletableFuture<GoalEntity> fut = inFlight.remove(goalId);
+            if (fut != null) fut.completeExceptionally(e);
+        }
+    }
+}
@@ -1,41 +1,52 @@
 package org.logan.kernel.messaging;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.logan.kernel.agent.AgentRegistry;
 import org.logan.kernel.persistence.MessageEntity;
-import org.logan.kernel.persistence.MessageRepository;
+import org.logan.kernel.persistence.MessageJournal;
 import org.logan.protocol.MessageEnvelope;
 import org.springframework.stereotype.Component;
 
+import java.util.UUID;
+
 @Component
 public class KernelRouter {
-    private final MessageRepository messageRepository;
+    private final MessageJournal journal;
     private final LocalMessageBus localBus;
     private final MessagePublisher publisher;
     private final AgentRegistry registry;
+    private final ObjectMapper mapper;
 
-    public KernelRouter(MessageRepository repo,
+    public KernelRouter(MessageJournal journal,
                         LocalMessageBus localBus,
                         MessagePublisher publisher,
-                        AgentRegistry registry) {
-        this.messageRepository = repo;
+                        AgentRegistry registry,
+                        ObjectMapper mapper) {
+        this.journal = journal;
         this.localBus = localBus;
         this.publisher = publisher;
         this.registry = registry;
+        this.mapper = mapper;
     }
 
-    public void route(MessageEnvelope envelope) {
-        // 1. Save in DB
-        MessageEntity entity = MessageEntity.fromEnvelope(envelope);
-        messageRepository.save(entity);
+    /** @return false if the local recipient's mailbox rejected the envelope */
+    public boolean route(MessageEnvelope envelope) {
+        // correlation_id is NOT NULL
+        if (envelope.getCorrelationId() == null) {
+            envelope.setCorrelationId(UUID.randomUUID().toString());
+        }
+
+        // 1. Journal as PENDING (write-behind, never blocks routing)
+        MessageJournal.Ticket row = journal.record(MessageEntity.fromEnvelope(envelope, mapper));
 
-        // 2. Route locally if recipient exists
-        if (registry.getAgent(envelope.getRecipientId()) != null) {
-            localBus.send(envelope);
-            entity.setStatus("DELIVERED");
-            messageRepository.save(entity);
-        } else {
-            // 3. Else publish over Redis
-            publisher.publish(envelope.getRecipientId(), envelope);
+        // 2. Route locally if recipient exists (or is being rehydrated: the registry buffers for it)
+        if (registry.hasAgent(envelope.getRecipientId())) {
+            boolean delivered = localBus.send(envelope);
+            if (row != null) journal.markStatus(row, delivered ? "DELIVERED" : "REJECTED");
+            return delivered;
         }
+        // 3. Else publish over Redis
+        publisher.publish(envelope.getRecipientId(), envelope);
+        return true;
     }
 }
@@ -12,12 +12,11 @@ public class LocalMessageBus implements MessageBus{
         this.registry = registry;
     }
 
-    public void send(MessageEnvelope envelope) {
-        var recipient = registry.getAgent(envelope.getRecipientId());
-        if (recipient != null) {
-            recipient.handleMessage(envelope);
-        } else {
+    public boolean send(MessageEnvelope envelope) {
+        if (!registry.hasAgent(envelope.getRecipientId())) {
             System.out.println("⚠️ Local agent not found: " + envelope.getRecipientId());
+            return false;
         }
+        return registry.routeMessage(envelope);
     }
 }
@@ -3,5 +3,6 @@ package org.logan.kernel.messaging;
 import org.logan.protocol.MessageEnvelope;
 
 public interface MessageBus {
-    void send(MessageEnvelope envelope);
+    /** @return false if the envelope could not be handed to the recipient */
+    boolean send(MessageEnvelope envelope);
 }
@@ -1,20 +1,110 @@
 package org.logan.kernel.messaging;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import org.logan.protocol.MessageEnvelope;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 📤 Appends envelopes to the recipient's Redis stream ({@code <prefix><agentId>}).
+ *
+ * Unlike pub/sub, an entry stays in the stream until the owning kernel's consumer
+ * group acknowledges it, so messages sent while that kernel restarts are not lost.
+ * Entries that keep failing end up in a dead-letter stream kept outside the agent prefix.
+ */
 @Component
 public class MessagePublisher {
-    private final RedisTemplate<String, Object> redisTemplate;
+    static final String ENVELOPE_FIELD = "envelope";
+
+    private final StringRedisTemplate redis;
+    private final ObjectMapper mapper;
+
+    @Value("${kernel.streams.prefix:agent-stream:}")
+    private String streamPrefix;
 
-    public MessagePublisher(RedisTemplate<String, Object> redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    @Value("${kernel.streams.max-len:100000}")
+    private long maxLen;
+
+    // Outside the agent stream namespace, so no agent id can name the dead-letter stream
+    @Value("${kernel.streams.dead-letter-key:kernel-dead-letter:agent-stream}")
+    private String deadLetterKey;
+
+    public MessagePublisher(StringRedisTemplate redis, ObjectMapper mapper) {
+        this.redis = redis;
+        this.mapper = mapper;
     }
 
-    public void publish(String recipientAgentId, MessageEnvelope envelope) {
-        String channel = "agent:" + recipientAgentId;
-        redisTemplate.convertAndSend(channel, envelope);
+    @PostConstruct
+    void checkKeys() {
+        if (deadLetterKey.startsWith(streamPrefix)) {
+            throw new IllegalStateException("kernel.streams.dead-letter-key '" + deadLetterKey
+                    + "' is inside the agent stream prefix '" + streamPrefix + "'");
+        }
+    }
+
+    public RecordId publish(String recipientAgentId, MessageEnvelope envelope) {
+        ByteRecord record = rawRecord(recipientAgentId, envelope);
+        // StreamOperations.add has no XADD-options overload, so trimming needs the connection
+        return redis.execute((RedisCallback<RecordId>) connection ->
+                connection.streamCommands().xAdd(record, trimOptions()));
+    }
+
+    /** Pipelined XADD of many envelopes in one round-trip; order is kept per recipient stream. */
+    public void publishBatch(List<? extends MessageEnvelope<?>> envelopes) {
+        if (envelopes.isEmpty()) return;
+        XAddOptions options = trimOptions();
+        redis.executePipelined((RedisCallback<Object>) connection -> {
+            for (MessageEnvelope<?> env : envelopes) {
+                connection.streamCommands().xAdd(rawRecord(env.getRecipientId(), env), options);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Whether some kernel consumes the agent's stream: the hosting kernel creates it, with its
+     * consumer group, when the agent registers there.
+     */
+    public boolean hasStream(String agentId) {
+        return agentId != null && Boolean.TRUE.equals(redis.hasKey(streamKey(agentId)));
+    }
+
+    private ByteRecord rawRecord(String recipientAgentId, MessageEnvelope<?> envelope) {
+        return StreamRecords.rawBytes(Map.of(
+                ENVELOPE_FIELD.getBytes(StandardCharsets.UTF_8),
+                toJson(envelope).getBytes(StandardCharsets.UTF_8)
+        )).withStreamKey(streamKey(recipientAgentId).getBytes(StandardCharsets.UTF_8));
     }
-}
 
+    public String streamKey(String agentId) {
+        return streamPrefix + agentId;
+    }
+
+    public String deadLetterKey() {
+        return deadLetterKey;
+    }
+
+    private XAddOptions trimOptions() {
+        return XAddOptions.maxlen(maxLen).approximateTrimming(true);
+    }
+
+    private String toJson(MessageEnvelope<?> envelope) {
+        try {
+            return mapper.writeValueAsString(envelope);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Envelope is not serializable: " + e.getMessage(), e);
+        }
+    }
+}
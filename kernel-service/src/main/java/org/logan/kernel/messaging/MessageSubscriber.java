@@ -1,29 +1,215 @@
 package org.logan.kernel.messaging;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.logan.protocol.MessageEnvelope;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.logan.kernel.agent.AgentLifecycleEvent;
 import org.logan.kernel.agent.AgentRegistry;
-import org.springframework.data.redis.connection.Message;
-import org.springframework.data.redis.connection.MessageListener;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.stream.StreamListener;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer;
+import org.springframework.data.redis.stream.Subscription;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 📥 Consumes the Redis streams of every agent hosted by this kernel.
+ *
+ * Each kernel reads through its own consumer group ({@code kernel:<kernel.id>}), so its
+ * read position and un-acked entries survive restarts. Entries are acked only once the
+ * agent's mailbox accepts them. One the mailbox refuses is retried here after a short backoff,
+ * and after {@code max-deliveries} attempts moved to the dead-letter stream; anything else
+ * left pending longer than the reclaim idle time (e.g. read by a kernel that died) is claimed
+ * and retried the same way.
+ */
 @Component
-public class MessageSubscriber implements MessageListener {
-    private final ObjectMapper mapper = new ObjectMapper();
+public class MessageSubscriber implements StreamListener<String, MapRecord<String, String, String>> {
+    private final ObjectMapper mapper;
     private final AgentRegistry registry;
+    private final MessagePublisher publisher;
+    private final StringRedisTemplate redis;
+    private final StreamMessageListenerContainer<String, MapRecord<String, String, String>> container;
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reclaimer = Executors.newSingleThreadScheduledExecutor();
+
+    @Value("${kernel.id}")
+    private String kernelId;
+
+    @Value("${kernel.streams.reclaim-interval-ms:5000}")
+    private long reclaimIntervalMs;
+
+    @Value("${kernel.streams.reclaim-min-idle-ms:30000}")
+    private long reclaimMinIdleMs;
 
-    public MessageSubscriber(AgentRegistry registry) {
+    @Value("${kernel.streams.max-deliveries:5}")
+    private long maxDeliveries;
+
+    @Value("${kernel.streams.retry-delay-ms:100}")
+    private long retryDelayMs;
+
+    @Value("${kernel.streams.group-start-id:0}")
+    private String groupStartId;
+
+    public MessageSubscriber(ObjectMapper mapper,
+                             AgentRegistry registry,
+                             MessagePublisher publisher,
+                             StringRedisTemplate redis,
+                             StreamMessageListenerContainer<String, MapRecord<String, String, String>> container) {
+        this.mapper = mapper;
         this.registry = registry;
+        this.publisher = publisher;
+        this.redis = redis;
+        this.container = container;
+    }
+
+    @PostConstruct
+    public void start() {
+        container.start();
+        reclaimer.scheduleWithFixedDelay(this::reclaimPending,
+                reclaimIntervalMs, reclaimIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        reclaimer.shutdownNow();
+        subscriptions.values().forEach(Subscription::cancel);
+        container.stop();
+    }
+
+    @EventListener
+    public void onAgentLifecycle(AgentLifecycleEvent event) {
+        try {
+            if (event.isRegistered()) subscribe(event.agentId());
+            else unsubscribe(event.agentId());
+        } catch (Exception e) {
+            System.err.printf("⚠️ [streams] Could not %s stream for %s: %s%n",
+                    event.isRegistered() ? "subscribe to" : "unsubscribe from", event.agentId(), e.getMessage());
+        }
+    }
+
+    private void subscribe(String agentId) {
+        if (subscriptions.containsKey(agentId)) return;
+        String key = publisher.streamKey(agentId);
+        ensureGroup(key);
+
+        var request = StreamMessageListenerContainer.StreamReadRequest
+                .builder(StreamOffset.create(key, ReadOffset.lastConsumed()))
+                .consumer(Consumer.from(groupName(), kernelId))
+                .autoAcknowledge(false)
+                .cancelOnError(t -> false)
+                .errorHandler(t -> System.err.printf("⚠️ [streams] Read error on %s: %s%n", key, t.getMessage()))
+                .build();
+        subscriptions.put(agentId, container.register(request, this));
+        System.out.printf("📡 [streams] %s consuming %s as %s%n", groupName(), key, kernelId);
+    }
+
+    private void unsubscribe(String agentId) {
+        Subscription sub = subscriptions.remove(agentId);
+        if (sub != null) sub.cancel();
     }
 
     @Override
-    public void onMessage(Message message, byte[] pattern) {
+    public void onMessage(MapRecord<String, String, String> record) {
+        deliver(record.getStream(), record.getId(), record.getValue().get(MessagePublisher.ENVELOPE_FIELD), 1);
+    }
+
+    /**
+     * ✅ Ack only once the local mailbox has taken the envelope. A refusal is retried after
+     * {@code attempt × retry-delay-ms} rather than left for the reclaim; the backoff stays far
+     * below the reclaim idle time, so the reclaim doesn't claim an entry still being retried.
+     */
+    private void deliver(String stream, RecordId id, String json, long attempt) {
+        try {
+            MessageEnvelope<?> envelope = mapper.readValue(json, MessageEnvelope.class);
+            System.out.println("📩 Redis stream received message for agent: " + envelope.getRecipientId());
+            if (registry.routeMessage(envelope)) {
+                redis.opsForStream().acknowledge(stream, groupName(), id);
+                return;
+            }
+        } catch (Exception e) {
+            System.err.printf("❌ [streams] Failed to deliver %s from %s: %s%n", id, stream, e.getMessage());
+        }
+        try {
+            if (attempt >= maxDeliveries) {
+                deadLetter(stream, id, json, attempt);
+            } else {
+                reclaimer.schedule(() -> deliver(stream, id, json, attempt + 1),
+                        attempt * retryDelayMs, TimeUnit.MILLISECONDS);
+            }
+        } catch (Exception e) {
+            // Redis down or shutting down: the entry stays pending for the reclaim
+            System.err.printf("⚠️ [streams] Could not retry %s from %s: %s%n", id, stream, e.getMessage());
+        }
+    }
+
+    // 🔁 Claim entries nobody acked in time; dead-letter the ones that keep failing
+    private void reclaimPending() {
+        for (String agentId : List.copyOf(subscriptions.keySet())) {
+            String key = publisher.streamKey(agentId);
+            try {
+                PendingMessages pending = redis.opsForStream().pending(key, groupName(), Range.unbounded(), 100);
+                for (PendingMessage pm : pending) {
+                    if (pm.getElapsedTimeSinceLastDelivery().toMillis() < reclaimMinIdleMs) continue;
+
+                    List<MapRecord<String, Object, Object>> claimed = redis.opsForStream().claim(
+                            key, groupName(), kernelId, Duration.ofMillis(reclaimMinIdleMs), pm.getId());
+                    for (MapRecord<String, Object, Object> rec : claimed) {
+                        String json = String.valueOf(rec.getValue().get(MessagePublisher.ENVELOPE_FIELD));
+                        if (pm.getTotalDeliveryCount() >= maxDeliveries) {
+                            deadLetter(key, rec.getId(), json, pm.getTotalDeliveryCount());
+                        } else {
+                            deliver(key, rec.getId(), json, pm.getTotalDeliveryCount() + 1);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                System.err.printf("⚠️ [streams] Reclaim failed for %s: %s%n", key, e.getMessage());
+            }
+        }
+    }
+
+    private void deadLetter(String stream, RecordId id, String json, long deliveries) {
+        redis.opsForStream().add(StreamRecords.newRecord()
+                .in(publisher.deadLetterKey())
+                .ofMap(Map.of(
+                        MessagePublisher.ENVELOPE_FIELD, json,
+                        "sourceStream", stream,
+                        "sourceId", id.getValue(),
+                        "deliveries", String.valueOf(deliveries),
+                        "group", groupName()
+                )));
+        redis.opsForStream().acknowledge(stream, groupName(), id);
+        System.err.printf("☠️ [streams] Dead-lettered %s from %s after %d deliveries%n", id, stream, deliveries);
+    }
+
+    // XGROUP CREATE ... MKSTREAM at group-start-id: "0" (default) delivers everything already in the
+    // stream, so nothing sent before the agent's kernel created its group is lost; "$" skips that
+    // backlog. An existing group keeps its position either way, so restarts resume where they left off.
+    private void ensureGroup(String key) {
         try {
-            MessageEnvelope envelope = mapper.readValue(message.getBody(), MessageEnvelope.class);
-            System.out.println("📩 Redis received message for agent: " + envelope.getRecipientId());
-            registry.routeMessage(envelope); // forward to local agent
+            redis.execute((RedisCallback<Object>) (RedisConnection connection) -> connection.streamCommands()
+                    .xGroupCreate(key.getBytes(StandardCharsets.UTF_8), groupName(), ReadOffset.from(groupStartId), true));
         } catch (Exception e) {
-            e.printStackTrace();
+            if (e.getMessage() == null || !e.getMessage().contains("BUSYGROUP")) throw e;
         }
     }
+
+    private String groupName() {
+        return "kernel:" + kernelId;
+    }
 }
@@ -1,17 +1,30 @@
 package org.logan.kernel.persistence;
 
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 public class AgentPersistenceService {
+    private static final String UPSERT_ACTIVE_SQL = """
+            INSERT INTO agents (agent_id, agent_type, status, endpoint)
+            VALUES (?, ?, 'ACTIVE', ?)
+            ON DUPLICATE KEY UPDATE agent_type = VALUES(agent_type), status = 'ACTIVE', endpoint = VALUES(endpoint)
+            """;
+
+    /** One row of {@link #upsertActiveAll}. */
+    public record ActiveAgent(String agentId, String agentType, String endpoint) {}
+
     private final AgentRepository repo;
+    private final JdbcTemplate jdbc;
 
-    public AgentPersistenceService(AgentRepository repo) {
+    public AgentPersistenceService(AgentRepository repo, JdbcTemplate jdbc) {
         this.repo = repo;
+        this.jdbc = jdbc;
     }
 
     @Transactional
@@ -25,6 +38,15 @@ public class AgentPersistenceService {
         repo.save(entity);
     }
 
+    /** Mark many agents ACTIVE in one JDBC batch (state is left as it is) instead of a find + save each. */
+    @Transactional
+    public void upsertActiveAll(List<ActiveAgent> agents) {
+        if (agents.isEmpty()) return;
+        List<Object[]> rows = new ArrayList<>(agents.size());
+        for (ActiveAgent a : agents) rows.add(new Object[]{a.agentId(), a.agentType(), a.endpoint()});
+        jdbc.batchUpdate(UPSERT_ACTIVE_SQL, rows);
+    }
+
     @Transactional
     public void markTerminated(String agentId) {
         repo.findById(agentId).ifPresent(e -> {
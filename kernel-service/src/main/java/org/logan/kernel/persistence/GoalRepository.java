@@ -0,0 +1,9 @@
+package org.logan.kernel.persistence;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface GoalRepository extends JpaRepository<GoalEntity, Long> {
+    List<GoalEntity> findByStatusOrderByIdAsc(String status);
+}
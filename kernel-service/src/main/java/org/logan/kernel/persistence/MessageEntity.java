@@ -1,5 +1,7 @@
 package org.logan.kernel.persistence;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -22,22 +24,39 @@ public class MessageEntity {
     @Column(columnDefinition = "json")
     private String payload;
 
+    /** payload.sessionId cut to 100 characters, generated by MySQL (see V4 and V6 migrations). */
+    @Column(insertable = false, updatable = false)
+    private String sessionId;
+
     private String signature;
     private Instant timestamp;
     private String status;
     private Instant createdAt;
 
-    public static MessageEntity fromEnvelope(org.logan.protocol.MessageEnvelope env) {
+    public static MessageEntity fromEnvelope(org.logan.protocol.MessageEnvelope env, ObjectMapper mapper) {
         return MessageEntity.builder()
                 .type(env.getType())
                 .senderId(env.getSenderId())
                 .recipientId(env.getRecipientId())
                 .correlationId(env.getCorrelationId())
-                .payload(env.getPayload().toString()) // Or serialize JSON
+                .payload(payloadJson(env.getPayload(), mapper))
                 .signature(env.getSignature())
                 .timestamp(env.getTimestamp())
                 .status("PENDING")
                 .createdAt(Instant.now())
                 .build();
     }
+
+    /** The payload as JSON for the json column; something unserializable is kept as a JSON string. */
+    private static String payloadJson(Object payload, ObjectMapper mapper) {
+        try {
+            return mapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            try {
+                return mapper.writeValueAsString(String.valueOf(payload));
+            } catch (JsonProcessingException ignored) {
+                return "null";
+            }
+        }
+    }
 }
@@ -0,0 +1,243 @@
+package org.logan.kernel.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * 🔎 MessageHistory: reads the {@code messages} table page by page for support lookups.
+ *
+ * Pages are keyset (seek) pages ordered by {@code (created_at, id)}: the cursor is the last row's
+ * pair, and the next page starts right after it, so page 10 000 costs what page 1 costs instead
+ * of skipping everything before it like OFFSET. Every filter combination seeks an index whose
+ * second column is {@code created_at} (id rides along as part of the primary key), and a time
+ * range also prunes partitions. An agent filter matches sender or recipient, run as two seeks
+ * merged with UNION so neither loses its index.
+ *
+ * Only the requested fields are selected; payloads stay in the table unless asked for.
+ */
+@Component
+public class MessageHistory {
+
+    public enum Order { ASC, DESC }
+
+    /** Any of the fields may be null. */
+    public record Filter(String sessionId, String agentId, String type, Instant from, Instant to) {}
+
+    /** {@code nextCursor} is null on the last page. */
+    public record Page(List<Map<String, Object>> items, String nextCursor) {}
+
+    // API field -> column; id and createdAt are always returned, they make the cursor
+    private static final Map<String, String> FIELDS = new LinkedHashMap<>();
+    static {
+        FIELDS.put("id", "id");
+        FIELDS.put("type", "type");
+        FIELDS.put("senderId", "sender_id");
+        FIELDS.put("recipientId", "recipient_id");
+        FIELDS.put("correlationId", "correlation_id");
+        FIELDS.put("sessionId", "session_id");
+        FIELDS.put("status", "status");
+        FIELDS.put("timestamp", "timestamp");
+        FIELDS.put("createdAt", "created_at");
+        FIELDS.put("signature", "signature");
+        FIELDS.put("payload", "payload");
+    }
+    // Width of the generated session_id column, which keeps only that many characters
+    private static final int SESSION_ID_LENGTH = 100;
+
+    public static final List<String> DEFAULT_FIELDS = List.of(
+            "id", "type", "senderId", "recipientId", "correlationId", "sessionId", "status", "timestamp", "createdAt");
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper mapper;
+
+    @Value("${kernel.messages.history.default-page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${kernel.messages.history.max-page-size:1000}")
+    private int maxPageSize;
+
+    @Value("${kernel.messages.history.export-batch-size:1000}")
+    private int exportBatchSize;
+
+    public MessageHistory(JdbcTemplate jdbc, ObjectMapper mapper) {
+        this.jdbc = jdbc;
+        this.mapper = mapper;
+    }
+
+    /**
+     * One page after {@code cursor} (null = from the start).
+     *
+     * @throws IllegalArgumentException for an unknown field or a malformed cursor
+     */
+    public Page page(Filter filter, List<String> fields, Order order, String cursor, Integer limit) {
+        int size = Math.max(1, Math.min(limit != null ? limit : defaultPageSize, maxPageSize));
+        return fetch(filter, columns(fields), order, decodeCursor(cursor), size);
+    }
+
+    /** Every matching row as one JSON object per line, fetched a keyset batch at a time. */
+    public void export(Filter filter, List<String> fields, Order order, OutputStream out) throws IOException {
+        List<String> columns = columns(fields);
+        Cursor after = null;
+        long rows = 0;
+        while (true) {
+            Page page = fetch(filter, columns, order, after, Math.max(1, exportBatchSize));
+            for (Map<String, Object> item : page.items()) {
+                out.write(mapper.writeValueAsBytes(item));
+                out.write('\n');
+            }
+            out.flush();
+            rows += page.items().size();
+            if (page.nextCursor() == null) break;
+            after = decodeCursor(page.nextCursor());
+        }
+        System.out.printf("📤 Exported %d message(s) from history%n", rows);
+    }
+
+    private Page fetch(Filter filter, List<String> columns, Order order, Cursor after, int size) {
+        String dir = order == Order.ASC ? "ASC" : "DESC";
+        String select = String.join(", ", columns);
+        String orderBy = " ORDER BY created_at " + dir + ", id " + dir + " LIMIT ?";
+
+        // One extra row tells whether another page follows
+        List<Object> args = new ArrayList<>();
+        String sql;
+        if (filter.agentId() != null) {
+            // Each branch seeks its own index and stops after a page; the merge keeps the first page of both
+            sql = "(" + seek(select, "recipient_id = ?", filter, order, after, args) + orderBy + ")";
+            args.add(size + 1);
+            sql += " UNION (" + seek(select, "sender_id = ?", filter, order, after, args) + orderBy + ")";
+            args.add(size + 1);
+            sql += orderBy;
+        } else {
+            sql = seek(select, null, filter, order, after, args) + orderBy;
+        }
+        args.add(size + 1);
+
+        List<Map<String, Object>> rows = jdbc.query(sql, rowMapper(columns), args.toArray());
+        String next = null;
+        if (rows.size() > size) {
+            rows = new ArrayList<>(rows.subList(0, size));
+            Map<String, Object> last = rows.get(size - 1);
+            next = encodeCursor(Instant.parse((String) last.get("createdAt")), (Long) last.get("id"));
+        }
+        return new Page(rows, next);
+    }
+
+    /** SELECT ... WHERE for the filter and the keyset, binding its arguments into {@code args}. */
+    private static String seek(String select, String agentCondition, Filter filter, Order order, Cursor after,
+                               List<Object> args) {
+        List<String> where = new ArrayList<>();
+        if (agentCondition != null) {
+            where.add(agentCondition);
+            args.add(filter.agentId());
+        }
+        if (filter.sessionId() != null) {
+            where.add("session_id = ?");
+            args.add(stored(filter.sessionId()));
+        }
+        if (filter.type() != null) {
+            where.add("type = ?");
+            args.add(filter.type());
+        }
+        if (filter.from() != null) {
+            where.add("created_at >= ?");
+            args.add(Timestamp.from(filter.from()));
+        }
+        if (filter.to() != null) {
+            where.add("created_at < ?");
+            args.add(Timestamp.from(filter.to()));
+        }
+        if (after != null) {
+            // Same as (created_at, id) > / < (?, ?), written so the range on created_at is sargable
+            String cmp = order == Order.ASC ? ">" : "<";
+            where.add("created_at " + cmp + "= ? AND (created_at " + cmp + " ? OR id " + cmp + " ?)");
+            args.add(Timestamp.from(after.createdAt()));
+            args.add(Timestamp.from(after.createdAt()));
+            args.add(after.id());
+        }
+        return "SELECT " + select + " FROM messages" + (where.isEmpty() ? "" : " WHERE " + String.join(" AND ", where));
+    }
+
+    /** The session id as the column holds it: longer ids are stored cut short, so match that. */
+    private static String stored(String sessionId) {
+        if (sessionId.codePointCount(0, sessionId.length()) <= SESSION_ID_LENGTH) return sessionId;
+        return sessionId.substring(0, sessionId.offsetByCodePoints(0, SESSION_ID_LENGTH));
+    }
+
+    /** @throws IllegalArgumentException if a field isn't one of the table's */
+    public static void checkFields(List<String> fields) {
+        columns(fields);
+    }
+
+    private static List<String> columns(List<String> fields) {
+        Set<String> wanted = new LinkedHashSet<>(List.of("id", "createdAt"));
+        wanted.addAll(fields == null || fields.isEmpty() ? DEFAULT_FIELDS : fields);
+        List<String> columns = new ArrayList<>();
+        for (String f : FIELDS.keySet()) {
+            if (wanted.remove(f)) columns.add(FIELDS.get(f));
+        }
+        if (!wanted.isEmpty()) {
+            throw new IllegalArgumentException("Unknown field(s) " + wanted + ", expected some of " + FIELDS.keySet());
+        }
+        return columns;
+    }
+
+    private static RowMapper<Map<String, Object>> rowMapper(List<String> columns) {
+        return (ResultSet rs, int rowNum) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (Map.Entry<String, String> f : FIELDS.entrySet()) {
+                if (!columns.contains(f.getValue())) continue;
+                row.put(f.getKey(), read(rs, f.getKey(), f.getValue()));
+            }
+            return row;
+        };
+    }
+
+    private static Object read(ResultSet rs, String field, String column) throws SQLException {
+        return switch (field) {
+            case "id" -> rs.getLong(column);
+            case "timestamp", "createdAt" -> {
+                Timestamp ts = rs.getTimestamp(column);
+                yield ts != null ? ts.toInstant().toString() : null;
+            }
+            case "payload" -> {
+                String json = rs.getString(column);
+                yield json != null ? new RawValue(json) : null;   // already JSON, written through as is
+            }
+            default -> rs.getString(column);
+        };
+    }
+
+    // --- Cursor: opaque to clients, (created_at, id) of the last row ---
+
+    private record Cursor(Instant createdAt, long id) {}
+
+    private static String encodeCursor(Instant createdAt, long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int bar = raw.indexOf('|');
+            return new Cursor(Instant.parse(raw.substring(0, bar)), Long.parseLong(raw.substring(bar + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+    }
+}
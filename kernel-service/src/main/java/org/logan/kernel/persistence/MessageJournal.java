@@ -0,0 +1,271 @@
+package org.logan.kernel.persistence;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 📒 MessageJournal: write-behind journal for the {@code messages} table.
+ *
+ * Routing only enqueues; a single writer thread groups inserts and status
+ * transitions into JDBC batches, flushed when the batch is full or the flush
+ * window elapses. A status change that lands in the same batch as its insert is
+ * folded into the insert, so the common PENDING → DELIVERED pair costs one row write.
+ *
+ * Correlation ids are shared by retries and replies, so rows are never addressed by
+ * correlation id alone: {@link #record} hands back a {@link Ticket} naming that one row,
+ * and {@link #markStatus} updates only the row the ticket names. The writer keeps the id
+ * each insert generated, per ticket, and updates by primary key ({@code id, created_at}).
+ */
+@Component
+public class MessageJournal {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO messages (type, sender_id, recipient_id, correlation_id, payload,
+                                  signature, timestamp, status, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    // (id, created_at) is the primary key; created_at, the partitioning key, prunes to one partition
+    private static final String UPDATE_STATUS_SQL = "UPDATE messages SET status = ? WHERE id = ? AND created_at = ?";
+
+    /** Names one journaled row, for later status changes. */
+    public record Ticket(long seq, String correlationId, Instant createdAt) {}
+
+    private final JdbcTemplate jdbc;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${kernel.journal.capacity:10000}")
+    private int capacity;
+
+    @Value("${kernel.journal.batch-size:200}")
+    private int batchSize;
+
+    @Value("${kernel.journal.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${kernel.journal.max-retries:3}")
+    private int maxRetries;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private Map<Long, Long> rowIds;   // ticket seq -> generated id, bounded LRU; writer thread only
+    private BlockingQueue<JournalOp> buffer;
+    private Thread writer;
+    private volatile boolean running;
+    private Counter written;
+    private Counter dropped;
+
+    public MessageJournal(JdbcTemplate jdbc, MeterRegistry meterRegistry) {
+        this.jdbc = jdbc;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        buffer = new ArrayBlockingQueue<>(capacity);
+        // Status changes follow their insert closely; a row older than a full buffer gets none
+        rowIds = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+        written = meterRegistry.counter("kernel.journal.written");
+        dropped = meterRegistry.counter("kernel.journal.dropped");
+        Gauge.builder("kernel.journal.buffered", buffer, BlockingQueue::size).register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::runWriter, "message-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Queue a new message row. Never blocks; returns {@code null} if the buffer is full. */
+    public Ticket record(MessageEntity entity) {
+        // The column keeps whole seconds; truncate here so the ticket matches what is stored
+        Instant created = (entity.getCreatedAt() != null ? entity.getCreatedAt() : Instant.now())
+                .truncatedTo(ChronoUnit.SECONDS);
+        entity.setCreatedAt(created);
+        Ticket ticket = new Ticket(sequence.incrementAndGet(), entity.getCorrelationId(), created);
+        return enqueue(new JournalOp(entity, ticket, entity.getStatus())) ? ticket : null;
+    }
+
+    /** Queue a status transition for the row {@code ticket} names. */
+    public boolean markStatus(Ticket ticket, String status) {
+        return enqueue(new JournalOp(null, ticket, status));
+    }
+
+    private boolean enqueue(JournalOp op) {
+        if (running && buffer.offer(op)) return true;
+        dropped.increment();
+        System.err.printf("⚠️ [journal] Buffer full (%d), dropped %s for correlation=%s%n",
+                capacity, op.isInsert() ? "insert" : "status " + op.status(), op.ticket().correlationId());
+        return false;
+    }
+
+    // 🔁 Drain by size or time window, whichever comes first
+    private void runWriter() {
+        List<JournalOp> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                JournalOp first = buffer.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    JournalOp next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // shutdown requested — fall through and flush what we have
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /** Inserts and the status updates left over once they are folded, each keyed by ticket. */
+    record Folded(List<JournalOp> inserts, List<JournalOp> updates) {}
+
+    /** Fold status changes into inserts of the same row in this batch; keep the rest as updates. */
+    static Folded fold(List<JournalOp> batch) {
+        Map<Long, JournalOp> inserts = new LinkedHashMap<>();
+        Map<Long, JournalOp> updates = new LinkedHashMap<>();
+
+        for (JournalOp op : batch) {
+            long seq = op.ticket().seq();
+            if (op.isInsert()) {
+                inserts.put(seq, op);
+            } else {
+                JournalOp pending = inserts.get(seq);
+                if (pending != null) pending.entity().setStatus(op.status());
+                else updates.put(seq, op);   // last transition of a row wins
+            }
+        }
+        return new Folded(new ArrayList<>(inserts.values()), new ArrayList<>(updates.values()));
+    }
+
+    private void flush(List<JournalOp> batch) {
+        Folded folded = fold(batch);
+        List<JournalOp> rows = folded.inserts();
+        List<JournalOp> statusRows = folded.updates();
+
+        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            try {
+                if (!rows.isEmpty()) {
+                    insert(rows);
+                    rows.clear();
+                }
+                if (!statusRows.isEmpty()) {
+                    updateStatus(statusRows);
+                }
+                written.increment(batch.size());
+                return;
+            } catch (Exception e) {
+                System.err.printf("⚠️ [journal] Batch flush attempt %d/%d failed: %s%n",
+                        attempt, maxRetries, e.getMessage());
+                try {
+                    Thread.sleep(100L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        dropped.increment(batch.size());
+        System.err.printf("❌ [journal] Gave up on batch of %d op(s) after %d attempts%n", batch.size(), maxRetries);
+    }
+
+    // One JDBC batch; the generated ids come back in insert order and are kept per ticket
+    private void insert(List<JournalOp> rows) {
+        jdbc.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (JournalOp op : rows) {
+                    MessageEntity e = op.entity();
+                    Instant created = e.getCreatedAt();
+                    ps.setString(1, e.getType());
+                    ps.setString(2, e.getSenderId());
+                    ps.setString(3, e.getRecipientId());
+                    ps.setString(4, e.getCorrelationId());
+                    ps.setString(5, e.getPayload());
+                    ps.setString(6, e.getSignature());
+                    ps.setTimestamp(7, Timestamp.from(e.getTimestamp() != null ? e.getTimestamp() : created));
+                    ps.setString(8, e.getStatus());
+                    ps.setTimestamp(9, Timestamp.from(created));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (JournalOp op : rows) {
+                        if (!keys.next()) break;
+                        rowIds.put(op.ticket().seq(), keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    private void updateStatus(List<JournalOp> statusRows) {
+        List<JournalOp> known = new ArrayList<>(statusRows.size());
+        for (JournalOp u : statusRows) {
+            if (rowIds.containsKey(u.ticket().seq())) {
+                known.add(u);
+            } else {
+                // Its insert was dropped, or is too old to still be remembered
+                dropped.increment();
+                System.err.printf("⚠️ [journal] No row id for status %s of correlation=%s, skipped%n",
+                        u.status(), u.ticket().correlationId());
+            }
+        }
+        statusRows.clear();
+        statusRows.addAll(known);
+        if (known.isEmpty()) return;
+        jdbc.batchUpdate(UPDATE_STATUS_SQL, known, known.size(), (ps, u) -> {
+            ps.setString(1, u.status());
+            ps.setLong(2, rowIds.get(u.ticket().seq()));
+            ps.setTimestamp(3, Timestamp.from(u.ticket().createdAt()));
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (writer == null) return;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.printf("📒 [journal] Flushed on shutdown (%d op(s) left unwritten)%n", buffer.size());
+    }
+
+    record JournalOp(MessageEntity entity, Ticket ticket, String status) {
+        boolean isInsert() { return entity != null; }
+    }
+}
@@ -0,0 +1,196 @@
+package org.logan.kernel.persistence;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 🗄️ MessageRetention: keeps the monthly partitions of {@code messages} in shape.
+ *
+ * Every run splits the coming months off {@code pmax}, so new rows never land in the catch-all
+ * partition, and retires months older than the retention window: their rows are copied to
+ * {@code messages_archive} in bounded batches (when archiving is on) and the partition is then
+ * dropped, which frees the space at once instead of deleting row by row. Copies use
+ * {@code INSERT IGNORE}, so a run interrupted halfway simply repeats.
+ *
+ * V4 creates a fixed first layout ({@code p202610} + {@code pmax}), so on a database migrated
+ * after October 2026, or after retention was off for longer than {@code months-ahead}, pmax
+ * already holds rows. The first split then moves them into their month partitions, which
+ * copies those rows and blocks writes to {@code messages} while it runs; it is logged with
+ * the row count. From then on pmax stays empty.
+ */
+@Component
+public class MessageRetention {
+
+    private static final Pattern MONTH_PARTITION = Pattern.compile("p\\d{6}");
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final String COLUMNS =
+            "id, type, sender_id, recipient_id, correlation_id, session_id, payload, signature, timestamp, status, created_at";
+
+    private final JdbcTemplate jdbc;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${kernel.messages.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${kernel.messages.retention.months:3}")
+    private int retentionMonths;
+
+    @Value("${kernel.messages.retention.archive:true}")
+    private boolean archive;
+
+    @Value("${kernel.messages.retention.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${kernel.messages.retention.months-ahead:2}")
+    private int monthsAhead;
+
+    @Value("${kernel.messages.retention.interval-hours:6}")
+    private long intervalHours;
+
+    private ScheduledExecutorService scheduler;
+    private Counter archived;
+    private Counter dropped;
+
+    public MessageRetention(JdbcTemplate jdbc, MeterRegistry meterRegistry) {
+        this.jdbc = jdbc;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        archived = meterRegistry.counter("kernel.messages.archived");
+        dropped = meterRegistry.counter("kernel.messages.partitions.dropped");
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "message-retention");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::runSafely, 0, Math.max(1, intervalHours), TimeUnit.HOURS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    private void runSafely() {
+        try {
+            maintain();
+        } catch (Exception e) {
+            System.err.printf("⚠️ Message retention run failed: %s%n", e.getMessage());
+        }
+    }
+
+    /** One pass: create upcoming partitions, then archive and drop expired ones. */
+    public void maintain() {
+        maintain(YearMonth.now());
+    }
+
+    void maintain(YearMonth now) {
+        List<String> partitions = jdbc.queryForList("""
+                SELECT PARTITION_NAME FROM information_schema.PARTITIONS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'messages' AND PARTITION_NAME IS NOT NULL
+                ORDER BY PARTITION_ORDINAL_POSITION
+                """, String.class);
+        List<YearMonth> months = new ArrayList<>();
+        for (String p : partitions) {
+            YearMonth month = monthOf(p);
+            if (month != null) months.add(month);
+        }
+        if (months.isEmpty() || !partitions.contains("pmax")) {
+            System.err.println("⚠️ messages is not partitioned by month, retention skipped");
+            return;
+        }
+
+        createAhead(months.get(months.size() - 1), now.plusMonths(Math.max(0, monthsAhead)));
+        for (YearMonth month : expired(months, now, retentionMonths)) {
+            retire(partitionName(month));
+        }
+    }
+
+    private void createAhead(YearMonth last, YearMonth until) {
+        String parts = partitionsThrough(last, until);
+        if (parts.isEmpty()) return;
+        Long stranded = jdbc.queryForObject("SELECT COUNT(*) FROM messages PARTITION (pmax)", Long.class);
+        if (stranded != null && stranded > 0) {
+            // The clock passed the last month bound: this split copies those rows and blocks writes meanwhile
+            System.err.printf("⚠️ messages partition pmax holds %d row(s) past %s; moving them into month partitions%n",
+                    stranded, partitionName(last));
+        }
+        jdbc.execute("ALTER TABLE messages REORGANIZE PARTITION pmax INTO ("
+                + parts + "PARTITION pmax VALUES LESS THAN MAXVALUE)");
+        System.out.printf("🗓️ Created messages partitions through %s%n", partitionName(until));
+    }
+
+    static String partitionName(YearMonth month) {
+        return month.format(PARTITION_NAME);
+    }
+
+    /** The month of a {@code pYYYYMM} partition, or null for any other name (e.g. pmax). */
+    static YearMonth monthOf(String partition) {
+        if (!MONTH_PARTITION.matcher(partition).matches()) return null;
+        return YearMonth.of(Integer.parseInt(partition.substring(1, 5)), Integer.parseInt(partition.substring(5)));
+    }
+
+    /**
+     * Partition definitions for the months after {@code last} through {@code until}, each bounded
+     * by the 1st of the following month; empty if {@code last} already reaches {@code until}.
+     */
+    static String partitionsThrough(YearMonth last, YearMonth until) {
+        StringBuilder parts = new StringBuilder();
+        for (YearMonth m = last.plusMonths(1); !m.isAfter(until); m = m.plusMonths(1)) {
+            parts.append(String.format("PARTITION %s VALUES LESS THAN (UNIX_TIMESTAMP('%s-01 00:00:00')), ",
+                    partitionName(m), m.plusMonths(1)));
+        }
+        return parts.toString();
+    }
+
+    /**
+     * Month partitions entirely older than the retention window, oldest first. pYYYYMM holds rows
+     * before the 1st of the following month (the oldest one also everything earlier), so with
+     * {@code retentionMonths} = 3 in 2026-10, p202606 and older go and p202607 stays.
+     */
+    static List<YearMonth> expired(List<YearMonth> months, YearMonth now, int retentionMonths) {
+        YearMonth oldestKept = now.minusMonths(Math.max(1, retentionMonths));
+        List<YearMonth> expired = new ArrayList<>();
+        for (YearMonth month : months) {
+            if (!month.isBefore(oldestKept)) break;
+            expired.add(month);
+        }
+        return expired;
+    }
+
+    private void retire(String partition) {
+        long copied = 0;
+        if (archive) {
+            long after = 0;
+            while (true) {
+                Long upTo = jdbc.queryForObject("SELECT MAX(id) FROM (SELECT id FROM messages PARTITION (" + partition
+                        + ") WHERE id > ? ORDER BY id LIMIT ?) batch", Long.class, after, batchSize);
+                if (upTo == null) break;
+                copied += jdbc.update("INSERT IGNORE INTO messages_archive (" + COLUMNS + ") SELECT " + COLUMNS
+                        + " FROM messages PARTITION (" + partition + ") WHERE id > ? AND id <= ?", after, upTo);
+                after = upTo;
+            }
+            archived.increment(copied);
+        }
+        jdbc.execute("ALTER TABLE messages DROP PARTITION " + partition);
+        dropped.increment();
+        System.out.printf("🗄️ Retired messages partition %s (%d row(s) archived)%n", partition, copied);
+    }
+}
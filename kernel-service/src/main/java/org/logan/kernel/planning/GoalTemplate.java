@@ -0,0 +1,119 @@
+package org.logan.kernel.planning;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A user goal with its entities pulled out: {@code "Pay 500 to Alice"} and
+ * {@code "pay 75 to Bob"} both become {@code "pay {0} to {1}"}.
+ *
+ * Entities are quoted strings, tokens containing a digit (amounts, account ids, emails with
+ * numbers) and capitalized words other than the first one. The rest is lower-cased with
+ * whitespace and trailing punctuation normalized.
+ *
+ * Substitution in either direction is one regex pass, so a value is never rewritten twice
+ * (a param {@code "1"} doesn't hit the {@code {1}} just written, a value containing {@code {0}}
+ * isn't filled again).
+ */
+public record GoalTemplate(String key, List<String> params) {
+
+    private static final Pattern ENTITY = Pattern.compile(
+            "\"([^\"]*)\"|'([^']*)'|([\\w.@+-]*\\d[\\w.@+-]*)|\\b([A-Z][\\w-]*)");
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{(\\d+)}");
+    private static final String WORD_START = "(?<![\\w])";
+    private static final String WORD_END = "(?![\\w])";
+
+    public static GoalTemplate of(String goal) {
+        String text = goal == null ? "" : goal.trim();
+        List<String> params = new ArrayList<>();
+        StringBuilder key = new StringBuilder();
+        Matcher m = ENTITY.matcher(text);
+        int last = 0;
+        while (m.find()) {
+            String value = m.group(1) != null ? m.group(1)
+                    : m.group(2) != null ? m.group(2)
+                    : m.group(3) != null ? m.group(3)
+                    : m.start() > 0 ? m.group(4) : null;   // a capitalized first word is just grammar
+            if (value == null || value.isEmpty()) continue;
+            key.append(text, last, m.start()).append('{').append(params.size()).append('}');
+            params.add(value);
+            last = m.end();
+        }
+        key.append(text.substring(last));
+
+        String normalized = key.toString().toLowerCase()   // placeholders are braces and digits, unaffected
+                .replaceAll("\\s+", " ")
+                .replaceAll("[\\s.!?]+$", "")
+                .trim();
+        return new GoalTemplate(normalized, List.copyOf(params));
+    }
+
+    /** Replace every occurrence of this goal's entity values in {@code text} by their placeholders. */
+    public String parameterize(String text) {
+        return parameterize(text, new HashSet<>());
+    }
+
+    /**
+     * Like {@link #parameterize(String)}, adding the index of every placeholder written to
+     * {@code used}, so a caller can tell whether a whole plan covered all entities.
+     */
+    public String parameterize(String text, Set<Integer> used) {
+        if (params.isEmpty() || text == null) return text;
+        // Whole tokens only, as faithful() checks ("5" must not hit the one in "form 1500");
+        // longest first, so a value that prefixes another ("Bob" / "Bob Smith") loses
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < params.size(); i++) order.add(i);
+        order.sort((a, b) -> params.get(b).length() - params.get(a).length());
+        Map<String, Integer> indexOf = new HashMap<>();
+        StringJoiner alternatives = new StringJoiner("|");
+        for (int i : order) {
+            if (indexOf.putIfAbsent(params.get(i), i) == null) alternatives.add(Pattern.quote(params.get(i)));
+        }
+
+        Matcher m = Pattern.compile(WORD_START + "(?:" + alternatives + ")" + WORD_END).matcher(text);
+        StringBuilder out = new StringBuilder();
+        while (m.find()) {
+            int i = indexOf.get(m.group());
+            used.add(i);
+            m.appendReplacement(out, Matcher.quoteReplacement("{" + i + "}"));
+        }
+        m.appendTail(out);
+        return out.toString();
+    }
+
+    /**
+     * Whether plan texts parameterized with this goal are safe to replay for another goal of the
+     * same shape: every entity became a placeholder somewhere ({@code used} from
+     * {@link #parameterize(String, Set)}), no two entities share a value (a placeholder couldn't
+     * tell which one it stands for), and no entity value is left in any text as a word in another
+     * case (the model rephrased it, so the literal would be replayed as is).
+     */
+    public boolean faithful(Set<Integer> used, Collection<String> parameterizedTexts) {
+        if (used.size() != params.size() || new HashSet<>(params).size() != params.size()) return false;
+        List<Pattern> literals = params.stream()
+                .map(p -> Pattern.compile(WORD_START + Pattern.quote(p) + WORD_END,
+                        Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE))
+                .toList();
+        for (String text : parameterizedTexts) {
+            String rest = PLACEHOLDER.matcher(text).replaceAll(" ");
+            for (Pattern literal : literals) {
+                if (literal.matcher(rest).find()) return false;
+            }
+        }
+        return true;
+    }
+
+    /** Fill placeholders in {@code text} with this goal's entity values; unknown indexes stay as they are. */
+    public String instantiate(String text) {
+        if (params.isEmpty() || text == null) return text;
+        Matcher m = PLACEHOLDER.matcher(text);
+        StringBuilder out = new StringBuilder();
+        while (m.find()) {
+            int i = m.group(1).length() > 6 ? -1 : Integer.parseInt(m.group(1));
+            m.appendReplacement(out, Matcher.quoteReplacement(i >= 0 && i < params.size() ? params.get(i) : m.group()));
+        }
+        m.appendTail(out);
+        return out.toString();
+    }
+}
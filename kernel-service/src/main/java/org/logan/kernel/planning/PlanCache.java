@@ -0,0 +1,268 @@
+package org.logan.kernel.planning;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.logan.kernel.tools.AgentToolCatalog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * 🗃️ PlanCache: orchestration plans for goals already planned, so a repeated goal skips the
+ * planner LLM.
+ *
+ * Entries are keyed by the goal's {@link GoalTemplate} and only valid for the tool catalog
+ * they were planned against: when {@link AgentToolCatalog} changes, in-memory entries are dropped.
+ * Entity values are stored as placeholders in the plan's step texts and filled in from the
+ * new goal on a hit. In memory it is an LRU with a TTL; with {@code kernel.plan-cache.persist}
+ * entries are also written to {@code plan_cache} and read back on a memory miss. The TTL runs
+ * from when the plan was made, however often it is read back.
+ */
+@Component
+public class PlanCache {
+    private static final TypeReference<List<Map<String, Object>>> PLAN_TYPE = new TypeReference<>() {};
+
+    private static final String SELECT_SQL =
+            "SELECT plan, created_at FROM plan_cache WHERE template_hash = ? AND catalog_hash = ? AND created_at > ?";
+    private static final String UPSERT_SQL = """
+            INSERT INTO plan_cache (template_hash, template, catalog_hash, plan, created_at)
+            VALUES (?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE catalog_hash = VALUES(catalog_hash), plan = VALUES(plan),
+                                    created_at = VALUES(created_at)
+            """;
+    private static final String EXPIRE_SQL = "DELETE FROM plan_cache WHERE created_at < ?";
+
+    private record Entry(List<Map<String, Object>> plan, long storedAt) {}
+
+    private final AgentToolCatalog catalog;
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper mapper;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Entry> entries;
+    private long catalogVersion = -1;   // guarded by entries
+    private String catalogHash = "";    // guarded by entries
+
+    @Value("${kernel.plan-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${kernel.plan-cache.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    @Value("${kernel.plan-cache.persist:false}")
+    private boolean persist;
+
+    private final int maxEntries;
+    private ExecutorService writer;
+    private Counter hits;
+    private Counter misses;
+    private Counter skipped;
+    private Timer cachedPlanning;
+    private Timer modelPlanning;
+
+    public PlanCache(AgentToolCatalog catalog, JdbcTemplate jdbc, ObjectMapper mapper, MeterRegistry meterRegistry,
+                     @Value("${kernel.plan-cache.max-entries:1000}") int maxEntries) {
+        this.catalog = catalog;
+        this.jdbc = jdbc;
+        this.mapper = mapper;
+        this.meterRegistry = meterRegistry;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > PlanCache.this.maxEntries;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void start() {
+        writer = Executors.newVirtualThreadPerTaskExecutor();
+        hits = meterRegistry.counter("kernel.plan.cache", "result", "hit");
+        misses = meterRegistry.counter("kernel.plan.cache", "result", "miss");
+        skipped = meterRegistry.counter("kernel.plan.cache.skipped");
+        cachedPlanning = Timer.builder("kernel.plan.latency").tag("source", "cache")
+                .publishPercentiles(0.5, 0.95).register(meterRegistry);
+        modelPlanning = Timer.builder("kernel.plan.latency").tag("source", "planner")
+                .publishPercentiles(0.5, 0.95).register(meterRegistry);
+        Gauge.builder("kernel.plan.cache.size", this, PlanCache::size).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        writer.shutdown();
+    }
+
+    /** The cached plan for this goal, with its entities filled in, if one is still valid. */
+    public Optional<List<Map<String, Object>>> lookup(GoalTemplate goal) {
+        if (!enabled) return Optional.empty();
+        long started = System.nanoTime();
+        String hash = catalogHash();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(goal.key());
+            if (entry != null && expired(entry.storedAt())) {
+                entries.remove(goal.key());
+                entry = null;
+            }
+        }
+        if (entry == null && persist) entry = load(goal, hash);
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        List<Map<String, Object>> plan = transform(entry.plan(), goal::instantiate);
+        cachedPlanning.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return Optional.of(plan);
+    }
+
+    /**
+     * Remember a plan the planner produced for this goal. Empty plans (failures) are not cached,
+     * nor plans whose texts don't carry every entity of the goal verbatim (see
+     * {@link GoalTemplate#faithful}): replaying them would reuse this goal's values.
+     *
+     * @param catalogHash {@link #catalogHash()} as of before planning; if the catalog changed
+     *                    since, the plan may name tools that are gone and is not cached
+     */
+    public void store(GoalTemplate goal, String catalogHash, List<Map<String, Object>> plan, long planningNanos) {
+        modelPlanning.record(planningNanos, TimeUnit.NANOSECONDS);
+        if (!enabled || plan == null || plan.isEmpty()) return;
+        Set<Integer> used = new HashSet<>();
+        List<String> texts = new ArrayList<>();
+        List<Map<String, Object>> template = transform(plan, text -> {
+            String parameterized = goal.parameterize(text, used);
+            texts.add(parameterized);
+            return parameterized;
+        });
+        if (!goal.faithful(used, texts)) {
+            skipped.increment();
+            System.out.printf("🗃️ Not caching plan for \"%s\": its steps don't carry every goal entity verbatim%n", goal.key());
+            return;
+        }
+        catalogHash();   // notice a catalog change that happened while planning
+        Entry entry = new Entry(template, System.currentTimeMillis());
+        synchronized (entries) {
+            if (!catalogHash.equals(this.catalogHash)) {
+                skipped.increment();
+                System.out.printf("🗃️ Not caching plan for \"%s\": the tool catalog changed while planning%n", goal.key());
+                return;
+            }
+            entries.put(goal.key(), entry);
+        }
+        if (persist) writer.execute(() -> save(goal, catalogHash, entry));
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** Hash of the current tool catalog; plans name agents and tools, so a new one makes every cached plan suspect. */
+    public String catalogHash() {
+        AgentToolCatalog.Snapshot snap = catalog.snapshot();
+        boolean changed = false;
+        synchronized (entries) {
+            if (snap.version() != catalogVersion) {
+                String hash = sha256(String.valueOf(snap.tools()));
+                if (!hash.equals(catalogHash)) {
+                    if (!entries.isEmpty()) {
+                        System.out.printf("🗃️ Tool catalog changed (v%d), dropping %d cached plan(s)%n",
+                                snap.version(), entries.size());
+                    }
+                    entries.clear();
+                    catalogHash = hash;
+                    changed = true;
+                }
+                catalogVersion = snap.version();
+            }
+        }
+        // Rows of other catalogs never match a read (the hash is part of it); a catalog may come
+        // back after a restart, so only rows past their TTL are deleted
+        if (changed && persist) {
+            Timestamp cutoff = Timestamp.from(Instant.now().minusSeconds(ttlSeconds));
+            writer.execute(() -> {
+                try {
+                    jdbc.update(EXPIRE_SQL, cutoff);
+                } catch (Exception e) {
+                    System.err.printf("⚠️ Plan cache cleanup failed: %s%n", e.getMessage());
+                }
+            });
+        }
+        return catalogHash;
+    }
+
+    private Entry load(GoalTemplate goal, String hash) {
+        try {
+            Timestamp notBefore = Timestamp.from(Instant.now().minusSeconds(ttlSeconds));
+            // Keeps the row's age: restarting the TTL on every load would keep a hot plan forever
+            List<Entry> rows = jdbc.query(SELECT_SQL, (rs, i) -> {
+                try {
+                    return new Entry(mapper.readValue(rs.getString("plan"), PLAN_TYPE), rs.getTimestamp("created_at").getTime());
+                } catch (IOException e) {
+                    throw new SQLException("unreadable plan", e);
+                }
+            }, sha256(goal.key()), hash, notBefore);
+            if (rows.isEmpty()) return null;
+            Entry entry = rows.get(0);
+            synchronized (entries) {
+                if (hash.equals(catalogHash)) entries.put(goal.key(), entry);
+            }
+            return entry;
+        } catch (Exception e) {
+            System.err.printf("⚠️ Plan cache read failed: %s%n", e.getMessage());
+            return null;
+        }
+    }
+
+    private void save(GoalTemplate goal, String hash, Entry entry) {
+        try {
+            jdbc.update(UPSERT_SQL, sha256(goal.key()), goal.key(), hash,
+                    mapper.writeValueAsString(entry.plan()), new Timestamp(entry.storedAt()));
+        } catch (Exception e) {
+            System.err.printf("⚠️ Plan cache write failed: %s%n", e.getMessage());
+        }
+    }
+
+    private boolean expired(long storedAt) {
+        return System.currentTimeMillis() - storedAt > TimeUnit.SECONDS.toMillis(ttlSeconds);
+    }
+
+    // Copy of the plan with every step's texts (not its agent or step id) rewritten
+    private static List<Map<String, Object>> transform(List<Map<String, Object>> plan,
+                                                       UnaryOperator<String> f) {
+        List<Map<String, Object>> out = new ArrayList<>(plan.size());
+        for (Map<String, Object> step : plan) {
+            Map<String, Object> copy = new LinkedHashMap<>(step);
+            copy.replaceAll((k, v) -> v instanceof String s && !"agent".equals(k) && !"id".equals(k) ? f.apply(s) : v);
+            out.add(copy);
+        }
+        return out;
+    }
+
+    private static String sha256(String s) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
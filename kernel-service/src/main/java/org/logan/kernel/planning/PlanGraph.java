@@ -0,0 +1,153 @@
+package org.logan.kernel.planning;
+
+import java.util.*;
+
+/**
+ * 🕸️ PlanGraph: an orchestration plan read as a dependency graph.
+ *
+ * Planner steps carry an {@code id} and {@code dependsOn} (ids of the steps whose results they
+ * need); a step may start once all of those are done or skipped. A plan in which no step says
+ * {@code dependsOn} (older planners, plans cached before) keeps its sequential meaning: each step
+ * depends on the one before it. Unknown ids are ignored, and a plan whose dependencies form a
+ * cycle runs sequentially instead.
+ *
+ * Results come back keyed by session and agent, so two steps for the same agent never run at
+ * the same time within a session.
+ */
+public final class PlanGraph {
+
+    public enum StepState {
+        PENDING, RUNNING, PAUSED, DONE, SKIPPED;
+
+        public boolean settled() {
+            return this == DONE || this == SKIPPED;
+        }
+    }
+
+    private PlanGraph() {}
+
+    /** Copy of the plan in which every step has a unique {@code id} and a {@code dependsOn} list. */
+    public static List<Map<String, Object>> normalize(List<Map<String, Object>> plan) {
+        List<Map<String, Object>> steps = new ArrayList<>(plan.size());
+        Map<String, String> idsByOriginal = new HashMap<>();
+        Set<String> used = new HashSet<>();
+        boolean declared = false;
+
+        for (int i = 0; i < plan.size(); i++) {
+            Map<String, Object> step = new LinkedHashMap<>(plan.get(i));
+            String original = step.get("id") == null ? "" : step.get("id").toString().trim();
+            String id = original.isEmpty() ? "s" + (i + 1) : original;
+            while (!used.add(id)) id = id + "_" + (i + 1);
+            if (!original.isEmpty()) idsByOriginal.putIfAbsent(original, id);
+            step.put("id", id);
+            declared |= step.containsKey("dependsOn");
+            steps.add(step);
+        }
+
+        for (int i = 0; i < steps.size(); i++) {
+            Map<String, Object> step = steps.get(i);
+            List<String> deps = new ArrayList<>();
+            if (!declared) {
+                if (i > 0) deps.add(id(steps.get(i - 1)));
+            } else {
+                for (String d : rawDependsOn(step.get("dependsOn"))) {
+                    String known = idsByOriginal.get(d);
+                    if (known != null && !known.equals(id(step)) && !deps.contains(known)) deps.add(known);
+                }
+            }
+            step.put("dependsOn", deps);
+        }
+
+        if (declared && hasCycle(steps)) {
+            System.err.printf("⚠️ [planner] Plan dependencies form a cycle, running its %d step(s) in order%n", steps.size());
+            for (int i = 0; i < steps.size(); i++) {
+                steps.get(i).put("dependsOn", i > 0 ? List.of(id(steps.get(i - 1))) : List.of());
+            }
+        }
+        return steps;
+    }
+
+    public static String id(Map<String, Object> step) {
+        return String.valueOf(step.get("id"));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static List<String> dependsOn(Map<String, Object> step) {
+        return step.get("dependsOn") instanceof List<?> l ? (List<String>) l : List.of();
+    }
+
+    /**
+     * Steps that can start now, in plan order: pending, every dependency settled, their agent
+     * not already running or paused in this session, and at most {@code maxParallel} running.
+     */
+    public static List<Map<String, Object>> ready(List<Map<String, Object>> plan, Map<String, StepState> states,
+                                                  int maxParallel) {
+        Set<Object> busyAgents = new HashSet<>();
+        int running = 0;
+        for (Map<String, Object> step : plan) {
+            StepState s = state(states, step);
+            if (s == StepState.RUNNING || s == StepState.PAUSED) busyAgents.add(step.get("agent"));
+            if (s == StepState.RUNNING) running++;
+        }
+
+        List<Map<String, Object>> ready = new ArrayList<>();
+        for (Map<String, Object> step : plan) {
+            if (running >= Math.max(1, maxParallel)) break;
+            if (state(states, step) != StepState.PENDING || busyAgents.contains(step.get("agent"))) continue;
+            boolean unblocked = dependsOn(step).stream()
+                    .allMatch(d -> states.getOrDefault(d, StepState.PENDING).settled());
+            if (!unblocked) continue;
+            ready.add(step);
+            busyAgents.add(step.get("agent"));
+            running++;
+        }
+        return ready;
+    }
+
+    /** True once every step is done or skipped. */
+    public static boolean finished(List<Map<String, Object>> plan, Map<String, StepState> states) {
+        return plan.stream().allMatch(step -> state(states, step).settled());
+    }
+
+    /** The running or paused step of {@code agent}, if any (there is at most one). */
+    public static Optional<Map<String, Object>> activeStepOf(List<Map<String, Object>> plan,
+                                                             Map<String, StepState> states, String agent) {
+        return plan.stream()
+                .filter(step -> Objects.equals(step.get("agent"), agent))
+                .filter(step -> {
+                    StepState s = state(states, step);
+                    return s == StepState.RUNNING || s == StepState.PAUSED;
+                })
+                .findFirst();
+    }
+
+    public static StepState state(Map<String, StepState> states, Map<String, Object> step) {
+        return states.getOrDefault(id(step), StepState.PENDING);
+    }
+
+    private static List<String> rawDependsOn(Object value) {
+        if (value instanceof Collection<?> c) return c.stream().filter(Objects::nonNull).map(Object::toString).toList();
+        if (value instanceof String s && !s.isBlank()) return List.of(s.trim());
+        return List.of();
+    }
+
+    private static boolean hasCycle(List<Map<String, Object>> steps) {
+        Map<String, Integer> indegree = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (Map<String, Object> step : steps) {
+            indegree.put(id(step), dependsOn(step).size());
+            for (String d : dependsOn(step)) dependents.computeIfAbsent(d, k -> new ArrayList<>()).add(id(step));
+        }
+        Deque<String> free = new ArrayDeque<>();
+        indegree.forEach((id, n) -> { if (n == 0) free.add(id); });
+        int visited = 0;
+        while (!free.isEmpty()) {
+            String id = free.poll();
+            visited++;
+            for (String dep : dependents.getOrDefault(id, List.of())) {
+                if (indegree.merge(dep, -1, Integer::sum) == 0) free.add(dep);
+            }
+        }
+        return visited < steps.size();
+    }
+}
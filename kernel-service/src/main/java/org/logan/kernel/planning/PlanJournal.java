@@ -0,0 +1,442 @@
+package org.logan.kernel.planning;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.logan.kernel.planning.PlanGraph.StepState;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 📓 PlanJournal: one agent's orchestration state (plans and step states per session) as an
+ * append-only log of transitions, so recording a step costs one short line instead of a
+ * rewrite of every session.
+ *
+ * Each transition is one ndjson record: {@code plan} (created), {@code step} (new state of one
+ * step) or {@code clear} (finished/aborted). Appends go to a buffer; a virtual thread flushes and
+ * fsyncs whatever accumulated every {@code commitIntervalMs} (group commit) and then completes the
+ * futures of those appends. After {@code snapshotEvery} records the state is written to a
+ * snapshot file (atomically replaced) and the log starts over. Opening replays snapshot + log;
+ * a torn last line from a crash is skipped.
+ *
+ * Sessions waiting on a person can be passivated: their {@link PlanRun} goes to a file of its
+ * own (one per session, next to the log), a {@code passivate} record drops it from the log's
+ * state, and only its id stays in memory. {@link #activate} reads it back and journals it as
+ * {@code activate}. The file is written before the record and deleted only after the
+ * {@code activate} record is durable, so a crash in between leaves a stale copy of a session
+ * the log no longer counts as passivated. Replay trusts the log: a file is brought back only
+ * if its session's last {@code passivate} wasn't followed by an {@code activate} or
+ * {@code clear}. Snapshots carry the set of passivated sessions for the same reason.
+ *
+ * With a null directory the journal keeps nothing, every future is already complete and
+ * nothing is passivated.
+ */
+public class PlanJournal implements AutoCloseable {
+    private static final TypeReference<List<Map<String, Object>>> PLAN_TYPE = new TypeReference<>() {};
+
+    /** Replayed state: plan per session, and the state of each step that has one. */
+    public record State(Map<String, List<Map<String, Object>>> plans, Map<String, Map<String, StepState>> steps) {}
+
+    private final String name;
+    private final ObjectMapper mapper;
+    private final Path log;
+    private final Path snapshot;
+    private final long commitIntervalMs;
+    private final int snapshotEvery;
+    private final Path passivatedDir;
+    private final long passivateAfterMs;
+    private final Set<String> passivated = ConcurrentHashMap.newKeySet();                    // changed under lock
+
+    // Mirror of what the files hold, so a snapshot never needs the caller's (live) maps
+    private final Map<String, List<Map<String, Object>>> plans = new LinkedHashMap<>();      // guarded by lock
+    private final Map<String, Map<String, StepState>> steps = new LinkedHashMap<>();         // guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private List<CompletableFuture<Void>> uncommitted = new ArrayList<>();                   // guarded by lock
+    private FileChannel channel;                                                             // guarded by lock
+    private BufferedWriter writer;                                                           // guarded by lock
+    private int recordsSinceSnapshot;                                                        // guarded by lock
+    private volatile boolean running = true;
+    private final Thread committer;
+    private final State recovered;
+
+    /**
+     * @param passivateAfterMs idle time after which a session waiting on a person may be
+     *                         passivated; 0 disables passivation
+     */
+    public PlanJournal(String name, Path dir, ObjectMapper mapper, long commitIntervalMs, int snapshotEvery,
+                       long passivateAfterMs) {
+        this.name = name;
+        this.mapper = mapper;
+        this.commitIntervalMs = Math.max(0, commitIntervalMs);
+        this.snapshotEvery = Math.max(1, snapshotEvery);
+        String file = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        this.log = dir != null ? dir.resolve(file + ".journal.ndjson") : null;
+        this.snapshot = dir != null ? dir.resolve(file + ".snapshot.json") : null;
+        this.passivatedDir = dir != null ? dir.resolve(file + ".passivated") : null;
+        this.passivateAfterMs = dir != null ? Math.max(0, passivateAfterMs) : 0;
+        this.recovered = log != null ? replay() : new State(Map.of(), Map.of());
+        this.committer = log != null ? Thread.ofVirtual().name("plan-journal-" + name).start(this::commitLoop) : null;
+    }
+
+    /** State as of the last run, read once at open. */
+    public State recovered() {
+        return recovered;
+    }
+
+    public CompletableFuture<Void> planCreated(String sessionId, List<Map<String, Object>> plan) {
+        ObjectNode rec = record("plan", sessionId);
+        rec.set("plan", mapper.valueToTree(plan));
+        return append(rec);
+    }
+
+    public CompletableFuture<Void> stepChanged(String sessionId, String stepId, StepState state) {
+        ObjectNode rec = record("step", sessionId);
+        rec.put("step", stepId);
+        rec.put("state", state.name());
+        return append(rec);
+    }
+
+    public CompletableFuture<Void> planCleared(String sessionId) {
+        return append(record("clear", sessionId));
+    }
+
+    // --- Passivation ---
+
+    /** Idle time after which a session waiting on a person should be passivated; 0 = never. */
+    public long passivateAfterMs() {
+        return passivateAfterMs;
+    }
+
+    public boolean isPassivated(String sessionId) {
+        return passivated.contains(sessionId);
+    }
+
+    public int passivatedCount() {
+        return passivated.size();
+    }
+
+    /** Move a session's state out of memory; the caller drops its own copy once this returns. */
+    public void passivate(String sessionId, PlanRun run) throws IOException {
+        ObjectNode file = mapper.createObjectNode();
+        file.put("session", sessionId);
+        file.set("plan", mapper.valueToTree(run.plan()));
+        file.set("steps", mapper.valueToTree(run.states()));
+        Files.createDirectories(passivatedDir);
+        writeAtomically(passivatedFile(sessionId), mapper.writeValueAsBytes(file));
+        CompletableFuture<Void> logged = append(record("passivate", sessionId));
+        if (logged.isCompletedExceptionally()) {   // closed or unwritable: the caller keeps the session
+            deleteQuietly(passivatedFile(sessionId));
+            throw new IOException("passivate record not written for " + sessionId);
+        }
+    }
+
+    /** Bring a passivated session back; empty if it isn't passivated (or its file is unreadable). */
+    public Optional<PlanRun> activate(String sessionId) {
+        if (!passivated.contains(sessionId)) return Optional.empty();
+        Path file = passivatedFile(sessionId);
+        try {
+            JsonNode stored = mapper.readTree(file.toFile());
+            ObjectNode rec = record("activate", sessionId);
+            rec.set("plan", stored.get("plan"));
+            rec.set("steps", stored.get("steps"));
+            append(rec).thenRun(() -> deleteQuietly(file));   // the log has it now
+            return Optional.of(new PlanRun(mapper.convertValue(stored.get("plan"), PLAN_TYPE), readSteps(stored.get("steps"))));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.printf("⚠️ [%s] Passivated session %s unreadable: %s%n", name, sessionId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Path passivatedFile(String sessionId) {
+        String encoded = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sessionId.getBytes(StandardCharsets.UTF_8));
+        return passivatedDir.resolve(encoded + ".json");
+    }
+
+    /** Commit what is buffered and stop; the next open replays it. */
+    @Override
+    public void close() {
+        if (committer == null) return;
+        running = false;
+        lock.lock();
+        try {
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            closeFiles();
+            // Only if the committer didn't finish in time: these never got their fsync
+            uncommitted.forEach(f -> f.completeExceptionally(new IllegalStateException("journal closed: " + name)));
+            uncommitted = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ObjectNode record(String op, String sessionId) {
+        ObjectNode rec = mapper.createObjectNode();
+        rec.put("op", op);
+        rec.put("session", sessionId);
+        return rec;
+    }
+
+    private CompletableFuture<Void> append(ObjectNode rec) {
+        if (log == null) return CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        lock.lock();
+        try {
+            if (!running) {
+                durable.completeExceptionally(new IllegalStateException("journal closed: " + name));
+                return durable;
+            }
+            apply(rec);
+            if (writer == null) openLog(StandardOpenOption.APPEND);
+            writer.write(mapper.writeValueAsString(rec));
+            writer.newLine();
+            recordsSinceSnapshot++;
+            uncommitted.add(durable);
+            appended.signal();
+        } catch (IOException e) {
+            System.err.printf("⚠️ [%s] Plan journal write failed: %s%n", name, e.getMessage());
+            durable.completeExceptionally(e);
+        } finally {
+            lock.unlock();
+        }
+        return durable;
+    }
+
+    // --- Group commit ---
+
+    private void commitLoop() {
+        while (true) {
+            List<CompletableFuture<Void>> batch;
+            FileChannel toForce;
+            lock.lock();
+            try {
+                while (running && uncommitted.isEmpty()) appended.await();
+                if (uncommitted.isEmpty()) return;   // closed, nothing left
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            // Let concurrent transitions join this commit
+            if (running && commitIntervalMs > 0) {
+                try {
+                    Thread.sleep(commitIntervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            lock.lock();
+            batch = uncommitted;
+            uncommitted = new ArrayList<>();
+            try {
+                // A failed snapshot can leave the log closed until the next append reopens it
+                if (writer == null) throw new IOException("plan journal log is not open");
+                writer.flush();
+                toForce = channel;
+            } catch (IOException e) {
+                System.err.printf("⚠️ [%s] Plan journal flush failed: %s%n", name, e.getMessage());
+                batch.forEach(f -> f.completeExceptionally(e));
+                continue;
+            } finally {
+                lock.unlock();
+            }
+
+            // fsync outside the lock: appends keep filling the next batch meanwhile
+            try {
+                toForce.force(false);
+                batch.forEach(f -> f.complete(null));
+            } catch (IOException e) {
+                System.err.printf("⚠️ [%s] Plan journal fsync failed: %s%n", name, e.getMessage());
+                batch.forEach(f -> f.completeExceptionally(e));
+            }
+            maybeSnapshot();
+        }
+    }
+
+    private void maybeSnapshot() {
+        lock.lock();
+        try {
+            if (recordsSinceSnapshot < snapshotEvery) return;
+            // Records still buffered are in the mirror, hence in the snapshot, before the log is cut
+            writeSnapshot();
+            closeFiles();
+            openLog(StandardOpenOption.TRUNCATE_EXISTING);
+            recordsSinceSnapshot = 0;
+        } catch (IOException e) {
+            // The log is still complete, so nothing is lost; try again after the next commit
+            System.err.printf("⚠️ [%s] Plan journal snapshot failed: %s%n", name, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeSnapshot() throws IOException {
+        writeAtomically(snapshot, mapper.writeValueAsBytes(Map.of("plans", plans, "steps", steps,
+                "passivated", passivated)));
+    }
+
+    private static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.wrap(content));
+            out.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.printf("⚠️ [%s] Could not delete %s: %s%n", name, file, e.getMessage());
+        }
+    }
+
+    // --- Replay ---
+
+    private State replay() {
+        try {
+            Files.createDirectories(log.getParent());
+            if (Files.exists(snapshot)) {
+                JsonNode snap = mapper.readTree(snapshot.toFile());
+                snap.path("plans").fields().forEachRemaining(e ->
+                        plans.put(e.getKey(), mapper.convertValue(e.getValue(), PLAN_TYPE)));
+                snap.path("steps").fields().forEachRemaining(e -> steps.put(e.getKey(), readSteps(e.getValue())));
+                snap.path("passivated").forEach(id -> passivated.add(id.asText()));
+            }
+            if (Files.exists(log)) {
+                try (BufferedReader in = Files.newBufferedReader(log, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (line.isBlank()) continue;
+                        try {
+                            apply(mapper.readTree(line));
+                            recordsSinceSnapshot++;
+                        } catch (IOException | IllegalArgumentException e) {
+                            System.err.printf("⚠️ [%s] Skipped unreadable plan journal line%n", name);
+                        }
+                    }
+                }
+            }
+            Set<String> withFile = new HashSet<>();
+            if (Files.isDirectory(passivatedDir)) {
+                try (Stream<Path> files = Files.list(passivatedDir)) {
+                    files.filter(f -> f.getFileName().toString().endsWith(".json")).forEach(f -> {
+                        String base = f.getFileName().toString();
+                        String sessionId;
+                        try {
+                            sessionId = new String(Base64.getUrlDecoder().decode(base.substring(0, base.length() - 5)),
+                                    StandardCharsets.UTF_8);
+                        } catch (IllegalArgumentException e) {
+                            return;   // not one of ours
+                        }
+                        // Passivation never got journaled, or a later activation (or clear) did
+                        if (passivated.contains(sessionId)) withFile.add(sessionId);
+                        else deleteQuietly(f);
+                    });
+                }
+            }
+            for (String sessionId : Set.copyOf(passivated)) {
+                if (withFile.contains(sessionId)) continue;
+                System.err.printf("⚠️ [%s] Passivated session %s has no file, dropped%n", name, sessionId);
+                passivated.remove(sessionId);
+            }
+            if (!plans.isEmpty() || !passivated.isEmpty()) {
+                System.out.printf("📓 [%s] Replayed %d orchestration(s) (%d record(s) after snapshot), %d passivated%n",
+                        name, plans.size(), recordsSinceSnapshot, passivated.size());
+            }
+        } catch (Exception e) {
+            System.err.printf("⚠️ [%s] Plan journal replay failed, starting empty: %s%n", name, e.getMessage());
+            plans.clear();
+            steps.clear();
+            passivated.clear();
+        }
+
+        Map<String, List<Map<String, Object>>> planCopy = new LinkedHashMap<>(plans);
+        Map<String, Map<String, StepState>> stepCopy = new LinkedHashMap<>();
+        steps.forEach((session, states) -> stepCopy.put(session, new LinkedHashMap<>(states)));
+        return new State(planCopy, stepCopy);
+    }
+
+    private void apply(JsonNode rec) {
+        String session = rec.path("session").asText();
+        switch (rec.path("op").asText()) {
+            case "plan" -> {
+                plans.put(session, mapper.convertValue(rec.get("plan"), PLAN_TYPE));
+                steps.put(session, new LinkedHashMap<>());
+                passivated.remove(session);
+            }
+            case "step" -> steps.computeIfAbsent(session, k -> new LinkedHashMap<>())
+                    .put(rec.path("step").asText(), StepState.valueOf(rec.path("state").asText()));
+            case "clear" -> {
+                plans.remove(session);
+                steps.remove(session);
+                passivated.remove(session);
+            }
+            case "passivate" -> {
+                plans.remove(session);
+                steps.remove(session);
+                passivated.add(session);
+            }
+            case "activate" -> {
+                plans.put(session, mapper.convertValue(rec.get("plan"), PLAN_TYPE));
+                steps.put(session, readSteps(rec.get("steps")));
+                passivated.remove(session);
+            }
+            default -> throw new IllegalArgumentException("unknown op " + rec.path("op").asText());
+        }
+    }
+
+    private static Map<String, StepState> readSteps(JsonNode node) {
+        Map<String, StepState> states = new LinkedHashMap<>();
+        if (node != null) node.fields().forEachRemaining(s -> states.put(s.getKey(), StepState.valueOf(s.getValue().asText())));
+        return states;
+    }
+
+    private void openLog(StandardOpenOption mode) throws IOException {
+        channel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+        writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+    }
+
+    private void closeFiles() {
+        if (writer == null) return;
+        try {
+            writer.close();   // flushes and closes the channel
+        } catch (IOException ignored) {
+        }
+        writer = null;
+        channel = null;
+    }
+}
@@ -0,0 +1,43 @@
+package org.logan.kernel.planning;
+
+import org.logan.kernel.planning.PlanGraph.StepState;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 🧾 PlanRun: what the orchestrator keeps about one session's plan — the normalized plan, the
+ * state of each step that has one, and when the session last saw activity.
+ */
+public final class PlanRun {
+    private final List<Map<String, Object>> plan;
+    private final Map<String, StepState> states;
+    private volatile long lastActiveMillis = System.currentTimeMillis();
+
+    public PlanRun(List<Map<String, Object>> plan, Map<String, StepState> states) {
+        this.plan = plan;
+        this.states = new ConcurrentHashMap<>(states);
+    }
+
+    public List<Map<String, Object>> plan() {
+        return plan;
+    }
+
+    public Map<String, StepState> states() {
+        return states;
+    }
+
+    public void touch() {
+        lastActiveMillis = System.currentTimeMillis();
+    }
+
+    public long idleMillis() {
+        return System.currentTimeMillis() - lastActiveMillis;
+    }
+
+    /** Waiting on a person with no delegation in flight, so nothing but a decision or chat can wake it. */
+    public boolean waitingOnUser() {
+        return states.containsValue(StepState.PAUSED) && !states.containsValue(StepState.RUNNING);
+    }
+}
@@ -0,0 +1,134 @@
+package org.logan.kernel.session;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ⏱️ Hashed timing wheel for large numbers of coarse timeouts (session TTLs, waiters).
+ *
+ * Scheduling and cancelling are O(1) and allocation-light compared to a
+ * ScheduledExecutorService's heap; expiry is accurate to one tick. Tasks run on the single
+ * ticker thread and must be short (they should only flip state or hand work elsewhere).
+ */
+public class HashedTimingWheel {
+
+    /** Handle for a scheduled task. */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final long tickMs;
+    private final Queue<Timeout>[] buckets;
+    private final int mask;
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread ticker;
+    private final long startNanos = System.nanoTime();
+    private volatile long tick;
+    private volatile boolean running = true;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(String name, long tickMs, int wheelSize) {
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;   // round up to a power of two
+        this.tickMs = tickMs;
+        this.mask = size - 1;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) buckets[i] = new ArrayDeque<>();
+        this.ticker = new Thread(this::run, name);
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long elapsedTicks = elapsedMs() / tickMs;
+        long ticks = Math.max(1, (unit.toMillis(delay) + tickMs - 1) / tickMs);
+        Timeout t = new Timeout(task, elapsedTicks + ticks);
+        pending.incrementAndGet();
+        incoming.add(t);
+        return t;
+    }
+
+    /** Scheduled tasks not yet run or swept after cancellation. */
+    public int pendingCount() {
+        return pending.get();
+    }
+
+    public void stop() {
+        running = false;
+        ticker.interrupt();
+    }
+
+    private long elapsedMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private void run() {
+        while (running) {
+            long deadlineMs = (tick + 1) * tickMs;
+            long sleepMs = deadlineMs - elapsedMs();
+            if (sleepMs > 0) {
+                try {
+                    Thread.sleep(sleepMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            transferIncoming();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferIncoming() {
+        Timeout t;
+        while ((t = incoming.poll()) != null) {
+            if (t.cancelled) {
+                pending.decrementAndGet();
+                continue;
+            }
+            long target = Math.max(t.deadlineTick, tick);     // already due → current bucket
+            t.remainingRounds = (target - tick) / buckets.length;
+            buckets[(int) (target & mask)].add(t);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket) {
+        for (Iterator<Timeout> it = bucket.iterator(); it.hasNext(); ) {
+            Timeout t = it.next();
+            if (t.cancelled) {
+                it.remove();
+                pending.decrementAndGet();
+            } else if (t.remainingRounds <= 0) {
+                it.remove();
+                pending.decrementAndGet();
+                try {
+                    t.task.run();
+                } catch (Exception e) {
+                    System.err.println("❌ [wheel] Timeout task failed: " + e.getMessage());
+                }
+            } else {
+                t.remainingRounds--;
+            }
+        }
+    }
+}
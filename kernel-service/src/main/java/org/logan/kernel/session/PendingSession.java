@@ -0,0 +1,123 @@
+package org.logan.kernel.session;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Kernel-side view of one chat session: its event/audit trail, the agents still working
+ * on it, and the future completed when the orchestrator sends its final chat_result.
+ *
+ * Instances are created and expired by {@link SessionRegistry}; the event/audit trails are
+ * bounded and spill to disk past their in-memory limit.
+ */
+public class PendingSession {
+    private final String id;
+    private final long createdAt = System.currentTimeMillis();
+    private volatile long lastActive = createdAt;
+    private final CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+    private final SessionEventLog events;
+    private final SessionEventLog audit;
+    private final Set<String> activeAgents = ConcurrentHashMap.newKeySet();
+    private final Set<String> completedAgents = ConcurrentHashMap.newKeySet();
+
+    // Callers of SessionRegistry.open still waiting; changed only inside the registry's compute for the id
+    int callers;
+
+    // Time spent waiting on a person, which no TTL counts; guarded by this
+    private long waitingSince;   // 0 = not waiting
+    private long waitedMillis;
+
+    // TTL timers, owned by SessionRegistry
+    volatile HashedTimingWheel.Timeout idleTimeout;
+    volatile HashedTimingWheel.Timeout absoluteTimeout;
+
+    PendingSession(String id, SessionEventLog events, SessionEventLog audit) {
+        this.id = id;
+        this.events = events;
+        this.audit = audit;
+    }
+
+    public String getId() { return id; }
+    public long getCreatedAt() { return createdAt; }
+    public long getLastActive() { return lastActive; }
+
+    void touch() {
+        lastActive = System.currentTimeMillis();
+    }
+
+    synchronized void startWaitingOnPerson() {
+        if (waitingSince == 0) waitingSince = System.currentTimeMillis();
+    }
+
+    void stopWaitingOnPerson() {
+        synchronized (this) {
+            if (waitingSince != 0) {
+                waitedMillis += System.currentTimeMillis() - waitingSince;
+                waitingSince = 0;
+            }
+        }
+        touch();
+    }
+
+    /** Whether the orchestrator paused the session for a user decision that hasn't come yet. */
+    public synchronized boolean waitingOnPerson() {
+        return waitingSince != 0;
+    }
+
+    /** Milliseconds of the session's life not spent waiting on a person. */
+    public synchronized long activeMillis() {
+        long now = System.currentTimeMillis();
+        long waited = waitedMillis + (waitingSince != 0 ? now - waitingSince : 0);
+        return now - createdAt - waited;
+    }
+
+    public void registerAgent(String agentId) {
+        touch();
+        if (agentId != null) activeAgents.add(agentId);
+    }
+
+    public void markAgentCompleted(String agentId) {
+        touch();
+        completedAgents.add(agentId);
+        activeAgents.remove(agentId);
+    }
+
+    public boolean allAgentsCompleted() {
+        return activeAgents.isEmpty();
+    }
+
+    public Set<String> getRemainingAgents() { return new HashSet<>(activeAgents); }
+    public Set<String> getCompletedAgents() { return new HashSet<>(completedAgents); }
+
+    public void addEvent(Map<String, Object> event) {
+        touch();
+        events.add(event);
+    }
+
+    public void addAudit(Map<String, Object> event) {
+        touch();
+        audit.add(event);
+    }
+
+    public List<Map<String, Object>> getEvents() { return events.snapshot(); }
+    public List<Map<String, Object>> getAudit() { return audit.snapshot(); }
+
+    public void complete(Map<String, Object> result) { future.complete(result); }
+
+    /** Completes with the aggregated result once the orchestrator finalizes the session. */
+    public CompletableFuture<Map<String, Object>> completion() { return future; }
+
+    public Map<String, Object> waitForCompletion(long timeout, TimeUnit unit)
+            throws TimeoutException, InterruptedException, ExecutionException {
+        return future.get(timeout, unit);
+    }
+
+    /** Stop timers and release buffered events (heap and spill files). */
+    void close() {
+        HashedTimingWheel.Timeout t;
+        if ((t = idleTimeout) != null) t.cancel();
+        if ((t = absoluteTimeout) != null) t.cancel();
+        events.discard();
+        audit.discard();
+    }
+}
@@ -0,0 +1,126 @@
+package org.logan.kernel.session;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded event list for one session. At most {@code memoryLimit} events stay on the heap;
+ * past that the oldest half is appended to an NDJSON spill file (or dropped when spilling
+ * is disabled or fails). {@link #snapshot()} returns spilled + in-memory events in order.
+ */
+final class SessionEventLog {
+    private static final TypeReference<LinkedHashMap<String, Object>> EVENT_TYPE = new TypeReference<>() {};
+
+    private final ArrayDeque<Map<String, Object>> memory = new ArrayDeque<>();
+    private final ArrayDeque<Long> sizes = new ArrayDeque<>();
+    private final int memoryLimit;
+    private final Path spillFile;           // null = drop instead of spilling
+    private final ObjectMapper mapper;
+    private final AtomicLong retainedBytes; // shared registry-wide counter
+    private long spilled;
+    private long dropped;
+
+    SessionEventLog(int memoryLimit, Path spillFile, ObjectMapper mapper, AtomicLong retainedBytes) {
+        this.memoryLimit = Math.max(2, memoryLimit);
+        this.spillFile = spillFile;
+        this.mapper = mapper;
+        this.retainedBytes = retainedBytes;
+    }
+
+    synchronized void add(Map<String, Object> event) {
+        long size = estimateBytes(event);
+        memory.addLast(event);
+        sizes.addLast(size);
+        retainedBytes.addAndGet(size);
+        if (memory.size() > memoryLimit) evictOldest(memoryLimit / 2);
+    }
+
+    synchronized List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> out = new ArrayList<>(memory.size());
+        if (spilled > 0 && spillFile != null && Files.exists(spillFile)) {
+            try (BufferedReader in = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (!line.isBlank()) out.add(mapper.readValue(line, EVENT_TYPE));
+                }
+            } catch (IOException e) {
+                System.err.printf("⚠️ [session] Failed to read spill %s: %s%n", spillFile, e.getMessage());
+            }
+        }
+        out.addAll(memory);
+        return out;
+    }
+
+    synchronized int size() {
+        return (int) (memory.size() + spilled);
+    }
+
+    synchronized long droppedCount() {
+        return dropped;
+    }
+
+    /** Release heap and disk; the log is unusable afterwards. */
+    synchronized void discard() {
+        long freed = 0;
+        for (long s : sizes) freed += s;
+        retainedBytes.addAndGet(-freed);
+        memory.clear();
+        sizes.clear();
+        if (spillFile != null) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void evictOldest(int count) {
+        List<Map<String, Object>> batch = new ArrayList<>(count);
+        long freed = 0;
+        for (int i = 0; i < count && !memory.isEmpty(); i++) {
+            batch.add(memory.pollFirst());
+            freed += sizes.pollFirst();
+        }
+        retainedBytes.addAndGet(-freed);
+
+        if (spillFile != null) {
+            try (BufferedWriter out = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (Map<String, Object> e : batch) {
+                    out.write(mapper.writeValueAsString(e));
+                    out.newLine();
+                }
+                spilled += batch.size();
+                return;
+            } catch (IOException e) {
+                System.err.printf("⚠️ [session] Spill to %s failed, dropping %d event(s): %s%n",
+                        spillFile, batch.size(), e.getMessage());
+            }
+        }
+        dropped += batch.size();
+    }
+
+    /** Rough heap footprint: map/entry overhead plus UTF-16 string payloads, one level deep. */
+    static long estimateBytes(Map<String, Object> event) {
+        long bytes = 64;
+        for (Map.Entry<String, Object> e : event.entrySet()) {
+            bytes += 48 + 2L * e.getKey().length();
+            Object v = e.getValue();
+            if (v instanceof CharSequence s) bytes += 40 + 2L * s.length();
+            else if (v instanceof Collection<?> c) bytes += 32 + 64L * c.size();
+            else if (v instanceof Map<?, ?> m) bytes += 64 + 96L * m.size();
+            else bytes += 16;
+        }
+        return bytes;
+    }
+}
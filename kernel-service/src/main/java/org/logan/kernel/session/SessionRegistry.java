@@ -0,0 +1,255 @@
+package org.logan.kernel.session;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ♻️ SessionRegistry: live chat sessions and the per-session agent waiters registered by
+ * orchestrators, with a bounded lifetime.
+ *
+ * Every session has an idle TTL (reset by activity) and an absolute TTL, both driven by a
+ * {@link HashedTimingWheel}. An expired session is removed, its completion future fails
+ * with a {@link TimeoutException} (so goals end as TIMED_OUT), its waiters are failed and
+ * its buffered events are released. Waiters time out on their own as well.
+ *
+ * Neither TTL runs while the orchestrator waits on a person ({@link #waitOnPerson}): the
+ * answer may come long after the orchestration was passivated, and must find its session.
+ */
+@Component
+public class SessionRegistry {
+    private final ConcurrentHashMap<String, PendingSession> pendingSessions = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, CompletableFuture<Map<String, Object>>>> agentWaiters = new ConcurrentHashMap<>();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final ObjectMapper mapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${kernel.sessions.idle-ttl-seconds:900}")
+    private long idleTtlSeconds;
+
+    @Value("${kernel.sessions.absolute-ttl-seconds:3600}")
+    private long absoluteTtlSeconds;
+
+    @Value("${kernel.sessions.waiter-timeout-seconds:300}")
+    private long waiterTimeoutSeconds;
+
+    @Value("${kernel.sessions.event-memory-limit:500}")
+    private int eventMemoryLimit;
+
+    @Value("${kernel.sessions.spill-dir:${java.io.tmpdir}/kernel-session-spill}")
+    private String spillDirSetting;
+
+    @Value("${kernel.sessions.wheel-tick-ms:1000}")
+    private long wheelTickMs;
+
+    private HashedTimingWheel wheel;
+    private ExecutorService expiryExecutor;
+    private Path spillDir;
+
+    public SessionRegistry(ObjectMapper mapper, MeterRegistry meterRegistry) {
+        this.mapper = mapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        wheel = new HashedTimingWheel("session-ttl-wheel", wheelTickMs, 512);
+        // Expiry completes futures whose callbacks may hit the DB; keep that off the ticker thread
+        expiryExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+        if (spillDirSetting != null && !spillDirSetting.isBlank()) {
+            try {
+                spillDir = Files.createDirectories(Path.of(spillDirSetting));
+            } catch (IOException e) {
+                System.err.printf("⚠️ Session spill disabled, cannot create %s: %s%n", spillDirSetting, e.getMessage());
+            }
+        }
+
+        Gauge.builder("kernel.sessions.live", pendingSessions, Map::size).register(meterRegistry);
+        Gauge.builder("kernel.sessions.retained.bytes", retainedBytes, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("kernel.sessions.waiters", agentWaiters,
+                m -> m.values().stream().mapToInt(Map::size).sum()).register(meterRegistry);
+        Gauge.builder("kernel.sessions.timers", wheel, HashedTimingWheel::pendingCount).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        wheel.stop();
+        expiryExecutor.shutdownNow();
+        pendingSessions.values().forEach(PendingSession::close);
+    }
+
+    /**
+     * The session a chat joins: the live one while it is still running, so a follow-up chat
+     * keeps its audit, timers and completion, else a fresh one. Every caller either sees the
+     * session finish or gives up through {@link #leave}.
+     */
+    public PendingSession open(String sessionId) {
+        PendingSession[] finished = new PendingSession[1];
+        PendingSession ps = pendingSessions.compute(sessionId, (id, live) -> {
+            if (live == null || live.completion().isDone()) {
+                finished[0] = live;
+                live = newSession(id);
+            }
+            live.callers++;
+            return live;
+        });
+        if (finished[0] != null) finished[0].close();
+        ps.stopWaitingOnPerson();   // a chat in the session is the person's answer too
+        return ps;
+    }
+
+    /** A caller of {@link #open} stopped waiting; the session ends once none is left. */
+    public void leave(String sessionId, PendingSession ps) {
+        boolean[] last = new boolean[1];
+        pendingSessions.computeIfPresent(sessionId, (id, live) -> {
+            if (live != ps || --live.callers > 0) return live;
+            last[0] = true;
+            return null;
+        });
+        if (last[0]) {
+            ps.close();
+            dropWaiters(sessionId, null);
+        }
+    }
+
+    /** The orchestrator paused the session for a user decision: its TTLs stop until {@link #personResponded}. */
+    public void waitOnPerson(String sessionId) {
+        getOrCreate(sessionId).startWaitingOnPerson();
+    }
+
+    public void personResponded(String sessionId) {
+        PendingSession ps = pendingSessions.get(sessionId);
+        if (ps != null) ps.stopWaitingOnPerson();
+    }
+
+    public PendingSession getOrCreate(String sessionId) {
+        PendingSession ps = pendingSessions.computeIfAbsent(sessionId, this::newSession);
+        ps.touch();
+        return ps;
+    }
+
+    public PendingSession get(String sessionId) {
+        PendingSession ps = pendingSessions.get(sessionId);
+        if (ps != null) ps.touch();
+        return ps;
+    }
+
+    /** Finish a session: read its events/audit first, they are released here. */
+    public void remove(String sessionId) {
+        PendingSession ps = pendingSessions.remove(sessionId);
+        if (ps != null) ps.close();
+        dropWaiters(sessionId, null);
+    }
+
+    /** Like {@link #remove(String)}, but only if {@code ps} is still the live session for the id. */
+    public void remove(String sessionId, PendingSession ps) {
+        if (pendingSessions.remove(sessionId, ps)) {
+            ps.close();
+            dropWaiters(sessionId, null);
+        }
+    }
+
+    public int liveSessions() {
+        return pendingSessions.size();
+    }
+
+    public long retainedBytes() {
+        return retainedBytes.get();
+    }
+
+    private PendingSession newSession(String sessionId) {
+        Path eventsSpill = null, auditSpill = null;
+        if (spillDir != null) {
+            String base = sessionId.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + System.nanoTime();
+            eventsSpill = spillDir.resolve(base + "-events.ndjson");
+            auditSpill = spillDir.resolve(base + "-audit.ndjson");
+        }
+        PendingSession ps = new PendingSession(sessionId,
+                new SessionEventLog(eventMemoryLimit, eventsSpill, mapper, retainedBytes),
+                new SessionEventLog(eventMemoryLimit, auditSpill, mapper, retainedBytes));
+        ps.idleTimeout = wheel.schedule(() -> onIdleTimer(ps), idleTtlSeconds, TimeUnit.SECONDS);
+        ps.absoluteTimeout = wheel.schedule(() -> onAbsoluteTimer(ps), absoluteTtlSeconds, TimeUnit.SECONDS);
+        return ps;
+    }
+
+    // Runs on the wheel thread: either re-arm for the remaining idle time or hand off expiry
+    private void onIdleTimer(PendingSession ps) {
+        long idleMs = ps.waitingOnPerson() ? 0 : System.currentTimeMillis() - ps.getLastActive();
+        long ttlMs = TimeUnit.SECONDS.toMillis(idleTtlSeconds);
+        if (idleMs < ttlMs) {
+            ps.idleTimeout = wheel.schedule(() -> onIdleTimer(ps), ttlMs - idleMs, TimeUnit.MILLISECONDS);
+        } else {
+            expiryExecutor.execute(() -> expire(ps, "idle"));
+        }
+    }
+
+    // Likewise, counting only the time the session wasn't waiting on a person
+    private void onAbsoluteTimer(PendingSession ps) {
+        long ttlMs = TimeUnit.SECONDS.toMillis(absoluteTtlSeconds);
+        long remainingMs = ps.waitingOnPerson() ? ttlMs : ttlMs - ps.activeMillis();
+        if (remainingMs > 0) {
+            ps.absoluteTimeout = wheel.schedule(() -> onAbsoluteTimer(ps), remainingMs, TimeUnit.MILLISECONDS);
+        } else {
+            expiryExecutor.execute(() -> expire(ps, "absolute"));
+        }
+    }
+
+    private void expire(PendingSession ps, String reason) {
+        if (!pendingSessions.remove(ps.getId(), ps)) return;   // already finished or replaced
+        meterRegistry.counter("kernel.sessions.expired", "reason", reason).increment();
+        System.out.printf("⌛ Session %s expired (%s TTL) after %ds%n",
+                ps.getId(), reason, (System.currentTimeMillis() - ps.getCreatedAt()) / 1000);
+
+        TimeoutException cause = new TimeoutException("session " + reason + " TTL expired");
+        ps.completion().completeExceptionally(cause);   // callbacks still see the audit
+        dropWaiters(ps.getId(), cause);
+        ps.close();
+    }
+
+    // --- Async orchestration helpers ---
+    public void registerAgentWaiter(String sessionId, String agentId, CompletableFuture<Map<String, Object>> future) {
+        Map<String, CompletableFuture<Map<String, Object>>> waiters =
+                agentWaiters.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>());
+        CompletableFuture<Map<String, Object>> previous = waiters.put(agentId, future);
+        if (previous != null) previous.cancel(false);
+
+        HashedTimingWheel.Timeout timeout = wheel.schedule(
+                () -> future.completeExceptionally(new TimeoutException("waiter timed out: " + agentId)),
+                waiterTimeoutSeconds, TimeUnit.SECONDS);
+        future.whenComplete((r, e) -> {
+            timeout.cancel();
+            agentWaiters.computeIfPresent(sessionId, (k, m) -> {
+                m.remove(agentId, future);
+                return m.isEmpty() ? null : m;
+            });
+        });
+    }
+
+    public void completeAgentWaiter(String sessionId, String agentId, Map<String, Object> result) {
+        Map<String, CompletableFuture<Map<String, Object>>> waiters = agentWaiters.get(sessionId);
+        if (waiters == null) return;
+        CompletableFuture<Map<String, Object>> fut = waiters.get(agentId);
+        if (fut != null) fut.complete(result);
+    }
+
+    private void dropWaiters(String sessionId, Throwable cause) {
+        Map<String, CompletableFuture<Map<String, Object>>> waiters = agentWaiters.remove(sessionId);
+        if (waiters == null) return;
+        waiters.values().forEach(f -> {
+            if (cause != null) f.completeExceptionally(cause);
+            else f.cancel(false);
+        });
+    }
+}
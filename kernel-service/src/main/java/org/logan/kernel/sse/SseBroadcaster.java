@@ -0,0 +1,336 @@
+package org.logan.kernel.sse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.logan.kernel.admission.CoDelMonitor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 📡 SseBroadcaster: fan-out of kernel events to dashboard clients on /messages/stream.
+ *
+ * {@link #broadcast} only enqueues. A dispatcher thread serializes each event once and
+ * hands the same bytes to every interested subscriber's bounded queue; each subscriber
+ * has its own writer, so slow clients get downsampled and eventually evicted instead of
+ * stalling message handling. Clients may subscribe to specific sessions only.
+ *
+ * Every event carries a monotonically increasing id, and recent frames are kept in a
+ * global ring plus one ring per session, so a client reconnecting with
+ * {@code Last-Event-ID} is sent just the tail it missed. If that tail is no longer
+ * retained (evicted, or sent by an earlier run of the kernel), it gets a {@code resync}
+ * event and should refetch the session audit.
+ *
+ * The time events wait in the dispatch queue is reported to a {@link CoDelMonitor}; it is
+ * the kernel's own queue delay as seen by admission control.
+ */
+@Component
+public class SseBroadcaster {
+    private static final String EVENT_NAME = "message";
+    private static final String HEARTBEAT = "heartbeat";
+
+    private record Pending(Map<String, Object> event, long enqueuedNanos) {}
+
+    private final ObjectMapper mapper;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, SseSubscriber> subscribers = new ConcurrentHashMap<>();
+    private final Set<SseSubscriber> firehose = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<SseSubscriber>> bySession = new ConcurrentHashMap<>();
+
+    // Seeded from the clock so ids keep increasing across kernel restarts; ids up to the seed
+    // belong to earlier runs, whose frames this one never retained
+    private final long bootSeed = System.currentTimeMillis() * 1000;
+    private final AtomicLong sequence = new AtomicLong(bootSeed);
+    private final Object fanOutLock = new Object();   // orders append+fan-out against replay+subscribe
+    private SseRing globalRing;
+    private Map<String, SseRing> sessionRings;
+    private Map<String, Long> evictedSessions;        // session -> newest id its evicted ring held
+    private long forgottenHorizon = -1;               // newest id of evicted rings no longer tracked
+
+    @Value("${kernel.sse.dispatch-queue-capacity:10000}")
+    private int dispatchCapacity;
+
+    @Value("${kernel.sse.client-queue-capacity:256}")
+    private int clientCapacity;
+
+    @Value("${kernel.sse.evict-after-ms:10000}")
+    private long evictAfterMs;
+
+    @Value("${kernel.sse.heartbeat-seconds:60}")
+    private long heartbeatSeconds;
+
+    @Value("${kernel.sse.replay.global-capacity:2048}")
+    private int globalReplayCapacity;
+
+    @Value("${kernel.sse.replay.session-capacity:256}")
+    private int sessionReplayCapacity;
+
+    @Value("${kernel.sse.replay.max-sessions:10000}")
+    private int maxReplaySessions;
+
+    @Value("${kernel.admission.codel.target-ms:50}")
+    private long delayTargetMs;
+
+    @Value("${kernel.admission.codel.interval-ms:500}")
+    private long delayIntervalMs;
+
+    private BlockingQueue<Pending> dispatchQueue;
+    private CoDelMonitor dispatchDelay;
+    private Thread dispatcher;
+    private ScheduledExecutorService heartbeat;
+    private volatile boolean running;
+
+    private Counter eventsDropped;
+    private Counter framesDropped;
+    private Counter evicted;
+
+    public SseBroadcaster(ObjectMapper mapper, MeterRegistry meterRegistry) {
+        this.mapper = mapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        dispatchQueue = new ArrayBlockingQueue<>(dispatchCapacity);
+        dispatchDelay = new CoDelMonitor(delayTargetMs, delayIntervalMs, dispatchQueue::size);
+        globalRing = new SseRing(globalReplayCapacity);
+        // Access-ordered so the least recently active session's ring goes first
+        sessionRings = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SseRing> eldest) {
+                if (size() <= maxReplaySessions) return false;
+                evictedSessions.merge(eldest.getKey(), eldest.getValue().newestId(), Math::max);
+                return true;
+            }
+        };
+        // Only remembers as many evicted sessions as there are rings; older ones fold into one horizon
+        evictedSessions = new LinkedHashMap<>(256, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() <= maxReplaySessions) return false;
+                forgottenHorizon = Math.max(forgottenHorizon, eldest.getValue());
+                return true;
+            }
+        };
+        eventsDropped = meterRegistry.counter("kernel.sse.events.dropped");
+        framesDropped = meterRegistry.counter("kernel.sse.frames.dropped");
+        evicted = meterRegistry.counter("kernel.sse.clients.evicted");
+        Gauge.builder("kernel.sse.subscribers", subscribers, Map::size).register(meterRegistry);
+        Gauge.builder("kernel.sse.dispatch.depth", dispatchQueue, Collection::size).register(meterRegistry);
+
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "sse-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+
+        // --- Periodic Heartbeat ---
+        heartbeat = Executors.newSingleThreadScheduledExecutor();
+        heartbeat.scheduleAtFixedRate(() -> broadcast(Map.of(
+                "timestamp", new Date().toString(),
+                "type", HEARTBEAT,
+                "message", "Orchestrator is listening"
+        )), heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        heartbeat.shutdownNow();
+        dispatcher.interrupt();
+        subscribers.values().forEach(SseSubscriber::close);
+    }
+
+    public SseEmitter subscribe() {
+        return subscribe(null, null);
+    }
+
+    /**
+     * @param sessionIds  only deliver events of these sessions (plus session-less events
+     *                    such as heartbeats); null or empty means everything
+     * @param lastEventId id of the last event the client saw (Last-Event-ID), or null
+     */
+    public SseEmitter subscribe(Collection<String> sessionIds, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(0L);
+        String emitterId = UUID.randomUUID().toString();
+        Set<String> filter = (sessionIds == null || sessionIds.isEmpty()) ? null : Set.copyOf(sessionIds);
+        SseSubscriber sub = new SseSubscriber(emitterId, emitter, filter, clientCapacity);
+
+        // Replay snapshot and registration happen atomically w.r.t. fan-out: no gaps, no duplicates
+        synchronized (fanOutLock) {
+            if (lastEventId != null) sub.replay(missedSince(filter, lastEventId));
+            subscribers.put(emitterId, sub);
+            if (filter == null) {
+                firehose.add(sub);
+            } else {
+                filter.forEach(sid -> bySession.computeIfAbsent(sid, k -> ConcurrentHashMap.newKeySet()).add(sub));
+            }
+        }
+
+        System.out.println("🔌 Client connected to /messages/stream: " + emitterId
+                + (filter == null ? "" : " sessions=" + filter)
+                + (lastEventId == null ? "" : " resume-after=" + lastEventId));
+
+        emitter.onCompletion(() -> {
+            unsubscribe(sub);
+            System.out.println("✅ SSE completed: " + emitterId);
+        });
+        emitter.onTimeout(() -> {
+            unsubscribe(sub);
+            System.out.println("⚠️ SSE timeout: " + emitterId);
+        });
+        emitter.onError((e) -> {
+            System.err.println("❌ SSE error: " + e.getMessage());
+            unsubscribe(sub);
+        });
+
+        sub.start(() -> unsubscribe(sub));
+        return emitter;
+    }
+
+    // --- SSE Broadcast ---
+    public void broadcast(Map<String, Object> event) {
+        if (!dispatchQueue.offer(new Pending(event, System.nanoTime()))) {
+            eventsDropped.increment();
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /** Delay of the dispatch queue, fed by the dispatcher thread. */
+    public CoDelMonitor dispatchDelay() {
+        return dispatchDelay;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            Pending pending;
+            try {
+                pending = dispatchQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            dispatchDelay.observe(System.nanoTime() - pending.enqueuedNanos());
+            Map<String, Object> event = pending.event();
+            try {
+                SseFrame frame = toFrame(event);
+                synchronized (fanOutLock) {
+                    retain(frame, event);
+                    fanOut(frame);
+                }
+            } catch (Exception e) {
+                System.err.println("❌ [SSE] Dispatch failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private SseFrame toFrame(Map<String, Object> event) throws Exception {
+        Object sid = event.get("sessionId");
+        return new SseFrame(sequence.incrementAndGet(), EVENT_NAME,
+                sid != null ? sid.toString() : null, mapper.writeValueAsString(event));
+    }
+
+    // Heartbeats carry ids but aren't worth replaying
+    private void retain(SseFrame frame, Map<String, Object> event) {
+        if (HEARTBEAT.equals(event.get("type"))) return;
+        globalRing.add(frame);
+        if (frame.sessionId() != null) {
+            sessionRings.computeIfAbsent(frame.sessionId(), k -> new SseRing(sessionReplayCapacity)).add(frame);
+        }
+    }
+
+    // Called under fanOutLock
+    List<SseFrame> missedSince(Set<String> filter, long lastId) {
+        // An id from an earlier run (or from ahead of this run's clock) can't be resumed from
+        boolean gap = lastId < bootSeed || lastId > sequence.get();
+        List<SseFrame> missed;
+        if (filter == null) {
+            gap |= globalRing.hasGapAfter(lastId);
+            missed = globalRing.after(lastId);
+        } else {
+            missed = new ArrayList<>();
+            for (String sid : filter) {
+                // Only this session's own evictions matter, not those of unrelated sessions
+                gap |= lastId < evictedHorizon(sid);
+                SseRing ring = sessionRings.get(sid);
+                if (ring == null) continue;
+                gap |= ring.hasGapAfter(lastId);
+                missed.addAll(ring.after(lastId));
+            }
+            missed.sort(Comparator.comparingLong(SseFrame::id));
+        }
+        if (!gap) return missed;
+
+        // The tail we'd need is gone; tell the client to fall back to a full refetch
+        Map<String, Object> resync = new LinkedHashMap<>();
+        resync.put("timestamp", new Date().toString());
+        resync.put("type", "resync");
+        resync.put("lastEventId", lastId);
+        if (filter != null) resync.put("sessionIds", filter);
+        List<SseFrame> out = new ArrayList<>(missed.size() + 1);
+        try {
+            // Carries an id this run knows, so the client's next Last-Event-ID resumes cleanly
+            long resyncId = Math.max(bootSeed, Math.min(lastId, sequence.get()));
+            out.add(new SseFrame(resyncId, EVENT_NAME, null, mapper.writeValueAsString(resync)));
+        } catch (Exception e) {
+            System.err.println("❌ [SSE] Failed to encode resync: " + e.getMessage());
+        }
+        out.addAll(missed);
+        return out;
+    }
+
+    /** Newest id the session lost to ring eviction; -1 if none (as far as is still known). */
+    private long evictedHorizon(String sessionId) {
+        Long horizon = evictedSessions.get(sessionId);
+        return horizon != null ? horizon : forgottenHorizon;
+    }
+
+    private void fanOut(SseFrame frame) {
+        if (frame.sessionId() == null) {
+            subscribers.values().forEach(sub -> deliver(sub, frame));
+            return;
+        }
+        firehose.forEach(sub -> deliver(sub, frame));
+        Set<SseSubscriber> interested = bySession.get(frame.sessionId());
+        if (interested != null) interested.forEach(sub -> deliver(sub, frame));
+    }
+
+    private void deliver(SseSubscriber sub, SseFrame frame) {
+        long before = sub.droppedCount();
+        if (!sub.offer(frame, evictAfterMs)) {
+            System.out.printf("🐌 [SSE] Evicting slow client %s (queue=%d, dropped=%d)%n",
+                    sub.id(), sub.depth(), sub.droppedCount());
+            evicted.increment();
+            unsubscribe(sub);
+            return;
+        }
+        long lost = sub.droppedCount() - before;
+        if (lost > 0) framesDropped.increment(lost);
+    }
+
+    private void unsubscribe(SseSubscriber sub) {
+        if (subscribers.remove(sub.id()) == null) return;
+        if (sub.wantsAll()) {
+            firehose.remove(sub);
+        } else {
+            for (String sid : sub.sessionIds()) {
+                bySession.computeIfPresent(sid, (k, set) -> {
+                    set.remove(sub);
+                    return set.isEmpty() ? null : set;
+                });
+            }
+        }
+        sub.close();
+    }
+}
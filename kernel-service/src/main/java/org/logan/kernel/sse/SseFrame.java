@@ -0,0 +1,12 @@
+package org.logan.kernel.sse;
+
+/**
+ * An event serialized once by the dispatcher and shared by every subscriber queue.
+ *
+ * @param id        monotonically increasing event id, sent as the SSE {@code id:} field
+ * @param name      SSE event name
+ * @param sessionId session the event belongs to, or null for broadcast-to-all events
+ * @param json      the event body, already encoded
+ */
+record SseFrame(long id, String name, String sessionId, String json) {
+}
@@ -0,0 +1,45 @@
+package org.logan.kernel.sse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-size ring of recent frames, used to replay the tail a reconnecting client missed.
+ * Not thread-safe; {@link SseBroadcaster} guards it with its fan-out lock.
+ */
+final class SseRing {
+    private final SseFrame[] slots;
+    private long appended;
+    private long lastEvictedId = -1;
+
+    SseRing(int capacity) {
+        this.slots = new SseFrame[capacity];
+    }
+
+    void add(SseFrame frame) {
+        int slot = (int) (appended++ % slots.length);
+        if (slots[slot] != null) lastEvictedId = slots[slot].id();
+        slots[slot] = frame;
+    }
+
+    /** True if frames newer than {@code lastId} have already been overwritten. */
+    boolean hasGapAfter(long lastId) {
+        return lastId < lastEvictedId;
+    }
+
+    /** Id of the newest retained frame, or -1 when empty. */
+    long newestId() {
+        return appended == 0 ? -1 : slots[(int) ((appended - 1) % slots.length)].id();
+    }
+
+    /** Frames with an id greater than {@code lastId}, oldest first. */
+    List<SseFrame> after(long lastId) {
+        List<SseFrame> out = new ArrayList<>();
+        long first = Math.max(0, appended - slots.length);
+        for (long i = first; i < appended; i++) {
+            SseFrame f = slots[(int) (i % slots.length)];
+            if (f.id() > lastId) out.add(f);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,124 @@
+package org.logan.kernel.sse;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One connected SSE client: a bounded frame queue drained by its own virtual thread,
+ * so a slow browser only ever backs up its own queue.
+ */
+final class SseSubscriber {
+    private static final int MAX_FRAMES_PER_WRITE = 64;
+
+    private final String id;
+    private final SseEmitter emitter;
+    private final Set<String> sessionIds;           // null = every session
+    private final BlockingQueue<SseFrame> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long saturatedSince;            // 0 while the queue has room
+    private volatile boolean closed;
+    private Thread writer;
+    private List<SseFrame> backlog = List.of();     // replayed frames, written before the live queue
+
+    SseSubscriber(String id, SseEmitter emitter, Set<String> sessionIds, int capacity) {
+        this.id = id;
+        this.emitter = emitter;
+        this.sessionIds = sessionIds;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /** Frames missed while disconnected; must be set before {@link #start}. */
+    void replay(List<SseFrame> frames) {
+        this.backlog = frames;
+    }
+
+    void start(Runnable onExit) {
+        writer = Thread.ofVirtual().name("sse-" + id).start(() -> {
+            try {
+                drain();
+            } finally {
+                onExit.run();
+            }
+        });
+    }
+
+    /**
+     * Queue a frame without blocking. When the queue is full the oldest frame is dropped
+     * (the client sees a downsampled stream); once it has stayed full for longer than
+     * {@code evictAfterMs} this returns false and the caller evicts the client.
+     */
+    boolean offer(SseFrame frame, long evictAfterMs) {
+        if (queue.offer(frame)) {
+            saturatedSince = 0;
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (saturatedSince == 0) {
+            saturatedSince = now;
+        } else if (now - saturatedSince > evictAfterMs) {
+            return false;
+        }
+        if (queue.poll() != null) dropped.incrementAndGet();
+        queue.offer(frame);
+        return true;
+    }
+
+    private void drain() {
+        List<SseFrame> batch = new ArrayList<>(MAX_FRAMES_PER_WRITE);
+        try {
+            for (int i = 0; i < backlog.size() && !closed; i += MAX_FRAMES_PER_WRITE) {
+                write(backlog.subList(i, Math.min(backlog.size(), i + MAX_FRAMES_PER_WRITE)));
+            }
+            backlog = List.of();
+
+            while (!closed) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_FRAMES_PER_WRITE - 1);
+
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Client went away mid-write; the emitter callbacks finish the cleanup
+            System.out.println("⚠️ [SSE] Write failed for " + id + ": " + e.getMessage());
+        }
+    }
+
+    // Everything that queued up goes out in one write + flush
+    private void write(List<SseFrame> frames) throws IOException {
+        Set<ResponseBodyEmitter.DataWithMediaType> items = new LinkedHashSet<>();
+        for (SseFrame f : frames) {
+            items.addAll(SseEmitter.event()
+                    .id(Long.toString(f.id()))
+                    .name(f.name())
+                    .data(f.json(), MediaType.APPLICATION_JSON)
+                    .build());
+        }
+        emitter.send(items);
+    }
+
+    void close() {
+        if (closed) return;
+        closed = true;
+        if (writer != null) writer.interrupt();
+        try {
+            emitter.complete();
+        } catch (Exception ignored) {
+        }
+    }
+
+    boolean wantsAll() { return sessionIds == null; }
+    Set<String> sessionIds() { return sessionIds; }
+    String id() { return id; }
+    int depth() { return queue.size(); }
+    long droppedCount() { return dropped.get(); }
+}
@@ -0,0 +1,169 @@
+package org.logan.kernel.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.logan.kernel.agent.Agent;
+import org.logan.kernel.agent.AgentHttpClient;
+import org.logan.kernel.agent.AgentLifecycleEvent;
+import org.logan.kernel.agent.AgentRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 🧰 AgentToolCatalog: the tools each agent offers, kept current so the orchestrator can plan
+ * without asking every agent first.
+ *
+ * An agent's {@code /tools/list} is fetched (conditionally, with the ETag it last answered)
+ * when it registers, when it pushes {@code POST /agents/{id}/tools/changed}, and on a slow
+ * periodic resync for agents that can't push. Fetches run in parallel and retry with backoff
+ * while a freshly spawned agent is still booting. Readers get an immutable snapshot and a
+ * version that changes whenever any agent's tool list does.
+ */
+@Component
+public class AgentToolCatalog {
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(5);
+    private static final int MAX_FETCH_ATTEMPTS = 6;
+
+    public record Snapshot(long version, Map<String, List<String>> tools) {}
+
+    private record Entry(List<String> tools, String etag) {}
+
+    private final AgentRegistry registry;
+    private final AgentHttpClient http;
+    private final ObjectMapper mapper;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(0, Map.of());
+
+    @Value("${kernel.tool-catalog.resync-seconds:300}")
+    private long resyncSeconds;
+
+    private ScheduledExecutorService scheduler;
+
+    public AgentToolCatalog(AgentRegistry registry, AgentHttpClient http, ObjectMapper mapper) {
+        this.registry = registry;
+        this.http = http;
+        this.mapper = mapper;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tool-catalog");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::resync, resyncSeconds, resyncSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /** Current tools per agent id (sorted), without any I/O. */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /** An agent said its tools changed: fetch again unconditionally (the old list serves meanwhile). */
+    public void invalidate(String agentId) {
+        entries.computeIfPresent(agentId, (id, e) -> new Entry(e.tools(), null));
+        refresh(agentId, 1);
+    }
+
+    @EventListener
+    public void onAgentLifecycle(AgentLifecycleEvent event) {
+        if (event.isRegistered()) {
+            refresh(event.agentId(), 1);
+        } else if (entries.remove(event.agentId()) != null) {
+            publish();
+        }
+    }
+
+    private void resync() {
+        registry.listAgentIds().forEach(id -> refresh(id, MAX_FETCH_ATTEMPTS));
+    }
+
+    private void refresh(String agentId, int attempt) {
+        Agent agent = registry.getAgent(agentId);
+        if (agent == null || agent.getEndpoint() == null) return;
+
+        Entry known = entries.get(agentId);
+        HttpRequest.Builder req = HttpRequest.newBuilder()
+                .uri(URI.create(agent.getEndpoint() + "/tools/list"))
+                .timeout(FETCH_TIMEOUT)
+                .GET();
+        if (known != null && known.etag() != null) req.header("If-None-Match", known.etag());
+
+        http.sendAsync(req.build(), HttpResponse.BodyHandlers.ofString())
+                .orTimeout(FETCH_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((resp, ex) -> {
+                    if (ex == null && resp.statusCode() == 304) return;
+                    if (ex == null && resp.statusCode() == 200) {
+                        try {
+                            store(agentId, agent, resp);
+                            return;
+                        } catch (Exception e) {
+                            ex = e;
+                        }
+                    }
+                    String failure = ex != null ? String.valueOf(ex.getMessage()) : "status " + resp.statusCode();
+                    if (attempt >= MAX_FETCH_ATTEMPTS || registry.getAgent(agentId) == null) {
+                        System.err.printf("⚠️ [tool-catalog] Tools of %s unavailable: %s%n", agentId, failure);
+                        return;
+                    }
+                    // Likely still booting: 1s, 2s, 4s, ... capped at 30s
+                    long delayMs = Math.min(30_000, 1000L << (attempt - 1));
+                    scheduler.schedule(() -> refresh(agentId, attempt + 1), delayMs, TimeUnit.MILLISECONDS);
+                });
+    }
+
+    /**
+     * Keeps the fetched list only while {@code agent} is still the one registered under its id:
+     * a fetch that lands after the agent left (or was replaced) must not bring its entry back.
+     * The check runs inside {@code compute}, so a deregistration's {@code remove} either sees
+     * the entry or happens after it was skipped.
+     */
+    @SuppressWarnings("unchecked")
+    private void store(String agentId, Agent agent, HttpResponse<String> resp) throws Exception {
+        List<Map<String, Object>> list = mapper.readValue(resp.body(), List.class);
+        List<String> names = list.stream()
+                .map(m -> (String) m.get("name"))
+                .filter(Objects::nonNull)
+                .sorted()
+                .toList();
+        String etag = resp.headers().firstValue("ETag").orElse(null);
+        Entry fresh = new Entry(names, etag);
+        AtomicReference<Entry> previous = new AtomicReference<>();
+        Entry stored = entries.compute(agentId, (id, old) -> {
+            previous.set(old);
+            return registry.getAgent(id) == agent ? fresh : old;
+        });
+        if (stored != fresh) {
+            System.out.printf("🧰 [tool-catalog] Dropped tools of %s: no longer registered%n", agentId);
+            return;
+        }
+        if (previous.get() == null || !previous.get().tools().equals(names)) {
+            publish();
+            System.out.printf("🧰 [tool-catalog] %s offers %s (catalog v%d)%n", agentId, names, snapshot.version());
+        }
+    }
+
+    private synchronized void publish() {
+        Map<String, List<String>> tools = new TreeMap<>();
+        entries.forEach((id, e) -> tools.put(id, e.tools()));
+        snapshot = new Snapshot(version.incrementAndGet(), Collections.unmodifiableMap(tools));
+    }
+}
@@ -0,0 +1,9 @@
+-- ==============================
+-- V2__goal_results.sql
+-- Goals become the backing store of the async goal API (POST /goals)
+-- ==============================
+
+ALTER TABLE goals
+    ADD COLUMN result       JSON      NULL,   -- aggregated session result once the orchestrator finishes
+    ADD COLUMN completed_at TIMESTAMP NULL,
+    ADD INDEX idx_goals_correlation (correlation_id);
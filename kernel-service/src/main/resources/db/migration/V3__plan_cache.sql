@@ -0,0 +1,13 @@
+-- ==============================
+-- V3__plan_cache.sql
+-- Persisted orchestration plans for repeated goals (kernel.plan-cache.persist)
+-- ==============================
+
+CREATE TABLE IF NOT EXISTS plan_cache (
+    template_hash CHAR(64)     PRIMARY KEY,    -- SHA-256 of the normalized goal template
+    template      TEXT         NOT NULL,       -- e.g. "pay {0} to {1}"
+    catalog_hash  CHAR(64)     NOT NULL,       -- tool catalog the plan was made against
+    plan          JSON         NOT NULL,       -- steps with entity placeholders
+    created_at    TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_plan_cache_created (created_at)
+);
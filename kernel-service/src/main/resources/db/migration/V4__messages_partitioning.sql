@@ -0,0 +1,44 @@
+-- ==============================
+-- V4__messages_partitioning.sql
+-- messages: lookup indexes, session id from the payload, monthly partitions + archive
+-- (partitions ahead of time and retention are maintained by MessageRetention)
+-- ==============================
+
+-- Partitioning needs a non-null created_at that is part of every unique key
+UPDATE messages SET created_at = COALESCE(timestamp, CURRENT_TIMESTAMP) WHERE created_at IS NULL;
+
+ALTER TABLE messages
+    MODIFY created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    ADD COLUMN session_id VARCHAR(100)
+        GENERATED ALWAYS AS (JSON_UNQUOTE(JSON_EXTRACT(payload, '$.sessionId'))) STORED,   -- NULL if absent
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, created_at),
+    ADD INDEX idx_messages_recipient_created (recipient_id, created_at),
+    ADD INDEX idx_messages_correlation (correlation_id),
+    ADD INDEX idx_messages_session (session_id, created_at);
+
+-- One partition per month, named after it; everything older than Nov 2026 starts in p202610
+ALTER TABLE messages
+    PARTITION BY RANGE (UNIX_TIMESTAMP(created_at)) (
+        PARTITION p202610 VALUES LESS THAN (UNIX_TIMESTAMP('2026-11-01 00:00:00')),
+        PARTITION pmax    VALUES LESS THAN MAXVALUE
+    );
+
+-- ========== MESSAGES ARCHIVE ==========
+-- Rows of partitions past retention, copied here before the partition is dropped
+CREATE TABLE IF NOT EXISTS messages_archive (
+    id             BIGINT       NOT NULL PRIMARY KEY,
+    type           VARCHAR(50)  NOT NULL,
+    sender_id      VARCHAR(100) NOT NULL,
+    recipient_id   VARCHAR(100) NOT NULL,
+    correlation_id VARCHAR(100) NOT NULL,
+    session_id     VARCHAR(100) NULL,
+    payload        JSON,
+    signature      VARCHAR(512) NULL,
+    timestamp      TIMESTAMP    NOT NULL,
+    status         VARCHAR(20),
+    created_at     TIMESTAMP    NOT NULL,
+    archived_at    TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_messages_archive_session (session_id, created_at),
+    INDEX idx_messages_archive_correlation (correlation_id)
+);
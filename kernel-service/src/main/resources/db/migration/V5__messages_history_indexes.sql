@@ -0,0 +1,8 @@
+-- ==============================
+-- V5__messages_history_indexes.sql
+-- Seek paths for GET /messages/history: (filter, created_at) with id (part of the PK) as tie-breaker
+-- ==============================
+
+ALTER TABLE messages
+    ADD INDEX idx_messages_sender_created (sender_id, created_at),
+    ADD INDEX idx_messages_created (created_at);
@@ -0,0 +1,9 @@
+-- ==============================
+-- V6__messages_session_id_truncate.sql
+-- session_id is derived from payload.sessionId, which nothing bounds: a longer id made the
+-- whole INSERT fail ("Data too long"). Keep the first 100 characters instead.
+-- ==============================
+
+ALTER TABLE messages
+    MODIFY session_id VARCHAR(100)
+        GENERATED ALWAYS AS (LEFT(JSON_UNQUOTE(JSON_EXTRACT(payload, '$.sessionId')), 100)) STORED;   -- NULL if absent
@@ -0,0 +1,8 @@
+-- ==============================
+-- V7__messages_type_created_index.sql
+-- GET /messages/history filtered by type alone had no (type, created_at) path and walked
+-- idx_messages_created, reading every other type's rows on the way.
+-- ==============================
+
+ALTER TABLE messages
+    ADD INDEX idx_messages_type_created (type, created_at);
@@ -0,0 +1,113 @@
+package org.logan.kernel.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.admission.AdmissionController.Decision;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.MessageType.Priority;
+import org.logan.kernel.sse.SseBroadcaster;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdmissionControllerTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final CoDelMonitor dispatchDelay = new CoDelMonitor(50, 500, () -> 10, now::get);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private AdmissionController admission;
+
+    @BeforeEach
+    void setUp() {
+        SseBroadcaster broadcaster = mock(SseBroadcaster.class);
+        when(broadcaster.dispatchDelay()).thenReturn(dispatchDelay);
+        admission = new AdmissionController(mock(AgentRegistry.class), broadcaster, meters);
+        ReflectionTestUtils.setField(admission, "enabled", true);
+        // Next to no refill during a test: only the burst counts
+        ReflectionTestUtils.setField(admission, "senderRate", 0.001);
+        ReflectionTestUtils.setField(admission, "senderBurst", 4.0);
+        ReflectionTestUtils.setField(admission, "sessionRate", 0.001);
+        ReflectionTestUtils.setField(admission, "sessionBurst", 100.0);
+        ReflectionTestUtils.setField(admission, "lowReserve", 0.25);
+    }
+
+    private Decision admit(Priority priority) {
+        return admission.admit("test", priority, "agent-1", "orchestrator-agent", null);
+    }
+
+    /** Report {@code sojournMs} delays across one full interval. */
+    private void standingDelay(long sojournMs) {
+        dispatchDelay.observe(TimeUnit.MILLISECONDS.toNanos(sojournMs));
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        dispatchDelay.observe(TimeUnit.MILLISECONDS.toNanos(sojournMs));
+    }
+
+    @Test
+    void overloadShedsLowTrafficOnly() {
+        standingDelay(200);
+
+        Decision low = admit(Priority.LOW);
+        assertFalse(low.admitted());
+        assertEquals("queue_delay", low.reason());
+        assertEquals(1, low.retryAfterSeconds());   // one 500 ms interval, rounded up
+        assertTrue(admit(Priority.NORMAL).admitted());
+        assertEquals(1, meters.counter("kernel.admission.rejected", "type", "test", "reason", "queue_delay").count());
+    }
+
+    @Test
+    void severeOverloadShedsNormalTrafficToo() {
+        standingDelay(600);
+
+        assertFalse(admit(Priority.NORMAL).admitted());
+        assertTrue(admit(Priority.CRITICAL).admitted());
+    }
+
+    @Test
+    void recoveryAdmitsLowTrafficAgain() {
+        standingDelay(200);
+        assertFalse(admit(Priority.LOW).admitted());
+
+        dispatchDelay.observe(TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertTrue(admit(Priority.LOW).admitted());
+    }
+
+    @Test
+    void lowTrafficLeavesAReserveInTheSenderBucket() {
+        // Burst 4, reserve 0.25 * 4 = 1: LOW gets three tokens, the last one is kept for NORMAL
+        for (int i = 0; i < 3; i++) assertTrue(admit(Priority.LOW).admitted());
+        Decision low = admit(Priority.LOW);
+        assertFalse(low.admitted());
+        assertEquals("sender_rate", low.reason());
+        assertTrue(low.retryAfterSeconds() >= 1);
+
+        assertTrue(admit(Priority.NORMAL).admitted());
+        assertFalse(admit(Priority.NORMAL).admitted());
+        assertTrue(admit(Priority.CRITICAL).admitted());
+    }
+
+    @Test
+    void aSessionRejectionGivesTheSenderItsTokenBack() {
+        ReflectionTestUtils.setField(admission, "sessionBurst", 1.0);
+        assertTrue(admission.admit("test", Priority.NORMAL, "agent-1", "orchestrator-agent", "s-1").admitted());
+
+        // Session s-1 is dry: these are refused without costing agent-1 anything
+        for (int i = 0; i < 10; i++) {
+            Decision d = admission.admit("test", Priority.NORMAL, "agent-1", "orchestrator-agent", "s-1");
+            assertFalse(d.admitted());
+            assertEquals("session_rate", d.reason());
+        }
+
+        // Burst 4, one spent on s-1: three left for other sessions
+        for (int i = 0; i < 3; i++) {
+            assertTrue(admission.admit("test", Priority.NORMAL, "agent-1", "orchestrator-agent", "s-" + (i + 2)).admitted());
+        }
+        assertEquals("sender_rate", admission.admit("test", Priority.NORMAL, "agent-1", "orchestrator-agent", "s-9").reason());
+    }
+}
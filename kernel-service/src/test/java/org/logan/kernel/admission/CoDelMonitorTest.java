@@ -0,0 +1,93 @@
+package org.logan.kernel.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoDelMonitorTest {
+
+    private static final long TARGET_MS = 50;
+    private static final long INTERVAL_MS = 500;
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final AtomicInteger depth = new AtomicInteger(10);
+    private final CoDelMonitor monitor = new CoDelMonitor(TARGET_MS, INTERVAL_MS, depth::get, now::get);
+
+    private void advanceMs(long ms) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(ms));
+    }
+
+    private void observeMs(long sojournMs) {
+        monitor.observe(TimeUnit.MILLISECONDS.toNanos(sojournMs));
+    }
+
+    @Test
+    void delayUnderTargetIsNotOverload() {
+        for (int i = 0; i < 10; i++) {
+            observeMs(TARGET_MS - 1);
+            advanceMs(100);
+        }
+        assertFalse(monitor.overloaded());
+    }
+
+    @Test
+    void aBurstShorterThanAnIntervalIsNotOverload() {
+        observeMs(200);
+        advanceMs(INTERVAL_MS - 1);
+        observeMs(200);
+
+        assertFalse(monitor.overloaded());
+    }
+
+    @Test
+    void delayAboveTargetForAWholeIntervalIsOverload() {
+        observeMs(200);
+        advanceMs(INTERVAL_MS);
+        observeMs(200);
+
+        assertTrue(monitor.overloaded());
+        assertFalse(monitor.severelyOverloaded());
+    }
+
+    @Test
+    void oneItemUnderTargetEndsTheOverload() {
+        observeMs(200);
+        advanceMs(INTERVAL_MS);
+        observeMs(200);
+        assertTrue(monitor.overloaded());
+
+        observeMs(10);
+
+        assertFalse(monitor.overloaded());
+        // ...and the interval starts over
+        observeMs(200);
+        advanceMs(INTERVAL_MS - 1);
+        observeMs(200);
+        assertFalse(monitor.overloaded());
+    }
+
+    @Test
+    void anEmptyQueueEndsTheOverload() {
+        observeMs(200);
+        advanceMs(INTERVAL_MS);
+        observeMs(200);
+
+        depth.set(0);
+
+        assertFalse(monitor.overloaded());
+    }
+
+    @Test
+    void delayBeyondAFullIntervalIsSevere() {
+        observeMs(INTERVAL_MS);
+        advanceMs(INTERVAL_MS);
+        observeMs(INTERVAL_MS);
+
+        assertTrue(monitor.severelyOverloaded());
+        assertEquals(INTERVAL_MS, monitor.lastSojournMs());
+    }
+}
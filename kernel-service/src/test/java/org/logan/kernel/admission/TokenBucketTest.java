@@ -0,0 +1,98 @@
+package org.logan.kernel.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    private void advanceMs(long ms) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(ms));
+    }
+
+    @Test
+    void startsFullAndEmptiesAfterBurst() {
+        TokenBucket bucket = new TokenBucket(10, 3, now::get);
+
+        assertTrue(bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(0));
+        assertFalse(bucket.tryAcquire(0));
+    }
+
+    @Test
+    void refillsAtTheConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(10, 3, now::get);
+        for (int i = 0; i < 3; i++) bucket.tryAcquire(0);
+
+        advanceMs(150);   // 1.5 tokens at 10/s
+
+        assertTrue(bucket.tryAcquire(0));
+        assertFalse(bucket.tryAcquire(0));
+    }
+
+    @Test
+    void neverRefillsBeyondBurst() {
+        TokenBucket bucket = new TokenBucket(10, 3, now::get);
+        bucket.tryAcquire(0);
+
+        advanceMs(60_000);
+
+        for (int i = 0; i < 3; i++) assertTrue(bucket.tryAcquire(0));
+        assertFalse(bucket.tryAcquire(0));
+    }
+
+    @Test
+    void reserveIsLeftForCallersWithoutOne() {
+        TokenBucket bucket = new TokenBucket(10, 4, now::get);
+
+        // 4 -> 3 -> 2 -> 1; the next would leave less than the reserve of 1
+        for (int i = 0; i < 3; i++) assertTrue(bucket.tryAcquire(1));
+        assertFalse(bucket.tryAcquire(1));
+        assertTrue(bucket.tryAcquire(0));
+        assertFalse(bucket.tryAcquire(0));
+    }
+
+    @Test
+    void aRefundedTokenCanBeTakenAgainButNotBeyondBurst() {
+        TokenBucket bucket = new TokenBucket(10, 2, now::get);
+        bucket.tryAcquire(0);
+        bucket.tryAcquire(0);
+
+        bucket.refund();
+
+        assertTrue(bucket.tryAcquire(0));
+        assertFalse(bucket.tryAcquire(0));
+        bucket.refund();
+        bucket.refund();
+        bucket.refund();
+        assertTrue(bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(0));
+        assertFalse(bucket.tryAcquire(0));
+    }
+
+    @Test
+    void reportsTimeUntilATokenIsAvailable() {
+        TokenBucket bucket = new TokenBucket(10, 2, now::get);
+        assertEquals(0, bucket.nanosUntilAvailable(0));
+        bucket.tryAcquire(0);
+        bucket.tryAcquire(0);
+
+        assertAboutMs(100, bucket.nanosUntilAvailable(0));
+        assertAboutMs(200, bucket.nanosUntilAvailable(1));
+
+        advanceMs(40);
+        assertAboutMs(60, bucket.nanosUntilAvailable(0));
+    }
+
+    // The rate is a double: allow a nanosecond of rounding
+    private static void assertAboutMs(long expectedMs, long actualNanos) {
+        long expected = TimeUnit.MILLISECONDS.toNanos(expectedMs);
+        assertTrue(Math.abs(expected - actualNanos) <= 1, "expected ~" + expected + "ns, was " + actualNanos);
+    }
+}
@@ -0,0 +1,164 @@
+package org.logan.kernel.agent;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.logan.kernel.agent.BedrockProcessLauncher.Launched;
+import org.logan.kernel.agent.gateway.KernelGatewayFactory;
+import org.logan.kernel.persistence.AgentPersistenceService;
+import org.logan.kernel.planning.PlanCache;
+import org.logan.kernel.tools.AgentToolCatalog;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AgentFactoryTest {
+
+    private BedrockProcessLauncher launcher;
+    private WarmAgentPool warmPool;
+    private AgentRegistry registry;
+    private AgentFactory factory;
+    private Process process;
+    private final AtomicInteger launches = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        launcher = mock(BedrockProcessLauncher.class);
+        warmPool = mock(WarmAgentPool.class);
+        registry = mock(AgentRegistry.class);
+        when(warmPool.claim(anyString())).thenReturn(Optional.empty());
+        process = mock(Process.class);
+        when(process.isAlive()).thenReturn(true);
+        when(launcher.launch(anyString())).thenAnswer(inv ->
+                new Launched(process, "http://" + inv.getArgument(0) + "-" + launches.incrementAndGet()));
+        factory = new AgentFactory(registry, mock(AgentPersistenceService.class), mock(KernelGatewayFactory.class),
+                mock(AgentHttpClient.class), mock(AgentToolCatalog.class), mock(PlanCache.class), launcher, warmPool);
+        ReflectionTestUtils.setField(factory, "maxColdStarts", 2);
+        ReflectionTestUtils.setField(factory, "healthTimeoutSeconds", 60L);
+        ReflectionTestUtils.setField(factory, "journalDir", "");   // journals in memory only
+        factory.start();
+    }
+
+    @Test
+    void bulkCreationBootsAtMostMaxColdStartsAtOnce() throws Exception {
+        CountDownLatch healthy = new CountDownLatch(1);
+        when(launcher.awaitHealthy(any(), anyString(), any())).thenAnswer(inv -> {
+            healthy.await();
+            return true;
+        });
+
+        CompletableFuture<List<AgentFactory.Spawned>> bulk = CompletableFuture.supplyAsync(() ->
+                factory.createAgents(List.of("a-1", "a-2", "a-3", "a-4", "a-5"), "BEDROCK", false));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (launches.get() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+        Thread.sleep(200);
+
+        assertEquals(2, launches.get());   // the other three wait for a slot
+        assertFalse(bulk.isDone());
+
+        healthy.countDown();
+        List<AgentFactory.Spawned> spawned = bulk.get(5, TimeUnit.SECONDS);
+        assertEquals(5, launches.get());
+        assertTrue(spawned.stream().allMatch(s -> s.error() == null), spawned::toString);
+        verify(registry, times(5)).registerAgent(any(Agent.class));
+    }
+
+    @Test
+    void aFailedLaunchHandsItsSlotBack() throws Exception {
+        ReflectionTestUtils.setField(factory, "maxColdStarts", 1);
+        factory.start();
+        when(launcher.launch("a-1")).thenThrow(new IOException("no jar"));
+        when(launcher.awaitHealthy(any(), anyString(), any())).thenReturn(true);
+
+        assertThrows(IOException.class, () -> factory.createAgent("a-1", "BEDROCK"));
+        Agent agent = CompletableFuture.supplyAsync(() -> {
+            try {
+                return factory.createAgent("a-2", "BEDROCK");
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        assertEquals("a-2", agent.getId());
+    }
+
+    @Test
+    void aWarmProcessNeedsNoSlot() throws Exception {
+        ReflectionTestUtils.setField(factory, "maxColdStarts", 1);
+        factory.start();
+        when(launcher.awaitHealthy(any(), anyString(), any())).thenAnswer(inv -> {
+            new CountDownLatch(1).await();   // the cold start never gets healthy: its slot stays taken
+            return true;
+        });
+        CompletableFuture.runAsync(() -> {
+            try {
+                factory.createAgent("cold", "BEDROCK");
+            } catch (Exception ignored) {
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (launches.get() < 1 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+        when(warmPool.claim("warm")).thenReturn(Optional.of(new Launched(mock(Process.class), "http://warm")));
+
+        Agent agent = factory.createAgent("warm", "BEDROCK");
+
+        assertEquals("http://warm", agent.getEndpoint());
+        verify(launcher, never()).launch("warm");
+    }
+
+    @Test
+    void aColdSpawnIsRegisteredOnlyOnceHealthy() throws Exception {
+        CountDownLatch healthy = new CountDownLatch(1);
+        when(launcher.awaitHealthy(any(), anyString(), any())).thenAnswer(inv -> healthy.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Agent> spawn = CompletableFuture.supplyAsync(() -> {
+            try {
+                return factory.createAgent("a-1", "BEDROCK");
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(200);
+
+        assertFalse(spawn.isDone());
+        verify(registry, never()).registerAgent(any(Agent.class));
+        healthy.countDown();
+        assertEquals("a-1", spawn.get(5, TimeUnit.SECONDS).getId());
+        verify(registry).registerAgent(any(Agent.class));
+    }
+
+    @Test
+    void aColdProcessThatNeverGetsHealthyIsKilledAndNotRegistered() throws Exception {
+        when(launcher.awaitHealthy(any(), anyString(), any())).thenReturn(false);
+
+        assertThrows(IOException.class, () -> factory.createAgent("a-1", "BEDROCK"));
+
+        verify(process).destroy();
+        verify(registry, never()).registerAgent(any(Agent.class));
+    }
+
+    @Test
+    void anAgentThatNeverOrchestratesOpensNoJournal(@TempDir Path dir) throws Exception {
+        ReflectionTestUtils.setField(factory, "journalDir", dir.toString());
+        when(launcher.awaitHealthy(any(), anyString(), any())).thenReturn(true);
+
+        factory.createAgent("worker-1", "BEDROCK");
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(), files.toList());
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package org.logan.kernel.agent;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentHttpClientTest {
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final AtomicInteger received = new AtomicInteger();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private AgentHttpClient http;
+
+    @BeforeEach
+    void setUp() {
+        http = new AgentHttpClient(meters);
+        ReflectionTestUtils.setField(http, "version", HttpClient.Version.HTTP_2);
+        ReflectionTestUtils.setField(http, "connectTimeoutMs", 2_000L);
+        ReflectionTestUtils.setField(http, "maxPerEndpoint", 2);
+        ReflectionTestUtils.setField(http, "callbackThreads", 2);
+        ReflectionTestUtils.setField(http, "laneIdleSeconds", 3600L);
+        http.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        http.stop();
+        servers.forEach(s -> s.stop(0));
+    }
+
+    /** An HTTP/1.1-only agent whose /slow answers once {@link #release} opens. */
+    private String agent() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/fast", exchange -> {
+            received.incrementAndGet();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/slow", exchange -> {
+            received.incrementAndGet();
+            peak.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        servers.add(server);
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static HttpRequest get(String endpoint, String path) {
+        return HttpRequest.newBuilder(URI.create(endpoint + path)).GET().build();
+    }
+
+    private double gauge(String name, String endpoint) {
+        return meters.get(name).tag("endpoint", endpoint).gauge().value();
+    }
+
+    private static void await(Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.call()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not reached in time");
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void anAgentWithoutH2cIsServedOverHttp11() throws Exception {
+        String agent = agent();
+
+        HttpResponse<Void> resp = http.send(get(agent, "/fast"), HttpResponse.BodyHandlers.discarding(),
+                Duration.ofSeconds(5));
+
+        assertEquals(200, resp.statusCode());
+        assertEquals(HttpClient.Version.HTTP_1_1, resp.version());
+        assertEquals(1.0, meters.get("kernel.agent.http.requests")
+                .tags("endpoint", agent, "version", "HTTP_1_1").counter().count());
+        assertEquals(0.0, meters.get("kernel.agent.http.requests")
+                .tags("endpoint", agent, "version", "HTTP_2").counter().count());
+    }
+
+    @Test
+    void requestsBeyondTheEndpointCapQueueUntilOneFinishes() throws Exception {
+        String agent = agent();
+        release = new CountDownLatch(1);
+
+        List<CompletableFuture<HttpResponse<Void>>> sent = new ArrayList<>();
+        for (int i = 0; i < 5; i++) sent.add(http.sendAsync(get(agent, "/slow"), HttpResponse.BodyHandlers.discarding()));
+        await(() -> received.get() == 2);
+        Thread.sleep(200);
+
+        assertEquals(2, received.get());
+        assertEquals(2.0, gauge("kernel.agent.http.inflight", agent));
+        assertEquals(3.0, gauge("kernel.agent.http.queued", agent));
+
+        release.countDown();
+        for (CompletableFuture<HttpResponse<Void>> f : sent) assertEquals(200, f.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(5, received.get());
+        assertEquals(2, peak.get());
+        assertEquals(0.0, gauge("kernel.agent.http.queued", agent));
+    }
+
+    @Test
+    void eachEndpointHasItsOwnLane() throws Exception {
+        String busy = agent();
+        String idle = agent();
+        release = new CountDownLatch(1);
+        http.sendAsync(get(busy, "/slow"), HttpResponse.BodyHandlers.discarding());
+        http.sendAsync(get(busy, "/slow"), HttpResponse.BodyHandlers.discarding());
+        await(() -> concurrent.get() == 2);
+
+        HttpResponse<Void> resp = http.send(get(idle, "/fast"), HttpResponse.BodyHandlers.discarding(),
+                Duration.ofSeconds(2));
+
+        assertEquals(200, resp.statusCode());
+    }
+
+    @Test
+    void aCallerThatTimedOutWhileQueuedIsNeverSent() throws Exception {
+        String agent = agent();
+        release = new CountDownLatch(1);
+        http.sendAsync(get(agent, "/slow"), HttpResponse.BodyHandlers.discarding());
+        http.sendAsync(get(agent, "/slow"), HttpResponse.BodyHandlers.discarding());
+        await(() -> received.get() == 2);
+
+        assertThrows(TimeoutException.class, () -> http.send(get(agent, "/fast"),
+                HttpResponse.BodyHandlers.discarding(), Duration.ofMillis(100)));
+        release.countDown();
+        await(() -> concurrent.get() == 0);
+        HttpResponse<Void> next = http.send(get(agent, "/fast"), HttpResponse.BodyHandlers.discarding(),
+                Duration.ofSeconds(5));
+
+        assertEquals(200, next.statusCode());
+        assertEquals(3, received.get());   // the timed-out request took no slot and hit no agent
+    }
+
+    @Test
+    void aSlowAgentTimesTheCallerOut() throws Exception {
+        String agent = agent();
+        release = new CountDownLatch(1);
+
+        assertThrows(TimeoutException.class, () -> http.send(get(agent, "/slow"),
+                HttpResponse.BodyHandlers.discarding(), Duration.ofMillis(200)));
+    }
+
+    @Test
+    void aRefusedConnectionFailsTheRequestAndFreesTheSlot() throws Exception {
+        String agent = agent();
+        servers.remove(0).stop(0);
+
+        for (int i = 0; i < 3; i++) {   // more than the cap: each failure must hand its permit back
+            assertThrows(ConnectException.class, () -> http.send(get(agent, "/fast"),
+                    HttpResponse.BodyHandlers.discarding(), Duration.ofSeconds(5)));
+        }
+        assertEquals(0.0, gauge("kernel.agent.http.inflight", agent));
+    }
+
+    @Test
+    void forgetDropsTheEndpointsMeters() throws Exception {
+        String agent = agent();
+        http.send(get(agent, "/fast"), HttpResponse.BodyHandlers.discarding(), Duration.ofSeconds(5));
+
+        http.forget(agent);
+
+        assertNull(meters.find("kernel.agent.http.requests").tag("endpoint", agent).counter());
+        assertNull(meters.find("kernel.agent.http.inflight").tag("endpoint", agent).gauge());
+    }
+
+    @Test
+    void idleLanesOfEndpointsThatNeverBecameAgentsAreSwept() throws Exception {
+        String probed = agent();
+        String busy = agent();
+        release = new CountDownLatch(1);
+        http.send(get(probed, "/fast"), HttpResponse.BodyHandlers.discarding(), Duration.ofSeconds(5));
+        http.sendAsync(get(busy, "/slow"), HttpResponse.BodyHandlers.discarding());
+        await(() -> concurrent.get() == 1);
+
+        ReflectionTestUtils.setField(http, "laneIdleSeconds", 0L);
+        Thread.sleep(5);
+        http.evictIdleLanes();
+
+        assertEquals(1, http.laneCount());   // the busy lane stays while a request is in flight
+        assertNull(meters.find("kernel.agent.http.inflight").tag("endpoint", probed).gauge());
+        assertNotNull(meters.find("kernel.agent.http.inflight").tag("endpoint", busy).gauge());
+    }
+}
@@ -0,0 +1,156 @@
+package org.logan.kernel.agent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.logan.protocol.MessageEnvelope;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AgentMailboxTest {
+
+    private final List<String> handled = new CopyOnWriteArrayList<>();
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final CountDownLatch busy = new CountDownLatch(1);
+    private AgentMailbox mailbox;
+
+    @AfterEach
+    void tearDown() {
+        gate.countDown();
+        if (mailbox != null) mailbox.stop();
+    }
+
+    /** An agent whose first envelope holds the actor loop until {@link #gate} opens. */
+    private Agent gatedAgent() {
+        Agent agent = mock(Agent.class);
+        when(agent.getId()).thenReturn("agent-1");
+        doAnswer(inv -> {
+            MessageEnvelope<?> env = inv.getArgument(0);
+            busy.countDown();
+            gate.await(5, TimeUnit.SECONDS);
+            if ("boom".equals(env.getCorrelationId())) throw new IllegalStateException("boom");
+            handled.add(env.getCorrelationId());
+            return null;
+        }).when(agent).handleMessage(any());
+        return agent;
+    }
+
+    private AgentMailbox mailbox(int capacity, MailboxOverflowPolicy policy) {
+        mailbox = new AgentMailbox(gatedAgent(), capacity, policy, 50, 50, 500);
+        return mailbox;
+    }
+
+    private static MessageEnvelope<Object> envelope(String correlationId) {
+        MessageEnvelope<Object> env = new MessageEnvelope<>();
+        env.setType("chat");
+        env.setRecipientId("agent-1");
+        env.setCorrelationId(correlationId);
+        return env;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not reached in time");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void envelopesAreHandledInArrivalOrder() throws Exception {
+        mailbox(16, MailboxOverflowPolicy.DROP_NEWEST);
+        gate.countDown();
+
+        for (int i = 0; i < 10; i++) assertTrue(mailbox.offer(envelope("m-" + i)));
+        await(() -> mailbox.deliveredCount() == 10);
+
+        assertEquals(List.of("m-0", "m-1", "m-2", "m-3", "m-4", "m-5", "m-6", "m-7", "m-8", "m-9"), handled);
+        assertEquals(0, mailbox.depth());
+    }
+
+    @Test
+    void offerReturnsWithoutRunningTheAgent() throws Exception {
+        mailbox(16, MailboxOverflowPolicy.DROP_NEWEST);
+
+        assertTrue(mailbox.offer(envelope("m-0")));   // the agent blocks on the gate, the caller doesn't
+        assertTrue(busy.await(5, TimeUnit.SECONDS));
+        assertTrue(mailbox.offer(envelope("m-1")));
+
+        assertEquals(1, mailbox.depth());
+    }
+
+    @Test
+    void dropNewestRejectsWhenFull() throws Exception {
+        mailbox(2, MailboxOverflowPolicy.DROP_NEWEST);
+        mailbox.offer(envelope("m-0"));
+        assertTrue(busy.await(5, TimeUnit.SECONDS));   // m-0 is being handled, the queue is empty
+
+        assertTrue(mailbox.offer(envelope("m-1")));
+        assertTrue(mailbox.offer(envelope("m-2")));
+        assertFalse(mailbox.offer(envelope("m-3")));
+        gate.countDown();
+        await(() -> mailbox.deliveredCount() == 3);
+
+        assertEquals(List.of("m-0", "m-1", "m-2"), handled);
+        assertEquals(1, mailbox.droppedCount());
+    }
+
+    @Test
+    void dropOldestEvictsTheHeadOfTheQueue() throws Exception {
+        mailbox(2, MailboxOverflowPolicy.DROP_OLDEST);
+        mailbox.offer(envelope("m-0"));
+        assertTrue(busy.await(5, TimeUnit.SECONDS));
+
+        mailbox.offer(envelope("m-1"));
+        mailbox.offer(envelope("m-2"));
+        assertTrue(mailbox.offer(envelope("m-3")));
+        gate.countDown();
+        await(() -> mailbox.deliveredCount() == 3);
+
+        assertEquals(List.of("m-0", "m-2", "m-3"), handled);
+        assertEquals(1, mailbox.droppedCount());
+    }
+
+    @Test
+    void blockGivesUpAfterTheOfferTimeout() throws Exception {
+        mailbox(1, MailboxOverflowPolicy.BLOCK);
+        mailbox.offer(envelope("m-0"));
+        assertTrue(busy.await(5, TimeUnit.SECONDS));
+        mailbox.offer(envelope("m-1"));
+
+        long started = System.nanoTime();
+        assertFalse(mailbox.offer(envelope("m-2")));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) >= 40);
+        assertEquals(1, mailbox.droppedCount());
+    }
+
+    @Test
+    void aThrowingHandlerCountsAsFailedAndTheLoopGoesOn() throws Exception {
+        mailbox(16, MailboxOverflowPolicy.DROP_NEWEST);
+        gate.countDown();
+
+        mailbox.offer(envelope("boom"));
+        mailbox.offer(envelope("m-1"));
+        await(() -> mailbox.deliveredCount() == 1);
+
+        assertEquals(1, mailbox.failedCount());
+        assertEquals(List.of("m-1"), handled);
+    }
+
+    @Test
+    void aStoppedMailboxRejectsOffers() {
+        mailbox(16, MailboxOverflowPolicy.DROP_NEWEST);
+
+        mailbox.stop();
+
+        assertFalse(mailbox.offer(envelope("m-0")));
+    }
+}
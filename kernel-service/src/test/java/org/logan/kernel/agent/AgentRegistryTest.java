@@ -0,0 +1,110 @@
+package org.logan.kernel.agent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.persistence.AgentPersistenceService;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AgentRegistryTest {
+
+    private static final String AGENT = "agent-1";
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final List<String> handled = new CopyOnWriteArrayList<>();
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private AgentRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new AgentRegistry(mock(AgentPersistenceService.class), meters, mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(registry, "mailboxCapacity", 2);
+        ReflectionTestUtils.setField(registry, "overflowPolicy", MailboxOverflowPolicy.DROP_NEWEST);
+        ReflectionTestUtils.setField(registry, "offerTimeoutMs", 0L);
+        ReflectionTestUtils.setField(registry, "delayTargetMs", 50L);
+        ReflectionTestUtils.setField(registry, "delayIntervalMs", 500L);
+        ReflectionTestUtils.setField(registry, "expectedCapacity", 100);
+        ReflectionTestUtils.setField(registry, "releaseTimeoutMs", 5_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gate.countDown();
+        registry.deregisterAgent(AGENT);
+    }
+
+    /** An agent that holds its actor loop until {@link #gate} opens. */
+    private Agent gatedAgent() throws Exception {
+        Agent agent = mock(Agent.class);
+        when(agent.getId()).thenReturn(AGENT);
+        doAnswer(inv -> {
+            gate.await(5, TimeUnit.SECONDS);
+            handled.add(((MessageEnvelope<?>) inv.getArgument(0)).getCorrelationId());
+            return null;
+        }).when(agent).handleMessage(any());
+        return agent;
+    }
+
+    private static MessageEnvelope<String> envelope(String correlationId) {
+        MessageEnvelope<String> env = new MessageEnvelope<>();
+        env.setType("custom_event");
+        env.setRecipientId(AGENT);
+        env.setCorrelationId(correlationId);
+        return env;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not reached in time");
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void aBufferLargerThanTheMailboxIsReleasedWholeAndInOrder() throws Exception {
+        registry.expect(AGENT);
+        for (int i = 0; i < 10; i++) assertTrue(registry.routeMessage(envelope("b-" + i)));
+
+        registry.registerAgent(gatedAgent(), false);
+        assertTrue(registry.routeMessage(envelope("after")));   // queues behind the buffer
+        gate.countDown();
+
+        await(() -> handled.size() == 11);
+        List<String> expectedOrder = new ArrayList<>(IntStream.range(0, 10).mapToObj(i -> "b-" + i).toList());
+        expectedOrder.add("after");
+        assertEquals(expectedOrder, handled);
+        assertFalse(registry.isExpected(AGENT));
+        assertNull(meters.find("kernel.rehydration.dropped").counter());
+    }
+
+    @Test
+    void whatTheMailboxWontTakeInTimeIsDroppedAndCounted() throws Exception {
+        ReflectionTestUtils.setField(registry, "releaseTimeoutMs", 100L);
+        registry.expect(AGENT);
+        for (int i = 0; i < 10; i++) registry.routeMessage(envelope("b-" + i));
+
+        registry.registerAgent(gatedAgent(), false);
+
+        await(() -> !registry.isExpected(AGENT));
+        // One taken by the held actor loop, two in the mailbox, the rest dropped
+        assertEquals(7.0, meters.counter("kernel.rehydration.dropped").count());
+        gate.countDown();
+        await(() -> handled.size() == 3);
+    }
+}
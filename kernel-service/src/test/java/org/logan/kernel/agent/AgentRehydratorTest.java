@@ -0,0 +1,110 @@
+package org.logan.kernel.agent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.agent.AgentRehydrator.Target;
+import org.logan.kernel.persistence.AgentPersistenceService;
+import org.logan.kernel.persistence.AgentPersistenceService.ActiveAgent;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AgentRehydratorTest {
+
+    private final AgentFactory factory = mock(AgentFactory.class);
+    private final AgentRegistry registry = mock(AgentRegistry.class);
+    private final AgentPersistenceService persistence = mock(AgentPersistenceService.class);
+    private final Map<String, Agent> registered = new ConcurrentHashMap<>();
+    private AgentRehydrator rehydrator;
+
+    @BeforeEach
+    void setUp() {
+        when(registry.getAgent(anyString())).thenAnswer(inv -> registered.get(inv.<String>getArgument(0)));
+        doAnswer(inv -> {
+            Agent agent = inv.getArgument(0);
+            registered.put(agent.getId(), agent);
+            return null;
+        }).when(registry).registerAgent(any(Agent.class), anyBoolean());
+        rehydrator = new AgentRehydrator(factory, registry, persistence, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(rehydrator, "parallelism", 4);
+        ReflectionTestUtils.setField(rehydrator, "timeoutSeconds", 10L);
+    }
+
+    private static Agent agent(String id) {
+        Agent agent = mock(Agent.class);
+        when(agent.getId()).thenReturn(id);
+        when(agent.getType()).thenReturn("bedrock");
+        when(agent.getEndpoint()).thenReturn("http://" + id);
+        return agent;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> upsertedIds() {
+        var rows = ArgumentCaptor.forClass(List.class);
+        verify(persistence).upsertActiveAll(rows.capture());
+        return ((List<ActiveAgent>) rows.getValue()).stream().map(ActiveAgent::agentId).toList();
+    }
+
+    @Test
+    void everyAgentThatCameBackIsUpsertedInOneBatch() throws Exception {
+        Agent a1 = agent("a-1");
+        Agent a2 = agent("a-2");
+        when(factory.rehydrateAgent(eq("a-1"), any(), any())).thenReturn(a1);
+        when(factory.rehydrateAgent(eq("a-2"), any(), any())).thenReturn(a2);
+
+        rehydrator.rehydrateAll("persisted", List.of(
+                new Target("a-1", "bedrock", "http://a-1"), new Target("a-2", "bedrock", "http://a-2")))
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("a-1", "a-2"), upsertedIds().stream().sorted().toList());
+        verify(registry, times(2)).registerAgent(any(Agent.class), eq(false));
+        verify(persistence, never()).markTerminated(anyString());
+    }
+
+    @Test
+    void anAgentDeregisteredBeforeTheBatchIsLeftOut() throws Exception {
+        Agent a1 = agent("a-1");
+        Agent a2 = agent("a-2");
+        CountDownLatch slowAgent = new CountDownLatch(1);
+        when(factory.rehydrateAgent(eq("a-1"), any(), any())).thenAnswer(inv -> {
+            assertTrue(slowAgent.await(5, TimeUnit.SECONDS));
+            return a1;
+        });
+        when(factory.rehydrateAgent(eq("a-2"), any(), any())).thenReturn(a2);
+
+        var done = rehydrator.rehydrateAll("persisted", List.of(
+                new Target("a-1", "bedrock", "http://a-1"), new Target("a-2", "bedrock", "http://a-2")));
+        while (!registered.containsKey("a-2")) Thread.sleep(5);
+        registered.remove("a-2");   // deregistered while a-1 is still on its way
+        slowAgent.countDown();
+        done.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("a-1"), upsertedIds());
+        verify(persistence, never()).markTerminated(anyString());
+    }
+
+    @Test
+    void anAgentDeregisteredDuringTheUpsertIsTerminatedAgain() throws Exception {
+        Agent a1 = agent("a-1");
+        when(factory.rehydrateAgent(eq("a-1"), any(), any())).thenReturn(a1);
+        doAnswer(inv -> {
+            registered.remove("a-1");   // its markTerminated ran before this write landed
+            return null;
+        }).when(persistence).upsertActiveAll(anyList());
+
+        rehydrator.rehydrateAll("persisted", List.of(new Target("a-1", "bedrock", "http://a-1")))
+                .get(5, TimeUnit.SECONDS);
+
+        verify(persistence).markTerminated("a-1");
+    }
+}
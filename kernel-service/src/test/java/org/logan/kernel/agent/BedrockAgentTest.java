@@ -0,0 +1,149 @@
+package org.logan.kernel.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.agent.gateway.KernelGateway;
+import org.logan.kernel.planning.PlanCache;
+import org.logan.kernel.planning.PlanJournal;
+import org.logan.kernel.tools.AgentToolCatalog;
+import org.logan.protocol.MessageEnvelope;
+import org.mockito.InOrder;
+
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BedrockAgentTest {
+
+    private final List<MessageEnvelope<?>> sent = new CopyOnWriteArrayList<>();
+    private KernelGateway kernel;
+    private AgentHttpClient http;
+    private PlanCache planCache;
+    private BedrockAgent agent;
+
+    @BeforeEach
+    void setUp() {
+        kernel = mock(KernelGateway.class);
+        doAnswer(inv -> sent.add(inv.getArgument(0))).when(kernel).send(any(), anyBoolean());
+        when(kernel.registerWaiter(anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(true));
+        http = mock(AgentHttpClient.class);
+        planCache = mock(PlanCache.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (agent != null) agent.onStop();
+    }
+
+    private BedrockAgent agent(String id) {
+        AgentToolCatalog catalog = mock(AgentToolCatalog.class);
+        when(catalog.snapshot()).thenReturn(new AgentToolCatalog.Snapshot(1, Map.of("worker-1", List.of("search"))));
+        agent = new BedrockAgent(id, "http://" + id, null, kernel, http, catalog, planCache, 4,
+                () -> new PlanJournal(id, null, new ObjectMapper(), 0, 100, 0));
+        return agent;
+    }
+
+    private void plan(Map<String, Object>... steps) {
+        when(planCache.lookup(any())).thenReturn(Optional.of(List.of(steps)));
+    }
+
+    private static MessageEnvelope<Object> envelope(String type, String from, Map<String, Object> payload) {
+        MessageEnvelope<Object> env = new MessageEnvelope<>();
+        env.setType(type);
+        env.setSenderId(from);
+        env.setRecipientId("orchestrator-agent");
+        env.setPayload(payload);
+        return env;
+    }
+
+    private List<MessageEnvelope<?>> sent(String type) {
+        return sent.stream().filter(e -> type.equals(e.getType())).toList();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not reached in time");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aWorkerRepliesWithChatResultFromTheAgentProcess() throws Exception {
+        HttpResponse<String> reply = mock(HttpResponse.class);
+        when(reply.body()).thenReturn("{\"message\":\"done\"}");
+        doReturn(CompletableFuture.completedFuture(reply)).when(http).sendAsync(any(), any());
+        agent("worker-1");
+
+        agent.handleMessage(envelope("chat", "orchestrator-agent", Map.of("sessionId", "s-1", "message", "search")));
+        await(() -> !sent("chat_result").isEmpty());
+
+        MessageEnvelope<?> result = sent("chat_result").get(0);
+        assertEquals("orchestrator-agent", result.getRecipientId());
+        assertEquals(Map.of("message", "done", "sessionId", "s-1", "agentId", "worker-1"), result.getPayload());
+        assertNotNull(result.getCorrelationId());
+    }
+
+    @Test
+    void aStepIsDelegatedOnlyAfterTheKernelRegisteredTheWaiter() throws Exception {
+        CompletableFuture<Boolean> registered = new CompletableFuture<>();
+        when(kernel.registerWaiter("s-1", "worker-1")).thenReturn(registered);
+        plan(Map.of("id", "s1", "agent", "worker-1", "action", "search"));
+        agent("orchestrator-agent");
+
+        agent.handleMessage(envelope("chat", "user", Map.of("sessionId", "s-1", "message", "find it")));
+        await(() -> mockingDetails(kernel).getInvocations().stream()
+                .anyMatch(i -> i.getMethod().getName().equals("registerWaiter")));
+        assertTrue(sent("delegation").isEmpty());
+
+        registered.complete(true);
+        await(() -> !sent("delegation").isEmpty());
+
+        InOrder order = inOrder(kernel);
+        order.verify(kernel).registerWaiter("s-1", "worker-1");
+        order.verify(kernel).send(argThat(e -> "delegation".equals(e.getType())), eq(true));
+        assertEquals("worker-1", ((Map<?, ?>) sent("delegation").get(0).getPayload()).get("targetAgent"));
+    }
+
+    @Test
+    void aRefusedWaiterPausesTheStepInsteadOfDelegating() throws Exception {
+        when(kernel.registerWaiter("s-1", "worker-1")).thenReturn(CompletableFuture.completedFuture(false));
+        plan(Map.of("id", "s1", "agent", "worker-1", "action", "search"));
+        agent("orchestrator-agent");
+
+        agent.handleMessage(envelope("chat", "user", Map.of("sessionId", "s-1", "message", "find it")));
+        await(() -> !sent("orchestrator_wait").isEmpty());
+
+        assertTrue(sent("delegation").isEmpty());
+        Map<?, ?> wait = (Map<?, ?>) sent("orchestrator_wait").get(0).getPayload();
+        assertEquals("s1", wait.get("stepId"));
+        assertEquals("worker-1", wait.get("agentId"));
+    }
+
+    @Test
+    void aSuccessfulResultStartsTheStepsThatDependOnIt() throws Exception {
+        plan(Map.of("id", "s1", "agent", "worker-1", "action", "search"),
+                Map.of("id", "s2", "agent", "worker-2", "action", "summarize", "dependsOn", List.of("s1")));
+        agent("orchestrator-agent");
+        agent.handleMessage(envelope("chat", "user", Map.of("sessionId", "s-1", "message", "find it")));
+        await(() -> sent("delegation").size() == 1);
+
+        agent.handleMessage(envelope("chat_result", "worker-1", Map.of("sessionId", "s-1", "agentId", "worker-1",
+                "message", "found", "stepOutcome", Map.of("status", "success"))));
+        await(() -> sent("delegation").size() == 2);
+
+        assertEquals("worker-2", ((Map<?, ?>) sent("delegation").get(1).getPayload()).get("targetAgent"));
+        verify(http, never()).sendAsync(any(), any());   // the reported outcome needed no reasoning call
+    }
+}
@@ -0,0 +1,143 @@
+package org.logan.kernel.agent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.agent.BedrockProcessLauncher.Launched;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class WarmAgentPoolTest {
+
+    private BedrockProcessLauncher launcher;
+    private SimpleMeterRegistry meters;
+    private WarmAgentPool pool;
+
+    @BeforeEach
+    void setUp() {
+        launcher = mock(BedrockProcessLauncher.class);
+        meters = new SimpleMeterRegistry();
+        pool = new WarmAgentPool(launcher, meters);
+        ReflectionTestUtils.setField(pool, "maxStarting", 2);
+        ReflectionTestUtils.setField(pool, "healthTimeoutSeconds", 1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.stop();
+    }
+
+    private static Launched process(String endpoint, boolean alive) {
+        Process process = mock(Process.class);
+        when(process.isAlive()).thenReturn(alive);
+        return new Launched(process, endpoint);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void idle(Launched... processes) {
+        BlockingDeque<Launched> idle = (BlockingDeque<Launched>) ReflectionTestUtils.getField(pool, "idle");
+        for (Launched p : processes) idle.add(p);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not reached in time");
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void claimDiscardsDeadAndRefusedProcesses() {
+        pool.start();
+        Launched dead = process("http://dead", false);
+        Launched refused = process("http://refused", true);
+        Launched good = process("http://good", true);
+        idle(dead, refused, good);
+        when(launcher.bind("http://refused", "agent-1")).thenReturn(false);
+        when(launcher.bind("http://good", "agent-1")).thenReturn(true);
+
+        Optional<Launched> claimed = pool.claim("agent-1");
+
+        assertSame(good, claimed.orElseThrow());
+        verify(launcher, never()).bind(eq("http://dead"), anyString());
+        verify(dead.process()).destroy();
+        verify(refused.process()).destroy();
+        verify(good.process(), never()).destroy();
+        assertEquals(0, pool.idleCount());
+        assertEquals(1.0, meters.counter("kernel.agent-pool.claims", "result", "warm").count());
+    }
+
+    @Test
+    void anEmptyPoolMeansAColdStart() {
+        pool.start();
+        Launched dead = process("http://dead", false);
+        idle(dead);
+
+        assertTrue(pool.claim("agent-1").isEmpty());
+        verify(dead.process()).destroy();
+        assertEquals(1.0, meters.counter("kernel.agent-pool.claims", "result", "cold").count());
+    }
+
+    @Test
+    void theRefillLoopKeepsThePoolAtSize() throws Exception {
+        ReflectionTestUtils.setField(pool, "size", 2);
+        Launched p1 = process("http://p1", true);
+        Launched p2 = process("http://p2", true);
+        Launched p3 = process("http://p3", true);
+        when(launcher.launch(null)).thenReturn(p1, p2, p3);
+        when(launcher.awaitHealthy(any(), anyString(), any())).thenReturn(true);
+        when(launcher.bind(anyString(), anyString())).thenReturn(true);
+
+        pool.start();
+        await(() -> pool.idleCount() == 2);
+        assertTrue(pool.claim("agent-1").isPresent());
+        await(() -> pool.idleCount() == 2);
+
+        verify(launcher, times(3)).launch(null);
+    }
+
+    @Test
+    void aProcessThatNeverGetsHealthyIsKilledAndNotPooled() throws Exception {
+        ReflectionTestUtils.setField(pool, "size", 1);
+        Launched sick = process("http://sick", true);
+        Launched fine = process("http://fine", true);
+        when(launcher.launch(null)).thenReturn(sick, fine);
+        when(launcher.awaitHealthy(same(sick.process()), anyString(), any())).thenReturn(false);
+        when(launcher.awaitHealthy(same(fine.process()), anyString(), any())).thenReturn(true);
+
+        pool.start();
+        await(() -> pool.idleCount() == 1);
+
+        verify(sick.process()).destroy();
+        verify(fine.process(), never()).destroy();
+    }
+
+    @Test
+    void launchFailuresBackOff() throws Exception {
+        ReflectionTestUtils.setField(pool, "size", 1);
+        AtomicInteger launches = new AtomicInteger();
+        when(launcher.launch(null)).thenAnswer(inv -> {
+            launches.incrementAndGet();
+            throw new IOException("no jar");
+        });
+
+        pool.start();
+        Thread.sleep(2_500);
+
+        // Launches at 0s, then after 1s and 2s waits (the third would be at ~3s), not a busy loop
+        int launched = launches.get();
+        assertTrue(launched >= 2 && launched <= 3, "launches: " + launched);
+        assertEquals(0, pool.idleCount());
+    }
+}
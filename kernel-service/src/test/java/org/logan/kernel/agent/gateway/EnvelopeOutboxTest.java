@@ -0,0 +1,64 @@
+package org.logan.kernel.agent.gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.logan.protocol.MessageEnvelope;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnvelopeOutboxTest {
+
+    private static MessageEnvelope<String> envelope(String type, String correlationId) {
+        MessageEnvelope<String> env = new MessageEnvelope<>();
+        env.setType(type);
+        env.setCorrelationId(correlationId);
+        return env;
+    }
+
+    @Test
+    void droppedResultIsFinalAndCounted() throws Exception {
+        List<String> attempts = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        EnvelopeOutbox outbox = new EnvelopeOutbox("test-outbox", env -> {
+            attempts.add(env.getCorrelationId());
+            if (env.getCorrelationId().equals("c-2")) done.countDown();
+            return env.getType().equals("tool_result") ? EnvelopeOutbox.Result.DROPPED : EnvelopeOutbox.Result.DONE;
+        }, new ObjectMapper(), null, 10, 5, 10_000, 10_000);
+
+        outbox.submit(envelope("tool_result", "c-1"));
+        outbox.submit(envelope("chat_result", "c-2"));
+
+        // A backoff of up to 10s would blow this if the drop were retried
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of("c-1", "c-2"), attempts);
+        assertEquals(1, outbox.droppedCount());
+        outbox.close();
+    }
+
+    @Test
+    void retriesInPlaceBeforeLaterEnvelopes() throws Exception {
+        List<String> attempts = new CopyOnWriteArrayList<>();
+        AtomicInteger failures = new AtomicInteger(2);
+        CountDownLatch done = new CountDownLatch(1);
+        EnvelopeOutbox outbox = new EnvelopeOutbox("test-outbox", env -> {
+            attempts.add(env.getCorrelationId());
+            if (env.getCorrelationId().equals("c-1") && failures.getAndDecrement() > 0) return EnvelopeOutbox.Result.RETRY;
+            if (env.getCorrelationId().equals("c-2")) done.countDown();
+            return EnvelopeOutbox.Result.DONE;
+        }, new ObjectMapper(), null, 10, 5, 1, 1);
+
+        outbox.submit(envelope("chat", "c-1"));
+        outbox.submit(envelope("chat", "c-2"));
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of("c-1", "c-1", "c-1", "c-2"), attempts);
+        assertEquals(0, outbox.droppedCount());
+        outbox.close();
+    }
+}
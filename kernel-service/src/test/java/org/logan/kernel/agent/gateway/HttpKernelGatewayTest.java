@@ -0,0 +1,141 @@
+package org.logan.kernel.agent.gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.protocol.MessageEnvelope;
+import org.logan.protocol.codec.EnvelopeCodec;
+import org.logan.protocol.codec.WireFormat;
+
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpKernelGatewayTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final EnvelopeCodec codec = new EnvelopeCodec();
+    private final List<List<String>> requests = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> seen = new ConcurrentHashMap<>();
+    private volatile Function<Map<String, Object>, Integer> kernel = item -> 200;
+    private HttpServer server;
+    private HttpKernelGateway gateway;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void startKernel() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/messages/batch", exchange -> {
+            List<Map<String, Object>> items = codec.decode(exchange.getRequestBody().readAllBytes(),
+                    exchange.getRequestHeaders().getFirst("Content-Type"),
+                    exchange.getRequestHeaders().getFirst("Content-Encoding"), List.class);
+            List<Map<String, Object>> results = new ArrayList<>();
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                Map<String, Object> item = items.get(i);
+                ids.add((String) item.get("correlationId"));
+                results.add(Map.of("index", i, "status", kernel.apply(item), "body", Map.of()));
+            }
+            requests.add(ids);
+            byte[] body = mapper.writeValueAsBytes(Map.of("ok", true, "count", results.size(), "results", results));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        gateway = new HttpKernelGateway("agent-1", "http://127.0.0.1:" + server.getAddress().getPort(),
+                HttpClient.newHttpClient(), mapper, codec, WireFormat.JSON, 64, 20);
+    }
+
+    @AfterEach
+    void stopKernel() {
+        gateway.close();
+        server.stop(0);
+    }
+
+    private static MessageEnvelope<Map<String, Object>> envelope(String type, String correlationId) {
+        MessageEnvelope<Map<String, Object>> env = new MessageEnvelope<>();
+        env.setType(type);
+        env.setSenderId("agent-1");
+        env.setCorrelationId(correlationId);
+        env.setPayload(Map.of("session", "s-1"));
+        return env;
+    }
+
+    /** Answers {@code status} the first {@code times} times each matching item arrives, 200 after. */
+    private Function<Map<String, Object>, Integer> refuse(String type, int status, int times) {
+        return item -> {
+            if (!type.equals(item.get("type"))) return 200;
+            int n = seen.merge((String) item.get("correlationId"), 1, Integer::sum);
+            return n <= times ? status : 200;
+        };
+    }
+
+    private List<String> sent() {
+        return requests.stream().flatMap(List::stream).toList();
+    }
+
+    private void awaitRequests(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (requests.size() < count && System.nanoTime() < deadline) Thread.sleep(20);
+        assertTrue(requests.size() >= count, "kernel saw " + requests + ", expected " + count + " request(s)");
+    }
+
+    @Test
+    void anItemRefusedWith429IsSentAgainWithItsCorrelationId() throws Exception {
+        kernel = refuse("chat_result", 429, 1);
+
+        gateway.send(envelope("chat_result", "c-1"), true);
+        awaitRequests(2);
+
+        assertEquals(List.of("c-1", "c-1"), sent());
+    }
+
+    @Test
+    void anItemFailingWith5xxIsRetriedBeforeLaterEnvelopes() throws Exception {
+        kernel = refuse("delegation", 503, 2);
+
+        gateway.send(envelope("delegation", "d-1"), true);
+        awaitRequests(3);
+        gateway.send(envelope("chat_result", "c-2"), true);
+        awaitRequests(4);
+
+        assertEquals(List.of("d-1", "d-1", "d-1", "c-2"), sent());
+    }
+
+    @Test
+    void aLowPriorityItemShedWith429IsDropped() throws Exception {
+        kernel = item -> "agent_status_update".equals(item.get("type")) ? 429 : 200;
+
+        gateway.send(envelope("agent_status_update", "u-1"), true);
+        awaitRequests(1);
+        gateway.send(envelope("chat_result", "c-3"), true);
+        awaitRequests(2);
+
+        assertEquals(List.of("u-1", "c-3"), sent());
+    }
+
+    @Test
+    void itemsTheKernelAcceptedAreNotResent() throws Exception {
+        kernel = refuse("delegation", 429, 1);
+
+        gateway.send(envelope("agent_status_update", "u-2"), false);
+        gateway.send(envelope("delegation", "d-2"), true);
+        awaitRequests(2);
+        Thread.sleep(1_000);   // room for a stray resend
+
+        List<String> sent = sent();
+        assertEquals(1, Collections.frequency(sent, "u-2"));
+        assertEquals(2, Collections.frequency(sent, "d-2"));
+        assertEquals(List.of("d-2"), requests.get(requests.size() - 1));
+    }
+}
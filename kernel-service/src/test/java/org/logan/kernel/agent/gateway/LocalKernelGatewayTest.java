@@ -0,0 +1,160 @@
+package org.logan.kernel.agent.gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.agent.Agent;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.MessageDispatcher;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LocalKernelGatewayTest {
+
+    private final List<String> dispatched = new CopyOnWriteArrayList<>();
+    private MessageDispatcher dispatcher;
+    private SessionRegistry sessions;
+    private AgentRegistry registry;
+    private EnvelopeOutbox outbox;
+    private LocalKernelGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = mock(MessageDispatcher.class);
+        sessions = mock(SessionRegistry.class);
+        registry = mock(AgentRegistry.class);
+        gateway = new LocalKernelGateway("agent-1", dispatcher, sessions, registry, delivery -> {
+            outbox = new EnvelopeOutbox("test-outbox", delivery, new ObjectMapper(), null, 100, 3, 1, 1);
+            return outbox;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.close();
+    }
+
+    private void answer(int... statuses) throws Exception {
+        var stubbing = when(dispatcher.dispatchLocal(any(), any()));
+        for (int status : statuses) {
+            ResponseEntity<?> resp = ResponseEntity.status(status).body(Map.of());
+            stubbing = stubbing.thenAnswer(inv -> {
+                dispatched.add(((MessageEnvelope<?>) inv.getArgument(0)).getCorrelationId());
+                return resp;
+            });
+        }
+    }
+
+    private static MessageEnvelope<Object> envelope(String type, String correlationId) {
+        MessageEnvelope<Object> env = new MessageEnvelope<>();
+        env.setType(type);
+        env.setSenderId("agent-1");
+        env.setCorrelationId(correlationId);
+        env.setPayload(Map.of("sessionId", "s-1"));
+        return env;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not reached in time");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void envelopesAreDispatchedInProcessInSubmissionOrder() throws Exception {
+        answer(200);
+
+        for (int i = 0; i < 5; i++) gateway.send(envelope("chat_result", "c-" + i), true);
+        await(() -> dispatched.size() == 5);
+
+        assertEquals(List.of("c-0", "c-1", "c-2", "c-3", "c-4"), dispatched);
+    }
+
+    @Test
+    void a5xxIsRetriedBeforeTheNextEnvelope() throws Exception {
+        answer(503, 200);
+
+        gateway.send(envelope("chat_result", "c-1"), true);
+        gateway.send(envelope("chat_result", "c-2"), true);
+        await(() -> dispatched.size() == 3);
+
+        assertEquals(List.of("c-1", "c-1", "c-2"), dispatched);
+    }
+
+    @Test
+    void a429ForALowPriorityTypeIsDroppedNotRetried() throws Exception {
+        answer(429, 200);
+
+        gateway.send(envelope("agent_status_update", "c-1"), false);
+        gateway.send(envelope("chat_result", "c-2"), true);
+        await(() -> dispatched.size() == 2);
+
+        assertEquals(List.of("c-1", "c-2"), dispatched);
+        assertEquals(1, outbox.droppedCount());
+    }
+
+    @Test
+    void a429ForOtherTypesIsRetried() throws Exception {
+        answer(429, 200);
+
+        gateway.send(envelope("chat_result", "c-1"), true);
+        await(() -> dispatched.size() == 2);
+
+        assertEquals(List.of("c-1", "c-1"), dispatched);
+        assertEquals(0, outbox.droppedCount());
+    }
+
+    @Test
+    void otherClientErrorsAreFinal() throws Exception {
+        answer(400, 200);
+
+        gateway.send(envelope("delegation", "c-1"), true);
+        gateway.send(envelope("chat_result", "c-2"), true);
+        await(() -> dispatched.size() == 2);
+
+        assertEquals(List.of("c-1", "c-2"), dispatched);
+    }
+
+    @Test
+    void registerWaiterRegistersWithTheSessionRegistry() throws Exception {
+        assertTrue(gateway.registerWaiter("s-1", "worker-1").get(1, TimeUnit.SECONDS));
+
+        verify(sessions).registerAgentWaiter(eq("s-1"), eq("worker-1"), any());
+    }
+
+    @Test
+    void listAgentsReadsTheRegistry() throws Exception {
+        Agent worker = mock(Agent.class);
+        when(worker.getEndpoint()).thenReturn("http://worker-1");
+        when(registry.listAgentIds()).thenReturn(List.of("worker-1", "gone"));
+        when(registry.getAgent("worker-1")).thenReturn(worker);
+
+        assertEquals(Map.of("worker-1", "http://worker-1"), gateway.listAgents().get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void closeDeliversWhatIsQueuedAndRefusesMore() throws Exception {
+        answer(200);
+        gateway.send(envelope("chat_result", "c-1"), true);
+
+        gateway.close();
+        gateway.send(envelope("chat_result", "c-2"), true);
+
+        assertEquals(List.of("c-1"), dispatched);
+        assertEquals(1, outbox.droppedCount());
+    }
+}
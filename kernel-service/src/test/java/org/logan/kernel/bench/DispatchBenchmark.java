@@ -0,0 +1,197 @@
+package org.logan.kernel.bench;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.logan.kernel.dispatch.EnvelopeReader;
+import org.logan.kernel.dispatch.KernelEvents;
+import org.logan.kernel.dispatch.MessageType;
+import org.logan.kernel.dispatch.payload.*;
+import org.logan.protocol.MessageEnvelope;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Parse + dispatch cost of /messages envelopes: the old lowercase/switch/Map-cast path
+ * against streaming envelope parsing with direct payload binding ({@link EnvelopeReader}),
+ * enum lookup and cached event timestamps.
+ *
+ * Only the kernel-side work is measured (body → payload → audit event); session
+ * bookkeeping and routing are identical in both paths and left out.
+ * Usage: {@code DispatchBenchmark [rounds]}.
+ */
+public class DispatchBenchmark {
+    private static final int WARMUP_ROUNDS = 2_000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().registerModule(new JavaTimeModule());
+    private static final JavaType MAP_ENVELOPE =
+            MAPPER.getTypeFactory().constructParametricType(MessageEnvelope.class, Map.class);
+    private static final Map<MessageType, ObjectReader> READERS = new EnumMap<>(Map.of(
+            MessageType.AGENT_STATUS_UPDATE, MAPPER.readerFor(AgentStatusPayload.class),
+            MessageType.DELEGATION, MAPPER.readerFor(DelegationPayload.class),
+            MessageType.TOOL_INVOCATION, MAPPER.readerFor(ToolEventPayload.class),
+            MessageType.TOOL_RESULT, MAPPER.readerFor(ToolEventPayload.class),
+            MessageType.CHAT_RESULT, MAPPER.readerFor(ChatResultPayload.class)));
+    private static final ObjectReader MAP_READER = MAPPER.readerFor(Map.class);
+    private static final EnvelopeReader ENVELOPES = new EnvelopeReader(MAPPER,
+            type -> READERS.getOrDefault(MessageType.fromWire(type), MAP_READER));
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        List<byte[]> corpus = corpus();
+        System.out.printf("Corpus: %d envelope types, %d rounds%n%n", corpus.size(), rounds);
+        System.out.printf("%-8s %12s %16s%n", "path", "ns/env", "bytes alloc/env");
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            for (byte[] body : corpus) {
+                sink += legacy(body).size();
+                sink += typed(body).size();
+            }
+        }
+        measure("legacy", corpus, rounds, true);
+        measure("typed", corpus, rounds, false);
+        if (sink == 42) System.out.println();   // keep the JIT from dropping the work
+    }
+
+    private static void measure(String label, List<byte[]> corpus, int rounds, boolean legacy) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long alloc0 = threads.getCurrentThreadAllocatedBytes();
+        long t0 = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (byte[] body : corpus) {
+                sink += (legacy ? legacy(body) : typed(body)).size();
+            }
+        }
+        long elapsed = System.nanoTime() - t0;
+        long alloc = threads.getCurrentThreadAllocatedBytes() - alloc0;
+        long ops = (long) rounds * corpus.size();
+        System.out.printf("%-8s %12d %16d%n", label, elapsed / ops, alloc / ops);
+    }
+
+    // Mirrors the former MessageController switch
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> legacy(byte[] body) throws Exception {
+        MessageEnvelope<?> envelope = MAPPER.readValue(body, MAP_ENVELOPE);
+        String type = (envelope.getType() == null ? "" : envelope.getType().toLowerCase());
+        Map<String, Object> payload = (Map<String, Object>) envelope.getPayload();
+        switch (type) {
+            case "agent_status_update" -> {
+                Map<String, Object> event = new LinkedHashMap<>();
+                event.put("timestamp", new Date().toString());
+                event.put("type", "reasoning");
+                event.put("phase", payload.get("phase"));
+                event.put("message", payload.get("message"));
+                event.put("agentId", payload.getOrDefault("agentId", envelope.getSenderId()));
+                return event;
+            }
+            case "delegation" -> {
+                return Map.of(
+                        "timestamp", new Date().toString(),
+                        "type", "delegation",
+                        "agentId", payload.getOrDefault("fromAgent", envelope.getSenderId()),
+                        "targetAgent", payload.get("targetAgent"),
+                        "message", payload.get("message"),
+                        "sessionId", payload.get("sessionId"));
+            }
+            case "tool_invocation", "tool_result" -> {
+                Map<String, Object> event = new LinkedHashMap<>(payload);
+                event.put("timestamp", new Date().toString());
+                event.put("type", type);
+                event.put("agentId", payload.getOrDefault("agentId", envelope.getSenderId()));
+                event.put("message", "Executing tool: " + payload.get("tool"));
+                return event;
+            }
+            case "chat_result" -> {
+                return Map.of(
+                        "timestamp", new Date().toString(),
+                        "type", "chat_result",
+                        "agentId", payload.getOrDefault("agentId", envelope.getSenderId()),
+                        "status", "completed",
+                        "sessionId", payload.get("sessionId"));
+            }
+            default -> {
+                return Map.of();
+            }
+        }
+    }
+
+    // Mirrors MessageDispatcher (same EnvelopeReader) + the handlers in org.logan.kernel.dispatch.handlers
+    private static Map<String, Object> typed(byte[] body) throws Exception {
+        MessageEnvelope<Object> envelope;
+        try (JsonParser parser = MAPPER.getFactory().createParser(body)) {
+            envelope = ENVELOPES.read(parser);
+        }
+        MessageType type = MessageType.fromWire(envelope.getType());
+        if (type == null) return Map.of();
+        Object payload = envelope.getPayload();
+        switch (type) {
+            case AGENT_STATUS_UPDATE -> {
+                AgentStatusPayload p = (AgentStatusPayload) payload;
+                Map<String, Object> event = KernelEvents.event("reasoning");
+                event.put("phase", p.phase());
+                event.put("message", p.message());
+                event.put("agentId", p.agentId() != null ? p.agentId() : envelope.getSenderId());
+                return event;
+            }
+            case DELEGATION -> {
+                DelegationPayload p = (DelegationPayload) payload;
+                Map<String, Object> event = KernelEvents.event(type);
+                event.put("agentId", p.fromAgent() != null ? p.fromAgent() : envelope.getSenderId());
+                event.put("targetAgent", p.targetAgent());
+                event.put("message", p.message());
+                event.put("sessionId", p.session());
+                return event;
+            }
+            case TOOL_INVOCATION, TOOL_RESULT -> {
+                ToolEventPayload p = (ToolEventPayload) payload;
+                Map<String, Object> event = new LinkedHashMap<>(p.asMap());
+                event.put("timestamp", KernelEvents.timestamp());
+                event.put("type", type.wire());
+                event.putIfAbsent("sessionId", p.session());
+                event.put("agentId", p.agentId() != null ? p.agentId() : envelope.getSenderId());
+                event.put("message", "Executing tool: " + p.tool());
+                return event;
+            }
+            case CHAT_RESULT -> {
+                ChatResultPayload p = (ChatResultPayload) payload;
+                Map<String, Object> event = KernelEvents.event(type);
+                event.put("agentId", p.agentId() != null ? p.agentId() : envelope.getSenderId());
+                event.put("status", "completed");
+                event.put("sessionId", p.session());
+                return event;
+            }
+            default -> {
+                return Map.of();
+            }
+        }
+    }
+
+    private static List<byte[]> corpus() throws Exception {
+        List<byte[]> out = new ArrayList<>();
+        out.add(envelope("agent_status_update", "inventory-agent", Map.of(
+                "sessionId", "s-1", "agentId", "inventory-agent", "phase", "thinking",
+                "message", "Checking stock levels for the requested SKUs before placing an order.")));
+        out.add(envelope("delegation", "orchestrator-agent", Map.of(
+                "sessionId", "s-1", "targetAgent", "inventory-agent", "fromAgent", "orchestrator-agent",
+                "message", "Check stock for SKU-1234 and SKU-5678")));
+        out.add(envelope("tool_invocation", "inventory-agent", Map.of(
+                "sessionId", "s-1", "agentId", "inventory-agent", "tool", "get_stock",
+                "input", Map.of("skus", List.of("SKU-1234", "SKU-5678"), "warehouse", "EU-1"))));
+        out.add(envelope("tool_result", "inventory-agent", Map.of(
+                "sessionId", "s-1", "agentId", "inventory-agent", "tool", "get_stock",
+                "output", Map.of("SKU-1234", 12, "SKU-5678", 0, "checkedAt", "2024-05-01T10:00:00Z"))));
+        out.add(envelope("chat_result", "inventory-agent", Map.of(
+                "sessionId", "s-1", "agentId", "inventory-agent",
+                "result", Map.of("reply", "SKU-1234 in stock (12), SKU-5678 out of stock", "ok", true))));
+        return out;
+    }
+
+    private static byte[] envelope(String type, String sender, Map<String, Object> payload) throws Exception {
+        return MAPPER.writeValueAsBytes(new MessageEnvelope<>(type, sender, "kernel", payload));
+    }
+}
@@ -0,0 +1,90 @@
+package org.logan.kernel.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.agent.AgentFactory;
+import org.logan.kernel.agent.AgentFactory.Spawned;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.tools.AgentToolCatalog;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AgentControllerTest {
+
+    private AgentFactory factory;
+    private AgentController controller;
+
+    @BeforeEach
+    void setUp() {
+        factory = mock(AgentFactory.class);
+        controller = new AgentController(factory, mock(AgentRegistry.class), mock(AgentToolCatalog.class));
+        ReflectionTestUtils.setField(controller, "bulkMaxAgents", 3);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> agents(ResponseEntity<?> resp) {
+        return (List<Map<String, Object>>) ((Map<String, Object>) resp.getBody()).get("agents");
+    }
+
+    private static boolean ok(ResponseEntity<?> resp) {
+        return (Boolean) ((Map<?, ?>) resp.getBody()).get("ok");
+    }
+
+    @Test
+    void countAsksForGeneratedIdsAndWaitsForReadinessByDefault() {
+        when(factory.createAgents(anyList(), eq("BEDROCK"), eq(true))).thenReturn(List.of(
+                new Spawned("g-1", "http://g-1", true, null),
+                new Spawned("g-2", "http://g-2", true, null)));
+
+        ResponseEntity<?> resp = controller.createAgents(Map.of("type", "BEDROCK", "count", 2));
+
+        verify(factory).createAgents(Arrays.asList(null, null), "BEDROCK", true);
+        assertEquals(200, resp.getStatusCode().value());
+        assertTrue(ok(resp));
+        assertEquals(Map.of("agentId", "g-1", "ok", true, "endpoint", "http://g-1", "ready", true), agents(resp).get(0));
+    }
+
+    @Test
+    void eachFailureOrUnreadyAgentIsReportedAndClearsOk() {
+        when(factory.createAgents(List.of("a-1", "a-2", "a-3"), "BEDROCK", true)).thenReturn(List.of(
+                new Spawned("a-1", "http://a-1", true, null),
+                new Spawned("a-2", "http://a-2", false, null),
+                new Spawned("a-3", null, false, "no jar")));
+
+        ResponseEntity<?> resp = controller.createAgents(Map.of("type", "BEDROCK", "ids", List.of("a-1", "a-2", "a-3")));
+
+        assertFalse(ok(resp));
+        List<Map<String, Object>> agents = agents(resp);
+        assertEquals(false, agents.get(1).get("ready"));
+        assertEquals(Map.of("agentId", "a-3", "ok", false, "error", "no jar"), agents.get(2));
+    }
+
+    @Test
+    void withoutWaitReadyNoReadinessIsReported() {
+        when(factory.createAgents(List.of("a-1"), "BEDROCK", false))
+                .thenReturn(List.of(new Spawned("a-1", "http://a-1", false, null)));
+
+        ResponseEntity<?> resp = controller.createAgents(Map.of("type", "BEDROCK", "ids", List.of("a-1"),
+                "waitReady", false));
+
+        assertTrue(ok(resp));
+        assertFalse(agents(resp).get(0).containsKey("ready"));
+    }
+
+    @Test
+    void missingTypeEmptyOrOversizedRequestsAreRejected() {
+        assertEquals(400, controller.createAgents(Map.of("count", 1)).getStatusCode().value());
+        assertEquals(400, controller.createAgents(Map.of("type", "BEDROCK")).getStatusCode().value());
+        assertEquals(400, controller.createAgents(Map.of("type", "BEDROCK", "count", 0)).getStatusCode().value());
+        assertEquals(400, controller.createAgents(Map.of("type", "BEDROCK", "count", 4)).getStatusCode().value());
+        verifyNoInteractions(factory);
+    }
+}
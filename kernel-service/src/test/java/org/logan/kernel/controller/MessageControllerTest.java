@@ -0,0 +1,64 @@
+package org.logan.kernel.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.MessageDispatcher;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.kernel.sse.SseBroadcaster;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MessageControllerTest {
+
+    private AgentRegistry registry;
+    private SessionRegistry sessions;
+    private SseBroadcaster sse;
+    private MessageController controller;
+
+    @BeforeEach
+    void setUp() {
+        registry = mock(AgentRegistry.class);
+        sessions = mock(SessionRegistry.class);
+        sse = mock(SseBroadcaster.class);
+        controller = new MessageController(registry, sessions, sse, mock(MessageDispatcher.class));
+        when(registry.hasAgent("orchestrator-agent")).thenReturn(true);
+    }
+
+    @Test
+    void routedDecisionCompletesTheWaiter() {
+        when(registry.routeMessage(any())).thenReturn(true);
+
+        ResponseEntity<?> resp = controller.userDecision(Map.of("sessionId", "s-1", "choice", "approve"));
+
+        assertEquals(200, resp.getStatusCode().value());
+        verify(sessions).completeAgentWaiter(eq("s-1"), eq("user"), anyMap());
+        verify(sse).broadcast(anyMap());
+    }
+
+    @Test
+    void rejectedDecisionAnswers503WithoutSideEffects() {
+        when(registry.routeMessage(any())).thenReturn(false);
+
+        ResponseEntity<?> resp = controller.userDecision(Map.of("sessionId", "s-1", "choice", "approve"));
+
+        assertEquals(503, resp.getStatusCode().value());
+        assertEquals("5", resp.getHeaders().getFirst("Retry-After"));
+        verifyNoInteractions(sessions, sse);
+    }
+
+    @Test
+    void missingOrchestratorAnswers503() {
+        when(registry.hasAgent("orchestrator-agent")).thenReturn(false);
+
+        ResponseEntity<?> resp = controller.userDecision(Map.of("sessionId", "s-1", "choice", "approve"));
+
+        assertEquals(503, resp.getStatusCode().value());
+        verify(registry, never()).routeMessage(any());
+    }
+}
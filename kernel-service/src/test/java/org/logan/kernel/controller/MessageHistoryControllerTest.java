@@ -0,0 +1,79 @@
+package org.logan.kernel.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.persistence.MessageHistory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MessageHistoryControllerTest {
+
+    private MessageHistory history;
+    private MessageHistoryController controller;
+
+    @BeforeEach
+    void setUp() {
+        history = mock(MessageHistory.class);
+        controller = new MessageHistoryController(history);
+    }
+
+    @Test
+    void filtersAreTrimmedAndParsed() {
+        when(history.page(any(), any(), any(), any(), any()))
+                .thenReturn(new MessageHistory.Page(List.of(Map.of("id", 1L)), "next"));
+
+        ResponseEntity<?> resp = controller.page(" s-1 ", "", null, "2026-10-01T00:00:00Z", null, null, "ASC", 5, "c");
+
+        assertEquals(200, resp.getStatusCode().value());
+        assertEquals("next", ((Map<?, ?>) resp.getBody()).get("nextCursor"));
+        verify(history).page(new MessageHistory.Filter("s-1", null, null, Instant.parse("2026-10-01T00:00:00Z"), null),
+                null, MessageHistory.Order.ASC, "c", 5);
+    }
+
+    @Test
+    void badInputAnswers400() {
+        when(history.page(any(), any(), any(), eq("bad"), any())).thenThrow(new IllegalArgumentException("Malformed cursor"));
+
+        assertEquals(400, controller.page(null, null, null, "yesterday", null, null, "desc", null, null)
+                .getStatusCode().value());
+        assertEquals(400, controller.page(null, null, null, null, null, null, "sideways", null, null)
+                .getStatusCode().value());
+        assertEquals(400, controller.page(null, null, null, null, null, null, "desc", null, "bad")
+                .getStatusCode().value());
+    }
+
+    @Test
+    void exportChecksFieldsBeforeStreaming() {
+        ResponseEntity<?> resp = controller.export(null, null, null, null, null, List.of("password"), "asc");
+
+        assertEquals(400, resp.getStatusCode().value());
+        verifyNoInteractions(history);
+    }
+
+    @Test
+    void exportStreamsNdjson() throws Exception {
+        doAnswer(inv -> {
+            inv.<OutputStream>getArgument(3).write("{\"id\":1}\n".getBytes());
+            return null;
+        }).when(history).export(any(), any(), eq(MessageHistory.Order.ASC), any());
+
+        ResponseEntity<?> resp = controller.export(null, "agent-1", null, null, null, null, "asc");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) resp.getBody()).writeTo(out);
+
+        assertEquals("application/x-ndjson", String.valueOf(resp.getHeaders().getContentType()));
+        assertEquals("{\"id\":1}\n", out.toString());
+        verify(history).export(eq(new MessageHistory.Filter(null, "agent-1", null, null, null)), isNull(),
+                eq(MessageHistory.Order.ASC), any());
+    }
+}
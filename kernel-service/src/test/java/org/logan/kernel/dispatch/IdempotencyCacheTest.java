@@ -0,0 +1,54 @@
+package org.logan.kernel.dispatch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyCacheTest {
+
+    private static final int CAPACITY = 100;
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final IdempotencyCache cache = new IdempotencyCache(true, CAPACITY, meters);
+
+    private static String key(String batch, int i) {
+        return IdempotencyCache.keyOf("agent-1", "TASK", batch + "-" + i);
+    }
+
+    @Test
+    void aReplayIsRefusedUntilReleased() {
+        String key = key("c", 1);
+        assertTrue(cache.claim(key));
+        assertFalse(cache.claim(key));
+        assertEquals(1.0, meters.counter("kernel.idempotency.duplicates").count());
+
+        cache.release(key);
+        assertTrue(cache.claim(key));
+    }
+
+    @Test
+    void keysWithoutACorrelationIdAreNeverDeduplicated() {
+        assertNull(IdempotencyCache.keyOf("agent-1", "TASK", " "));
+        assertTrue(cache.claim(null));
+        assertTrue(cache.claim(null));
+    }
+
+    @Test
+    void theLeastRecentlySeenKeyIsForgottenPastCapacity() {
+        for (int i = 0; i < CAPACITY; i++) assertTrue(cache.claim(key("a", i)));
+        assertFalse(cache.claim(key("a", 0)));   // a replay refreshes a-0, a-1 is now the eldest
+
+        assertTrue(cache.claim(key("b", 0)));
+
+        assertTrue(cache.claim(key("a", 1)), "a-1 should have been evicted");
+        assertFalse(cache.claim(key("a", 0)), "a-0 was refreshed and must still be known");
+    }
+
+    @Test
+    void disabledCacheClaimsEverything() {
+        IdempotencyCache off = new IdempotencyCache(false, CAPACITY, meters);
+        assertTrue(off.claim(key("x", 1)));
+        assertTrue(off.claim(key("x", 1)));
+    }
+}
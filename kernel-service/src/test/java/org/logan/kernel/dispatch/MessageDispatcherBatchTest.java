@@ -0,0 +1,177 @@
+package org.logan.kernel.dispatch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.admission.AdmissionController;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.payload.SessionScoped;
+import org.logan.kernel.messaging.MessagePublisher;
+import org.logan.protocol.MessageEnvelope;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MessageDispatcherBatchTest {
+
+    record ItemPayload(String sessionId, String text) implements SessionScoped {
+        @Override
+        public String session() {
+            return sessionId != null ? sessionId : DEFAULT_SESSION;
+        }
+    }
+
+    private final List<String> handled = new CopyOnWriteArrayList<>();
+    private volatile Function<String, Integer> status = text -> 200;
+    private MessagePublisher publisher;
+    private MessageDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        MessageHandler<ItemPayload> handler = new MessageHandler<>() {
+            @Override
+            public String type() {
+                return "test_item";
+            }
+
+            @Override
+            public Class<ItemPayload> payloadType() {
+                return ItemPayload.class;
+            }
+
+            @Override
+            public ResponseEntity<?> handle(MessageEnvelope<ItemPayload> envelope, DispatchContext ctx) {
+                String text = envelope.getPayload().text();
+                handled.add(text);
+                int code = status.apply(text);
+                return ResponseEntity.status(code).body(Map.of("ok", code < 300));
+            }
+        };
+        AdmissionController admission = mock(AdmissionController.class);
+        when(admission.admit(any(), any(), any(), any(), any()))
+                .thenReturn(new AdmissionController.Decision(true, null, 0));
+        publisher = mock(MessagePublisher.class);
+        dispatcher = new MessageDispatcher(List.of(handler), new ObjectMapper(), mock(AgentRegistry.class),
+                admission, new IdempotencyCache(true, 1000, new SimpleMeterRegistry()), publisher);
+    }
+
+    private static String item(String session, String text) {
+        return "{\"type\":\"test_item\",\"senderId\":\"agent-1\",\"correlationId\":\"" + text
+                + "\",\"payload\":{\"sessionId\":\"" + session + "\",\"text\":\"" + text + "\"}}";
+    }
+
+    private List<Map<String, Object>> post(String body) throws Exception {
+        return dispatcher.dispatchBatch(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                "application/json", null, new DispatchContext(null), 100);
+    }
+
+    private static List<Integer> statuses(List<Map<String, Object>> results) {
+        for (int i = 0; i < results.size(); i++) assertEquals(i, results.get(i).get("index"));
+        return results.stream().map(r -> (Integer) r.get("status")).toList();
+    }
+
+    @Test
+    void itemsAreHandledInArrayOrder() throws Exception {
+        List<Map<String, Object>> results = post("[" + item("s-1", "a") + "," + item("s-2", "b") + ","
+                + item("s-1", "c") + "]");
+
+        assertEquals(List.of(200, 200, 200), statuses(results));
+        assertEquals(List.of("a", "b", "c"), handled);
+    }
+
+    @Test
+    void aPayloadThatFailsToBindIsAnswered400AndTheRest409() throws Exception {
+        String unbindable = "{\"type\":\"test_item\",\"payload\":{\"sessionId\":\"s-1\",\"text\":{\"nested\":[1,2]}}}";
+
+        List<Map<String, Object>> results = post("[" + item("s-1", "a") + "," + unbindable + ","
+                + item("s-2", "c") + "," + item("s-1", "d") + "]");
+
+        assertEquals(List.of(200, 400, 409, 409), statuses(results));
+        assertEquals(List.of("a"), handled);
+    }
+
+    @Test
+    void aNonObjectItemIsAnswered400AndTheRest409() throws Exception {
+        List<Map<String, Object>> results = post("[" + item("s-1", "a") + ",42," + item("s-1", "c") + "]");
+
+        assertEquals(List.of(200, 400, 409), statuses(results));
+        assertEquals(List.of("a"), handled);
+    }
+
+    @Test
+    void aRefusedItemHoldsBackTheRestOfItsSessionOnly() throws Exception {
+        status = text -> "b".equals(text) ? 503 : 200;
+
+        List<Map<String, Object>> results = post("[" + item("s-1", "a") + "," + item("s-1", "b") + ","
+                + item("s-2", "c") + "," + item("s-1", "d") + "]");
+
+        assertEquals(List.of(200, 503, 200, 409), statuses(results));
+        assertEquals(List.of("a", "b", "c"), handled);
+    }
+
+    // No handler for this type, and its recipient lives on another kernel
+    private static String remote(String recipient, String text) {
+        return "{\"type\":\"custom_event\",\"senderId\":\"agent-1\",\"recipientId\":\"" + recipient
+                + "\",\"correlationId\":\"" + text + "\",\"payload\":{\"text\":\"" + text + "\"}}";
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void itemsForOtherKernelsArePublishedInOnePipelinedCall() throws Exception {
+        when(publisher.hasStream(any())).thenReturn(true);
+
+        List<Map<String, Object>> results = post("[" + remote("r-1", "x") + "," + item("s-1", "a") + ","
+                + remote("r-2", "y") + "," + remote("r-1", "z") + "]");
+
+        assertEquals(List.of(202, 200, 202, 202), statuses(results));
+        ArgumentCaptor<List> batch = ArgumentCaptor.forClass(List.class);
+        verify(publisher).publishBatch(batch.capture());
+        verify(publisher, never()).publish(any(), any());
+        assertEquals(List.of("x", "y", "z"), ((List<MessageEnvelope<?>>) batch.getValue()).stream()
+                .map(MessageEnvelope::getCorrelationId).toList());
+    }
+
+    @Test
+    void aFailedPipelineAnswersEveryForwardedItem503() throws Exception {
+        when(publisher.hasStream(any())).thenReturn(true);
+        doThrow(new IllegalStateException("connection refused")).when(publisher).publishBatch(any());
+
+        List<Map<String, Object>> results = post("[" + remote("r-1", "x") + "," + item("s-1", "a") + ","
+                + remote("r-2", "y") + "]");
+
+        assertEquals(List.of(503, 200, 503), statuses(results));
+    }
+
+    @Test
+    void aBrokenStreamStillAnswersTheItemsBeforeIt() throws Exception {
+        List<Map<String, Object>> results = post("[" + item("s-1", "a") + ",{\"type\":\"test_item\",\"payl");
+
+        assertEquals(List.of(200, 400), statuses(results));
+        assertEquals(List.of("a"), handled);
+    }
+
+    @Test
+    void itemsOverTheLimitAreAnswered413() throws Exception {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 102; i++) body.append(i > 0 ? "," : "").append(item("s-" + i, "t" + i));
+        body.append("]");
+
+        List<Integer> statuses = statuses(post(body.toString()));
+
+        assertEquals(102, statuses.size());
+        assertEquals(413, statuses.get(100));
+        assertEquals(413, statuses.get(101));
+        assertEquals(100, handled.size());
+    }
+}
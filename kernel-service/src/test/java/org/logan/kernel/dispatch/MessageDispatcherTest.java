@@ -0,0 +1,105 @@
+package org.logan.kernel.dispatch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.admission.AdmissionController;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.messaging.MessagePublisher;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MessageDispatcherTest {
+
+    private AgentRegistry registry;
+    private MessagePublisher publisher;
+    private MessageDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        registry = mock(AgentRegistry.class);
+        publisher = mock(MessagePublisher.class);
+        AdmissionController admission = mock(AdmissionController.class);
+        when(admission.admit(any(), any(), any(), any(), any()))
+                .thenReturn(new AdmissionController.Decision(true, null, 0));
+        dispatcher = new MessageDispatcher(List.of(), new ObjectMapper(), registry, admission,
+                new IdempotencyCache(true, 1000, new SimpleMeterRegistry()), publisher);
+    }
+
+    // A type without a handler goes straight to the recipient's mailbox
+    private static MessageEnvelope<Object> custom() {
+        MessageEnvelope<Object> env = new MessageEnvelope<>();
+        env.setType("custom_event");
+        env.setSenderId("agent-1");
+        env.setRecipientId("agent-2");
+        env.setCorrelationId("c-1");
+        env.setPayload(Map.of("sessionId", "s-1"));
+        return env;
+    }
+
+    @Test
+    void aRoutedEnvelopeAnswers200AndIsDeduplicated() throws Exception {
+        when(registry.hasAgent("agent-2")).thenReturn(true);
+        when(registry.routeMessage(any())).thenReturn(true);
+
+        assertEquals(200, dispatcher.dispatch(custom(), new DispatchContext(null)).getStatusCode().value());
+        ResponseEntity<?> replay = dispatcher.dispatch(custom(), new DispatchContext(null));
+
+        assertEquals(true, ((Map<?, ?>) replay.getBody()).get("duplicate"));
+        verify(registry, times(1)).routeMessage(any());
+    }
+
+    @Test
+    void anUnknownRecipientAnswers404() throws Exception {
+        ResponseEntity<?> resp = dispatcher.dispatch(custom(), new DispatchContext(null));
+
+        assertEquals(404, resp.getStatusCode().value());
+        verify(registry, never()).routeMessage(any());
+        verify(publisher, never()).publish(any(), any());
+    }
+
+    @Test
+    void aRecipientOnAnotherKernelGetsItsStreamAppendedTo() throws Exception {
+        when(publisher.hasStream("agent-2")).thenReturn(true);
+
+        ResponseEntity<?> resp = dispatcher.dispatch(custom(), new DispatchContext(null));
+
+        assertEquals(202, resp.getStatusCode().value());
+        verify(publisher).publish(eq("agent-2"), any());
+    }
+
+    @Test
+    void unreachableStreamsAnswer503AndReleaseTheKey() throws Exception {
+        when(publisher.hasStream("agent-2")).thenThrow(new IllegalStateException("connection refused"))
+                .thenReturn(true);
+
+        ResponseEntity<?> refused = dispatcher.dispatch(custom(), new DispatchContext(null));
+        ResponseEntity<?> retried = dispatcher.dispatch(custom(), new DispatchContext(null));
+
+        assertEquals(503, refused.getStatusCode().value());
+        assertEquals(202, retried.getStatusCode().value());
+    }
+
+    @Test
+    void aFullMailboxAnswers503AndReleasesTheKeyForTheRetry() throws Exception {
+        when(registry.hasAgent("agent-2")).thenReturn(true);
+        when(registry.routeMessage(any())).thenReturn(false, true);
+
+        ResponseEntity<?> refused = dispatcher.dispatch(custom(), new DispatchContext(null));
+        ResponseEntity<?> retried = dispatcher.dispatch(custom(), new DispatchContext(null));
+
+        assertEquals(503, refused.getStatusCode().value());
+        assertEquals("5", refused.getHeaders().getFirst("Retry-After"));
+        assertEquals(200, retried.getStatusCode().value());
+        assertNull(((Map<?, ?>) retried.getBody()).get("duplicate"));
+    }
+}
@@ -0,0 +1,82 @@
+package org.logan.kernel.dispatch.handlers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.DispatchContext;
+import org.logan.kernel.dispatch.payload.ChatPayload;
+import org.logan.kernel.goal.GoalService;
+import org.logan.kernel.session.PendingSession;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.kernel.sse.SseBroadcaster;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ChatHandlerTest {
+
+    private static final DispatchContext WAIT = new DispatchContext(true);
+
+    private AgentRegistry registry;
+    private SessionRegistry sessions;
+    private PendingSession session;
+    private ChatHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        registry = mock(AgentRegistry.class);
+        sessions = mock(SessionRegistry.class);
+        session = mock(PendingSession.class);
+        when(sessions.open("s-1")).thenReturn(session);
+        handler = new ChatHandler(registry, sessions, mock(SseBroadcaster.class), mock(GoalService.class));
+    }
+
+    private static MessageEnvelope<ChatPayload> chat() {
+        MessageEnvelope<ChatPayload> env = new MessageEnvelope<>();
+        env.setType("chat");
+        env.setSenderId("user");
+        env.setRecipientId("orchestrator-agent");
+        env.setPayload(new ChatPayload("s-1", "hello"));
+        return env;
+    }
+
+    @Test
+    void blockingChatAnswersWithTheChatResult() throws Exception {
+        when(registry.routeMessage(any())).thenReturn(true);
+        when(session.waitForCompletion(anyLong(), any(TimeUnit.class))).thenReturn(Map.of("ok", true));
+
+        ResponseEntity<?> resp = handler.handle(chat(), WAIT);
+
+        assertEquals(200, resp.getStatusCode().value());
+        assertEquals(Map.of("ok", true), resp.getBody());
+    }
+
+    @Test
+    void blockingChatToAnUnknownAgentAnswers404AndLeavesTheSession() throws Exception {
+        when(registry.routeMessage(any())).thenReturn(false);
+
+        ResponseEntity<?> resp = handler.handle(chat(), WAIT);
+
+        assertEquals(404, resp.getStatusCode().value());
+        verify(sessions).leave("s-1", session);
+        verify(session, never()).waitForCompletion(anyLong(), any());
+    }
+
+    @Test
+    void blockingChatToAFullMailboxAnswers503() throws Exception {
+        when(registry.routeMessage(any())).thenReturn(false);
+        when(registry.hasAgent("orchestrator-agent")).thenReturn(true);
+
+        ResponseEntity<?> resp = handler.handle(chat(), WAIT);
+
+        assertEquals(503, resp.getStatusCode().value());
+        assertEquals("5", resp.getHeaders().getFirst("Retry-After"));
+        verify(sessions).leave("s-1", session);
+    }
+}
@@ -0,0 +1,93 @@
+package org.logan.kernel.dispatch.handlers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.DispatchContext;
+import org.logan.kernel.dispatch.payload.ChatResultPayload;
+import org.logan.kernel.session.PendingSession;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.kernel.sse.SseBroadcaster;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ChatResultHandlerTest {
+
+    private AgentRegistry registry;
+    private SessionRegistry sessions;
+    private SseBroadcaster sse;
+    private PendingSession session;
+    private ChatResultHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        registry = mock(AgentRegistry.class);
+        sessions = mock(SessionRegistry.class);
+        sse = mock(SseBroadcaster.class);
+        session = mock(PendingSession.class);
+        handler = new ChatResultHandler(registry, sessions, sse);
+        when(sessions.get("s-1")).thenReturn(session);
+        when(registry.hasAgent("orchestrator-agent")).thenReturn(true);
+    }
+
+    private static MessageEnvelope<ChatResultPayload> result(String agentId) {
+        ChatResultPayload payload = new ChatResultPayload();
+        payload.put("sessionId", "s-1");
+        payload.put("agentId", agentId);
+        payload.put("result", "done");
+        MessageEnvelope<ChatResultPayload> env = new MessageEnvelope<>();
+        env.setType("chat_result");
+        env.setSenderId(agentId);
+        env.setRecipientId("kernel");
+        env.setPayload(payload);
+        return env;
+    }
+
+    @Test
+    void routedResultCompletesTheAgent() {
+        when(registry.routeMessage(any())).thenReturn(true);
+
+        ResponseEntity<?> resp = handler.handle(result("worker-1"), new DispatchContext(null));
+
+        assertEquals(200, resp.getStatusCode().value());
+        verify(session).markAgentCompleted("worker-1");
+        verify(sessions).completeAgentWaiter(eq("s-1"), eq("worker-1"), anyMap());
+    }
+
+    @Test
+    void fullOrchestratorMailboxAnswers503WithoutSideEffects() {
+        when(registry.routeMessage(any())).thenReturn(false);
+
+        ResponseEntity<?> resp = handler.handle(result("worker-1"), new DispatchContext(null));
+
+        assertEquals(503, resp.getStatusCode().value());
+        assertEquals("5", resp.getHeaders().getFirst("Retry-After"));
+        verify(session, never()).markAgentCompleted(any());
+        verify(sessions, never()).completeAgentWaiter(any(), any(), any());
+        verifyNoInteractions(sse);
+    }
+
+    @Test
+    void missingOrchestratorAnswers503() {
+        when(registry.hasAgent("orchestrator-agent")).thenReturn(false);
+
+        ResponseEntity<?> resp = handler.handle(result("worker-1"), new DispatchContext(null));
+
+        assertEquals(503, resp.getStatusCode().value());
+        verify(registry, never()).routeMessage(any());
+        verify(session, never()).markAgentCompleted(any());
+    }
+
+    @Test
+    void theOrchestratorsOwnResultIsNotRoutedBack() {
+        ResponseEntity<?> resp = handler.handle(result("orchestrator-agent"), new DispatchContext(null));
+
+        assertEquals(200, resp.getStatusCode().value());
+        verify(registry, never()).routeMessage(any());
+        verify(session).complete(anyMap());
+    }
+}
@@ -0,0 +1,60 @@
+package org.logan.kernel.dispatch.handlers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.dispatch.DispatchContext;
+import org.logan.kernel.dispatch.payload.DelegationPayload;
+import org.logan.kernel.session.PendingSession;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.kernel.sse.SseBroadcaster;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DelegationHandlerTest {
+
+    private AgentRegistry registry;
+    private DelegationHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        registry = mock(AgentRegistry.class);
+        SessionRegistry sessions = mock(SessionRegistry.class);
+        when(sessions.getOrCreate("s-1")).thenReturn(mock(PendingSession.class));
+        handler = new DelegationHandler(registry, sessions, mock(SseBroadcaster.class));
+        when(registry.hasAgent("worker-1")).thenReturn(true);
+    }
+
+    private static MessageEnvelope<DelegationPayload> delegation() {
+        MessageEnvelope<DelegationPayload> env = new MessageEnvelope<>();
+        env.setType("delegation");
+        env.setSenderId("orchestrator-agent");
+        env.setPayload(new DelegationPayload("s-1", "worker-1", null, "summarize"));
+        return env;
+    }
+
+    @Test
+    void routedDelegationAnswers200() {
+        when(registry.routeMessage(any())).thenReturn(true);
+
+        ResponseEntity<?> resp = handler.handle(delegation(), new DispatchContext(null));
+
+        assertEquals(200, resp.getStatusCode().value());
+        verify(registry).routeMessage(argThat(env -> "worker-1".equals(env.getRecipientId())
+                && "chat".equals(env.getType()) && "orchestrator-agent".equals(env.getSenderId())));
+    }
+
+    @Test
+    void fullTargetMailboxAnswers503() {
+        when(registry.routeMessage(any())).thenReturn(false);
+
+        ResponseEntity<?> resp = handler.handle(delegation(), new DispatchContext(null));
+
+        assertEquals(503, resp.getStatusCode().value());
+        assertEquals("5", resp.getHeaders().getFirst("Retry-After"));
+    }
+}
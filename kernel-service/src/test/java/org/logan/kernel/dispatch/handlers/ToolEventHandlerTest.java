@@ -0,0 +1,49 @@
+package org.logan.kernel.dispatch.handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.dispatch.DispatchContext;
+import org.logan.kernel.dispatch.payload.ToolEventPayload;
+import org.logan.kernel.session.PendingSession;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.protocol.MessageEnvelope;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ToolEventHandlerTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void theAuditEventKeepsEveryPayloadField() throws Exception {
+        SessionRegistry sessions = mock(SessionRegistry.class);
+        PendingSession session = mock(PendingSession.class);
+        when(sessions.getOrCreate("s-1")).thenReturn(session);
+        ToolEventPayload payload = new ObjectMapper().readValue("""
+                {"sessionId":"s-1","tool":"transfer","input":{"amount":500},
+                 "durationMs":42,"attempt":2,"tags":["payments"],"type":"spoofed"}""", ToolEventPayload.class);
+        MessageEnvelope<ToolEventPayload> env = new MessageEnvelope<>();
+        env.setType("tool_result");
+        env.setSenderId("agent-1");
+        env.setPayload(payload);
+
+        new ToolEventHandler.Result(sessions).handle(env, new DispatchContext(null));
+
+        ArgumentCaptor<Map<String, Object>> audit = ArgumentCaptor.forClass(Map.class);
+        verify(session).addAudit(audit.capture());
+        Map<String, Object> event = audit.getValue();
+        assertEquals(Map.of("amount", 500), event.get("input"));
+        assertEquals(42, event.get("durationMs"));
+        assertEquals(2, event.get("attempt"));
+        assertEquals(List.of("payments"), event.get("tags"));
+        assertEquals("transfer", event.get("tool"));
+        assertEquals("tool_result", event.get("type"));
+        assertEquals("agent-1", event.get("agentId"));
+        assertEquals("Executing tool: transfer", event.get("message"));
+        assertNotNull(event.get("timestamp"));
+    }
+}
@@ -0,0 +1,154 @@
+package org.logan.kernel.goal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.messaging.KernelRouter;
+import org.logan.kernel.persistence.GoalEntity;
+import org.logan.kernel.persistence.GoalRepository;
+import org.logan.kernel.session.PendingSession;
+import org.logan.kernel.session.SessionRegistry;
+import org.logan.kernel.sse.SseBroadcaster;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class GoalServiceTest {
+
+    private GoalRepository repo;
+    private AgentRegistry registry;
+    private KernelRouter router;
+    private SessionRegistry sessions;
+    private GoalService service;
+    private BlockingQueue<Long> queue;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(GoalRepository.class);
+        when(repo.save(any(GoalEntity.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(repo.findByStatusOrderByIdAsc(any())).thenReturn(List.of());
+        registry = mock(AgentRegistry.class);
+        router = mock(KernelRouter.class);
+        sessions = mock(SessionRegistry.class);
+        service = new GoalService(repo, registry, router, sessions, mock(SseBroadcaster.class), new ObjectMapper());
+        // No workers: the test reads the queue instead
+        queue = new ArrayBlockingQueue<>(10);
+        ReflectionTestUtils.setField(service, "queue", queue);
+    }
+
+    private GoalEntity goal(long id, String status) {
+        GoalEntity goal = new GoalEntity();
+        ReflectionTestUtils.setField(goal, "id", id);
+        goal.setAgentId(GoalService.DEFAULT_AGENT);
+        goal.setDescription("pay 75 to Bob");
+        goal.setCorrelationId("session-" + id);
+        goal.setStatus(status);
+        when(repo.findById(id)).thenReturn(Optional.of(goal));
+        return goal;
+    }
+
+    @Test
+    void requeuesGoalsLeftQueued() {
+        GoalEntity queued = goal(1, "QUEUED");
+        when(repo.findByStatusOrderByIdAsc("QUEUED")).thenReturn(List.of(queued));
+
+        service.recover();
+
+        assertEquals(List.of(1L), List.copyOf(queue));
+        assertFalse(service.awaitCompletion(1).isDone());
+    }
+
+    @Test
+    void failsGoalsLeftActiveByDefault() {
+        GoalEntity active = goal(2, "ACTIVE");
+        when(repo.findByStatusOrderByIdAsc("ACTIVE")).thenReturn(List.of(active));
+
+        service.recover();
+
+        assertEquals("FAILED", active.getStatus());
+        assertNotNull(active.getCompletedAt());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void rerunsGoalsLeftActiveWhenConfigured() {
+        ReflectionTestUtils.setField(service, "rerunActive", true);
+        GoalEntity active = goal(3, "ACTIVE");
+        when(repo.findByStatusOrderByIdAsc("ACTIVE")).thenReturn(List.of(active));
+        // Saved back as QUEUED, so the QUEUED scan sees it too; it must not be queued twice
+        when(repo.findByStatusOrderByIdAsc("QUEUED")).thenReturn(List.of(active));
+
+        service.recover();
+
+        assertEquals("QUEUED", active.getStatus());
+        assertEquals(List.of(3L), List.copyOf(queue));
+    }
+
+    @Test
+    void twoChatsInOneSessionBothCompleteWithTheSessionsAudit() throws Exception {
+        sessions = new SessionRegistry(new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(sessions, "idleTtlSeconds", 900L);
+        ReflectionTestUtils.setField(sessions, "absoluteTtlSeconds", 3600L);
+        ReflectionTestUtils.setField(sessions, "eventMemoryLimit", 100);
+        ReflectionTestUtils.setField(sessions, "wheelTickMs", 100L);
+        sessions.start();
+        service = new GoalService(repo, registry, router, sessions, mock(SseBroadcaster.class), new ObjectMapper());
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 60L);
+        when(registry.hasAgent(GoalService.DEFAULT_AGENT)).thenReturn(true);
+        when(router.route(any())).thenReturn(true);
+        GoalEntity first = goal(4, "QUEUED");
+        GoalEntity followUp = goal(5, "QUEUED");
+        followUp.setCorrelationId(first.getCorrelationId());
+
+        ReflectionTestUtils.invokeMethod(service, "dispatch", 4L);
+        ReflectionTestUtils.invokeMethod(service, "dispatch", 5L);
+        PendingSession ps = sessions.get("session-4");
+        assertEquals(2, ps.getAudit().size());   // both user_input events, nothing dropped
+        ps.complete(Map.of("ok", true, "audit", ps.getAudit()));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!"COMPLETED".equals(followUp.getStatus()) && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals("COMPLETED", first.getStatus());
+        assertEquals("COMPLETED", followUp.getStatus());
+        sessions.stop();
+    }
+
+    @Test
+    void aGoalWaitingOnAPersonOutlivesItsTimeoutAndTheSessionTtls() throws Exception {
+        sessions = new SessionRegistry(new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(sessions, "idleTtlSeconds", 1L);
+        ReflectionTestUtils.setField(sessions, "absoluteTtlSeconds", 1L);
+        ReflectionTestUtils.setField(sessions, "eventMemoryLimit", 100);
+        ReflectionTestUtils.setField(sessions, "wheelTickMs", 100L);
+        sessions.start();
+        service = new GoalService(repo, registry, router, sessions, mock(SseBroadcaster.class), new ObjectMapper());
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 1L);
+        when(registry.hasAgent(GoalService.DEFAULT_AGENT)).thenReturn(true);
+        when(router.route(any())).thenReturn(true);
+        GoalEntity goal = goal(6, "QUEUED");
+
+        ReflectionTestUtils.invokeMethod(service, "dispatch", 6L);
+        sessions.waitOnPerson("session-6");   // the orchestrator paused, then passivated
+        Thread.sleep(2_000);
+
+        assertEquals("ACTIVE", goal.getStatus());
+        assertEquals(1, sessions.liveSessions());
+        sessions.personResponded("session-6");
+        sessions.get("session-6").complete(Map.of("ok", true));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!"COMPLETED".equals(goal.getStatus()) && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals("COMPLETED", goal.getStatus());
+        sessions.stop();
+    }
+}
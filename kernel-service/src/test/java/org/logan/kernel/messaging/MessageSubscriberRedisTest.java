@@ -0,0 +1,161 @@
+package org.logan.kernel.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.agent.AgentLifecycleEvent;
+import org.logan.kernel.agent.AgentRegistry;
+import org.logan.kernel.config.RedisConfig;
+import org.logan.protocol.MessageEnvelope;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/** Ack, reclaim and dead-letter against a real Redis; skipped when Docker isn't available. */
+@Testcontainers(disabledWithoutDocker = true)
+class MessageSubscriberRedisTest {
+
+    private static final String AGENT = "agent-1";
+
+    @Container
+    static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private LettuceConnectionFactory factory;
+    private StringRedisTemplate redis;
+    private MessagePublisher publisher;
+    private AgentRegistry registry;
+    private MessageSubscriber subscriber;
+
+    @BeforeEach
+    void setUp() {
+        factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        factory.afterPropertiesSet();
+        factory.start();
+        redis = new StringRedisTemplate(factory);
+        redis.execute(connection -> { connection.serverCommands().flushAll(); return null; }, true);
+
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+        publisher = new MessagePublisher(redis, mapper);
+        ReflectionTestUtils.setField(publisher, "streamPrefix", "agent-stream:");
+        ReflectionTestUtils.setField(publisher, "maxLen", 1000L);
+        ReflectionTestUtils.setField(publisher, "deadLetterKey", "kernel-dead-letter:agent-stream");
+
+        registry = mock(AgentRegistry.class);
+        subscriber = new MessageSubscriber(mapper, registry, publisher, redis,
+                new RedisConfig().streamContainer(factory, 100, 10));
+        ReflectionTestUtils.setField(subscriber, "kernelId", "k1");
+        ReflectionTestUtils.setField(subscriber, "reclaimIntervalMs", 100L);
+        ReflectionTestUtils.setField(subscriber, "reclaimMinIdleMs", 200L);
+        ReflectionTestUtils.setField(subscriber, "maxDeliveries", 2L);
+        ReflectionTestUtils.setField(subscriber, "retryDelayMs", 50L);
+        ReflectionTestUtils.setField(subscriber, "groupStartId", "0");
+        subscriber.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscriber.stop();
+        factory.destroy();
+    }
+
+    private void register() {
+        subscriber.onAgentLifecycle(new AgentLifecycleEvent(AGENT, "test", null, AgentLifecycleEvent.Kind.REGISTERED));
+    }
+
+    private static MessageEnvelope<String> envelope(String correlationId) {
+        MessageEnvelope<String> env = new MessageEnvelope<>();
+        env.setType("chat");
+        env.setSenderId("user");
+        env.setRecipientId(AGENT);
+        env.setCorrelationId(correlationId);
+        env.setPayload("hello");
+        return env;
+    }
+
+    private long pending() {
+        return redis.opsForStream().pending(publisher.streamKey(AGENT), "kernel:k1").getTotalPendingMessages();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("condition not met within 10s");
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    void acksOnceTheMailboxAccepts() throws Exception {
+        when(registry.routeMessage(any())).thenReturn(true);
+        register();
+
+        publisher.publish(AGENT, envelope("c-1"));
+
+        await(() -> mockingDetails(registry).getInvocations().stream()
+                .anyMatch(i -> i.getMethod().getName().equals("routeMessage")));
+        await(() -> pending() == 0);
+    }
+
+    @Test
+    void aNewGroupAlsoGetsEntriesWrittenBeforeIt() throws Exception {
+        when(registry.routeMessage(any())).thenReturn(true);
+        publisher.publish(AGENT, envelope("before"));
+        register();
+
+        publisher.publish(AGENT, envelope("after"));
+
+        await(() -> mockingDetails(registry).getInvocations().size() == 2);
+        verify(registry).routeMessage(argThat(env -> "before".equals(env.getCorrelationId())));
+        verify(registry).routeMessage(argThat(env -> "after".equals(env.getCorrelationId())));
+        await(() -> pending() == 0);
+    }
+
+    @Test
+    void aBatchIsAppendedInOrder() throws Exception {
+        when(registry.routeMessage(any())).thenReturn(true);
+        register();
+
+        publisher.publishBatch(List.of(envelope("b-1"), envelope("b-2"), envelope("b-3")));
+
+        List<MapRecord<String, Object, Object>> entries =
+                redis.opsForStream().read(StreamOffset.fromStart(publisher.streamKey(AGENT)));
+        assertEquals(3, entries.size());
+        assertTrue(String.valueOf(entries.get(0).getValue().get(MessagePublisher.ENVELOPE_FIELD)).contains("b-1"));
+        assertTrue(String.valueOf(entries.get(2).getValue().get(MessagePublisher.ENVELOPE_FIELD)).contains("b-3"));
+        await(() -> pending() == 0);
+    }
+
+    @Test
+    void retriesAndThenDeadLettersRejectedEntries() throws Exception {
+        when(registry.routeMessage(any())).thenReturn(false);
+        register();
+
+        publisher.publish(AGENT, envelope("c-1"));
+
+        // Retried after the short backoff, well before the 200ms reclaim idle time
+        await(() -> !deadLetters().isEmpty());
+        // First read, then one retry, then dead-lettered instead of a third attempt
+        verify(registry, times(2)).routeMessage(any());
+        assertEquals(publisher.streamKey(AGENT), deadLetters().get(0).getValue().get("sourceStream"));
+        assertNotEquals(publisher.streamKey("dead-letter"), publisher.deadLetterKey());
+        await(() -> pending() == 0);
+    }
+
+    private List<MapRecord<String, Object, Object>> deadLetters() {
+        return redis.opsForStream().read(StreamOffset.fromStart(publisher.deadLetterKey()));
+    }
+}
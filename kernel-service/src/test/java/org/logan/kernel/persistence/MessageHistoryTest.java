@@ -0,0 +1,224 @@
+package org.logan.kernel.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.persistence.MessageHistory.Filter;
+import org.logan.kernel.persistence.MessageHistory.Order;
+import org.logan.kernel.persistence.MessageHistory.Page;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MessageHistoryTest {
+
+    private static final Filter ALL = new Filter(null, null, null, null, null);
+    private static final Comparator<Map<String, Object>> BY_KEY = Comparator
+            .comparing((Map<String, Object> r) -> Instant.parse((String) r.get("createdAt")))
+            .thenComparing(r -> (Long) r.get("id"));
+
+    private JdbcTemplate jdbc;
+    private MessageHistory history;
+    private final List<Map<String, Object>> table = new ArrayList<>();
+    private final List<String> statements = new CopyOnWriteArrayList<>();
+    private final List<Object[]> bindings = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbc = mock(JdbcTemplate.class);
+        when(jdbc.query(anyString(), any(RowMapper.class), any(Object[].class))).thenAnswer(this::seek);
+        history = new MessageHistory(jdbc, new ObjectMapper());
+        ReflectionTestUtils.setField(history, "defaultPageSize", 100);
+        ReflectionTestUtils.setField(history, "maxPageSize", 1000);
+        ReflectionTestUtils.setField(history, "exportBatchSize", 2);
+    }
+
+    private void row(long id, String createdAt) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", id);
+        row.put("createdAt", createdAt);
+        table.add(row);
+    }
+
+    /** Plays the table for single-seek queries: applies the keyset bound, the order and the limit. */
+    private List<Map<String, Object>> seek(InvocationOnMock inv) {
+        String sql = inv.getArgument(0);
+        Object[] args = (Object[]) inv.getRawArguments()[2];
+        statements.add(sql);
+        bindings.add(args);
+        if (sql.contains("UNION")) return List.of();
+
+        boolean asc = sql.endsWith("created_at ASC, id ASC LIMIT ?");
+        Stream<Map<String, Object>> rows = table.stream();
+        if (sql.contains("OR id")) {
+            Map<String, Object> after = Map.of(
+                    "createdAt", ((Timestamp) args[args.length - 4]).toInstant().toString(),
+                    "id", args[args.length - 2]);
+            rows = rows.filter(r -> asc ? BY_KEY.compare(r, after) > 0 : BY_KEY.compare(r, after) < 0);
+        }
+        return rows.sorted(asc ? BY_KEY : BY_KEY.reversed())
+                .limit((Integer) args[args.length - 1])
+                .map(r -> (Map<String, Object>) new LinkedHashMap<>(r))
+                .toList();
+    }
+
+    private static List<Long> ids(Page page) {
+        return page.items().stream().map(r -> (Long) r.get("id")).toList();
+    }
+
+    @Test
+    void pagesFollowTheCursorWithTiesBrokenById() {
+        row(3, "2026-10-01T12:00:01Z");
+        row(1, "2026-10-01T12:00:00Z");
+        row(2, "2026-10-01T12:00:00Z");   // same instant as 1: id orders them
+        row(5, "2026-10-01T12:00:02Z");
+        row(4, "2026-10-01T12:00:01Z");
+
+        Page first = history.page(ALL, null, Order.ASC, null, 2);
+        Page second = history.page(ALL, null, Order.ASC, first.nextCursor(), 2);
+        Page last = history.page(ALL, null, Order.ASC, second.nextCursor(), 2);
+
+        assertEquals(List.of(1L, 2L), ids(first));
+        assertEquals(List.of(3L, 4L), ids(second));
+        assertEquals(List.of(5L), ids(last));
+        assertNull(last.nextCursor());
+    }
+
+    @Test
+    void descendingPagesWalkBackwards() {
+        row(1, "2026-10-01T12:00:00Z");
+        row(2, "2026-10-01T12:00:00Z");
+        row(3, "2026-10-01T12:00:01Z");
+
+        Page first = history.page(ALL, null, Order.DESC, null, 2);
+        Page second = history.page(ALL, null, Order.DESC, first.nextCursor(), 2);
+
+        assertEquals(List.of(3L, 2L), ids(first));
+        assertEquals(List.of(1L), ids(second));
+        assertTrue(statements.get(1).contains("created_at <= ? AND (created_at < ? OR id < ?)"));
+    }
+
+    @Test
+    void aFullLastPageHasNoNextCursor() {
+        row(1, "2026-10-01T12:00:00Z");
+        row(2, "2026-10-01T12:00:01Z");
+        row(3, "2026-10-01T12:00:02Z");
+        row(4, "2026-10-01T12:00:03Z");
+
+        Page first = history.page(ALL, null, Order.ASC, null, 2);
+        Page second = history.page(ALL, null, Order.ASC, first.nextCursor(), 2);
+
+        assertNotNull(first.nextCursor());
+        assertEquals(List.of(3L, 4L), ids(second));
+        assertNull(second.nextCursor());   // the extra row asked for wasn't there
+        assertEquals(3, bindings.get(0)[bindings.get(0).length - 1]);
+    }
+
+    @Test
+    void theCursorRoundTripsTheLastRowsKeyToTheNanosecond() {
+        row(41, "2026-10-01T12:00:00.123456789Z");
+        row(42, "2026-10-01T12:00:00.123456789Z");
+
+        Page first = history.page(ALL, null, Order.ASC, null, 1);
+        history.page(ALL, null, Order.ASC, first.nextCursor(), 1);
+
+        Object[] args = bindings.get(1);
+        assertEquals(Timestamp.from(Instant.parse("2026-10-01T12:00:00.123456789Z")), args[0]);
+        assertEquals(args[0], args[1]);
+        assertEquals(41L, args[2]);
+        assertTrue(first.nextCursor().matches("[A-Za-z0-9_-]+"), first.nextCursor());   // URL-safe, unpadded
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        String noBar = Base64.getUrlEncoder().encodeToString("2026-10-01T12:00:00Z".getBytes(StandardCharsets.UTF_8));
+        String badId = Base64.getUrlEncoder().encodeToString("2026-10-01T12:00:00Z|x".getBytes(StandardCharsets.UTF_8));
+
+        for (String cursor : List.of("not base64!", noBar, badId)) {
+            assertThrows(IllegalArgumentException.class, () -> history.page(ALL, null, Order.ASC, cursor, 10), cursor);
+        }
+        verifyNoInteractions(jdbc);
+    }
+
+    @Test
+    void anAgentFilterIsTwoSeeksMergedWithUnion() {
+        history.page(new Filter("s-1", "agent-1", null, null, null), List.of("type"), Order.DESC, null, 10);
+
+        String seek = "SELECT id, type, created_at FROM messages WHERE %s = ? AND session_id = ?"
+                + " ORDER BY created_at DESC, id DESC LIMIT ?";
+        assertEquals("(" + seek.formatted("recipient_id") + ") UNION (" + seek.formatted("sender_id") + ")"
+                + " ORDER BY created_at DESC, id DESC LIMIT ?", statements.get(0));
+        assertArrayEquals(new Object[]{"agent-1", "s-1", 11, "agent-1", "s-1", 11, 11}, bindings.get(0));
+    }
+
+    @Test
+    void theKeysetBoundIsBoundInBothUnionBranches() {
+        row(7, "2026-10-01T12:00:00Z");
+        row(8, "2026-10-01T12:00:01Z");
+        String cursor = history.page(ALL, null, Order.ASC, null, 1).nextCursor();
+
+        history.page(new Filter(null, "agent-1", null, null, null), null, Order.ASC, cursor, 5);
+
+        Timestamp at = Timestamp.from(Instant.parse("2026-10-01T12:00:00Z"));
+        assertArrayEquals(new Object[]{"agent-1", at, at, 7L, 6, "agent-1", at, at, 7L, 6, 6}, bindings.get(1));
+    }
+
+    @Test
+    void exportWritesEveryRowAsOneJsonLineABatchAtATime() throws Exception {
+        row(1, "2026-10-01T12:00:00Z");
+        row(2, "2026-10-01T12:00:01Z");
+        row(3, "2026-10-01T12:00:02Z");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        history.export(ALL, List.of("id"), Order.ASC, out);
+
+        assertEquals("""
+                {"id":1,"createdAt":"2026-10-01T12:00:00Z"}
+                {"id":2,"createdAt":"2026-10-01T12:00:01Z"}
+                {"id":3,"createdAt":"2026-10-01T12:00:02Z"}
+                """, out.toString(StandardCharsets.UTF_8));
+        assertEquals(2, statements.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rowsAreReadIntoApiFieldsWithPayloadsPassedThrough() throws Exception {
+        history.page(ALL, List.of("payload", "senderId"), Order.ASC, null, 10);
+        ArgumentCaptor<RowMapper<Map<String, Object>>> mapper = ArgumentCaptor.forClass(RowMapper.class);
+        verify(jdbc).query(anyString(), mapper.capture(), any(Object[].class));
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(9L);
+        when(rs.getString("sender_id")).thenReturn("agent-1");
+        when(rs.getTimestamp("created_at")).thenReturn(Timestamp.from(Instant.parse("2026-10-01T12:00:00.5Z")));
+        when(rs.getString("payload")).thenReturn("{\"a\":1}");
+
+        Map<String, Object> row = mapper.getValue().mapRow(rs, 0);
+
+        assertEquals(List.of("id", "senderId", "createdAt", "payload"), List.copyOf(row.keySet()));
+        assertEquals("2026-10-01T12:00:00.500Z", row.get("createdAt"));
+        assertEquals(new RawValue("{\"a\":1}"), row.get("payload"));
+        assertTrue(statements.get(0).startsWith("SELECT id, sender_id, created_at, payload FROM messages"));
+    }
+
+    @Test
+    void unknownFieldsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> MessageHistory.checkFields(List.of("type", "password")));
+        assertDoesNotThrow(() -> MessageHistory.checkFields(null));
+    }
+}
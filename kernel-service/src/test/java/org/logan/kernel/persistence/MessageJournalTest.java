@@ -0,0 +1,129 @@
+package org.logan.kernel.persistence;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.persistence.MessageJournal.Folded;
+import org.logan.kernel.persistence.MessageJournal.JournalOp;
+import org.logan.kernel.persistence.MessageJournal.Ticket;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MessageJournalTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-16T12:00:00Z");
+
+    private static MessageEntity row(String correlationId) {
+        return MessageEntity.builder()
+                .type("GOAL").senderId("user").recipientId("agent-1")
+                .correlationId(correlationId).status("PENDING").createdAt(NOW)
+                .build();
+    }
+
+    private static Ticket ticket(long seq, String correlationId) {
+        return new Ticket(seq, correlationId, NOW);
+    }
+
+    @Test
+    void keepsEveryInsertSharingACorrelationId() {
+        MessageEntity first = row("c-1");
+        MessageEntity retry = row("c-1");
+
+        Folded folded = MessageJournal.fold(List.of(
+                new JournalOp(first, ticket(1, "c-1"), "PENDING"),
+                new JournalOp(retry, ticket(2, "c-1"), "PENDING")));
+
+        assertEquals(List.of(first, retry), folded.inserts().stream().map(JournalOp::entity).toList());
+        assertTrue(folded.updates().isEmpty());
+    }
+
+    @Test
+    void foldsStatusIntoTheMatchingInsertOnly() {
+        MessageEntity first = row("c-1");
+        MessageEntity retry = row("c-1");
+
+        Folded folded = MessageJournal.fold(List.of(
+                new JournalOp(first, ticket(1, "c-1"), "PENDING"),
+                new JournalOp(retry, ticket(2, "c-1"), "PENDING"),
+                new JournalOp(null, ticket(2, "c-1"), "DELIVERED")));
+
+        assertEquals("PENDING", first.getStatus());
+        assertEquals("DELIVERED", retry.getStatus());
+        assertTrue(folded.updates().isEmpty());
+    }
+
+    @Test
+    void statusForARowFromAnEarlierBatchStaysAnUpdate() {
+        Folded folded = MessageJournal.fold(List.of(
+                new JournalOp(row("c-1"), ticket(5, "c-1"), "PENDING"),
+                new JournalOp(null, ticket(4, "c-1"), "DELIVERED"),
+                new JournalOp(null, ticket(3, "c-1"), "FAILED")));
+
+        assertEquals("PENDING", folded.inserts().get(0).entity().getStatus());
+        assertEquals(2, folded.updates().size());
+        assertEquals(4, folded.updates().get(0).ticket().seq());
+        assertEquals(3, folded.updates().get(1).ticket().seq());
+    }
+
+    @Test
+    void lastTransitionOfARowWins() {
+        Folded folded = MessageJournal.fold(List.of(
+                new JournalOp(null, ticket(7, "c-1"), "DELIVERED"),
+                new JournalOp(null, ticket(7, "c-1"), "FAILED")));
+
+        assertEquals(1, folded.updates().size());
+        assertEquals("FAILED", folded.updates().get(0).status());
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void aLaterStatusChangeUpdatesTheInsertedRowByItsId() throws Exception {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        Connection con = mock(Connection.class);
+        PreparedStatement insert = mock(PreparedStatement.class);
+        ResultSet keys = mock(ResultSet.class);
+        when(con.prepareStatement(anyString(), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(insert);
+        when(insert.getGeneratedKeys()).thenReturn(keys);
+        when(keys.next()).thenReturn(true, false);
+        when(keys.getLong(1)).thenReturn(42L);
+        when(jdbc.execute(any(ConnectionCallback.class)))
+                .thenAnswer(inv -> ((ConnectionCallback<?>) inv.getArgument(0)).doInConnection(con));
+        MessageJournal journal = new MessageJournal(jdbc, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(journal, "capacity", 100);
+        ReflectionTestUtils.setField(journal, "batchSize", 10);
+        ReflectionTestUtils.setField(journal, "flushIntervalMs", 10L);
+        ReflectionTestUtils.setField(journal, "maxRetries", 1);
+        journal.start();
+
+        Ticket ticket = journal.record(row("c-1"));
+        verify(insert, timeout(2_000)).executeBatch();
+        journal.markStatus(ticket, "DELIVERED");
+
+        ArgumentCaptor<Collection> updates = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<ParameterizedPreparedStatementSetter> setter =
+                ArgumentCaptor.forClass(ParameterizedPreparedStatementSetter.class);
+        verify(jdbc, timeout(2_000)).batchUpdate(contains("WHERE id = ?"), updates.capture(), eq(1), setter.capture());
+        journal.shutdown();
+
+        PreparedStatement update = mock(PreparedStatement.class);
+        setter.getValue().setValues(update, updates.getValue().iterator().next());
+        verify(update).setString(1, "DELIVERED");
+        verify(update).setLong(2, 42L);
+        verify(update).setTimestamp(3, Timestamp.from(NOW));
+    }
+}
@@ -0,0 +1,116 @@
+package org.logan.kernel.persistence;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MessageRetentionTest {
+
+    private static final YearMonth OCT_2026 = YearMonth.of(2026, 10);
+
+    private JdbcTemplate jdbc;
+    private MessageRetention retention;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = mock(JdbcTemplate.class);
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        retention = new MessageRetention(jdbc, meters);
+        ReflectionTestUtils.setField(retention, "retentionMonths", 3);
+        ReflectionTestUtils.setField(retention, "monthsAhead", 2);
+        ReflectionTestUtils.setField(retention, "archive", false);
+        ReflectionTestUtils.setField(retention, "archived", meters.counter("kernel.messages.archived"));
+        ReflectionTestUtils.setField(retention, "dropped", meters.counter("kernel.messages.partitions.dropped"));
+        when(jdbc.queryForObject(startsWith("SELECT COUNT(*)"), eq(Long.class))).thenReturn(0L);
+    }
+
+    private void partitions(String... names) {
+        when(jdbc.queryForList(anyString(), eq(String.class))).thenReturn(List.of(names));
+    }
+
+    @Test
+    void partitionNamesRoundTrip() {
+        assertEquals("p202610", MessageRetention.partitionName(OCT_2026));
+        assertEquals("p202701", MessageRetention.partitionName(YearMonth.of(2027, 1)));
+        assertEquals(OCT_2026, MessageRetention.monthOf("p202610"));
+        assertNull(MessageRetention.monthOf("pmax"));
+        assertNull(MessageRetention.monthOf("p2026"));
+    }
+
+    @Test
+    void eachMonthIsBoundedByTheFirstOfTheNextAcrossTheYearEnd() {
+        assertEquals("PARTITION p202611 VALUES LESS THAN (UNIX_TIMESTAMP('2026-12-01 00:00:00')), "
+                        + "PARTITION p202612 VALUES LESS THAN (UNIX_TIMESTAMP('2027-01-01 00:00:00')), "
+                        + "PARTITION p202701 VALUES LESS THAN (UNIX_TIMESTAMP('2027-02-01 00:00:00')), ",
+                MessageRetention.partitionsThrough(OCT_2026, YearMonth.of(2027, 1)));
+        assertEquals("", MessageRetention.partitionsThrough(OCT_2026, OCT_2026));
+        assertEquals("", MessageRetention.partitionsThrough(OCT_2026, YearMonth.of(2026, 9)));
+    }
+
+    @Test
+    void onlyMonthsEntirelyBeforeTheWindowExpire() {
+        List<YearMonth> months = List.of(YearMonth.of(2026, 5), YearMonth.of(2026, 6), YearMonth.of(2026, 7),
+                YearMonth.of(2026, 8), OCT_2026);
+
+        assertEquals(List.of(YearMonth.of(2026, 5), YearMonth.of(2026, 6)),
+                MessageRetention.expired(months, OCT_2026, 3));
+        assertEquals(List.of(YearMonth.of(2026, 5), YearMonth.of(2026, 6), YearMonth.of(2026, 7),
+                YearMonth.of(2026, 8)), MessageRetention.expired(months, OCT_2026, 1));
+        assertEquals(MessageRetention.expired(months, OCT_2026, 1), MessageRetention.expired(months, OCT_2026, 0));
+        assertTrue(MessageRetention.expired(months, YearMonth.of(2026, 6), 3).isEmpty());
+    }
+
+    @Test
+    void maintainSplitsAheadThenDropsExpiredPartitions() {
+        partitions("p202605", "p202606", "p202607", "p202610", "pmax");
+
+        retention.maintain(OCT_2026);
+
+        InOrder order = inOrder(jdbc);
+        order.verify(jdbc).execute("ALTER TABLE messages REORGANIZE PARTITION pmax INTO ("
+                + MessageRetention.partitionsThrough(OCT_2026, YearMonth.of(2026, 12))
+                + "PARTITION pmax VALUES LESS THAN MAXVALUE)");
+        order.verify(jdbc).execute("ALTER TABLE messages DROP PARTITION p202605");
+        order.verify(jdbc).execute("ALTER TABLE messages DROP PARTITION p202606");
+        verify(jdbc, never()).execute("ALTER TABLE messages DROP PARTITION p202607");
+    }
+
+    @Test
+    void aLayoutAlreadyAheadIsLeftAlone() {
+        partitions("p202610", "p202611", "p202612", "pmax");
+
+        retention.maintain(OCT_2026);
+
+        verify(jdbc, never()).execute(anyString());
+    }
+
+    @Test
+    void aFilledPmaxIsStillSplitIntoEveryMonthItCovers() {
+        partitions("p202610", "pmax");
+        when(jdbc.queryForObject(startsWith("SELECT COUNT(*)"), eq(Long.class))).thenReturn(1234L);
+
+        retention.maintain(YearMonth.of(2027, 3));
+
+        verify(jdbc).execute(contains("PARTITION p202611 VALUES LESS THAN (UNIX_TIMESTAMP('2026-12-01 00:00:00'))"));
+        verify(jdbc).execute(contains("PARTITION p202705 VALUES LESS THAN (UNIX_TIMESTAMP('2027-06-01 00:00:00'))"));
+    }
+
+    @Test
+    void anUnpartitionedTableIsSkipped() {
+        partitions();
+
+        retention.maintain(OCT_2026);
+
+        verify(jdbc, never()).execute(anyString());
+    }
+}
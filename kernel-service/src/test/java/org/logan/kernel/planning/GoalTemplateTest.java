@@ -0,0 +1,100 @@
+package org.logan.kernel.planning;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GoalTemplateTest {
+
+    @Test
+    void extractsEntitiesIntoPlaceholders() {
+        GoalTemplate goal = GoalTemplate.of("Pay 500 to Alice.");
+
+        assertEquals("pay {0} to {1}", goal.key());
+        assertEquals(List.of("500", "Alice"), goal.params());
+        assertEquals(goal.key(), GoalTemplate.of("pay 75 to Bob").key());
+    }
+
+    @Test
+    void roundTripsThroughPlaceholders() {
+        GoalTemplate stored = GoalTemplate.of("Pay 500 to Alice");
+        String template = stored.parameterize("Transfer 500 from the main account to Alice");
+
+        assertEquals("Transfer {0} from the main account to {1}", template);
+        assertEquals("Transfer 75 from the main account to Bob", GoalTemplate.of("pay 75 to Bob").instantiate(template));
+    }
+
+    @Test
+    void parameterizeIsOnePassForOverlappingValues() {
+        GoalTemplate goal = new GoalTemplate("move {0} then {1}", List.of("1", "10"));
+
+        // "10" is not split into "{0}0", and "1" does not hit the "{1}" just written
+        assertEquals("move {1} then {0}", goal.parameterize("move 10 then 1"));
+    }
+
+    @Test
+    void parameterizeOnlyReplacesWholeTokens() {
+        GoalTemplate goal = GoalTemplate.of("Order 5 copies for Alice");
+        Set<Integer> used = new HashSet<>();
+        List<String> texts = List.of(goal.parameterize("Fill form 1500 to order 5 copies for Alice", used),
+                goal.parameterize("Notify Alicea that Alice ordered", used));
+
+        assertEquals(List.of("Fill form 1500 to order {0} copies for {1}", "Notify Alicea that {1} ordered"), texts);
+        assertTrue(goal.faithful(used, texts));
+    }
+
+    @Test
+    void instantiateDoesNotRefillSubstitutedValues() {
+        GoalTemplate goal = new GoalTemplate("note {0} for {1}", List.of("literally {1}", "Bob"));
+
+        assertEquals("note literally {1} for Bob", goal.instantiate("note {0} for {1}"));
+    }
+
+    @Test
+    void instantiateLeavesUnknownPlaceholders() {
+        GoalTemplate goal = new GoalTemplate("pay {0}", List.of("5"));
+
+        assertEquals("pay 5 with {3}", goal.instantiate("pay {0} with {3}"));
+    }
+
+    @Test
+    void faithfulWhenEveryEntityWasSubstituted() {
+        GoalTemplate goal = GoalTemplate.of("Pay 500 to Alice");
+        Set<Integer> used = new HashSet<>();
+        List<String> texts = List.of(goal.parameterize("Look up Alice", used), goal.parameterize("Send 500 to Alice", used));
+
+        assertTrue(goal.faithful(used, texts));
+    }
+
+    @Test
+    void notFaithfulWhenTheModelRephrasedAnEntity() {
+        GoalTemplate goal = GoalTemplate.of("Pay 500 to Alice");
+        Set<Integer> used = new HashSet<>();
+        List<String> texts = List.of(goal.parameterize("Send 500.00 to alice", used));
+
+        assertEquals(List.of("Send {0}.00 to alice"), texts);
+        assertFalse(goal.faithful(used, texts));   // the name never became a placeholder
+    }
+
+    @Test
+    void notFaithfulWhenARawLiteralRemainsInAnotherCase() {
+        GoalTemplate goal = GoalTemplate.of("Pay 500 to Alice");
+        Set<Integer> used = new HashSet<>();
+        List<String> texts = List.of(goal.parameterize("Send 500 to Alice and email ALICE", used));
+
+        assertFalse(goal.faithful(used, texts));
+    }
+
+    @Test
+    void notFaithfulWhenTwoEntitiesShareAValue() {
+        GoalTemplate goal = GoalTemplate.of("Move 5 from 5");
+        Set<Integer> used = new HashSet<>();
+        List<String> texts = List.of(goal.parameterize("Move 5 from account 5", used));
+
+        assertFalse(goal.faithful(used, texts));
+    }
+}
@@ -0,0 +1,96 @@
+package org.logan.kernel.planning;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.tools.AgentToolCatalog;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PlanCacheTest {
+
+    private static final List<Map<String, Object>> PAY_ALICE =
+            List.of(Map.of("id", "s1", "agent", "payments", "action", "Pay 500 to Alice"));
+
+    private final AgentToolCatalog catalog = mock(AgentToolCatalog.class);
+    private final JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    private PlanCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(catalog.snapshot()).thenReturn(new AgentToolCatalog.Snapshot(1, Map.of("payments", List.of("pay"))));
+        cache = new PlanCache(catalog, jdbc, new ObjectMapper(), new SimpleMeterRegistry(), 10);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 3600L);
+        cache.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.stop();
+    }
+
+    @Test
+    void replaysAPlanWithTheNewGoalsEntities() {
+        cache.store(GoalTemplate.of("Pay 500 to Alice"), cache.catalogHash(), PAY_ALICE, 0);
+
+        List<Map<String, Object>> plan = cache.lookup(GoalTemplate.of("pay 75 to Bob")).orElseThrow();
+
+        assertEquals("Pay 75 to Bob", plan.get(0).get("action"));
+        assertEquals("payments", plan.get(0).get("agent"));
+    }
+
+    @Test
+    void doesNotCacheAPlanThatRephrasedAnEntity() {
+        cache.store(GoalTemplate.of("Pay 500 to Alice"), cache.catalogHash(),
+                List.of(Map.of("id", "s1", "agent", "payments", "action", "Pay 500 to alice smith")), 0);
+
+        assertTrue(cache.lookup(GoalTemplate.of("pay 75 to Bob")).isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void aPlanMadeAgainstACatalogThatChangedMeanwhileIsNotCached() {
+        String before = cache.catalogHash();
+        when(catalog.snapshot()).thenReturn(new AgentToolCatalog.Snapshot(2, Map.of("billing", List.of("pay"))));
+
+        cache.store(GoalTemplate.of("Pay 500 to Alice"), before, PAY_ALICE, 0);
+
+        assertTrue(cache.lookup(GoalTemplate.of("pay 75 to Bob")).isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aPersistedPlanKeepsItsAgeWhenLoaded() throws Exception {
+        ReflectionTestUtils.setField(cache, "persist", true);
+        ResultSet row = mock(ResultSet.class);
+        when(row.getString("plan")).thenReturn(new ObjectMapper().writeValueAsString(PAY_ALICE));
+        when(row.getTimestamp("created_at")).thenReturn(Timestamp.from(Instant.now().minusSeconds(3000)));
+        when(jdbc.query(anyString(), any(RowMapper.class), any(), any(), any()))
+                .thenAnswer(inv -> List.of(((RowMapper<?>) inv.getArgument(1)).mapRow(row, 0)))
+                .thenReturn(List.of());
+
+        assertTrue(cache.lookup(GoalTemplate.of("pay 75 to Bob")).isPresent());
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 1800L);
+
+        // Loaded 3000s after it was planned: past a 30 minute TTL even though it was just read
+        assertTrue(cache.lookup(GoalTemplate.of("pay 75 to Bob")).isEmpty());
+        assertEquals(0, cache.size());
+    }
+}
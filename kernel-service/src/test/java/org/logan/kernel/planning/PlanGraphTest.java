@@ -0,0 +1,116 @@
+package org.logan.kernel.planning;
+
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.planning.PlanGraph.StepState;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanGraphTest {
+
+    private static Map<String, Object> step(String id, String agent, Object dependsOn) {
+        Map<String, Object> step = new LinkedHashMap<>();
+        step.put("id", id);
+        step.put("agent", agent);
+        if (dependsOn != null) step.put("dependsOn", dependsOn);
+        return step;
+    }
+
+    private static List<String> ids(List<Map<String, Object>> steps) {
+        return steps.stream().map(PlanGraph::id).toList();
+    }
+
+    @Test
+    void aPlanWithoutDependsOnRunsInOrder() {
+        List<Map<String, Object>> plan = PlanGraph.normalize(List.of(
+                step("a", "x", null), step("b", "y", null), step("c", "z", null)));
+
+        assertEquals(List.of(), PlanGraph.dependsOn(plan.get(0)));
+        assertEquals(List.of("a"), PlanGraph.dependsOn(plan.get(1)));
+        assertEquals(List.of("b"), PlanGraph.dependsOn(plan.get(2)));
+    }
+
+    @Test
+    void aCycleFallsBackToSequentialOrder() {
+        List<Map<String, Object>> plan = PlanGraph.normalize(List.of(
+                step("a", "x", List.of("c")), step("b", "y", List.of("a")), step("c", "z", List.of("b"))));
+
+        assertEquals(List.of(), PlanGraph.dependsOn(plan.get(0)));
+        assertEquals(List.of("a"), PlanGraph.dependsOn(plan.get(1)));
+        assertEquals(List.of("b"), PlanGraph.dependsOn(plan.get(2)));
+        assertEquals(List.of("a"), ids(PlanGraph.ready(plan, new HashMap<>(), 8)));
+    }
+
+    @Test
+    void selfAndUnknownDependenciesAreIgnoredNotTreatedAsCycles() {
+        List<Map<String, Object>> plan = PlanGraph.normalize(List.of(
+                step("a", "x", List.of("a", "nope")), step("b", "y", "a"), step("c", "z", List.of())));
+
+        assertEquals(List.of(), PlanGraph.dependsOn(plan.get(0)));
+        assertEquals(List.of("a"), PlanGraph.dependsOn(plan.get(1)));
+        assertEquals(List.of("a", "c"), ids(PlanGraph.ready(plan, new HashMap<>(), 8)));
+    }
+
+    @Test
+    void duplicateAndMissingIdsAreMadeUnique() {
+        List<Map<String, Object>> plan = PlanGraph.normalize(List.of(
+                step("a", "x", null), step("a", "y", null), step(null, "z", null)));
+
+        assertEquals(3, new HashSet<>(ids(plan)).size());
+        assertEquals("s3", PlanGraph.id(plan.get(2)));
+    }
+
+    @Test
+    void readyStopsAtTheParallelismCap() {
+        List<Map<String, Object>> plan = PlanGraph.normalize(List.of(
+                step("a", "w", List.of()), step("b", "x", List.of()), step("c", "y", List.of()), step("d", "z", List.of())));
+        Map<String, StepState> states = new HashMap<>();
+
+        assertEquals(List.of("a", "b"), ids(PlanGraph.ready(plan, states, 2)));
+
+        states.put("a", StepState.RUNNING);
+        assertEquals(List.of("b"), ids(PlanGraph.ready(plan, states, 2)));
+
+        states.put("b", StepState.RUNNING);
+        assertEquals(List.of(), ids(PlanGraph.ready(plan, states, 2)));
+
+        states.put("a", StepState.DONE);
+        assertEquals(List.of("c"), ids(PlanGraph.ready(plan, states, 2)));
+    }
+
+    @Test
+    void aCapBelowOneStillLetsOneStepRun() {
+        List<Map<String, Object>> plan = PlanGraph.normalize(List.of(
+                step("a", "x", List.of()), step("b", "y", List.of())));
+
+        assertEquals(List.of("a"), ids(PlanGraph.ready(plan, new HashMap<>(), 0)));
+    }
+
+    @Test
+    void anAgentRunsOneStepAtATimeEvenWhilePaused() {
+        List<Map<String, Object>> plan = PlanGraph.normalize(List.of(
+                step("a", "x", List.of()), step("b", "x", List.of()), step("c", "y", List.of())));
+        Map<String, StepState> states = new HashMap<>();
+
+        assertEquals(List.of("a", "c"), ids(PlanGraph.ready(plan, states, 8)));
+
+        states.put("a", StepState.PAUSED);
+        assertEquals(List.of("c"), ids(PlanGraph.ready(plan, states, 8)));
+        assertEquals("a", PlanGraph.id(PlanGraph.activeStepOf(plan, states, "x").orElseThrow()));
+    }
+
+    @Test
+    void skippedDependenciesUnblockAndFinishThePlan() {
+        List<Map<String, Object>> plan = PlanGraph.normalize(List.of(
+                step("a", "x", List.of()), step("b", "y", List.of("a"))));
+        Map<String, StepState> states = new HashMap<>();
+        states.put("a", StepState.SKIPPED);
+
+        assertEquals(List.of("b"), ids(PlanGraph.ready(plan, states, 8)));
+        assertFalse(PlanGraph.finished(plan, states));
+
+        states.put("b", StepState.DONE);
+        assertTrue(PlanGraph.finished(plan, states));
+    }
+}
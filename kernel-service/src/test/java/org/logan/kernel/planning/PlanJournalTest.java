@@ -0,0 +1,236 @@
+package org.logan.kernel.planning;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.logan.kernel.planning.PlanGraph.StepState;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanJournalTest {
+
+    private static final String NAME = "agent-1";
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private PlanJournal open(int snapshotEvery) {
+        return new PlanJournal(NAME, dir, mapper, 0, snapshotEvery, 60_000);
+    }
+
+    private Path log() {
+        return dir.resolve(NAME + ".journal.ndjson");
+    }
+
+    private Path snapshot() {
+        return dir.resolve(NAME + ".snapshot.json");
+    }
+
+    private Path passivatedFile(String sessionId) {
+        return dir.resolve(NAME + ".passivated").resolve(Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sessionId.getBytes(StandardCharsets.UTF_8)) + ".json");
+    }
+
+    private static List<Map<String, Object>> plan(String... agents) {
+        List<Map<String, Object>> plan = new ArrayList<>();
+        for (int i = 0; i < agents.length; i++) {
+            Map<String, Object> step = new LinkedHashMap<>();
+            step.put("id", "s" + (i + 1));
+            step.put("agent", agents[i]);
+            step.put("dependsOn", i > 0 ? List.of("s" + i) : List.of());
+            plan.add(step);
+        }
+        return plan;
+    }
+
+    /** Three sessions: one done and cleared, one mid-way, one just planned. */
+    private static void writeHistory(PlanJournal journal) {
+        journal.planCreated("done", plan("x"));
+        journal.stepChanged("done", "s1", StepState.RUNNING);
+        journal.stepChanged("done", "s1", StepState.DONE);
+        journal.planCleared("done");
+        journal.planCreated("busy", plan("x", "y"));
+        journal.stepChanged("busy", "s1", StepState.RUNNING);
+        journal.stepChanged("busy", "s1", StepState.DONE);
+        journal.stepChanged("busy", "s2", StepState.PAUSED);
+        journal.planCreated("fresh", plan("z")).join();
+    }
+
+    private static void assertHistory(PlanJournal.State state) {
+        assertEquals(Set.of("busy", "fresh"), state.plans().keySet());
+        assertEquals(plan("x", "y"), state.plans().get("busy"));
+        assertEquals(Map.of("s1", StepState.DONE, "s2", StepState.PAUSED), state.steps().get("busy"));
+        assertEquals(Map.of(), state.steps().get("fresh"));
+    }
+
+    @Test
+    void reopeningReplaysTheLog() {
+        try (PlanJournal journal = open(1_000)) {
+            writeHistory(journal);
+        }
+        try (PlanJournal journal = open(1_000)) {
+            assertHistory(journal.recovered());
+        }
+    }
+
+    @Test
+    void snapshotPlusLogReplaysToTheSameState() {
+        try (PlanJournal journal = open(4)) {
+            writeHistory(journal);
+            journal.stepChanged("fresh", "s1", StepState.RUNNING).join();
+        }
+        assertTrue(Files.exists(snapshot()), "no snapshot was taken");
+
+        try (PlanJournal journal = open(4)) {
+            PlanJournal.State state = journal.recovered();
+            assertEquals(Map.of("s1", StepState.RUNNING), state.steps().get("fresh"));
+            assertEquals(Map.of("s1", StepState.DONE, "s2", StepState.PAUSED), state.steps().get("busy"));
+        }
+    }
+
+    @Test
+    void replayingRecordsAlreadyInTheSnapshotChangesNothing() throws Exception {
+        // Crash window: the snapshot was replaced but the log was not cut yet
+        try (PlanJournal journal = open(1_000)) {
+            writeHistory(journal);
+        }
+        byte[] uncutLog = Files.readAllBytes(log());
+
+        try (PlanJournal journal = open(1)) {
+            // Already the recorded state; the commit of this record triggers the snapshot
+            journal.stepChanged("busy", "s2", StepState.PAUSED).join();
+        }
+        assertTrue(Files.exists(snapshot()));
+        Files.write(log(), uncutLog);
+
+        try (PlanJournal journal = open(1_000)) {
+            assertHistory(journal.recovered());
+        }
+    }
+
+    @Test
+    void aTornLastLineIsSkipped() throws Exception {
+        try (PlanJournal journal = open(1_000)) {
+            writeHistory(journal);
+        }
+        Files.writeString(log(), "{\"op\":\"step\",\"session\":\"bu", StandardOpenOption.APPEND);
+
+        try (PlanJournal journal = open(1_000)) {
+            assertHistory(journal.recovered());
+        }
+    }
+
+    @Test
+    void aPassivatedSessionSurvivesARestartAndComesBack() throws Exception {
+        try (PlanJournal journal = open(1_000)) {
+            writeHistory(journal);
+            journal.passivate("busy", new PlanRun(plan("x", "y"), Map.of("s1", StepState.DONE, "s2", StepState.PAUSED)));
+        }
+
+        try (PlanJournal journal = open(1_000)) {
+            assertTrue(journal.isPassivated("busy"));
+            assertFalse(journal.recovered().plans().containsKey("busy"));
+
+            PlanRun run = journal.activate("busy").orElseThrow();
+            assertEquals(plan("x", "y"), run.plan());
+            assertEquals(Map.of("s1", StepState.DONE, "s2", StepState.PAUSED), run.states());
+            assertFalse(journal.isPassivated("busy"));
+            assertTrue(journal.activate("busy").isEmpty());
+        }
+
+        try (PlanJournal journal = open(1_000)) {
+            assertHistory(journal.recovered());
+            assertEquals(0, journal.passivatedCount());
+            assertFalse(Files.exists(passivatedFile("busy")));
+        }
+    }
+
+    @Test
+    void aPassivationThatNeverReachedTheLogKeepsTheLoggedSession() throws Exception {
+        // Crash window: the session file was written, the passivate record was not
+        try (PlanJournal journal = open(1_000)) {
+            writeHistory(journal);
+            journal.passivate("busy", new PlanRun(plan("x", "y"), Map.of("s1", StepState.DONE)));
+        }
+        List<String> lines = new ArrayList<>(Files.readAllLines(log()));
+        assertTrue(lines.remove(lines.size() - 1).contains("\"passivate\""));
+        Files.write(log(), lines);
+
+        try (PlanJournal journal = open(1_000)) {
+            assertHistory(journal.recovered());
+            assertFalse(journal.isPassivated("busy"));
+            assertFalse(Files.exists(passivatedFile("busy")), "stale session file was kept");
+        }
+    }
+
+    @Test
+    void anActivationThatReachedTheLogWinsOverAStaleSessionFile() throws Exception {
+        // Crash window: the activate record is durable, the session file was not deleted yet
+        byte[] sessionFile;
+        try (PlanJournal journal = open(1_000)) {
+            writeHistory(journal);
+            journal.passivate("busy", new PlanRun(plan("x", "y"), Map.of("s1", StepState.DONE, "s2", StepState.PAUSED)));
+            sessionFile = Files.readAllBytes(passivatedFile("busy"));
+            journal.activate("busy").orElseThrow();
+        }
+        Files.write(passivatedFile("busy"), sessionFile);
+
+        try (PlanJournal journal = open(1_000)) {
+            assertHistory(journal.recovered());
+            assertFalse(journal.isPassivated("busy"));
+            assertFalse(Files.exists(passivatedFile("busy")), "stale session file was kept");
+        }
+    }
+
+    @Test
+    void aSessionActivatedAndThenClearedIsNotBroughtBackByAStaleFile() throws Exception {
+        // Crash window: activate and clear are durable, the session file was not deleted yet
+        byte[] sessionFile;
+        try (PlanJournal journal = open(1_000)) {
+            writeHistory(journal);
+            journal.passivate("busy", new PlanRun(plan("x", "y"), Map.of("s1", StepState.DONE, "s2", StepState.PAUSED)));
+            sessionFile = Files.readAllBytes(passivatedFile("busy"));
+            journal.activate("busy").orElseThrow();
+            journal.planCleared("busy").join();
+        }
+        Files.write(passivatedFile("busy"), sessionFile);
+
+        try (PlanJournal journal = open(1_000)) {
+            assertFalse(journal.recovered().plans().containsKey("busy"));
+            assertFalse(journal.isPassivated("busy"));
+            assertFalse(Files.exists(passivatedFile("busy")), "stale session file was kept");
+        }
+    }
+
+    @Test
+    void aPassivatedSessionSurvivesASnapshot() throws Exception {
+        try (PlanJournal journal = open(2)) {
+            writeHistory(journal);
+            journal.passivate("busy", new PlanRun(plan("x", "y"), Map.of("s1", StepState.DONE, "s2", StepState.PAUSED)));
+            journal.planCreated("later", plan("z")).join();
+        }
+        assertFalse(Files.readString(log()).contains("\"passivate\""), "the passivate record is only in the snapshot");
+
+        try (PlanJournal journal = open(2)) {
+            assertTrue(journal.isPassivated("busy"));
+            assertEquals(plan("x", "y"), journal.activate("busy").orElseThrow().plan());
+        }
+    }
+
+    @Test
+    void withoutADirectoryNothingIsKept() {
+        try (PlanJournal journal = new PlanJournal(NAME, null, mapper, 0, 1, 60_000)) {
+            assertTrue(journal.planCreated("s", plan("x")).isDone());
+            assertTrue(journal.recovered().plans().isEmpty());
+            assertEquals(0, journal.passivateAfterMs());
+        }
+    }
+}
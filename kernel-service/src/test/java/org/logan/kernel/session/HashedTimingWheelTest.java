@@ -0,0 +1,79 @@
+package org.logan.kernel.session;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 4;   // one revolution = 40 ms
+
+    private final HashedTimingWheel wheel = new HashedTimingWheel("timing-wheel-test", TICK_MS, WHEEL_SIZE);
+
+    @AfterEach
+    void stop() {
+        wheel.stop();
+    }
+
+    @Test
+    void aDelayLongerThanTheWheelWaitsOutItsRounds() throws Exception {
+        long delayMs = 200;   // five revolutions
+        CountDownLatch fired = new CountDownLatch(1);
+        long[] firedAfterMs = new long[1];
+        long scheduled = System.nanoTime();
+        wheel.schedule(() -> {
+            firedAfterMs[0] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scheduled);
+            fired.countDown();
+        }, delayMs, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS), "task never ran");
+        // Whole-millisecond truncation of the wheel's clock can shave at most a tick off
+        assertTrue(firedAfterMs[0] >= delayMs - TICK_MS, "ran after " + firedAfterMs[0] + " ms, before its rounds");
+        assertEquals(0, wheel.pendingCount());
+    }
+
+    @Test
+    void tasksSharingABucketFireInDeadlineOrder() throws Exception {
+        // 2 and 6 ticks land in the same bucket, one revolution apart
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch both = new CountDownLatch(2);
+        wheel.schedule(() -> { order.add("late"); both.countDown(); }, 6 * TICK_MS, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> { order.add("early"); both.countDown(); }, 2 * TICK_MS, TimeUnit.MILLISECONDS);
+
+        assertTrue(both.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of("early", "late"), order);
+    }
+
+    @Test
+    void aCancelledTaskNeverRunsAndIsSwept() throws Exception {
+        AtomicBoolean ran = new AtomicBoolean();
+        HashedTimingWheel.Timeout timeout = wheel.schedule(() -> ran.set(true), 50, TimeUnit.MILLISECONDS);
+        CountDownLatch later = new CountDownLatch(1);
+        wheel.schedule(later::countDown, 150, TimeUnit.MILLISECONDS);
+        assertEquals(2, wheel.pendingCount());
+
+        timeout.cancel();
+        assertTrue(timeout.isCancelled());
+
+        assertTrue(later.await(2, TimeUnit.SECONDS));
+        assertFalse(ran.get());
+        assertEquals(0, wheel.pendingCount());
+    }
+
+    @Test
+    void aFailingTaskDoesNotStopTheWheel() throws Exception {
+        wheel.schedule(() -> { throw new IllegalStateException("boom"); }, TICK_MS, TimeUnit.MILLISECONDS);
+        CountDownLatch next = new CountDownLatch(1);
+        wheel.schedule(next::countDown, 3 * TICK_MS, TimeUnit.MILLISECONDS);
+
+        assertTrue(next.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,81 @@
+package org.logan.kernel.session;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionEventLogTest {
+
+    private static final int MEMORY_LIMIT = 4;
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicLong retainedBytes = new AtomicLong();
+
+    private static Map<String, Object> event(int seq) {
+        return Map.of("seq", seq, "type", "STEP");
+    }
+
+    private static List<Integer> seqs(List<Map<String, Object>> events) {
+        return events.stream().map(e -> ((Number) e.get("seq")).intValue()).toList();
+    }
+
+    @Test
+    void snapshotKeepsInsertionOrderAcrossSpillAndMemory() {
+        Path spill = dir.resolve("session.ndjson");
+        SessionEventLog log = new SessionEventLog(MEMORY_LIMIT, spill, mapper, retainedBytes);
+        for (int i = 0; i < 11; i++) log.add(event(i));
+
+        assertTrue(Files.exists(spill), "older events were not spilled");
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10), seqs(log.snapshot()));
+        assertEquals(11, log.size());
+        assertEquals(0, log.droppedCount());
+    }
+
+    @Test
+    void withoutASpillFileTheOldestAreDropped() {
+        SessionEventLog log = new SessionEventLog(MEMORY_LIMIT, null, mapper, retainedBytes);
+        for (int i = 0; i < 10; i++) log.add(event(i));
+
+        List<Integer> kept = seqs(log.snapshot());
+        assertEquals(10, kept.size() + log.droppedCount());
+        assertEquals(kept.size(), log.size());
+        // What is left is the newest run, still in order
+        assertEquals(9, kept.get(kept.size() - 1));
+        for (int i = 1; i < kept.size(); i++) assertEquals(kept.get(i - 1) + 1, kept.get(i));
+    }
+
+    @Test
+    void retainedBytesTrackOnlyWhatIsInMemory() {
+        SessionEventLog log = new SessionEventLog(MEMORY_LIMIT, dir.resolve("bytes.ndjson"), mapper, retainedBytes);
+        long each = SessionEventLog.estimateBytes(event(0));
+        for (int i = 0; i < MEMORY_LIMIT; i++) log.add(event(i));
+        assertEquals(MEMORY_LIMIT * each, retainedBytes.get());
+
+        log.add(event(MEMORY_LIMIT));   // over the limit: half the limit moves to disk
+        assertEquals((MEMORY_LIMIT + 1 - MEMORY_LIMIT / 2) * each, retainedBytes.get());
+    }
+
+    @Test
+    void discardReleasesHeapAndDeletesTheSpill() {
+        Path spill = dir.resolve("discard.ndjson");
+        SessionEventLog log = new SessionEventLog(MEMORY_LIMIT, spill, mapper, retainedBytes);
+        for (int i = 0; i < 9; i++) log.add(event(i));
+        assertTrue(Files.exists(spill));
+
+        log.discard();
+
+        assertEquals(0, retainedBytes.get());
+        assertFalse(Files.exists(spill));
+    }
+}
@@ -0,0 +1,86 @@
+package org.logan.kernel.session;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionRegistryTest {
+
+    private SessionRegistry sessions;
+
+    @BeforeEach
+    void setUp() {
+        sessions = new SessionRegistry(new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(sessions, "idleTtlSeconds", 900L);
+        ReflectionTestUtils.setField(sessions, "absoluteTtlSeconds", 3600L);
+        ReflectionTestUtils.setField(sessions, "waiterTimeoutSeconds", 300L);
+        ReflectionTestUtils.setField(sessions, "eventMemoryLimit", 100);
+        ReflectionTestUtils.setField(sessions, "wheelTickMs", 100L);
+        sessions.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessions.stop();
+    }
+
+    @Test
+    void aFollowUpChatJoinsTheRunningSession() {
+        PendingSession first = sessions.open("s-1");
+        first.addAudit(Map.of("message", "first"));
+
+        PendingSession second = sessions.open("s-1");
+
+        assertSame(first, second);
+        assertEquals(1, second.getAudit().size());
+        assertFalse(first.completion().isDone());
+    }
+
+    @Test
+    void aFinishedSessionIsReplacedByAFreshOne() {
+        PendingSession first = sessions.open("s-1");
+        first.complete(Map.of("ok", true));
+
+        PendingSession second = sessions.open("s-1");
+
+        assertNotSame(first, second);
+        assertFalse(second.completion().isDone());
+    }
+
+    @Test
+    void theSessionEndsWhenItsLastCallerLeaves() {
+        PendingSession ps = sessions.open("s-1");
+        sessions.open("s-1");
+
+        sessions.leave("s-1", ps);
+        assertSame(ps, sessions.get("s-1"));
+
+        sessions.leave("s-1", ps);
+        assertNull(sessions.get("s-1"));
+    }
+
+    @Test
+    void noTtlRunsWhileTheSessionWaitsOnAPerson() throws Exception {
+        ReflectionTestUtils.setField(sessions, "idleTtlSeconds", 1L);
+        ReflectionTestUtils.setField(sessions, "absoluteTtlSeconds", 1L);
+        PendingSession ps = sessions.open("s-1");
+        sessions.waitOnPerson("s-1");
+
+        Thread.sleep(2_000);
+        assertEquals(1, sessions.liveSessions());
+        assertFalse(ps.completion().isDone());
+
+        sessions.personResponded("s-1");
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (sessions.liveSessions() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+        assertEquals(0, sessions.liveSessions());
+        assertTrue(ps.completion().isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,106 @@
+package org.logan.kernel.sse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SseBroadcasterTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private SseBroadcaster sse;
+    private long bootSeed;
+
+    @BeforeEach
+    void setUp() {
+        sse = new SseBroadcaster(mapper, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(sse, "dispatchCapacity", 100);
+        ReflectionTestUtils.setField(sse, "clientCapacity", 16);
+        ReflectionTestUtils.setField(sse, "evictAfterMs", 1000L);
+        ReflectionTestUtils.setField(sse, "heartbeatSeconds", 60L);
+        ReflectionTestUtils.setField(sse, "globalReplayCapacity", 16);
+        ReflectionTestUtils.setField(sse, "sessionReplayCapacity", 16);
+        ReflectionTestUtils.setField(sse, "maxReplaySessions", 1);
+        ReflectionTestUtils.setField(sse, "delayTargetMs", 50L);
+        ReflectionTestUtils.setField(sse, "delayIntervalMs", 500L);
+        sse.start();
+        bootSeed = (long) ReflectionTestUtils.getField(sse, "bootSeed");
+    }
+
+    @AfterEach
+    void tearDown() {
+        sse.stop();
+    }
+
+    /** Broadcast and wait until the dispatcher has retained the events. */
+    private void publish(String... sessionIds) throws InterruptedException {
+        for (String sid : sessionIds) sse.broadcast(Map.of("type", "reasoning", "sessionId", sid));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (missed(null, bootSeed).size() < sessionIds.length) {
+            if (System.currentTimeMillis() > deadline) fail("events were not dispatched");
+            Thread.sleep(10);
+        }
+    }
+
+    private List<SseFrame> missed(Set<String> filter, long lastId) {
+        synchronized (ReflectionTestUtils.getField(sse, "fanOutLock")) {
+            return sse.missedSince(filter, lastId);
+        }
+    }
+
+    private String type(SseFrame frame) throws Exception {
+        return mapper.readTree(frame.json()).path("type").asText();
+    }
+
+    @Test
+    void resumeWithinThisRunReplaysTheTail() throws Exception {
+        publish("s1", "s1");
+
+        List<SseFrame> frames = missed(null, bootSeed + 1);
+
+        assertEquals(1, frames.size());
+        assertEquals(bootSeed + 2, frames.get(0).id());
+        assertEquals("reasoning", type(frames.get(0)));
+    }
+
+    @Test
+    void resumeFromAnEarlierRunStartsWithResync() throws Exception {
+        publish("s1");
+
+        List<SseFrame> frames = missed(null, bootSeed - 10);
+
+        assertEquals(2, frames.size());
+        assertEquals("resync", type(frames.get(0)));
+        assertEquals(bootSeed, frames.get(0).id());
+        assertEquals("reasoning", type(frames.get(1)));
+
+        assertEquals("resync", type(missed(Set.of("s1"), bootSeed - 10).get(0)));
+    }
+
+    @Test
+    void evictionOfAnotherSessionIsNoGap() throws Exception {
+        publish("s1", "s2");   // one ring only: s1's is evicted
+
+        assertTrue(missed(Set.of("s3"), bootSeed).isEmpty());
+        assertEquals(1, missed(Set.of("s2"), bootSeed).size());
+        assertEquals("resync", type(missed(Set.of("s1"), bootSeed).get(0)));
+    }
+
+    @Test
+    void sessionRecreatedAfterEvictionStillReportsItsGap() throws Exception {
+        publish("s1", "s2", "s1");   // s1 evicted by s2, then a new ring for s1
+
+        List<SseFrame> frames = missed(Set.of("s1"), bootSeed);
+
+        assertEquals("resync", type(frames.get(0)));
+        assertEquals(bootSeed + 3, frames.get(1).id());
+    }
+}
@@ -0,0 +1,168 @@
+package org.logan.kernel.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.kernel.agent.Agent;
+import org.logan.kernel.agent.AgentHttpClient;
+import org.logan.kernel.agent.AgentLifecycleEvent;
+import org.logan.kernel.agent.AgentLifecycleEvent.Kind;
+import org.logan.kernel.agent.AgentRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AgentToolCatalogTest {
+
+    private AgentRegistry registry;
+    private AgentHttpClient http;
+    private AgentToolCatalog catalog;
+    private final List<HttpRequest> requests = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<HttpResponse<String>>> pending = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        registry = mock(AgentRegistry.class);
+        http = mock(AgentHttpClient.class);
+        when(http.sendAsync(any(HttpRequest.class), any())).thenAnswer(inv -> {
+            requests.add(inv.getArgument(0));
+            CompletableFuture<HttpResponse<String>> f = new CompletableFuture<>();
+            pending.add(f);
+            return f;
+        });
+        catalog = new AgentToolCatalog(registry, http, new ObjectMapper());
+        ReflectionTestUtils.setField(catalog, "resyncSeconds", 3600L);
+        catalog.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalog.stop();
+    }
+
+    private Agent register(String id, String endpoint) {
+        Agent agent = mock(Agent.class);
+        when(agent.getId()).thenReturn(id);
+        when(agent.getEndpoint()).thenReturn(endpoint);
+        when(registry.getAgent(id)).thenReturn(agent);
+        catalog.onAgentLifecycle(new AgentLifecycleEvent(id, "BEDROCK", endpoint, Kind.REGISTERED));
+        return agent;
+    }
+
+    private void deregister(String id) {
+        when(registry.getAgent(id)).thenReturn(null);
+        catalog.onAgentLifecycle(new AgentLifecycleEvent(id, "BEDROCK", null, Kind.DEREGISTERED));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpResponse<String> response(int status, String etag, String body) {
+        HttpResponse<String> resp = mock(HttpResponse.class);
+        when(resp.statusCode()).thenReturn(status);
+        when(resp.body()).thenReturn(body);
+        when(resp.headers()).thenReturn(HttpHeaders.of(
+                etag == null ? Map.of() : Map.of("ETag", List.of(etag)), (k, v) -> true));
+        return resp;
+    }
+
+    private void answer(int request, HttpResponse<String> resp) {
+        pending.get(request).complete(resp);
+    }
+
+    private String ifNoneMatch(int request) {
+        return requests.get(request).headers().firstValue("If-None-Match").orElse(null);
+    }
+
+    @Test
+    void aRegisteredAgentsToolsArePublishedSorted() {
+        register("a-1", "http://a-1");
+
+        answer(0, response(200, "\"boot-1\"", "[{\"name\":\"refund\"},{\"name\":\"charge\"},{\"other\":1}]"));
+
+        assertEquals("http://a-1/tools/list", requests.get(0).uri().toString());
+        assertNull(ifNoneMatch(0));
+        assertEquals(Map.of("a-1", List.of("charge", "refund")), catalog.snapshot().tools());
+        assertEquals(1, catalog.snapshot().version());
+    }
+
+    @Test
+    void aFetchThatLandsAfterDeregistrationIsDropped() {
+        register("a-1", "http://a-1");
+        deregister("a-1");
+
+        answer(0, response(200, "\"boot-1\"", "[{\"name\":\"charge\"}]"));
+
+        assertTrue(catalog.snapshot().tools().isEmpty());
+        assertEquals(0, catalog.snapshot().version());
+    }
+
+    @Test
+    void aFetchFromAReplacedAgentIsDroppedAndTheNewOneKept() {
+        register("a-1", "http://old");
+        register("a-1", "http://new");
+
+        answer(1, response(200, "\"boot-2\"", "[{\"name\":\"refund\"}]"));
+        answer(0, response(200, "\"boot-1\"", "[{\"name\":\"charge\"}]"));
+
+        assertEquals(Map.of("a-1", List.of("refund")), catalog.snapshot().tools());
+    }
+
+    @Test
+    void deregistrationRemovesAStoredEntry() {
+        register("a-1", "http://a-1");
+        answer(0, response(200, "\"boot-1\"", "[{\"name\":\"charge\"}]"));
+
+        deregister("a-1");
+
+        assertTrue(catalog.snapshot().tools().isEmpty());
+        assertEquals(2, catalog.snapshot().version());
+    }
+
+    @Test
+    void theLastEtagIsSentAndA304KeepsTheList() {
+        register("a-1", "http://a-1");
+        answer(0, response(200, "\"boot-1-3\"", "[{\"name\":\"charge\"}]"));
+
+        catalog.onAgentLifecycle(new AgentLifecycleEvent("a-1", "BEDROCK", "http://a-1", Kind.REGISTERED));
+        answer(1, response(304, "\"boot-1-3\"", null));
+
+        assertEquals("\"boot-1-3\"", ifNoneMatch(1));
+        assertEquals(Map.of("a-1", List.of("charge")), catalog.snapshot().tools());
+        assertEquals(1, catalog.snapshot().version());
+    }
+
+    @Test
+    void aRestartedAgentsNewEtagReplacesTheList() {
+        register("a-1", "http://a-1");
+        answer(0, response(200, "\"boot-1-3\"", "[{\"name\":\"charge\"}]"));
+
+        catalog.onAgentLifecycle(new AgentLifecycleEvent("a-1", "BEDROCK", "http://a-1", Kind.REGISTERED));
+        // Same version count after the restart, but another boot id: the agent answers in full
+        answer(1, response(200, "\"boot-2-3\"", "[{\"name\":\"refund\"}]"));
+
+        assertEquals(Map.of("a-1", List.of("refund")), catalog.snapshot().tools());
+        catalog.onAgentLifecycle(new AgentLifecycleEvent("a-1", "BEDROCK", "http://a-1", Kind.REGISTERED));
+        assertEquals("\"boot-2-3\"", ifNoneMatch(2));
+    }
+
+    @Test
+    void invalidateFetchesUnconditionallyAndKeepsServingTheOldList() {
+        register("a-1", "http://a-1");
+        answer(0, response(200, "\"boot-1\"", "[{\"name\":\"charge\"}]"));
+
+        catalog.invalidate("a-1");
+
+        assertNull(ifNoneMatch(1));
+        assertEquals(Map.of("a-1", List.of("charge")), catalog.snapshot().tools());
+    }
+}
@@ -4,5 +4,18 @@ plugins {
 
 dependencies {
     implementation("com.fasterxml.jackson.core:jackson-databind:2.17.0")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-smile:2.17.0")
+    implementation("com.fasterxml.jackson.datatype:jackson-datatype-jsr310:2.17.0")
     implementation("org.bouncycastle:bcprov-jdk15on:1.70")
 }
+
+// ./gradlew :shared:codecBenchmark [-Penvelopes=recorded.ndjson]
+tasks.register<JavaExec>("codecBenchmark") {
+    group = "verification"
+    description = "Compares JSON, Smile and Smile+gzip envelope sizes and encode/decode cost"
+    classpath = sourceSets["test"].runtimeClasspath   // the harness lives with the tests, not in the jar
+    mainClass.set("org.logan.protocol.codec.EnvelopeCodecBenchmark")
+    if (project.hasProperty("envelopes")) {
+        args(project.property("envelopes").toString())
+    }
+}
@@ -0,0 +1,70 @@
+package org.logan.protocol;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Machine-readable result of one delegated step, carried in an agent's chat reply (and the
+ * {@code chat_result} built from it) under {@link #FIELD}.
+ *
+ * Agents derive it from their tool results and the model's stop reason, so the orchestrator
+ * can move on, pause for input or report a failure without asking a model to read the reply.
+ * {@link Status#AMBIGUOUS} means the agent couldn't tell; the orchestrator decides itself.
+ */
+public record StepOutcome(Status status, List<String> missingParameters, String reason) {
+
+    public static final String FIELD = "stepOutcome";
+
+    public enum Status {
+        SUCCESS("success"),
+        NEEDS_INPUT("needs_input"),
+        TOOL_FAILED("tool_failed"),
+        AMBIGUOUS("ambiguous");
+
+        private final String wire;
+
+        Status(String wire) {
+            this.wire = wire;
+        }
+
+        public String wire() {
+            return wire;
+        }
+
+        public static Status fromWire(String wire) {
+            for (Status s : values()) {
+                if (s.wire.equalsIgnoreCase(wire)) return s;
+            }
+            return null;
+        }
+    }
+
+    public StepOutcome {
+        missingParameters = missingParameters == null ? List.of() : List.copyOf(missingParameters);
+    }
+
+    public static StepOutcome of(Status status, String reason) {
+        return new StepOutcome(status, List.of(), reason);
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("status", status.wire());
+        map.put("missingParameters", missingParameters);
+        if (reason != null) map.put("reason", reason);
+        return map;
+    }
+
+    /** Read the outcome from a reply/chat_result map; null when absent or unrecognised. */
+    public static StepOutcome from(Map<?, ?> reply) {
+        if (reply == null || !(reply.get(FIELD) instanceof Map<?, ?> raw)) return null;
+        Status status = raw.get("status") instanceof String s ? Status.fromWire(s) : null;
+        if (status == null) return null;
+        List<String> missing = raw.get("missingParameters") instanceof List<?> list
+                ? list.stream().map(String::valueOf).toList()
+                : List.of();
+        Object reason = raw.get("reason");
+        return new StepOutcome(status, missing, reason != null ? reason.toString() : null);
+    }
+}
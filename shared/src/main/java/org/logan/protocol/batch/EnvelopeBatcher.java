@@ -0,0 +1,347 @@
+package org.logan.protocol.batch;
+
+import org.logan.protocol.MessageEnvelope;
+import org.logan.protocol.codec.EnvelopeCodec;
+import org.logan.protocol.codec.WireFormat;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 📦 EnvelopeBatcher: coalesces envelopes bound for the kernel into {@code POST /messages/batch}
+ * requests.
+ *
+ * Envelopes are queued and a single sender thread ships them in submission order: a batch
+ * closes when it holds {@code maxBatch} envelopes or its first envelope has waited
+ * {@code lingerMs}, and the next batch is only sent once the previous one was answered. The
+ * kernel dispatches a batch in array order, so per-session order is preserved end to end.
+ *
+ * {@link #submitNow} is for envelopes someone is waiting on (results, delegations): it cuts
+ * the linger window short and ships everything queued before it in the same request.
+ * {@link #flush} additionally waits until the kernel has answered, for callers about to
+ * reply through another channel; its future fails if any envelope it waited for was dropped.
+ *
+ * Items the kernel answers 429 or 5xx inside an accepted batch are sent again, in their
+ * order and before any later batch, within the same attempt budget as whole-batch retries.
+ * So are items it answers 409 (held back behind a refused item of their session, or behind
+ * a malformed one) and items the response has no result for at all. Only envelopes the
+ * caller marks {@code sheddable} are dropped on a 429 instead. A batch the codec or the
+ * transport throws on is dropped whole: sending it again would fail the same way.
+ */
+public class EnvelopeBatcher implements AutoCloseable {
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_BACKOFF_MS = 500;
+
+    private final String name;
+    private final URI batchUri;
+    private final HttpClient http;
+    private final EnvelopeCodec codec;
+    private final WireFormat format;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final Predicate<MessageEnvelope<?>> sheddable;
+    private final BlockingQueue<MessageEnvelope<?>> queue;
+    private final AtomicLong urgentRequests = new AtomicLong();
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong envelopesSent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final Object progress = new Object();
+    private long settled;   // accepted envelopes that were sent or given up on; guarded by progress
+    private final List<Flush> flushes = new ArrayList<>();   // guarded by progress
+    private final Thread sender;
+    private long urgentServed;
+    private volatile boolean running = true;
+
+    /**
+     * @param batchUri kernel batch endpoint, e.g. {@code http://localhost:8080/messages/batch}
+     * @param capacity envelopes queued before new ones are dropped
+     */
+    public EnvelopeBatcher(String name, URI batchUri, HttpClient http, EnvelopeCodec codec, WireFormat format,
+                           int maxBatch, long lingerMs, int capacity) {
+        this(name, batchUri, http, codec, format, maxBatch, lingerMs, capacity, envelope -> false);
+    }
+
+    /**
+     * @param sheddable envelopes a per-item 429 drops instead of retrying: the kernel is
+     *                  shedding them on purpose, and retrying would hold up the ones behind
+     */
+    public EnvelopeBatcher(String name, URI batchUri, HttpClient http, EnvelopeCodec codec, WireFormat format,
+                           int maxBatch, long lingerMs, int capacity, Predicate<MessageEnvelope<?>> sheddable) {
+        this.name = name;
+        this.batchUri = batchUri;
+        this.http = http;
+        this.codec = codec;
+        this.format = format;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.sheddable = sheddable;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.sender = new Thread(this::run, name);
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /** Queue an envelope to be coalesced with its neighbours. */
+    public boolean submit(MessageEnvelope<?> envelope) {
+        if (running && queue.offer(envelope)) {
+            accepted.incrementAndGet();
+            return true;
+        }
+        dropped.incrementAndGet();
+        System.err.printf("⚠️ [%s] Batch queue full or closed, dropped %s%n", name, envelope.getType());
+        return false;
+    }
+
+    /** Queue an envelope and flush without waiting for the linger window. */
+    public boolean submitNow(MessageEnvelope<?> envelope) {
+        if (!submit(envelope)) return false;
+        urgentRequests.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Ship everything submitted so far and wait (up to {@code timeout}) for the kernel to
+     * answer it.
+     *
+     * @return {@code false} if the timeout elapsed first or an envelope was dropped
+     */
+    public boolean flush(Duration timeout) throws InterruptedException {
+        try {
+            flushAsync().get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Ship everything submitted so far. Completes once the kernel has answered it, or
+     * exceptionally if any of it was dropped (refused, given up on, or unsendable).
+     */
+    public CompletableFuture<Void> flushAsync() {
+        Flush flush = new Flush(accepted.get(), new CompletableFuture<>());
+        synchronized (progress) {
+            if (settled >= flush.target()) return CompletableFuture.completedFuture(null);
+            flushes.add(flush);
+        }
+        urgentRequests.incrementAndGet();
+        return flush.done();
+    }
+
+    public long batchesSent() { return batchesSent.get(); }
+    public long envelopesSent() { return envelopesSent.get(); }
+    public long droppedCount() { return dropped.get(); }
+
+    /** Stop accepting envelopes, ship what is queued and stop the sender thread. */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            sender.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (progress) {
+            // Only if the sender didn't finish in time: what they wait for was never answered
+            flushes.forEach(f -> f.done().completeExceptionally(new IllegalStateException("batcher closed: " + name)));
+            flushes.clear();
+        }
+        System.out.printf("📦 [%s] Closed: %d envelope(s) in %d batch(es), %d dropped%n",
+                name, envelopesSent.get(), batchesSent.get(), dropped.get());
+    }
+
+    private void run() {
+        List<MessageEnvelope<?>> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            long sentBefore = envelopesSent.get();   // only this thread counts sent envelopes
+            try {
+                MessageEnvelope<?> first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                fill(batch);
+                send(batch);
+            } catch (InterruptedException e) {
+                if (!running) break;
+            } catch (Exception e) {
+                dropped.addAndGet(batch.size());
+                System.err.printf("❌ [%s] Batch send failed: %s%n", name, e.getMessage());
+            } finally {
+                settle(batch.size(), batch.size() - (int) (envelopesSent.get() - sentBefore));
+                batch.clear();
+            }
+        }
+    }
+
+    private record Flush(long target, CompletableFuture<Void> done) {}
+
+    // A flush fails if a batch with drops overlaps what it waits for, i.e. starts below its target
+    private void settle(int count, int lost) {
+        if (count == 0) return;
+        synchronized (progress) {
+            long from = settled;
+            settled += count;
+            for (Iterator<Flush> it = flushes.iterator(); it.hasNext(); ) {
+                Flush f = it.next();
+                if (lost > 0 && f.target() > from) {
+                    f.done().completeExceptionally(new IOException(lost + " envelope(s) dropped in " + name));
+                } else if (f.target() > settled) {
+                    continue;
+                } else {
+                    f.done().complete(null);
+                }
+                it.remove();
+            }
+        }
+    }
+
+    // ⏳ Linger until the batch is full, the window closes, or someone asked for a flush
+    private void fill(List<MessageEnvelope<?>> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxBatch && running) {
+            long urgent = urgentRequests.get();
+            if (urgent != urgentServed) {
+                queue.drainTo(batch, maxBatch - batch.size());
+                if (queue.isEmpty()) urgentServed = urgent;
+                return;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return;
+            MessageEnvelope<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) return;
+            batch.add(next);
+        }
+        if (!running) queue.drainTo(batch, maxBatch - batch.size());
+    }
+
+    private void send(List<MessageEnvelope<?>> batch) throws InterruptedException {
+        // Retried in place: later batches must not overtake this one. The kernel drops replays
+        // by correlationId, so re-sending a batch it partly processed is safe.
+        List<MessageEnvelope<?>> pending = batch;
+        for (int attempt = 1; ; attempt++) {
+            String failure;
+            try {
+                HttpResponse<byte[]> resp = http.send(request(pending), HttpResponse.BodyHandlers.ofByteArray());
+                if (resp.statusCode() != 429 && resp.statusCode() < 500) {
+                    batchesSent.incrementAndGet();
+                    pending = report(pending, resp);
+                    if (pending.isEmpty()) return;
+                    failure = pending.size() + " item(s) refused or unanswered";
+                } else {
+                    failure = "status " + resp.statusCode();
+                }
+            } catch (IOException e) {
+                failure = e.getMessage();
+            } catch (RuntimeException e) {
+                // The codec or the client threw: the same batch would fail the same way again
+                dropped.addAndGet(pending.size());
+                System.err.printf("❌ [%s] Dropped %d envelope(s) %s, batch not sendable: %s%n",
+                        name, pending.size(), types(pending), e);
+                return;
+            }
+            if (attempt >= MAX_ATTEMPTS) {
+                dropped.addAndGet(pending.size());
+                System.err.printf("❌ [%s] Gave up on %d envelope(s) %s after %d attempts: %s%n",
+                        name, pending.size(), types(pending), attempt, failure);
+                return;
+            }
+            // Full jitter: agents retrying against the same kernel spread out instead of stampeding
+            long sleepMs = ThreadLocalRandom.current().nextLong(RETRY_BACKOFF_MS * (1L << (attempt - 1)) + 1);
+            System.err.printf("⚠️ [%s] Batch attempt %d/%d failed (retry in %dms): %s%n",
+                    name, attempt, MAX_ATTEMPTS, sleepMs, failure);
+            Thread.sleep(sleepMs);
+        }
+    }
+
+    private HttpRequest request(List<MessageEnvelope<?>> batch) {
+        EnvelopeCodec.Encoded encoded = codec.encode(batch, format);
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(batchUri)
+                .header("Content-Type", encoded.contentType())
+                .header("Accept", format.mediaType() + ", application/json;q=0.9")
+                .header("Accept-Encoding", EnvelopeCodec.GZIP)
+                .timeout(Duration.ofSeconds(20))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(encoded.body()));
+        if (encoded.compressed()) builder.header("Content-Encoding", encoded.contentEncoding());
+        return builder.build();
+    }
+
+    private static List<String> types(List<MessageEnvelope<?>> envelopes) {
+        return envelopes.stream().map(MessageEnvelope::getType).toList();
+    }
+
+    /**
+     * Log the items the kernel refused; returns those to send again, in batch order. An item
+     * without a result counts as failed: the kernel may never have got to it.
+     */
+    @SuppressWarnings("unchecked")
+    private List<MessageEnvelope<?>> report(List<MessageEnvelope<?>> batch, HttpResponse<byte[]> resp) {
+        if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+            dropped.addAndGet(batch.size());
+            System.err.printf("⚠️ [%s] Kernel rejected batch of %d: status %d%n", name, batch.size(), resp.statusCode());
+            return List.of();
+        }
+        int[] statuses = new int[batch.size()];   // 0 = no result
+        Object[] bodies = new Object[batch.size()];
+        try {
+            Map<String, Object> body = codec.decode(resp.body(),
+                    resp.headers().firstValue("Content-Type").orElse(null),
+                    resp.headers().firstValue("Content-Encoding").orElse(null),
+                    Map.class);
+            if (body.get("results") instanceof List<?> items) {
+                for (Object item : items) {
+                    if (!(item instanceof Map<?, ?> r)) continue;
+                    int index = r.get("index") instanceof Number n ? n.intValue() : -1;
+                    if (index < 0 || index >= batch.size()) continue;
+                    statuses[index] = r.get("status") instanceof Number n ? n.intValue() : 200;
+                    bodies[index] = r.get("body");
+                }
+            }
+        } catch (Exception e) {
+            System.err.printf("⚠️ [%s] Unreadable batch response: %s%n", name, e.getMessage());
+        }
+
+        List<MessageEnvelope<?>> retry = new ArrayList<>();
+        int unanswered = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            MessageEnvelope<?> envelope = batch.get(i);
+            int status = statuses[i];
+            if (status == 0) {
+                unanswered++;
+                retry.add(envelope);
+            } else if (status < 300) {
+                envelopesSent.incrementAndGet();
+            } else if (status == 429 && sheddable.test(envelope)) {
+                dropped.incrementAndGet();
+                System.err.printf("⚠️ [%s] Kernel shed %s (429), dropping it%n", name, envelope.getType());
+            } else if (status == 409 || status == 429 || status >= 500) {
+                retry.add(envelope);
+            } else {
+                dropped.incrementAndGet();
+                System.err.printf("⚠️ [%s] Kernel answered %d for %s (#%d): %s%n",
+                        name, status, envelope.getType(), i, bodies[i]);
+            }
+        }
+        if (unanswered > 0) {
+            System.err.printf("⚠️ [%s] Kernel answered no result for %d of %d item(s)%n", name, unanswered, batch.size());
+        }
+        return retry;
+    }
+}
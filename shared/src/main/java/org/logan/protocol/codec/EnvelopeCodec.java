@@ -0,0 +1,111 @@
+package org.logan.protocol.codec;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * EnvelopeCodec: encodes {@code MessageEnvelope}s (or any payload) as JSON or Smile,
+ * gzip-compressing binary bodies above a size threshold.
+ *
+ * JSON is never compressed here so browser clients keep working unchanged; the
+ * binary path is meant for kernel ↔ agent traffic where both sides use this codec.
+ */
+public class EnvelopeCodec {
+    public static final String GZIP = "gzip";
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 4 * 1024;
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+    private final int compressionThreshold;
+
+    public EnvelopeCodec() {
+        this(DEFAULT_COMPRESSION_THRESHOLD);
+    }
+
+    /**
+     * @param compressionThreshold encoded size in bytes above which Smile bodies are gzipped;
+     *                             {@code <= 0} disables compression
+     */
+    public EnvelopeCodec(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+        this.jsonMapper = configure(new ObjectMapper());
+        SmileFactory smileFactory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        this.smileMapper = configure(new ObjectMapper(smileFactory));
+    }
+
+    private static ObjectMapper configure(ObjectMapper mapper) {
+        return mapper.registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    public ObjectMapper mapperFor(WireFormat format) {
+        return format == WireFormat.SMILE ? smileMapper : jsonMapper;
+    }
+
+    public ObjectMapper smileMapper() {
+        return smileMapper;
+    }
+
+    public Encoded encode(Object value, WireFormat format) {
+        try {
+            byte[] body = mapperFor(format).writeValueAsBytes(value);
+            if (format == WireFormat.SMILE && compressionThreshold > 0 && body.length > compressionThreshold) {
+                return new Encoded(gzip(body), format.mediaType(), GZIP);
+            }
+            return new Encoded(body, format.mediaType(), null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode as " + format, e);
+        }
+    }
+
+    public <T> T decode(byte[] body, String contentType, String contentEncoding, Class<T> type) {
+        return decode(body, contentType, contentEncoding, jsonMapper.constructType(type));
+    }
+
+    public <T> T decode(byte[] body, String contentType, String contentEncoding, JavaType type) {
+        WireFormat format = WireFormat.fromContentType(contentType);
+        try (InputStream in = openBody(body, contentEncoding)) {
+            return mapperFor(format).readValue(in, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode " + format + " body", e);
+        }
+    }
+
+    /** Wrap a raw body stream in a gunzip stream when the Content-Encoding says so. */
+    public static InputStream decompressing(InputStream in, String contentEncoding) throws IOException {
+        return GZIP.equalsIgnoreCase(contentEncoding) ? new GZIPInputStream(in) : in;
+    }
+
+    private static InputStream openBody(byte[] body, String contentEncoding) throws IOException {
+        return decompressing(new ByteArrayInputStream(body), contentEncoding);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    /** Encoded body plus the headers the receiver needs to read it back. */
+    public record Encoded(byte[] body, String contentType, String contentEncoding) {
+        public boolean compressed() {
+            return contentEncoding != null;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.logan.protocol.codec;
+
+/**
+ * Envelope encodings understood on the kernel ↔ agent wire.
+ */
+public enum WireFormat {
+    JSON("application/json"),
+    SMILE("application/x-jackson-smile");
+
+    private final String mediaType;
+
+    WireFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    /** Resolve a Content-Type header; anything unrecognised is treated as JSON. */
+    public static WireFormat fromContentType(String contentType) {
+        if (contentType != null && contentType.toLowerCase().startsWith(SMILE.mediaType)) return SMILE;
+        return JSON;
+    }
+
+    /** Pick the response format for an Accept header: Smile only when the caller asks for it. */
+    public static WireFormat fromAccept(String accept) {
+        if (accept != null && accept.toLowerCase().contains(SMILE.mediaType)) return SMILE;
+        return JSON;
+    }
+
+    /** Parse a configured format name ("json" / "smile"), defaulting to JSON. */
+    public static WireFormat fromName(String name) {
+        if (name != null && name.equalsIgnoreCase("smile")) return SMILE;
+        return JSON;
+    }
+}
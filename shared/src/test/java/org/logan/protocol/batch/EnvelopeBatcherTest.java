@@ -0,0 +1,180 @@
+package org.logan.protocol.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.logan.protocol.MessageEnvelope;
+import org.logan.protocol.codec.EnvelopeCodec;
+import org.logan.protocol.codec.WireFormat;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnvelopeBatcherTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final EnvelopeCodec codec = new EnvelopeCodec();
+    private final List<List<String>> requests = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> seen = new ConcurrentHashMap<>();
+    /** (correlationId, times seen) → status, or null to leave the item without a result. */
+    private volatile BiFunction<String, Integer, Integer> kernel = (id, n) -> 200;
+    private HttpServer server;
+    private EnvelopeBatcher batcher;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void startKernel() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/messages/batch", exchange -> {
+            List<Map<String, Object>> items = codec.decode(exchange.getRequestBody().readAllBytes(),
+                    exchange.getRequestHeaders().getFirst("Content-Type"),
+                    exchange.getRequestHeaders().getFirst("Content-Encoding"), List.class);
+            List<Map<String, Object>> results = new ArrayList<>();
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                String id = (String) items.get(i).get("correlationId");
+                ids.add(id);
+                Integer status = kernel.apply(id, seen.merge(id, 1, Integer::sum));
+                if (status != null) results.add(Map.of("index", i, "status", status, "body", Map.of()));
+            }
+            requests.add(ids);
+            byte[] body = mapper.writeValueAsBytes(Map.of("ok", true, "count", results.size(), "results", results));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        batcher = new EnvelopeBatcher("test-batcher",
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/messages/batch"),
+                HttpClient.newHttpClient(), codec, WireFormat.JSON, 64, 1_000, 256);
+    }
+
+    @AfterEach
+    void stopKernel() {
+        batcher.close();
+        server.stop(0);
+    }
+
+    private static MessageEnvelope<Map<String, Object>> envelope(String correlationId) {
+        MessageEnvelope<Map<String, Object>> env = new MessageEnvelope<>();
+        env.setType("agent_status_update");
+        env.setSenderId("agent-1");
+        env.setCorrelationId(correlationId);
+        env.setPayload(Map.of("sessionId", "s-1"));
+        return env;
+    }
+
+    private void sendAll(String... correlationIds) throws InterruptedException {
+        assertTrue(submitAndFlush(correlationIds), "kernel saw " + requests);
+    }
+
+    private boolean submitAndFlush(String... correlationIds) throws InterruptedException {
+        for (String id : correlationIds) assertTrue(batcher.submit(envelope(id)));
+        return batcher.flush(Duration.ofSeconds(20));
+    }
+
+    @Test
+    void envelopesAreCoalescedIntoOneOrderedBatch() throws Exception {
+        sendAll("a", "b", "c");
+
+        assertEquals(List.of(List.of("a", "b", "c")), requests);
+        assertEquals(3, batcher.envelopesSent());
+        assertEquals(0, batcher.droppedCount());
+    }
+
+    @Test
+    void itemsWithoutAResultAreSentAgain() throws Exception {
+        // The kernel answers only the first item of the first request
+        kernel = (id, n) -> "a".equals(id) || n > 1 ? 200 : null;
+
+        sendAll("a", "b", "c");
+
+        assertEquals(List.of(List.of("a", "b", "c"), List.of("b", "c")), requests);
+        assertEquals(3, batcher.envelopesSent());
+    }
+
+    @Test
+    void aResponseWithoutResultsRetriesTheWholeBatch() throws Exception {
+        kernel = (id, n) -> n > 1 ? 200 : null;
+
+        sendAll("a", "b");
+
+        assertEquals(List.of(List.of("a", "b"), List.of("a", "b")), requests);
+        assertEquals(2, batcher.envelopesSent());
+    }
+
+    @Test
+    void aRefusedItemAndTheItemsHeldBackBehindItAreRetriedInOrder() throws Exception {
+        kernel = (id, n) -> n > 1 ? 200 : switch (id) {
+            case "b" -> 503;
+            case "c", "d" -> 409;
+            default -> 200;
+        };
+
+        sendAll("a", "b", "c", "d");
+
+        assertEquals(List.of(List.of("a", "b", "c", "d"), List.of("b", "c", "d")), requests);
+        assertEquals(4, batcher.envelopesSent());
+    }
+
+    @Test
+    void aBadRequestItemIsDroppedNotRetriedOrCounted() throws Exception {
+        kernel = (id, n) -> "b".equals(id) ? 400 : 200;
+
+        assertFalse(submitAndFlush("a", "b", "c"));
+
+        assertEquals(List.of(List.of("a", "b", "c")), requests);
+        assertEquals(2, batcher.envelopesSent());
+        assertEquals(1, batcher.droppedCount());
+    }
+
+    @Test
+    void anItemStillUnansweredAfterTheLastAttemptIsDropped() throws Exception {
+        kernel = (id, n) -> "b".equals(id) ? null : 200;
+
+        assertFalse(submitAndFlush("a", "b"));
+
+        assertEquals(5, Collections.frequency(requests.stream().flatMap(List::stream).toList(), "b"));
+        assertEquals(1, batcher.envelopesSent());
+        assertEquals(1, batcher.droppedCount());
+    }
+
+    @Test
+    void aBatchTheCodecThrowsOnIsDroppedAndFailsTheFlush() throws Exception {
+        batcher.close();
+        batcher = new EnvelopeBatcher("test-batcher",
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/messages/batch"),
+                HttpClient.newHttpClient(), new EnvelopeCodec() {
+                    @Override
+                    public Encoded encode(Object value, WireFormat format) {
+                        if (value instanceof List<?> batch && batch.size() > 1) throw new IllegalStateException("codec bug");
+                        return super.encode(value, format);
+                    }
+                }, WireFormat.JSON, 64, 1_000, 256);
+        batcher.submit(envelope("a"));
+        batcher.submit(envelope("b"));
+
+        ExecutionException failed = assertThrows(ExecutionException.class,
+                () -> batcher.flushAsync().get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(IOException.class, failed.getCause());
+        assertEquals(List.of(), requests);
+        assertEquals(2, batcher.droppedCount());
+        sendAll("c");   // the sender thread carries on with the next batch
+        assertEquals(List.of(List.of("c")), requests);
+    }
+}
@@ -0,0 +1,106 @@
+package org.logan.protocol.codec;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.logan.protocol.MessageEnvelope;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size / CPU comparison of the envelope wire formats.
+ *
+ * Usage: {@code EnvelopeCodecBenchmark [recorded.ndjson]} — one JSON envelope per line, e.g.
+ * captured from the kernel's /messages traffic. Without a file, a synthetic corpus shaped
+ * like kernel traffic (status updates, tool results, chat_result with a full audit) is used.
+ */
+public class EnvelopeCodecBenchmark {
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURE_ROUNDS = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        EnvelopeCodec codec = new EnvelopeCodec();
+        ObjectMapper json = codec.mapperFor(WireFormat.JSON);
+        JavaType envelopeType = json.getTypeFactory().constructParametricType(MessageEnvelope.class, Map.class);
+
+        List<MessageEnvelope<Map<String, Object>>> corpus = new ArrayList<>();
+        if (args.length > 0) {
+            for (String line : Files.readAllLines(Path.of(args[0]))) {
+                if (!line.isBlank()) corpus.add(json.readValue(line, envelopeType));
+            }
+        } else {
+            corpus.addAll(syntheticCorpus());
+        }
+        System.out.printf("Corpus: %d envelope(s)%n%n", corpus.size());
+        System.out.printf("%-12s %12s %10s %14s %14s%n", "format", "total bytes", "ratio", "encode ns/env", "decode ns/env");
+
+        long jsonBytes = run("json", corpus, WireFormat.JSON, new EnvelopeCodec(0), envelopeType, -1);
+        run("smile", corpus, WireFormat.SMILE, new EnvelopeCodec(0), envelopeType, jsonBytes);
+        run("smile+gzip", corpus, WireFormat.SMILE, codec, envelopeType, jsonBytes);
+    }
+
+    private static long run(String label, List<MessageEnvelope<Map<String, Object>>> corpus,
+                            WireFormat format, EnvelopeCodec codec, JavaType type, long baseline) {
+        List<EnvelopeCodec.Encoded> encoded = new ArrayList<>(corpus.size());
+        long totalBytes = 0;
+        for (MessageEnvelope<?> env : corpus) {
+            EnvelopeCodec.Encoded e = codec.encode(env, format);
+            encoded.add(e);
+            totalBytes += e.body().length;
+        }
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) roundTrip(corpus, encoded, codec, format, type);
+
+        long encodeNs = 0, decodeNs = 0;
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            long t0 = System.nanoTime();
+            for (MessageEnvelope<?> env : corpus) codec.encode(env, format);
+            long t1 = System.nanoTime();
+            for (EnvelopeCodec.Encoded e : encoded) codec.decode(e.body(), e.contentType(), e.contentEncoding(), type);
+            long t2 = System.nanoTime();
+            encodeNs += t1 - t0;
+            decodeNs += t2 - t1;
+        }
+        long ops = (long) MEASURE_ROUNDS * corpus.size();
+        String ratio = baseline <= 0 ? "1.00" : String.format("%.2f", (double) totalBytes / baseline);
+        System.out.printf("%-12s %12d %10s %14d %14d%n", label, totalBytes, ratio, encodeNs / ops, decodeNs / ops);
+        return totalBytes;
+    }
+
+    private static void roundTrip(List<MessageEnvelope<Map<String, Object>>> corpus, List<EnvelopeCodec.Encoded> encoded,
+                                  EnvelopeCodec codec, WireFormat format, JavaType type) {
+        for (MessageEnvelope<?> env : corpus) codec.encode(env, format);
+        for (EnvelopeCodec.Encoded e : encoded) codec.decode(e.body(), e.contentType(), e.contentEncoding(), type);
+    }
+
+    private static List<MessageEnvelope<Map<String, Object>>> syntheticCorpus() {
+        List<MessageEnvelope<Map<String, Object>>> out = new ArrayList<>();
+        List<Map<String, Object>> audit = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("timestamp", "Thu Oct 16 10:15:" + (10 + i % 50) + " IST 2025");
+            entry.put("type", i % 3 == 0 ? "tool_result" : "reasoning");
+            entry.put("phase", i % 3 == 0 ? "tool_success" : "thinking");
+            entry.put("agentId", "payment-agent");
+            entry.put("message", "<thinking>Validating beneficiary Adwait and checking balance before paying 500 INR, step "
+                    + i + "</thinking>");
+            audit.add(entry);
+
+            out.add(MessageEnvelope.<Map<String, Object>>builder()
+                    .type("agent_status_update").senderId("payment-agent").recipientId("kernel")
+                    .payload(Map.of("sessionId", "session-42", "phase", "thinking",
+                            "message", entry.get("message"), "agentId", "payment-agent"))
+                    .build());
+        }
+        out.add(MessageEnvelope.<Map<String, Object>>builder()
+                .type("chat_result").senderId("payment-agent").recipientId("orchestrator-agent")
+                .payload(Map.of("sessionId", "session-42", "agentId", "payment-agent", "stopReason", "end_turn",
+                        "isFinal", true, "audit", audit, "events", audit.subList(0, 10)))
+                .build());
+        return out;
+    }
+}
@@ -0,0 +1,153 @@
+package org.logan.protocol.codec;
+
+import com.fasterxml.jackson.databind.JavaType;
+import org.junit.jupiter.api.Test;
+import org.logan.protocol.MessageEnvelope;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnvelopeCodecTest {
+
+    private static final Instant SENT = Instant.parse("2026-10-01T12:00:00.123Z");
+
+    private final EnvelopeCodec codec = new EnvelopeCodec();
+    private final JavaType envelopeType = codec.mapperFor(WireFormat.JSON).getTypeFactory()
+            .constructParametricType(MessageEnvelope.class, Map.class);
+
+    private static MessageEnvelope<Map<String, Object>> envelope(String message) {
+        MessageEnvelope<Map<String, Object>> env = new MessageEnvelope<>();
+        env.setType("agent_status_update");
+        env.setSenderId("agent-1");
+        env.setRecipientId("kernel");
+        env.setCorrelationId("c-1");
+        env.setTimestamp(SENT);
+        env.setPayload(Map.of("sessionId", "s-1", "message", message, "steps", List.of(1, 2, 3)));
+        return env;
+    }
+
+    private MessageEnvelope<Map<String, Object>> decode(EnvelopeCodec.Encoded encoded) {
+        return codec.decode(encoded.body(), encoded.contentType(), encoded.contentEncoding(), envelopeType);
+    }
+
+    private static void assertSameEnvelope(MessageEnvelope<Map<String, Object>> expected,
+                                           MessageEnvelope<Map<String, Object>> actual) {
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getSenderId(), actual.getSenderId());
+        assertEquals(expected.getRecipientId(), actual.getRecipientId());
+        assertEquals(expected.getCorrelationId(), actual.getCorrelationId());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getPayload(), actual.getPayload());
+    }
+
+    @Test
+    void roundTripsAsJson() {
+        MessageEnvelope<Map<String, Object>> env = envelope("thinking");
+
+        EnvelopeCodec.Encoded encoded = codec.encode(env, WireFormat.JSON);
+
+        assertEquals("application/json", encoded.contentType());
+        assertFalse(encoded.compressed());
+        assertTrue(new String(encoded.body(), StandardCharsets.UTF_8).contains("\"2026-10-01T12:00:00.123Z\""));
+        assertSameEnvelope(env, decode(encoded));
+    }
+
+    @Test
+    void roundTripsAsSmile() {
+        MessageEnvelope<Map<String, Object>> env = envelope("thinking");
+
+        EnvelopeCodec.Encoded encoded = codec.encode(env, WireFormat.SMILE);
+
+        assertEquals("application/x-jackson-smile", encoded.contentType());
+        assertFalse(encoded.compressed());
+        assertArrayEquals(":)\n".getBytes(StandardCharsets.US_ASCII), Arrays.copyOf(encoded.body(), 3));
+        assertSameEnvelope(env, decode(encoded));
+    }
+
+    @Test
+    void smileAboveTheThresholdIsGzipped() {
+        MessageEnvelope<Map<String, Object>> env = envelope("x".repeat(512));
+
+        EnvelopeCodec.Encoded encoded = new EnvelopeCodec(64).encode(env, WireFormat.SMILE);
+
+        assertTrue(encoded.compressed());
+        assertEquals(EnvelopeCodec.GZIP, encoded.contentEncoding());
+        assertEquals((byte) 0x1f, encoded.body()[0]);
+        assertEquals((byte) 0x8b, encoded.body()[1]);
+        assertSameEnvelope(env, decode(encoded));
+        assertSameEnvelope(env, codec.decode(encoded.body(), encoded.contentType(), "GZIP", envelopeType));
+    }
+
+    @Test
+    void smileBelowTheThresholdOrWithCompressionOffIsNotGzipped() {
+        MessageEnvelope<Map<String, Object>> env = envelope("x".repeat(512));
+
+        assertFalse(new EnvelopeCodec(64 * 1024).encode(env, WireFormat.SMILE).compressed());
+        EnvelopeCodec.Encoded off = new EnvelopeCodec(0).encode(env, WireFormat.SMILE);
+        assertFalse(off.compressed());
+        assertSameEnvelope(env, decode(off));
+    }
+
+    @Test
+    void jsonIsNeverGzipped() {
+        EnvelopeCodec.Encoded encoded = new EnvelopeCodec(64).encode(envelope("x".repeat(512)), WireFormat.JSON);
+
+        assertFalse(encoded.compressed());
+        assertNull(encoded.contentEncoding());
+    }
+
+    @Test
+    void anUnknownContentTypeIsReadAsJson() {
+        MessageEnvelope<Map<String, Object>> env = envelope("thinking");
+        byte[] json = codec.encode(env, WireFormat.JSON).body();
+
+        assertSameEnvelope(env, codec.decode(json, "text/plain", null, envelopeType));
+        assertSameEnvelope(env, codec.decode(json, null, null, envelopeType));
+        assertSameEnvelope(env, codec.decode(codec.encode(env, WireFormat.SMILE).body(),
+                "application/x-jackson-smile; charset=binary", null, envelopeType));
+    }
+
+    @Test
+    void anUnknownContentEncodingIsTakenAsIdentity() {
+        MessageEnvelope<Map<String, Object>> env = envelope("thinking");
+        EnvelopeCodec.Encoded plain = codec.encode(env, WireFormat.SMILE);
+        EnvelopeCodec.Encoded gzipped = new EnvelopeCodec(1).encode(env, WireFormat.SMILE);
+
+        assertSameEnvelope(env, codec.decode(plain.body(), plain.contentType(), "identity", envelopeType));
+        // Not gunzipped, so the gzip bytes fail as Smile instead of being misread
+        assertThrows(UncheckedIOException.class,
+                () -> codec.decode(gzipped.body(), gzipped.contentType(), "br", envelopeType));
+    }
+
+    @Test
+    void corruptBodiesFailAsUncheckedIo() {
+        EnvelopeCodec.Encoded gzipped = new EnvelopeCodec(1).encode(envelope("thinking"), WireFormat.SMILE);
+        byte[] truncated = Arrays.copyOf(gzipped.body(), gzipped.body().length / 2);
+        byte[] smile = codec.encode(envelope("thinking"), WireFormat.SMILE).body();
+        byte[] notSmile = "not smile at all".getBytes(StandardCharsets.UTF_8);   // no :)\n header
+
+        assertThrows(UncheckedIOException.class,
+                () -> codec.decode(truncated, gzipped.contentType(), EnvelopeCodec.GZIP, envelopeType));
+        assertThrows(UncheckedIOException.class,
+                () -> codec.decode(smile, WireFormat.SMILE.mediaType(), EnvelopeCodec.GZIP, envelopeType));
+        assertThrows(UncheckedIOException.class,
+                () -> codec.decode(notSmile, WireFormat.SMILE.mediaType(), null, envelopeType));
+        assertThrows(UncheckedIOException.class,
+                () -> codec.decode("{\"type\":".getBytes(StandardCharsets.UTF_8), "application/json", null, envelopeType));
+    }
+
+    @Test
+    void wireFormatNegotiation() {
+        assertEquals(WireFormat.SMILE, WireFormat.fromAccept("application/x-jackson-smile, application/json;q=0.9"));
+        assertEquals(WireFormat.JSON, WireFormat.fromAccept("*/*"));
+        assertEquals(WireFormat.JSON, WireFormat.fromAccept(null));
+        assertEquals(WireFormat.SMILE, WireFormat.fromName("SMILE"));
+        assertEquals(WireFormat.JSON, WireFormat.fromName("cbor"));
+    }
+}